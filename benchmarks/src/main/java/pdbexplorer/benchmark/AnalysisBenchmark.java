@@ -0,0 +1,51 @@
+package pdbexplorer.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import pdbexplorer.model.analysis.ResidueStatistics;
+import pdbexplorer.model.analysis.TorsionAngles;
+import pdbexplorer.model.protein.PDBComplex;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the analyses behind the charts: the torsion angles of the Ramachandran plot and the residue statistics of
+ * the pie charts.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class AnalysisBenchmark {
+    @Param({Corpus.SMALL, Corpus.MEDIUM, Corpus.LARGE, Corpus.HUGE})
+    public String structure;
+
+    private PDBComplex complex;
+
+    @Setup
+    public void setup() throws IOException {
+        complex = Corpus.getComplex(structure);
+    }
+
+    @Benchmark
+    public TorsionAngles torsionAngles() {
+        return new TorsionAngles(complex);
+    }
+
+    @Benchmark
+    public ResidueStatistics residueStatistics() {
+        return new ResidueStatistics(ResidueStatistics.getFirstModel(complex));
+    }
+}
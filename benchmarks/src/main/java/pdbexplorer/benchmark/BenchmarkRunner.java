@@ -0,0 +1,93 @@
+package pdbexplorer.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Runs the benchmarks with the GC profiler, which reports the allocation rate, writes all results to
+ * benchmark-results.csv and prints how the time of each benchmark scales with the size of the structure. The usual
+ * JMH options can be given, e.g. a benchmark to run (Parse) or other structures (-p structure=1000,/data/4hhb.pdb).
+ * <p>
+ * For synthetic structures, the scaling exponent between consecutive sizes is printed: about 1 means that the time
+ * grows linearly with the number of atoms, about 2 that it grows quadratically.
+ */
+public class BenchmarkRunner {
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        OptionsBuilder builder = new OptionsBuilder();
+        builder.parent(commandLine).addProfiler(GCProfiler.class);
+        if (!commandLine.getResult().hasValue())
+            builder.resultFormat(ResultFormatType.CSV).result("benchmark-results.csv");
+        Options options = builder.build();
+
+        List<RunResult> results = new ArrayList<>(new Runner(options).run());
+        results.sort(Comparator.comparing((RunResult result) -> result.getParams().getBenchmark())
+                .thenComparingLong(BenchmarkRunner::getAtoms));
+        printScaling(results);
+    }
+
+    /**
+     * Prints the throughput, the atoms per second (for synthetic structures measured in operations per second), the
+     * allocation per operation and the scaling exponent of each result.
+     */
+    private static void printScaling(List<RunResult> results) {
+        System.out.printf(Locale.ROOT, "%n%-45s %12s %22s %14s %14s %8s%n", "Benchmark", "Structure", "Score",
+                "atoms/s", "B/op", "Scaling");
+        RunResult previous = null;
+        for (RunResult result : results) {
+            String benchmark = result.getParams().getBenchmark();
+            String structure = result.getParams().getParam("structure");
+            double score = result.getPrimaryResult().getScore();
+            long atoms = getAtoms(result);
+
+            String scaling = "";
+            if (previous != null && atoms > 0 && getAtoms(previous) > 0 && atoms != getAtoms(previous)
+                    && previous.getParams().getBenchmark().equals(benchmark)) {
+                // time per operation is the inverse of the throughput
+                double exponent = Math.log(previous.getPrimaryResult().getScore() / score)
+                        / Math.log((double) atoms / getAtoms(previous));
+                scaling = String.format(Locale.ROOT, "%.2f", exponent);
+            }
+            System.out.printf(Locale.ROOT, "%-45s %12s %12.3f %-9s %14s %14s %8s%n",
+                    benchmark.substring(benchmark.lastIndexOf('.', benchmark.lastIndexOf('.') - 1) + 1),
+                    structure == null ? "" : structure.length() > 12 ? "..." + structure.substring(
+                            structure.length() - 9) : structure,
+                    score, result.getPrimaryResult().getScoreUnit(), atoms > 0 ? String.format(Locale.ROOT, "%.0f", score * atoms) : "",
+                    getAllocation(result), scaling);
+            previous = result;
+        }
+    }
+
+    /**
+     * Returns the number of atoms of the synthetic structure of the result, 0 for real structures.
+     */
+    private static long getAtoms(RunResult result) {
+        String structure = result.getParams().getParam("structure");
+        return structure != null && Corpus.isSynthetic(structure) ? Long.parseLong(structure) : 0;
+    }
+
+    /**
+     * Returns the bytes allocated per operation as measured by the GC profiler.
+     */
+    private static String getAllocation(RunResult result) {
+        for (Map.Entry<String, Result> entry : result.getSecondaryResults().entrySet()) {
+            if (entry.getKey().endsWith("gc.alloc.rate.norm"))
+                return String.format(Locale.ROOT, "%.0f", entry.getValue().getScore());
+        }
+        return "";
+    }
+}
@@ -0,0 +1,50 @@
+package pdbexplorer.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import pdbexplorer.model.protein.PDBComplex;
+import pdbexplorer.model.protein.PDBPolymer;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the computation of bonds by PDBPolymer.getBonds(). The bonds are cached by the polymers, so the cache is
+ * cleared before each computation. The computation compares all pairs of atoms of a chain, so 1M atoms are not run by
+ * default (add -p structure=1000000 to include them).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class BondBenchmark {
+    @Param({Corpus.SMALL, Corpus.MEDIUM, Corpus.LARGE})
+    public String structure;
+
+    private PDBComplex complex;
+
+    @Setup
+    public void setup() throws IOException {
+        complex = Corpus.getComplex(structure);
+    }
+
+    @Benchmark
+    public void bonds(Blackhole blackhole) {
+        for (PDBPolymer polymer : complex.getPolymers()) {
+            polymer.setBonds(null);
+            blackhole.consume(polymer.getBonds());
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package pdbexplorer.benchmark;
+
+import pdbexplorer.model.io.PDBParser;
+import pdbexplorer.model.io.StructureFileReader;
+import pdbexplorer.model.protein.PDBComplex;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+
+/**
+ * This class provides the structures the benchmarks run on. A structure is given as benchmark parameter, either as a
+ * number of atoms, for which a synthetic PDB file is generated, or as the path to a real structure file in any format
+ * the explorer reads (e.g. -p structure=/data/4hhb.cif.gz). Synthetic files are deterministic: each residue has the
+ * eight heavy atoms of a lysine placed along an ideal alpha helix, such that bond lengths and secondary structure are
+ * realistic and the results of different runs can be compared. Large files are split into up to 62 chains.
+ */
+public final class Corpus {
+    // sizes used by default: 1k to 1M atoms
+    public static final String SMALL = "1000", MEDIUM = "10000", LARGE = "100000", HUGE = "1000000";
+
+    private static final String CHAIN_IDS = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789";
+    private static final int MIN_CHAIN_LENGTH = 300;
+    private static final String[] ATOM_NAMES = {"N", "CA", "C", "O", "CB", "CG", "CD", "CE"};
+    // position of each atom on the helix: offset along the helix (in residues), radius and angle offset (in degrees)
+    private static final double[][] ATOM_POSITIONS = {{-0.3, 1.6, 0}, {0, 2.3, 0}, {0.3, 2.0, 0}, {0.35, 3.4, 0},
+            {0, 3.8, -20}, {0, 5.3, -20}, {0, 6.8, -20}, {0, 8.3, -20}};
+
+    private Corpus() {
+    }
+
+    /**
+     * Returns whether the given structure parameter denotes a synthetic structure.
+     * @param structure (String): number of atoms or path of a structure file
+     * @return boolean: true for synthetic structures
+     */
+    public static boolean isSynthetic(String structure) {
+        return structure.chars().allMatch(Character::isDigit);
+    }
+
+    /**
+     * Returns the text of the given structure: a generated PDB file, or the decompressed content of a text file.
+     * @param structure (String): number of atoms or path of a structure file
+     * @return String: the content of the file
+     * @throws IOException in case the file cannot be read
+     */
+    public static String getText(String structure) throws IOException {
+        if (isSynthetic(structure))
+            return generate(Integer.parseInt(structure));
+        try (InputStream input = StructureFileReader.open(Path.of(structure))) {
+            return new String(input.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Returns the parsed complex of the given structure.
+     * @param structure (String): number of atoms or path of a structure file
+     * @return PDBComplex: the complex
+     * @throws IOException in case the file cannot be read
+     */
+    public static PDBComplex getComplex(String structure) throws IOException {
+        if (isSynthetic(structure))
+            return new PDBParser.ParsePDB(getText(structure)).call();
+        return StructureFileReader.read(Path.of(structure));
+    }
+
+    /**
+     * Generates a PDB file with about the given number of atoms (rounded up to whole residues).
+     * @param atoms (int): number of atoms
+     * @return String: the PDB file
+     */
+    public static String generate(int atoms) {
+        int residues = Math.max(2, (atoms + ATOM_NAMES.length - 1) / ATOM_NAMES.length);
+        int chains = Math.min(CHAIN_IDS.length(), Math.max(1, residues / MIN_CHAIN_LENGTH));
+        int chainLength = (residues + chains - 1) / chains;
+
+        StringBuilder pdb = new StringBuilder(residues * ATOM_NAMES.length * 81 + chains * 2 * 81);
+        // helices of 12 residues separated by loops of 4 residues
+        for (int chain = 0; chain < chains; chain++) {
+            int length = Math.min(chainLength, residues - chain * chainLength);
+            for (int start = 1, helix = 1; start + 11 <= length; start += 16, helix++) {
+                pdb.append(String.format(Locale.ROOT, "HELIX  %3d %3d LYS %c %4d  LYS %c %4d  1\n", helix, helix,
+                        CHAIN_IDS.charAt(chain), start, CHAIN_IDS.charAt(chain), start + 11));
+            }
+        }
+        int serial = 1;
+        for (int chain = 0; chain < chains; chain++) {
+            int length = Math.min(chainLength, residues - chain * chainLength);
+            // chains are placed next to each other on a grid
+            double offsetX = 25 * (chain % 8), offsetY = 25 * (chain / 8);
+            for (int residue = 1; residue <= length; residue++) {
+                for (int atom = 0; atom < ATOM_NAMES.length; atom++) {
+                    double[] position = ATOM_POSITIONS[atom];
+                    double t = residue + position[0];
+                    double angle = Math.toRadians(100 * t + position[2]);
+                    pdb.append(String.format(Locale.ROOT,
+                            "ATOM  %5d %-4s LYS %c%4d    %8.3f%8.3f%8.3f  1.00  0.00           %s\n",
+                            serial++ % 100000, ATOM_NAMES[atom].length() < 4 ? " " + ATOM_NAMES[atom]
+                                    : ATOM_NAMES[atom], CHAIN_IDS.charAt(chain), residue,
+                            offsetX + position[1] * Math.cos(angle), offsetY + position[1] * Math.sin(angle),
+                            1.5 * t, ATOM_NAMES[atom].substring(0, 1)));
+                }
+            }
+            pdb.append("TER\n");
+        }
+        return pdb.append("END\n").toString();
+    }
+
+    /**
+     * Writes a synthetic structure of the given size to a file, e.g. to benchmark other tools on the same data.
+     * @param args (String[]): number of atoms and path of the file
+     * @throws IOException in case the file cannot be written
+     */
+    public static void main(String[] args) throws IOException {
+        Files.writeString(Path.of(args[1]), generate(Integer.parseInt(args[0])));
+    }
+}
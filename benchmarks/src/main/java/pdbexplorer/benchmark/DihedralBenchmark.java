@@ -0,0 +1,35 @@
+package pdbexplorer.benchmark;
+
+import javafx.geometry.Point3D;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import pdbexplorer.model.analysis.TorsionAngles;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures a single dihedral angle as computed for each residue of the Ramachandran plot (twice per residue).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DihedralBenchmark {
+    // not final, such that the angle cannot be folded into a constant
+    private Point3D p1 = new Point3D(1.2, 0.5, 0.1), p2 = new Point3D(2.1, 1.4, 0.2),
+            p3 = new Point3D(3.5, 1.3, 0.9), p4 = new Point3D(4.1, 2.5, 1.6);
+
+    @Benchmark
+    public double dihedralAngle() {
+        return TorsionAngles.computeDihedralAngle(p1, p2, p3, p4);
+    }
+}
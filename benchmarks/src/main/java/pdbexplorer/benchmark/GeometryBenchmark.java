@@ -0,0 +1,60 @@
+package pdbexplorer.benchmark;
+
+import javafx.geometry.Point3D;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import pdbexplorer.model.protein.PDBComplex;
+import pdbexplorer.window.ComplexFigure;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Measures the geometry computed for the figure: the mean point used for centering (ComplexFigure.computeMeanPoint)
+ * and the ribbon meshes of ComputeRibbon, which are generated without a running JavaFX application. On machines
+ * without 3D support, JavaFX logs a warning for each mesh; these warnings are turned off.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class GeometryBenchmark {
+    @Param({Corpus.SMALL, Corpus.MEDIUM, Corpus.LARGE, Corpus.HUGE})
+    public String structure;
+
+    // kept, such that the level of the logger is not lost when it is garbage collected
+    private static final Logger javafxLogger = Logger.getLogger("javafx");
+
+    private PDBComplex complex;
+
+    @Setup
+    public void setup() throws IOException {
+        javafxLogger.setLevel(Level.SEVERE);
+        complex = Corpus.getComplex(structure);
+    }
+
+    @Benchmark
+    public ArrayList<Point3D> meanPoint() {
+        return ComplexFigure.computeMeanPoint(complex, complex.getNumberOfModels());
+    }
+
+    @Benchmark
+    public void ribbon(Blackhole blackhole) {
+        ComplexFigure.computeRibbonSegments(complex, (atom, mesh) -> blackhole.consume(mesh), blackhole::consume);
+    }
+}
@@ -0,0 +1,61 @@
+package pdbexplorer.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import pdbexplorer.model.io.BinaryCIFParser;
+import pdbexplorer.model.io.PDBParser;
+import pdbexplorer.model.io.StructureFileReader;
+import pdbexplorer.model.protein.PDBComplex;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures parsing of structure files held in memory, as done by ParsePDB.call() after a download. Files on disk are
+ * decompressed beforehand, such that only parsing is measured; BinaryCIF files are handed to the BinaryCIFParser.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ParseBenchmark {
+    @Param({Corpus.SMALL, Corpus.MEDIUM, Corpus.LARGE, Corpus.HUGE})
+    public String structure;
+
+    private String text;
+    private byte[] binary;
+
+    @Setup
+    public void setup() throws IOException {
+        if (Corpus.isSynthetic(structure)) {
+            text = Corpus.getText(structure);
+            return;
+        }
+        try (InputStream input = StructureFileReader.open(Path.of(structure))) {
+            byte[] data = input.readAllBytes();
+            if (BinaryCIFParser.isBinaryCIF(data))
+                binary = data;
+            else
+                text = new String(data, StandardCharsets.UTF_8);
+        }
+    }
+
+    @Benchmark
+    public PDBComplex parse() {
+        return binary != null ? BinaryCIFParser.parse(binary) : new PDBParser.ParsePDB(text).call();
+    }
+}
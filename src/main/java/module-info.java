@@ -2,7 +2,10 @@ module com.example.pdbexplorer {
     requires javafx.controls;
     requires javafx.fxml;
     requires java.json;
+    requires java.net.http;
     requires javafx.web;
+    requires jdk.jfr;
+    requires jdk.management;
 
     exports pdbexplorer;
     opens pdbexplorer.window to javafx.fxml;
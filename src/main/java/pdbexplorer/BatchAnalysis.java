@@ -0,0 +1,290 @@
+package pdbexplorer;
+
+import pdbexplorer.model.PDBWebClient;
+import pdbexplorer.model.analysis.ResidueStatistics;
+import pdbexplorer.model.analysis.TorsionAngles;
+import pdbexplorer.model.io.PDBParser;
+import pdbexplorer.model.io.StructureFileReader;
+import pdbexplorer.model.protein.PDBComplex;
+
+import javax.json.Json;
+import javax.json.JsonArrayBuilder;
+import javax.json.JsonObjectBuilder;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+/**
+ * Command line entry point that analyses many structures without starting the user interface, e.g. on a server
+ * without display. Structure files (also compressed ones) are read from directories, and PDB IDs are downloaded
+ * through the persistent cache. The structures are parsed and analysed in parallel by a fixed number of workers; at
+ * most twice as many structures as workers are in progress at a time, such that memory use does not depend on the
+ * number of inputs. For each structure, the residue composition, the secondary structure fractions and the phi/psi
+ * angles are written, either as CSV tables (composition.csv, torsions.csv) or as one JSON object per line
+ * (analysis.jsonl). The results are written in the order in which the structures are finished.
+ * <p>
+ * Usage: BatchAnalysis [--threads N] [--format csv|jsonl] [--output DIR] INPUT...
+ * <br>
+ * An input is a directory of structure files, a structure file, a text file (.txt, .list) with one PDB ID per line or
+ * a PDB ID.
+ */
+public class BatchAnalysis {
+    private static final List<String> secondaryStructureTypes = List.of(ResidueStatistics.HELIX,
+            ResidueStatistics.SHEET, ResidueStatistics.COIL);
+
+    private final String format;
+    private final Writer summary;
+    private final Writer torsions;
+
+    /**
+     * Result of the analysis of a single structure.
+     */
+    private static class Result {
+        private final String entry;
+        private final PDBComplex complex;
+        private final ResidueStatistics statistics;
+        private final TorsionAngles angles;
+
+        private Result(String entry, PDBComplex complex) {
+            this.entry = entry;
+            this.complex = complex;
+            this.statistics = new ResidueStatistics(ResidueStatistics.getFirstModel(complex));
+            this.angles = new TorsionAngles(complex);
+        }
+    }
+
+    /**
+     * Constructor for a BatchAnalysis object, creates the output files.
+     * @param output (Path): the output directory
+     * @param format (String): csv or jsonl
+     * @throws IOException in case the output files cannot be created
+     */
+    private BatchAnalysis(Path output, String format) throws IOException {
+        this.format = format;
+        Files.createDirectories(output);
+        if (format.equals("csv")) {
+            summary = Files.newBufferedWriter(output.resolve("composition.csv"), StandardCharsets.UTF_8);
+            torsions = Files.newBufferedWriter(output.resolve("torsions.csv"), StandardCharsets.UTF_8);
+            summary.write("entry,models,chains,residues,helix,sheet,coil");
+            for (String residue : ResidueStatistics.getThreeLetterCodes())
+                summary.write("," + residue);
+            summary.write("\n");
+            torsions.write("entry,chain,residue,name,phi,psi\n");
+        } else {
+            summary = Files.newBufferedWriter(output.resolve("analysis.jsonl"), StandardCharsets.UTF_8);
+            torsions = null;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int threads = Runtime.getRuntime().availableProcessors();
+        String format = "csv";
+        Path output = Path.of(".");
+        List<String> inputs = new ArrayList<>();
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--threads" -> threads = Math.max(1, Integer.parseInt(args[++i]));
+                    case "--format" -> format = args[++i].toLowerCase(Locale.ROOT);
+                    case "--output" -> output = Path.of(args[++i]);
+                    default -> inputs.addAll(expand(args[i]));
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+            inputs.clear();
+        }
+        if (inputs.isEmpty() || !(format.equals("csv") || format.equals("jsonl"))) {
+            System.err.println("Usage: BatchAnalysis [--threads N] [--format csv|jsonl] [--output DIR] INPUT...");
+            System.err.println("INPUT: directory of structure files, structure file, list of PDB IDs or PDB ID");
+            System.exit(2);
+        }
+
+        BatchAnalysis analysis = new BatchAnalysis(output, format);
+        int failed = analysis.run(inputs, threads);
+        System.err.println("Analysed " + (inputs.size() - failed) + " of " + inputs.size() + " structures.");
+        System.exit(failed == 0 ? 0 : 1);
+    }
+
+    /**
+     * Expands an input argument to the structure files and PDB IDs it stands for.
+     */
+    private static List<String> expand(String input) throws IOException {
+        Path path = Path.of(input);
+        if (Files.isDirectory(path)) {
+            try (Stream<Path> files = Files.list(path)) {
+                return files.filter(Files::isRegularFile).map(Path::toString).filter(BatchAnalysis::isStructureFile)
+                        .sorted().toList();
+            }
+        }
+        String name = input.toLowerCase(Locale.ROOT);
+        if (Files.isRegularFile(path) && (name.endsWith(".txt") || name.endsWith(".list"))) {
+            try (Stream<String> lines = Files.lines(path)) {
+                return lines.map(String::strip).filter(line -> !line.isEmpty() && !line.startsWith("#")).toList();
+            }
+        }
+        return List.of(input);
+    }
+
+    private static boolean isStructureFile(String file) {
+        String name = file.toLowerCase(Locale.ROOT).replaceFirst("\\.(gz|zip)$", "");
+        return name.endsWith(".pdb") || name.endsWith(".ent") || name.endsWith(".cif") || name.endsWith(".bcif");
+    }
+
+    /**
+     * Analyses the given inputs with a fixed number of worker threads and writes the results.
+     * @return int: number of inputs that could not be analysed
+     */
+    private int run(List<String> inputs, int threads) throws IOException, InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "analysis");
+            thread.setDaemon(true);
+            return thread;
+        });
+        CompletionService<Result> completion = new ExecutorCompletionService<>(pool);
+        int submitted = 0, finished = 0, failed = 0;
+        try {
+            for (String input : inputs) {
+                // bound the number of structures in memory: wait for a result before submitting more
+                if (submitted - finished >= 2 * threads) {
+                    failed += write(completion.take());
+                    finished++;
+                }
+                completion.submit(() -> analyse(input));
+                submitted++;
+            }
+            while (finished < submitted) {
+                failed += write(completion.take());
+                finished++;
+            }
+        } finally {
+            pool.shutdownNow();
+            summary.close();
+            if (torsions != null)
+                torsions.close();
+        }
+        return failed;
+    }
+
+    /**
+     * Reads, parses and analyses a structure file or PDB entry.
+     */
+    private static Result analyse(String input) throws IOException {
+        try {
+            Path path = Path.of(input);
+            if (Files.isRegularFile(path)) {
+                String name = path.getFileName().toString().replaceFirst("(?i)\\.(gz|zip)$", "");
+                int extension = name.lastIndexOf('.') < 0 ? name.length() : name.lastIndexOf('.');
+                return new Result(name.substring(0, extension), StructureFileReader.read(path));
+            }
+            String content = PDBWebClient.fetchEntry(input);
+            return new Result(input.toUpperCase(Locale.ROOT), PDBParser.parse(new StringReader(content)));
+        } catch (IOException | RuntimeException e) {
+            throw new IOException(input + ": " + e, e);
+        }
+    }
+
+    /**
+     * Writes the result of a finished analysis, or reports its failure.
+     * @return int: 1 if the analysis failed, else 0
+     */
+    private int write(Future<Result> future) throws IOException, InterruptedException {
+        Result result;
+        try {
+            result = future.get();
+        } catch (ExecutionException e) {
+            System.err.println("Failed " + e.getCause().getMessage());
+            return 1;
+        }
+        if (format.equals("csv"))
+            writeCSV(result);
+        else
+            writeJSON(result);
+        return 0;
+    }
+
+    private void writeCSV(Result result) throws IOException {
+        ResidueStatistics statistics = result.statistics;
+        StringBuilder line = new StringBuilder(result.entry).append(',')
+                .append(result.complex.getNumberOfModels()).append(',')
+                .append(result.complex.getChains().size()).append(',')
+                .append(statistics.getTotalCount());
+        for (String type : secondaryStructureTypes)
+            line.append(',').append(format(statistics.getSecondaryStructureFraction(type)));
+        for (String residue : ResidueStatistics.getThreeLetterCodes())
+            line.append(',').append(statistics.getResidueCount().getOrDefault(residue, 0));
+        summary.write(line.append('\n').toString());
+
+        TorsionAngles angles = result.angles;
+        line.setLength(0);
+        for (int i = 0; i < angles.size(); i++) {
+            line.append(result.entry).append(',').append(angles.getChain(i)).append(',')
+                    .append(angles.getResidue(i).getId()).append(',').append(getLabel(angles, i))
+                    .append(',').append(format(angles.getPhi(i))).append(',').append(format(angles.getPsi(i)))
+                    .append('\n');
+        }
+        torsions.write(line.toString());
+    }
+
+    private void writeJSON(Result result) throws IOException {
+        ResidueStatistics statistics = result.statistics;
+        JsonObjectBuilder secondaryStructure = Json.createObjectBuilder();
+        for (String type : secondaryStructureTypes)
+            secondaryStructure.add(type.toLowerCase(Locale.ROOT), statistics.getSecondaryStructureFraction(type));
+        JsonObjectBuilder composition = Json.createObjectBuilder();
+        for (String residue : ResidueStatistics.getThreeLetterCodes()) {
+            if (statistics.getResidueCount().containsKey(residue))
+                composition.add(residue, statistics.getResidueCount().get(residue));
+        }
+        JsonObjectBuilder properties = Json.createObjectBuilder();
+        for (String property : ResidueStatistics.getProperties()) {
+            if (statistics.getPropertyCount().containsKey(property))
+                properties.add(property, statistics.getPropertyCount().get(property));
+        }
+        JsonArrayBuilder torsionAngles = Json.createArrayBuilder();
+        TorsionAngles angles = result.angles;
+        for (int i = 0; i < angles.size(); i++) {
+            torsionAngles.add(Json.createObjectBuilder().add("chain", angles.getChain(i))
+                    .add("residue", angles.getResidue(i).getId()).add("name", getLabel(angles, i))
+                    .add("phi", round(angles.getPhi(i))).add("psi", round(angles.getPsi(i))));
+        }
+        summary.write(Json.createObjectBuilder().add("entry", result.entry)
+                .add("models", result.complex.getNumberOfModels())
+                .add("chains", result.complex.getChains().size())
+                .add("residues", statistics.getTotalCount())
+                .add("secondaryStructure", secondaryStructure)
+                .add("composition", composition)
+                .add("properties", properties)
+                .add("torsions", torsionAngles)
+                .build().toString());
+        summary.write("\n");
+    }
+
+    /**
+     * Returns the one-letter code of the residue with the given index, X for unknown residues.
+     */
+    private static String getLabel(TorsionAngles angles, int index) {
+        String label = angles.getResidue(index).getLabel();
+        return label == null ? "X" : label;
+    }
+
+    private static String format(double value) {
+        return String.format(Locale.ROOT, "%.2f", value);
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 100) / 100.0;
+    }
+}
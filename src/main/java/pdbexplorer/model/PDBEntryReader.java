@@ -0,0 +1,132 @@
+package pdbexplorer.model;
+
+import javafx.concurrent.Task;
+import pdbexplorer.model.io.BinaryCIFParser;
+import pdbexplorer.model.io.PDBParser;
+import pdbexplorer.model.io.PDBSnapshot;
+import pdbexplorer.model.profiling.LoadProfile;
+import pdbexplorer.model.protein.PDBComplex;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CancellationException;
+import java.util.function.BooleanSupplier;
+
+/**
+ * This class reads the complex of a PDB entry in the fastest way available: from the snapshot written when the entry
+ * was opened before, from its BinaryCIF file, which is decoded much faster than text, or from its text file (PDB or
+ * mmCIF format) if the entry is not available in BinaryCIF format. Files are taken from the persistent cache or
+ * downloaded, see PDBWebClient. Snapshots are identified by the digest of the cached file (see
+ * PDBWebClient.getCachedDigest), such that an entry that has changed on the server is read again.
+ */
+public class PDBEntryReader {
+    /**
+     * This task reads the snapshot of an entry opened before, without contacting the server (see readSnapshot).
+     */
+    public static class ReadSnapshot extends Task<PDBComplex> {
+        private final String id;
+
+        /**
+         * Constructor of the ReadSnapshot task.
+         * @param id (String): the four-letter name of the entry
+         */
+        public ReadSnapshot(String id) {
+            this.id = id;
+        }
+
+        /**
+         * Reads the snapshot.
+         * @return PDBComplex: the complex, or null if there is no snapshot of the cached file of the entry
+         */
+        @Override
+        public PDBComplex call() {
+            return readSnapshot(id);
+        }
+    }
+
+    /**
+     * Reads the complex of an entry in the fastest way available and writes its snapshot if there was none.
+     * @param id (String): the four-letter name of the entry
+     * @param cancelled (BooleanSupplier): checked while parsing, reading stops with a CancellationException once it
+     * returns true; null if reading cannot be cancelled
+     * @return PDBComplex: the complex
+     * @throws IOException if the entry can be downloaded in no format
+     */
+    public static PDBComplex read(String id, BooleanSupplier cancelled) throws IOException {
+        PDBComplex complex = readSnapshot(id);
+        if (complex != null)
+            return complex;
+        complex = readBinaryCIF(id, cancelled, null);
+        if (complex == null)
+            complex = PDBParser.parse(new StringReader(PDBWebClient.fetchEntry(id)), null, cancelled);
+        writeSnapshot(id, complex);
+        return complex;
+    }
+
+    /**
+     * Reads the snapshot of an entry without contacting the server, e.g. to show an entry opened before right away.
+     * @param id (String): the four-letter name of the entry
+     * @return PDBComplex: the complex, or null if there is no snapshot of the cached file of the entry
+     */
+    public static PDBComplex readSnapshot(String id) {
+        String digest = PDBWebClient.getCachedDigest(id);
+        Path snapshot = PDBFileCache.getDefault().getSnapshotPath(id);
+        if (digest == null || !Files.exists(snapshot))
+            return null;
+        try {
+            return PDBSnapshot.read(snapshot, digest);
+        } catch (IOException e) {
+            return null; // damaged snapshot, it is replaced when the entry has been parsed
+        }
+    }
+
+    /**
+     * Downloads an entry in BinaryCIF format, unless it is cached, and parses it.
+     * @param id (String): the four-letter name of the entry
+     * @param cancelled (BooleanSupplier): checked while parsing, null if reading cannot be cancelled
+     * @param stage (LoadProfile.Stage): stage the size of the file is counted to, null if not needed
+     * @return PDBComplex: the complex, or null if the entry could not be read in BinaryCIF format, e.g. because the
+     * model server cannot be reached, such that it is read as text instead
+     * @throws CancellationException if reading has been cancelled
+     */
+    public static PDBComplex readBinaryCIF(String id, BooleanSupplier cancelled, LoadProfile.Stage stage) {
+        byte[] data;
+        try {
+            data = PDBWebClient.fetchBinaryCIF(id);
+        } catch (IOException e) {
+            if (cancelled != null && cancelled.getAsBoolean())
+                throw new CancellationException();
+            return null;
+        }
+        if (stage != null)
+            stage.count(LoadProfile.BYTES, data.length);
+        try {
+            return BinaryCIFParser.parse(data, null, cancelled);
+        } catch (CancellationException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            return null; // malformed file
+        }
+    }
+
+    /**
+     * Writes the snapshot of an entry that has been parsed, including the bonds, and accounts for it in the cache.
+     * Nothing is written if the file of the entry is not cached.
+     * @param id (String): the four-letter name of the entry
+     * @param complex (PDBComplex): the complex parsed from the cached file of the entry
+     */
+    public static void writeSnapshot(String id, PDBComplex complex) {
+        String digest = PDBWebClient.getCachedDigest(id);
+        if (digest == null)
+            return;
+        try {
+            Path snapshot = PDBFileCache.getDefault().getSnapshotPath(id);
+            PDBSnapshot.write(complex, digest, snapshot, true);
+            PDBFileCache.getDefault().fileWritten(snapshot);
+        } catch (IOException e) {
+            // the entry is just parsed again next time
+        }
+    }
+}
@@ -0,0 +1,578 @@
+package pdbexplorer.model;
+
+import pdbexplorer.model.profiling.CacheFetchEvent;
+
+import java.io.*;
+import java.net.URI;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Properties;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * This class implements a persistent cache for downloaded PDB files. Each entry is stored gzip-compressed in the
+ * cache directory under its file name, e.g. {@code 1abc.pdb.gz} or {@code 1abc.cif.gz}, together with a small properties file holding the ETag and Last-Modified
+ * header of the response and the SHA-256 digest of the content, which identifies the version of the entry. Entries that were validated recently are served from disk directly; older entries are
+ * revalidated with a conditional request, such that unchanged files are not downloaded again. If the server cannot be
+ * reached, cached entries are served regardless of their age, so previously opened files also work offline.
+ * Snapshots of parsed entries (see PDBSnapshot) are kept next to them as {@code <id>.snapshot} and count towards the
+ * size of the cache. The total size of the cache is bounded; if it is exceeded, the least recently used entries are
+ * deleted together with their snapshots. The sizes of the stored files are read once when the cache is created and
+ * kept up to date in memory, such that the directory is only listed when entries need to be evicted.
+ * The cache directory and size can be set with the system properties pdbexplorer.cache.dir and
+ * pdbexplorer.cache.maxMegabytes.
+ */
+public class PDBFileCache {
+    public static final long DEFAULT_MAX_BYTES = 512L * 1024 * 1024;
+    // entries validated within this time are not revalidated with the server
+    public static final long DEFAULT_MAX_AGE_MILLIS = 24L * 60 * 60 * 1000;
+    private static final String DATA_SUFFIX = ".gz";
+    private static final String META_SUFFIX = ".properties";
+    private static final String SNAPSHOT_SUFFIX = ".snapshot";
+    private static final int HTTP_OK = 200;
+    private static final int HTTP_NOT_MODIFIED = 304;
+    private static final int HTTP_NOT_FOUND = 404;
+
+    private static PDBFileCache defaultCache;
+
+    private final Path directory;
+    private final long maxBytes;
+    private final long maxAgeMillis;
+    // sizes of the entries and snapshots in the directory by file name, and their sum
+    private final HashMap<String, Long> sizes = new HashMap<>();
+    private long totalBytes;
+
+    /**
+     * Constructor for a PDBFileCache object. The directory is created when the first entry is stored.
+     * @param directory (Path): directory to store the entries in
+     * @param maxBytes (long): upper bound of the total size of all stored entries
+     * @param maxAgeMillis (long): entries validated within this time are served without contacting the server
+     */
+    public PDBFileCache(Path directory, long maxBytes, long maxAgeMillis) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        this.maxAgeMillis = maxAgeMillis;
+        try {
+            listEntries();
+        } catch (IOException e) {
+            // no directory yet
+        }
+    }
+
+    /**
+     * Returns the cache used by the application, located in the user's home directory unless configured otherwise.
+     * @return PDBFileCache: the default cache
+     */
+    public static synchronized PDBFileCache getDefault() {
+        if (defaultCache == null) {
+            String dir = System.getProperty("pdbexplorer.cache.dir",
+                    Paths.get(System.getProperty("user.home"), ".pdbexplorer", "cache").toString());
+            long maxMegabytes = Long.getLong("pdbexplorer.cache.maxMegabytes", DEFAULT_MAX_BYTES / (1024 * 1024));
+            defaultCache = new PDBFileCache(Paths.get(dir), maxMegabytes * 1024 * 1024, DEFAULT_MAX_AGE_MILLIS);
+        }
+        return defaultCache;
+    }
+
+    /**
+     * Returns the content of the PDB entry with the given ID, either from the cache or by downloading it from the
+     * given URL.
+     * @param id (String): the file name of the entry, e.g. 1abc.pdb, used as key of the cache
+     * @param uri (URI): the address to download the entry from
+     * @return String: the content of the PDB file
+     * @throws FileNotFoundException if the entry is not cached and does not exist on the server
+     * @throws IOException if the entry is neither cached nor can be downloaded
+     */
+    public String get(String id, URI uri) throws IOException {
+        byte[] content = getBytes(id, uri);
+        return content == null ? null : new String(content, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns the content of the entry with the given file name as bytes, e.g. of binary formats like BinaryCIF, either
+     * from the cache or by downloading it from the given URL.
+     * @param id (String): the file name of the entry, e.g. 1abc.bcif, used as key of the cache
+     * @param uri (URI): the address to download the entry from
+     * @return byte[]: the content of the file
+     * @throws FileNotFoundException if the entry is not cached and does not exist on the server
+     * @throws IOException if the entry is neither cached nor can be downloaded
+     */
+    public byte[] getBytes(String id, URI uri) throws IOException {
+        String key = id.toLowerCase();
+        Path data = directory.resolve(key + DATA_SUFFIX);
+        Path meta = directory.resolve(key + META_SUFFIX);
+        Properties properties = readProperties(meta);
+        boolean cached = Files.exists(data);
+        CacheFetchEvent event = new CacheFetchEvent();
+        event.begin();
+
+        // Serve recently validated entries directly
+        long validated = Long.parseLong(properties.getProperty("validated", "0"));
+        if (cached && System.currentTimeMillis() - validated < maxAgeMillis) {
+            byte[] content = readEntry(data);
+            if (content != null) {
+                addDigest(meta, properties, content);
+                event.finish(key, uri, CacheFetchEvent.CACHED, content.length);
+                return content;
+            }
+            cached = false; // damaged entry, download again
+        }
+
+        // Conditional request, the server answers 304 if the cached entry is still up to date
+        List<String> headers = new ArrayList<>();
+        if (cached && properties.getProperty("etag") != null)
+            headers.addAll(List.of("If-None-Match", properties.getProperty("etag")));
+        if (cached && properties.getProperty("lastModified") != null)
+            headers.addAll(List.of("If-Modified-Since", properties.getProperty("lastModified")));
+        HttpResponse<byte[]> response;
+        try {
+            response = PDBWebClient.send(uri, headers.toArray(new String[0]));
+        } catch (IOException e) {
+            byte[] content = cached ? readEntry(data) : null;
+            if (content != null) { // offline: use the cached entry regardless of its age
+                addDigest(meta, properties, content);
+                event.finish(key, uri, CacheFetchEvent.OFFLINE, content.length);
+                return content;
+            }
+            throw e;
+        }
+
+        int status = response.statusCode();
+        if (status == HTTP_NOT_MODIFIED && cached) {
+            byte[] content = readEntry(data);
+            properties.setProperty("validated", Long.toString(System.currentTimeMillis()));
+            if (content != null && properties.getProperty("digest") == null)
+                properties.setProperty("digest", digest(content));
+            writeProperties(meta, properties);
+            event.finish(key, uri, CacheFetchEvent.VALIDATED, content == null ? 0 : content.length);
+            return content;
+        }
+        if (status != HTTP_OK) {
+            if (cached) {
+                byte[] content = readEntry(data);
+                if (content != null)
+                    addDigest(meta, properties, content);
+                event.finish(key, uri, CacheFetchEvent.OFFLINE, content == null ? 0 : content.length);
+                return content;
+            }
+            if (status == HTTP_NOT_FOUND) // e.g. large structures only available in mmCIF format
+                throw new FileNotFoundException("No such entry: " + uri);
+            throw new IOException("Server returned status " + status + " for " + uri);
+        }
+
+        byte[] body = response.body();
+        store(key, body, response.headers().firstValue("ETag").orElse(null),
+                response.headers().firstValue("Last-Modified").orElse(null));
+        event.finish(key, uri, CacheFetchEvent.DOWNLOADED, body.length);
+        return body;
+    }
+
+    /**
+     * Opens the entry with the given file name for reading while it is downloaded, e.g. to parse a large file while it
+     * arrives. Entries are validated like in getBytes; cached entries are read from disk. A downloaded entry is written
+     * through to a temporary file of the cache while it is read, and stored once it has been read to its end; entries
+     * whose stream is closed before are not stored.
+     * @param id (String): the file name of the entry, e.g. 1abc.pdb, used as key of the cache
+     * @param uri (URI): the address to download the entry from
+     * @return InputStream: the content of the file, to be closed by the caller
+     * @throws FileNotFoundException if the entry is not cached and does not exist on the server
+     * @throws IOException if the entry is neither cached nor can be downloaded
+     */
+    public InputStream open(String id, URI uri) throws IOException {
+        String key = id.toLowerCase();
+        Path data = directory.resolve(key + DATA_SUFFIX);
+        Path meta = directory.resolve(key + META_SUFFIX);
+        Properties properties = readProperties(meta);
+        boolean cached = Files.exists(data);
+        long validated = Long.parseLong(properties.getProperty("validated", "0"));
+        if (cached && System.currentTimeMillis() - validated < maxAgeMillis)
+            return new ByteArrayInputStream(getBytes(id, uri)); // recently validated, no request is made
+
+        CacheFetchEvent event = new CacheFetchEvent();
+        event.begin();
+        List<String> headers = new ArrayList<>();
+        if (cached && properties.getProperty("etag") != null)
+            headers.addAll(List.of("If-None-Match", properties.getProperty("etag")));
+        if (cached && properties.getProperty("lastModified") != null)
+            headers.addAll(List.of("If-Modified-Since", properties.getProperty("lastModified")));
+        HttpResponse<InputStream> response;
+        try {
+            response = PDBWebClient.sendStreaming(uri, headers.toArray(new String[0]));
+        } catch (IOException e) {
+            byte[] content = cached ? readEntry(data) : null;
+            if (content != null) { // offline: use the cached entry regardless of its age
+                addDigest(meta, properties, content);
+                event.finish(key, uri, CacheFetchEvent.OFFLINE, content.length);
+                return new ByteArrayInputStream(content);
+            }
+            throw e;
+        }
+
+        int status = response.statusCode();
+        if (status != HTTP_OK) {
+            response.body().close();
+            byte[] content = cached ? readEntry(data) : null;
+            if (status == HTTP_NOT_MODIFIED && content != null) {
+                properties.setProperty("validated", Long.toString(System.currentTimeMillis()));
+                if (properties.getProperty("digest") == null)
+                    properties.setProperty("digest", digest(content));
+                writeProperties(meta, properties);
+                event.finish(key, uri, CacheFetchEvent.VALIDATED, content.length);
+                return new ByteArrayInputStream(content);
+            }
+            if (content != null) {
+                addDigest(meta, properties, content);
+                event.finish(key, uri, CacheFetchEvent.OFFLINE, content.length);
+                return new ByteArrayInputStream(content);
+            }
+            if (status == HTTP_NOT_FOUND) // e.g. large structures only available in mmCIF format
+                throw new FileNotFoundException("No such entry: " + uri);
+            throw new IOException("Server returned status " + status + " for " + uri);
+        }
+
+        InputStream body = PDBWebClient.openBody(response);
+        try {
+            return new StoringInputStream(body, key, response.headers().firstValue("ETag").orElse(null),
+                    response.headers().firstValue("Last-Modified").orElse(null), uri, event);
+        } catch (IOException e) {
+            body.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the cached content of the given entry without contacting the server.
+     * @param id (String): the file name of the entry
+     * @return String: the content of the PDB file or null if it is not cached
+     */
+    public String getCached(String id) {
+        Path data = directory.resolve(id.toLowerCase() + DATA_SUFFIX);
+        byte[] content = Files.exists(data) ? readEntry(data) : null;
+        return content == null ? null : new String(content, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns the SHA-256 digest of the content of the given entry without contacting the server. The digest
+     * identifies the version of the entry, e.g. the file a snapshot has been created from.
+     * @param id (String): the file name of the entry
+     * @return String: the digest in hexadecimal, or null if the entry is not cached or has not been read since it was
+     * stored by an earlier version of the application
+     */
+    public String getDigest(String id) {
+        String key = id.toLowerCase();
+        if (!Files.exists(directory.resolve(key + DATA_SUFFIX)))
+            return null;
+        return readProperties(directory.resolve(key + META_SUFFIX)).getProperty("digest");
+    }
+
+    /**
+     * Returns the path of the snapshot of the parsed entry with the given ID. The snapshot is shared by all formats of
+     * the entry, it is only used for the file it has been created from.
+     * @param id (String): the four-letter name of the entry
+     * @return Path: the snapshot file, which might not exist
+     */
+    public Path getSnapshotPath(String id) {
+        return directory.resolve(id.toLowerCase() + SNAPSHOT_SUFFIX);
+    }
+
+    /**
+     * Stores an entry in the cache and evicts old entries if the cache has become too large.
+     * @param id (String): the file name of the entry
+     * @param body (byte[]): the content of the PDB file
+     * @param etag (String): the ETag header of the response or null
+     * @param lastModified (String): the Last-Modified header of the response or null
+     * @throws IOException in case the entry cannot be written
+     */
+    public void store(String id, byte[] body, String etag, String lastModified) throws IOException {
+        String key = id.toLowerCase();
+        Files.createDirectories(directory);
+
+        // Write to a temporary file first, such that concurrent readers never see a partial entry
+        Path temporary = Files.createTempFile(directory, key, ".tmp");
+        try {
+            try (OutputStream out = new GZIPOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+                out.write(body);
+            }
+            commit(key, temporary, etag, lastModified, digest(body));
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * Replaces the data file of an entry by a completely written temporary file, writes its properties file and
+     * evicts old entries if the cache has become too large.
+     */
+    private void commit(String key, Path temporary, String etag, String lastModified, String digest)
+            throws IOException {
+        Path data = directory.resolve(key + DATA_SUFFIX);
+        Files.move(temporary, data, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        Properties properties = new Properties();
+        if (etag != null)
+            properties.setProperty("etag", etag);
+        if (lastModified != null)
+            properties.setProperty("lastModified", lastModified);
+        properties.setProperty("validated", Long.toString(System.currentTimeMillis()));
+        properties.setProperty("digest", digest);
+        writeProperties(directory.resolve(key + META_SUFFIX), properties);
+
+        fileWritten(data);
+    }
+
+    /**
+     * The body of a downloaded entry, which is compressed into a temporary file of the cache and digested while it is
+     * read, such that the file is never held in memory as a whole. The entry is stored once the body has been read to
+     * its end; if the stream is closed before, or the temporary file cannot be written, it is not stored, but the body
+     * can still be read.
+     */
+    private class StoringInputStream extends FilterInputStream {
+        private final String key;
+        private final String etag;
+        private final String lastModified;
+        private final URI uri;
+        private final CacheFetchEvent event;
+        private final MessageDigest digest = newDigest();
+        private Path temporary;
+        private OutputStream out;
+        private long size;
+
+        private StoringInputStream(InputStream in, String key, String etag, String lastModified, URI uri,
+                                   CacheFetchEvent event) throws IOException {
+            super(in);
+            this.key = key;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.uri = uri;
+            this.event = event;
+            Files.createDirectories(directory);
+            temporary = Files.createTempFile(directory, key, ".tmp");
+            try {
+                out = new GZIPOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)));
+            } catch (IOException e) {
+                Files.deleteIfExists(temporary);
+                throw e;
+            }
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) < 0 ? -1 : single[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            if (out == null)
+                return read;
+            try {
+                if (read > 0) {
+                    out.write(buffer, offset, read);
+                    digest.update(buffer, offset, read);
+                    size += read;
+                } else if (read < 0) { // complete: keep the entry
+                    out.close();
+                    out = null;
+                    commit(key, temporary, etag, lastModified, HexFormat.of().formatHex(digest.digest()));
+                    event.finish(key, uri, CacheFetchEvent.DOWNLOADED, size);
+                }
+            } catch (IOException e) {
+                discard(); // the entry is downloaded again next time
+            }
+            return read;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                discard();
+            }
+        }
+
+        /**
+         * Stops writing the entry and deletes the temporary file, unless the entry has been stored.
+         */
+        private void discard() {
+            try {
+                if (out != null)
+                    out.close();
+            } catch (IOException ignored) {
+                // deleted anyway
+            }
+            out = null;
+            try {
+                Files.deleteIfExists(temporary);
+            } catch (IOException ignored) {
+                // left for the operating system to clean up
+            }
+        }
+    }
+
+    /**
+     * Accounts for a file that has been written to the cache directory, e.g. a snapshot written by PDBSnapshot, and
+     * evicts old entries if the cache has become too large.
+     * @param file (Path): the file in the cache directory
+     * @throws IOException in case the size of the file cannot be read or entries cannot be deleted
+     */
+    public synchronized void fileWritten(Path file) throws IOException {
+        String name = file.getFileName().toString();
+        long size = Files.size(file);
+        Long previous = sizes.put(name, size);
+        totalBytes += size - (previous == null ? 0 : previous);
+        if (totalBytes > maxBytes)
+            evict();
+    }
+
+    /**
+     * Returns the total size of the entries and snapshots in the cache.
+     * @return long: size in bytes
+     */
+    public synchronized long getTotalBytes() {
+        return totalBytes;
+    }
+
+    /**
+     * Deletes the least recently used entries until the cache is smaller than 90 % of its maximum size, such that
+     * eviction does not run on every store.
+     */
+    private synchronized void evict() throws IOException {
+        // the times of last use are read once, not on every comparison
+        HashMap<Path, FileTime> lastUsed = new HashMap<>();
+        for (Path entry : listEntries())
+            lastUsed.put(entry, lastUsed(entry));
+        List<Path> entries = new ArrayList<>(lastUsed.keySet());
+        entries.sort(Comparator.comparing(lastUsed::get));
+        for (Path entry : entries) {
+            if (totalBytes <= maxBytes * 0.9)
+                break;
+            String name = entry.getFileName().toString();
+            String key = name.substring(0, name.length() - DATA_SUFFIX.length());
+            delete(entry);
+            Files.deleteIfExists(directory.resolve(key + META_SUFFIX));
+            delete(getSnapshotPath(key.contains(".") ? key.substring(0, key.indexOf('.')) : key));
+        }
+    }
+
+    /**
+     * Lists the directory and reads the sizes of all entries and snapshots, replacing the sizes kept in memory.
+     * @return List: the data files of the entries
+     */
+    private synchronized List<Path> listEntries() throws IOException {
+        List<Path> entries = new ArrayList<>();
+        sizes.clear();
+        totalBytes = 0;
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(DATA_SUFFIX))
+                    entries.add(file);
+                else if (!name.endsWith(SNAPSHOT_SUFFIX))
+                    continue;
+                long size = Files.size(file);
+                sizes.put(name, size);
+                totalBytes += size;
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Deletes an entry or snapshot and subtracts its size from the total size.
+     */
+    private void delete(Path file) throws IOException {
+        Long size = sizes.remove(file.getFileName().toString());
+        if (size != null)
+            totalBytes -= size;
+        Files.deleteIfExists(file);
+    }
+
+    /**
+     * Reads and decompresses a cached entry and marks it as recently used. Returns null if it cannot be read.
+     */
+    private byte[] readEntry(Path data) {
+        try (InputStream in = new GZIPInputStream(new BufferedInputStream(Files.newInputStream(data)))) {
+            byte[] content = in.readAllBytes();
+            Files.setLastModifiedTime(data, FileTime.fromMillis(System.currentTimeMillis()));
+            return content;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns the time an entry was last used, which is stored as modification time of its file.
+     */
+    private static FileTime lastUsed(Path data) {
+        try {
+            return Files.getLastModifiedTime(data);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    /**
+     * Adds the digest of the content to the properties file of an entry that was stored without one.
+     */
+    private static void addDigest(Path meta, Properties properties, byte[] content) {
+        if (properties.getProperty("digest") != null)
+            return;
+        properties.setProperty("digest", digest(content));
+        try {
+            writeProperties(meta, properties);
+        } catch (IOException ignored) {
+            // added again the next time the entry is read
+        }
+    }
+
+    /**
+     * Returns the SHA-256 digest of the given content in hexadecimal.
+     */
+    private static String digest(byte[] content) {
+        return HexFormat.of().formatHex(newDigest().digest(content));
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e); // every Java platform supports SHA-256
+        }
+    }
+
+    /**
+     * Reads the properties file of an entry, returns empty properties if there is none.
+     */
+    private static Properties readProperties(Path meta) {
+        Properties properties = new Properties();
+        if (Files.exists(meta)) {
+            try (Reader reader = Files.newBufferedReader(meta)) {
+                properties.load(reader);
+            } catch (IOException ignored) {
+                // treat as not validated
+            }
+        }
+        return properties;
+    }
+
+    /**
+     * Writes the properties file of an entry.
+     */
+    private static void writeProperties(Path meta, Properties properties) throws IOException {
+        try (Writer writer = Files.newBufferedWriter(meta)) {
+            properties.store(writer, null);
+        }
+    }
+}
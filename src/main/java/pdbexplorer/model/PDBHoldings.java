@@ -0,0 +1,379 @@
+package pdbexplorer.model;
+
+import javax.json.Json;
+import javax.json.stream.JsonParser;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.stream.Stream;
+
+/**
+ * This class holds the sorted list of all entry IDs held at the PDB website. Each four-character ID is packed into a
+ * single int (one byte per character), such that the whole archive fits into a compact array that can be sorted and
+ * searched without creating a String per entry. The list can be saved to a binary file, which is memory-mapped when
+ * loaded again, so a previously downloaded list is available immediately at startup. A mapped file cannot be replaced
+ * on all platforms (on Windows, it stays locked until the mapping is garbage collected), so each save writes a new
+ * generation of the file next to the given path, e.g. holdings.bin.1700000000000, and loading maps the newest one.
+ * Older generations are deleted once they are no longer mapped.
+ * File format: the magic number "PDBH", a version number and the number of IDs, followed by the packed IDs in
+ * ascending order (all big-endian ints).
+ */
+public class PDBHoldings {
+    private static final int MAGIC = 0x50444248; // "PDBH"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 12;
+
+    private final IntBuffer ids;
+    private final boolean loaded;
+    private PDBSearchIndex searchIndex;
+
+    /**
+     * Constructor for a PDBHoldings object.
+     * @param ids (IntBuffer): the packed IDs in ascending order
+     * @param loaded (boolean): whether the IDs were loaded from a file
+     */
+    private PDBHoldings(IntBuffer ids, boolean loaded) {
+        this.ids = ids;
+        this.loaded = loaded;
+    }
+
+    /**
+     * Creates holdings from packed IDs, which are sorted and deduplicated.
+     * @param packed (int[]): packed IDs, see {@link #pack(String)}
+     * @return PDBHoldings: the holdings
+     */
+    public static PDBHoldings of(int[] packed) {
+        int[] sorted = packed.clone();
+        Arrays.sort(sorted);
+        int size = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (i == 0 || sorted[i] != sorted[i - 1])
+                sorted[size++] = sorted[i];
+        }
+        return new PDBHoldings(IntBuffer.wrap(Arrays.copyOf(sorted, size)), false);
+    }
+
+    /**
+     * Reads holdings from the JSON array returned by the PDB holdings service. The array is read with a streaming
+     * parser, such that no intermediate objects are created per entry. IDs that are not four characters long are
+     * skipped.
+     * @param input (InputStream): stream of the JSON array of IDs
+     * @return PDBHoldings: the holdings
+     */
+    public static PDBHoldings parse(InputStream input) {
+        int[] packed = new int[1 << 18];
+        int size = 0;
+        try (JsonParser parser = Json.createParser(input)) {
+            while (parser.hasNext()) {
+                if (parser.next() == JsonParser.Event.VALUE_STRING) {
+                    int id = pack(parser.getString());
+                    if (id == -1)
+                        continue;
+                    if (size == packed.length)
+                        packed = Arrays.copyOf(packed, 2 * size);
+                    packed[size++] = id;
+                }
+            }
+        }
+        return of(Arrays.copyOf(packed, size));
+    }
+
+    /**
+     * Loads holdings saved before by memory mapping the newest generation of the file.
+     * @param path (Path): the file
+     * @return PDBHoldings: the holdings
+     * @throws IOException if the file cannot be read or is not a holdings file of the current version
+     */
+    public static PDBHoldings load(Path path) throws IOException {
+        List<Path> generations = getGenerations(path);
+        if (generations.isEmpty())
+            throw new NoSuchFileException(path.toString());
+        Path newest = generations.get(generations.size() - 1);
+        try (FileChannel channel = FileChannel.open(newest, StandardOpenOption.READ)) {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.remaining() < HEADER_BYTES || buffer.getInt() != MAGIC || buffer.getInt() != VERSION)
+                throw new IOException("Not a holdings file: " + path);
+            int size = buffer.getInt();
+            if (buffer.remaining() != 4L * size)
+                throw new IOException("Truncated holdings file: " + path);
+            return new PDBHoldings(buffer.slice().asIntBuffer(), true);
+        }
+    }
+
+    /**
+     * Saves the holdings as a new generation of the given file, which is moved into place atomically, such that a crash
+     * never leaves a partially written list behind. The file that is currently mapped is not replaced; older
+     * generations are deleted where possible.
+     * @param path (Path): the file
+     * @throws IOException in case the file cannot be written
+     */
+    public void save(Path path) throws IOException {
+        Path directory = path.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        List<Path> previous = getGenerations(path);
+        Path temporary = Files.createTempFile(directory, "holdings", ".tmp");
+        try {
+            ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + 4 * size());
+            buffer.putInt(MAGIC).putInt(VERSION).putInt(size());
+            buffer.asIntBuffer().put(ids.duplicate().rewind());
+            buffer.rewind();
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+                while (buffer.hasRemaining())
+                    channel.write(buffer);
+            }
+            long generation = System.currentTimeMillis();
+            if (!previous.isEmpty())
+                generation = Math.max(generation, getGeneration(path, previous.get(previous.size() - 1)) + 1);
+            Files.move(temporary, path.resolveSibling(path.getFileName() + "." + generation),
+                    StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+        for (Path old : previous) {
+            try {
+                Files.deleteIfExists(old);
+            } catch (IOException e) {
+                // still mapped, deleted by a later save
+            }
+        }
+    }
+
+    /**
+     * Returns whether holdings have been saved to the given file.
+     * @param path (Path): the file
+     * @return boolean: true if there is a generation of the file
+     */
+    public static boolean exists(Path path) {
+        try {
+            return !getGenerations(path).isEmpty();
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Returns the generations of the given file, oldest first. The file itself, as written by earlier versions, is the
+     * oldest generation.
+     */
+    private static List<Path> getGenerations(Path path) throws IOException {
+        Path directory = path.toAbsolutePath().getParent();
+        List<Path> generations = new ArrayList<>();
+        if (!Files.isDirectory(directory))
+            return generations;
+        try (Stream<Path> files = Files.list(directory)) {
+            files.filter(file -> getGeneration(path, file) >= 0).forEach(generations::add);
+        }
+        generations.sort(Comparator.comparingLong(file -> getGeneration(path, file)));
+        return generations;
+    }
+
+    /**
+     * Returns the generation of a file, 0 for the given file itself and -1 for files that are no generation of it.
+     */
+    private static long getGeneration(Path path, Path file) {
+        String name = path.getFileName().toString(), other = file.getFileName().toString();
+        if (other.equals(name))
+            return 0;
+        if (!other.startsWith(name + ".") || other.length() == name.length() + 1)
+            return -1;
+        for (int i = name.length() + 1; i < other.length(); i++) {
+            if (!Character.isDigit(other.charAt(i)))
+                return -1;
+        }
+        try {
+            return Long.parseLong(other.substring(name.length() + 1));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Returns the file the holdings list of the application is stored in, located in the user's home directory unless
+     * set with the system property pdbexplorer.holdings.
+     * @return Path: the holdings file
+     */
+    public static Path getDefaultPath() {
+        return Paths.get(System.getProperty("pdbexplorer.holdings",
+                Paths.get(System.getProperty("user.home"), ".pdbexplorer", "holdings.bin").toString()));
+    }
+
+    /**
+     * Packs a four-character ID into an int. Letters are converted to upper case.
+     * @param id (String): the ID
+     * @return int: the packed ID or -1 if the ID cannot be packed
+     */
+    public static int pack(String id) {
+        if (id.length() != 4)
+            return -1;
+        int packed = 0;
+        for (int i = 0; i < 4; i++) {
+            char c = Character.toUpperCase(id.charAt(i));
+            if (c > 127)
+                return -1;
+            packed = packed << 8 | c;
+        }
+        return packed;
+    }
+
+    /**
+     * Unpacks an ID packed by {@link #pack(String)}.
+     * @param packed (int): the packed ID
+     * @return String: the ID
+     */
+    public static String unpack(int packed) {
+        byte[] bytes = {(byte) (packed >>> 24), (byte) (packed >>> 16), (byte) (packed >>> 8), (byte) packed};
+        return new String(bytes, StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Returns whether the holdings were loaded from a file and might therefore be outdated.
+     * @return boolean: true if loaded by {@link #load(Path)}
+     */
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * Returns the number of IDs.
+     * @return int: number of IDs
+     */
+    public int size() {
+        return ids.limit();
+    }
+
+    /**
+     * Returns the packed ID at the given position.
+     * @param index (int): position in the sorted list
+     * @return int: the packed ID
+     */
+    public int getPacked(int index) {
+        return ids.get(index);
+    }
+
+    /**
+     * Returns the ID at the given position.
+     * @param index (int): position in the sorted list
+     * @return String: the ID
+     */
+    public String get(int index) {
+        return unpack(ids.get(index));
+    }
+
+    /**
+     * Returns the position of the given ID by binary search.
+     * @param id (String): the ID
+     * @return int: position of the ID or -1 if it is not held
+     */
+    public int indexOf(String id) {
+        int packed = pack(id);
+        if (packed == -1)
+            return -1;
+        int low = 0, high = size() - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int value = ids.get(middle);
+            if (value < packed)
+                low = middle + 1;
+            else if (value > packed)
+                high = middle - 1;
+            else
+                return middle;
+        }
+        return -1;
+    }
+
+    /**
+     * Returns a read-only list view of the IDs, Strings are only created for accessed entries.
+     * @return List: the IDs
+     */
+    public List<String> asList() {
+        return new IDList();
+    }
+
+    /**
+     * Returns the search index over the IDs, which is built at the first call.
+     * @return PDBSearchIndex: the search index
+     */
+    public synchronized PDBSearchIndex getSearchIndex() {
+        if (searchIndex == null)
+            searchIndex = new PDBSearchIndex(this);
+        return searchIndex;
+    }
+
+    /**
+     * Compares these holdings to a newer version in a single merge pass over both sorted lists.
+     * @param newer (PDBHoldings): the newer holdings
+     * @return Diff: number of IDs added and removed
+     */
+    public Diff diff(PDBHoldings newer) {
+        int added = 0, removed = 0;
+        int i = 0, j = 0;
+        while (i < size() || j < newer.size()) {
+            if (j == newer.size() || (i < size() && getPacked(i) < newer.getPacked(j))) {
+                removed++;
+                i++;
+            } else if (i == size() || getPacked(i) > newer.getPacked(j)) {
+                added++;
+                j++;
+            } else {
+                i++;
+                j++;
+            }
+        }
+        return new Diff(added, removed);
+    }
+
+    /**
+     * Result of comparing two versions of the holdings.
+     */
+    public static class Diff {
+        private final int added;
+        private final int removed;
+
+        private Diff(int added, int removed) {
+            this.added = added;
+            this.removed = removed;
+        }
+
+        public int getAdded() {
+            return added;
+        }
+
+        public int getRemoved() {
+            return removed;
+        }
+
+        public boolean isEmpty() {
+            return added == 0 && removed == 0;
+        }
+    }
+
+    /**
+     * List view of the IDs.
+     */
+    private class IDList extends AbstractList<String> implements RandomAccess {
+        @Override
+        public String get(int index) {
+            return PDBHoldings.this.get(index);
+        }
+
+        @Override
+        public int size() {
+            return PDBHoldings.this.size();
+        }
+
+        @Override
+        public int indexOf(Object o) {
+            return o instanceof String ? PDBHoldings.this.indexOf((String) o) : -1;
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package pdbexplorer.model;
+
+import pdbexplorer.model.protein.PDBComplex;
+import pdbexplorer.model.protein.PDBMonomer;
+import pdbexplorer.model.protein.PDBPolymer;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * This class downloads and parses PDB entries in the background before they are selected, e.g. the entries next to
+ * the selected one in the list. Prefetched entries are kept in a memory cache; the estimated size of all entries is
+ * bounded, and the least recently used entries are dropped if it is exceeded. Only one prefetch job runs at a time
+ * on a single background thread, starting a new job cancels the previous one. Entries are read like they are loaded
+ * when selected (see PDBEntryReader): from their snapshot, in BinaryCIF format or as text. Only the parsed complexes are kept, not
+ * the text of the files; each time an entry is taken from the cache, it is handed out as a copy (see PDBComplex.copy),
+ * since the application changes the complex it displays, e.g. by reassigning the secondary structure.
+ * The memory budget can be set with the system property pdbexplorer.prefetch.megabytes.
+ */
+public class PDBPrefetcher {
+    public static final long DEFAULT_BUDGET_BYTES = 256L * 1024 * 1024;
+    // rough memory use of an atom with its coordinates and the containing residue
+    private static final long BYTES_PER_ATOM = 300;
+
+    private final long budgetBytes;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "pdb-prefetch");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+    // access ordered, such that iteration starts at the least recently used entry
+    private final LinkedHashMap<String, Entry> cache = new LinkedHashMap<>(16, 0.75f, true);
+    private long usedBytes;
+    private Future<?> job;
+
+    /**
+     * Constructor for a PDBPrefetcher object with the memory budget given by the system property or the default.
+     */
+    public PDBPrefetcher() {
+        this(Long.getLong("pdbexplorer.prefetch.megabytes", DEFAULT_BUDGET_BYTES / (1024 * 1024)) * 1024 * 1024);
+    }
+
+    /**
+     * Constructor for a PDBPrefetcher object.
+     * @param budgetBytes (long): upper bound of the estimated memory use of all prefetched entries
+     */
+    public PDBPrefetcher(long budgetBytes) {
+        this.budgetBytes = budgetBytes;
+    }
+
+    /**
+     * A prefetched entry: the parsed complex, which is never displayed itself.
+     */
+    public static class Entry {
+        private final PDBComplex complex;
+        private final long bytes;
+
+        private Entry(PDBComplex complex) {
+            this.complex = complex;
+            long atoms = 0;
+            for (PDBPolymer polymer : complex.getPolymers()) {
+                for (PDBMonomer monomer : polymer.getMonomers())
+                    atoms += monomer.getAtoms().size();
+            }
+            this.bytes = BYTES_PER_ATOM * atoms;
+        }
+
+        /**
+         * Returns a copy of the complex to be displayed.
+         * @return PDBComplex: the copy
+         */
+        public PDBComplex getComplex() {
+            return complex.copy();
+        }
+    }
+
+    /**
+     * Returns the prefetched entry with the given ID.
+     * @param id (String): the ID of the entry
+     * @return Entry: the entry or null if it has not been prefetched
+     */
+    public synchronized Entry get(String id) {
+        return cache.get(id.toLowerCase());
+    }
+
+    /**
+     * Adds an entry loaded elsewhere to the cache, such that it does not need to be loaded again when returning to it.
+     * A copy of the complex is kept, such that later changes of the displayed complex do not affect the cache.
+     * @param id (String): the ID of the entry
+     * @param complex (PDBComplex): the parsed complex
+     */
+    public void put(String id, PDBComplex complex) {
+        put(id.toLowerCase(), new Entry(complex.copy()));
+    }
+
+    /**
+     * Cancels the running prefetch job and starts a new one for the given IDs, which are loaded in the given order.
+     * Entries that are already cached are skipped.
+     * @param ids (List): IDs of the entries to prefetch, most likely needed first
+     */
+    public synchronized void prefetch(List<String> ids) {
+        cancel();
+        List<String> toLoad = ids.stream().map(String::toLowerCase).filter(id -> !cache.containsKey(id)).toList();
+        if (toLoad.isEmpty())
+            return;
+        job = executor.submit(() -> {
+            for (String id : toLoad) {
+                if (Thread.currentThread().isInterrupted())
+                    return;
+                try {
+                    PDBComplex complex = PDBEntryReader.read(id, Thread.currentThread()::isInterrupted);
+                    put(id, new Entry(complex));
+                } catch (IOException | RuntimeException e) {
+                    // the entry is loaded again if it is selected, which reports the error
+                }
+            }
+        });
+    }
+
+    /**
+     * Cancels the running prefetch job, e.g. because the user jumped to a different part of the list.
+     */
+    public synchronized void cancel() {
+        if (job != null)
+            job.cancel(true);
+        job = null;
+    }
+
+    /**
+     * Adds an entry and drops the least recently used entries until the cache fits into the memory budget. Entries
+     * larger than the budget are not cached.
+     */
+    private synchronized void put(String id, Entry entry) {
+        if (entry.bytes > budgetBytes)
+            return;
+        Entry previous = cache.put(id, entry);
+        if (previous != null)
+            usedBytes -= previous.bytes;
+        usedBytes += entry.bytes;
+        Iterator<Map.Entry<String, Entry>> iterator = cache.entrySet().iterator();
+        while (usedBytes > budgetBytes && iterator.hasNext()) {
+            Map.Entry<String, Entry> eldest = iterator.next();
+            if (eldest.getKey().equals(id))
+                continue;
+            usedBytes -= eldest.getValue().bytes;
+            iterator.remove();
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package pdbexplorer.model;
+
+import javafx.concurrent.Task;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.function.BooleanSupplier;
+
+/**
+ * This class implements a search index over the IDs of the PDB holdings. For each n-gram of length one to three, the
+ * positions of all IDs containing it are stored as a posting list in compressed sparse row format, such that a search
+ * for a substring of up to three characters is a single lookup. Longer queries are found by binary search, as IDs have
+ * four characters. Since the IDs are sorted, all IDs starting with the query form a consecutive range, which is also
+ * found by binary search; these prefix matches are listed first in the results.
+ */
+public class PDBSearchIndex {
+    private static final String ALPHABET = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZ";
+    private static final int BASE = ALPHABET.length();
+    private static final int[] DIGITS = computeDigits();
+
+    private final PDBHoldings holdings;
+    // postings[n - 1] from offsets[n - 1][g] to offsets[n - 1][g + 1] holds the positions of IDs containing n-gram g
+    private final int[][] offsets = new int[3][];
+    private final int[][] postings = new int[3][];
+
+    /**
+     * Constructor for a PDBSearchIndex object, builds the posting lists for the given holdings.
+     * @param holdings (PDBHoldings): the holdings to search in
+     */
+    public PDBSearchIndex(PDBHoldings holdings) {
+        this.holdings = holdings;
+        for (int n = 1; n <= 3; n++)
+            build(n);
+    }
+
+    /**
+     * Builds the posting lists of all n-grams of length n in two passes: counting and filling.
+     */
+    private void build(int n) {
+        int grams = (int) Math.pow(BASE, n);
+        int[] offset = new int[grams + 1];
+        int[] last = new int[grams]; // last position added per n-gram, to list IDs with repeated n-grams only once
+        Arrays.fill(last, -1);
+        int[] codes = new int[4];
+        for (int i = 0; i < holdings.size(); i++) {
+            int count = encode(holdings.getPacked(i), n, codes);
+            for (int k = 0; k < count; k++) {
+                if (last[codes[k]] != i) {
+                    last[codes[k]] = i;
+                    offset[codes[k] + 1]++;
+                }
+            }
+        }
+        for (int g = 0; g < grams; g++)
+            offset[g + 1] += offset[g];
+
+        int[] posting = new int[offset[grams]];
+        int[] fill = Arrays.copyOf(offset, grams);
+        Arrays.fill(last, -1);
+        for (int i = 0; i < holdings.size(); i++) {
+            int count = encode(holdings.getPacked(i), n, codes);
+            for (int k = 0; k < count; k++) {
+                if (last[codes[k]] != i) {
+                    last[codes[k]] = i;
+                    posting[fill[codes[k]]++] = i;
+                }
+            }
+        }
+        offsets[n - 1] = offset;
+        postings[n - 1] = posting;
+    }
+
+    /**
+     * Writes the codes of all n-grams of the packed ID into codes, returns their number. N-grams containing characters
+     * outside the alphabet are left out.
+     */
+    private static int encode(int packed, int n, int[] codes) {
+        int count = 0;
+        for (int start = 0; start + n <= 4; start++) {
+            int code = 0;
+            for (int k = start; k < start + n && code >= 0; k++) {
+                int digit = DIGITS[packed >>> (24 - 8 * k) & 0x7F];
+                code = digit < 0 ? -1 : code * BASE + digit;
+            }
+            if (code >= 0)
+                codes[count++] = code;
+        }
+        return count;
+    }
+
+    /**
+     * Returns the position of each ASCII character in the alphabet or -1 if it is not contained.
+     */
+    private static int[] computeDigits() {
+        int[] digits = new int[128];
+        for (int c = 0; c < 128; c++)
+            digits[c] = ALPHABET.indexOf(c);
+        return digits;
+    }
+
+    /**
+     * This task searches the index for the given query. Results of a cancelled task are never published, such that
+     * restarting a service with this task discards the results of outdated queries.
+     */
+    public static class Search extends Task<List<String>> {
+        private final PDBSearchIndex index;
+        private final String query;
+
+        /**
+         * Constructor of the Search task.
+         * @param index (PDBSearchIndex): the index to search in
+         * @param query (String): the text to search for
+         */
+        public Search(PDBSearchIndex index, String query) {
+            this.index = index;
+            this.query = query;
+        }
+
+        @Override
+        public List<String> call() {
+            return index.search(query, this::isCancelled);
+        }
+    }
+
+    /**
+     * Returns all IDs containing the query, IDs starting with the query first.
+     * @param query (String): the text to search for, case is ignored
+     * @param cancelled (BooleanSupplier): stops the search early if it returns true
+     * @return List: the matching IDs
+     */
+    public List<String> search(String query, BooleanSupplier cancelled) {
+        query = query.toUpperCase();
+        if (query.isEmpty())
+            return holdings.asList();
+        if (query.length() > 4)
+            return List.of();
+        if (query.length() == 4) {
+            int position = holdings.indexOf(query);
+            return position == -1 ? List.of() : List.of(holdings.get(position));
+        }
+
+        int code = 0;
+        for (int k = 0; k < query.length(); k++) {
+            int digit = ALPHABET.indexOf(query.charAt(k));
+            if (digit < 0)
+                return List.of(); // contains characters that do not occur in IDs
+            code = code * BASE + digit;
+        }
+
+        // Prefix matches form a consecutive range of the sorted holdings
+        int prefix = PDBHoldings.pack((query + "\0\0\0").substring(0, 4));
+        int prefixEnd = prefix | (0xFFFFFFFF >>> (8 * query.length()));
+        int from = lowerBound(prefix);
+        int to = lowerBound(prefixEnd + 1);
+
+        int n = query.length();
+        int[] posting = postings[n - 1];
+        int start = offsets[n - 1][code], end = offsets[n - 1][code + 1];
+        int[] result = new int[end - start];
+        int size = 0;
+        for (int i = from; i < to; i++)
+            result[size++] = i;
+        for (int i = start; i < end; i++) {
+            if ((i & 0xFFF) == 0 && cancelled.getAsBoolean())
+                return List.of();
+            if (posting[i] < from || posting[i] >= to)
+                result[size++] = posting[i];
+        }
+        return new ResultList(result, size);
+    }
+
+    /**
+     * Returns the first position whose packed ID is not smaller than the given value.
+     */
+    private int lowerBound(int packed) {
+        int low = 0, high = holdings.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (holdings.getPacked(middle) < packed)
+                low = middle + 1;
+            else
+                high = middle;
+        }
+        return low;
+    }
+
+    /**
+     * List view of search results given as positions in the holdings.
+     */
+    private class ResultList extends AbstractList<String> implements RandomAccess {
+        private final int[] positions;
+        private final int size;
+
+        private ResultList(int[] positions, int size) {
+            this.positions = positions;
+            this.size = size;
+        }
+
+        @Override
+        public String get(int index) {
+            return holdings.get(positions[index]);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+}
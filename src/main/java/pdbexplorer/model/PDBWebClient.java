@@ -1,48 +1,103 @@
 package pdbexplorer.model;
 
 import javafx.concurrent.Task;
-import javax.json.Json;
-import javax.json.JsonArray;
-import javax.json.JsonString;
+import pdbexplorer.model.profiling.HttpRequestEvent;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
-import java.net.HttpURLConnection;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
 import java.net.URL;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
 
 /**
- * This class contains to tasks. One gets a list of all PDB files currently contained on the pdb website. The other one
- * downloads a specific PDB file.
+ * This class contains the tasks communicating with the PDB website. One gets a list of all PDB files currently
+ * contained on the pdb website, one downloads a specific PDB file and one downloads many PDB files into the cache.
+ * All requests share one HttpClient, which negotiates HTTP/2 and reuses connections, and ask for gzip compressed
+ * responses. Failed requests are retried with exponential backoff. Entries can be requested as text (PDB or mmCIF
+ * format) from the file server, or in BinaryCIF format from the model server, which is much faster to parse.
+ * The base URLs can be changed with the system properties pdbexplorer.filesUrl, pdbexplorer.dataUrl and
+ * pdbexplorer.modelsUrl, e.g. to use a local mirror.
  */
 public class PDBWebClient {
+    private static final int MAX_ATTEMPTS = 4;
+    private static final long INITIAL_BACKOFF_MILLIS = 500;
+    public static final int DEFAULT_CONCURRENCY = 8;
+
+    private static final HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_2)
+            .followRedirects(HttpClient.Redirect.NORMAL)
+            .connectTimeout(Duration.ofSeconds(10))
+            .build();
+
+    private static volatile String filesUrl = withSlash(System.getProperty("pdbexplorer.filesUrl",
+            "https://files.rcsb.org/download/"));
+    private static volatile String dataUrl = withSlash(System.getProperty("pdbexplorer.dataUrl",
+            "https://data.rcsb.org/rest/v1/"));
+    private static volatile String modelsUrl = withSlash(System.getProperty("pdbexplorer.modelsUrl",
+            "https://models.rcsb.org/"));
+
     /**
-     * This task gets a list of all PDB files currently held at the PDB website and returns it as an ArrayList.
+     * This task gets a list of all PDB files currently held at the PDB website. The list is stored on disk, such that
+     * it can be loaded from there at the next start and only needs to be refreshed in the background. The search index
+     * of the list is built by the task as well.
      */
-    public static class GetList extends Task<ArrayList<String>> {
+    public static class GetList extends Task<PDBHoldings> {
+        private final boolean refresh;
+
         /**
          * Constructor of the GetList task.
+         * @param refresh (boolean): if true, the list is downloaded even if it is stored on disk
          */
-        public GetList() {}
+        public GetList(boolean refresh) {
+            this.refresh = refresh;
+        }
+
         @Override
-        public ArrayList<String> call() throws IOException {
-            ArrayList<String> output = new ArrayList<>();
-            URL url = new URL("https://data.rcsb.org/rest/v1/holdings/current/entry_ids");
-            try (var r = Json.createReader(getFromURL(url))) {
-                JsonArray text = r.readArray();
-                int total = text.size();
-                for (int i = 0; i < total; i++) {
-                    output.add(((JsonString) text.get(i)).getString());
-                    updateProgress(i, total);
+        public PDBHoldings call() throws IOException {
+            Path path = PDBHoldings.getDefaultPath();
+            if (!refresh && PDBHoldings.exists(path)) {
+                try {
+                    PDBHoldings holdings = PDBHoldings.load(path);
+                    holdings.getSearchIndex();
+                    return holdings;
+                } catch (IOException e) {
+                    // damaged or outdated file format, download the list again
                 }
             }
-            Collections.sort(output);
-            return output;
+
+            updateProgress(-1, 1);
+            PDBHoldings holdings;
+            try (InputStream input = getFromURL(getListURI().toURL())) {
+                holdings = PDBHoldings.parse(input);
+            }
+            try {
+                holdings.save(path);
+            } catch (IOException e) {
+                // the list can still be used, it is just downloaded again at the next start
+            }
+            holdings.getSearchIndex();
+            return holdings;
         }
     }
 
     /**
-     * This task downloads a specified PDB file and returns it in String format.
+     * This task downloads a specified PDB file and returns it in String format. Entries that are not available in PDB
+     * format, like large complexes, are downloaded in mmCIF format instead. Downloaded files are kept in the persistent
+     * cache, such that files opened before are read from disk.
      */
     public static class GetPDBFile extends Task<String> {
         private final String input;
@@ -58,11 +113,294 @@ public class PDBWebClient {
         @Override
         public String call() throws IOException {
             try {
-                URL url = new URL("https://files.rcsb.org/download/" + input + ".pdb");
-                return new String(getFromURL(url).readAllBytes());
+                return fetchEntry(input);
             } catch (Exception e) {
-                throw new IOException();
+                throw new IOException(e);
+            }
+        }
+    }
+
+    /**
+     * This task downloads the given PDB files into the persistent cache. Downloads run concurrently, bounded by the
+     * given number of parallel requests, such that many small files are limited by bandwidth rather than by latency.
+     * Files that are cached and recently validated are not downloaded again. Returns the IDs of the files that could
+     * not be downloaded.
+     */
+    public static class DownloadBatch extends Task<List<String>> {
+        private final List<String> ids;
+        private final int concurrency;
+
+        /**
+         * Constructor for the DownloadBatch task.
+         * @param ids (List): the four-letter names of the PDB files
+         * @param concurrency (int): maximum number of parallel downloads
+         */
+        public DownloadBatch(List<String> ids, int concurrency) {
+            this.ids = new ArrayList<>(ids);
+            this.concurrency = concurrency;
+        }
+
+        @Override
+        public List<String> call() throws InterruptedException {
+            List<String> failed = Collections.synchronizedList(new ArrayList<>());
+            AtomicInteger done = new AtomicInteger();
+            ExecutorService executor = Executors.newFixedThreadPool(concurrency, runnable -> {
+                Thread thread = new Thread(runnable, "pdb-download");
+                thread.setDaemon(true);
+                return thread;
+            });
+            try {
+                for (String id : ids) {
+                    executor.execute(() -> {
+                        if (isCancelled())
+                            return;
+                        try {
+                            fetchEntry(id);
+                        } catch (IOException e) {
+                            failed.add(id);
+                        }
+                        updateProgress(done.incrementAndGet(), ids.size());
+                    });
+                }
+                executor.shutdown();
+                while (!executor.awaitTermination(100, TimeUnit.MILLISECONDS)) {
+                    if (isCancelled()) {
+                        executor.shutdownNow();
+                        break;
+                    }
+                }
+            } finally {
+                executor.shutdownNow();
             }
+            Collections.sort(failed);
+            return failed;
+        }
+    }
+
+    /**
+     * Returns the content of the given entry from the persistent cache or the file server. The entry is requested in
+     * PDB format first; if it does not exist in this format, it is requested in mmCIF format.
+     * @param id (String): the four-letter name of the PDB file
+     * @return String: the content of the file
+     * @throws IOException if the entry can be downloaded in neither format
+     */
+    public static String fetchEntry(String id) throws IOException {
+        String name = id.toLowerCase();
+        try {
+            return PDBFileCache.getDefault().get(name + ".pdb", getFileURI(name, "pdb"));
+        } catch (FileNotFoundException e) {
+            return PDBFileCache.getDefault().get(name + ".cif", getFileURI(name, "cif"));
+        }
+    }
+
+    /**
+     * Opens the given entry for reading while it is downloaded, like fetchEntry in PDB format first and in mmCIF
+     * format if it does not exist in PDB format. Once read completely, the entry is in the persistent cache (see
+     * PDBFileCache.getCached).
+     * @param id (String): the four-letter name of the PDB file
+     * @return InputStream: the content of the file, to be closed by the caller
+     * @throws IOException if the entry can be downloaded in neither format
+     */
+    public static InputStream openEntry(String id) throws IOException {
+        String name = id.toLowerCase();
+        try {
+            return PDBFileCache.getDefault().open(name + ".pdb", getFileURI(name, "pdb"));
+        } catch (FileNotFoundException e) {
+            return PDBFileCache.getDefault().open(name + ".cif", getFileURI(name, "cif"));
+        }
+    }
+
+    /**
+     * Returns the given entry in BinaryCIF format from the persistent cache or the model server. BinaryCIF files are
+     * smaller than text files and much faster to parse, see BinaryCIFParser.
+     * @param id (String): the four-letter name of the PDB file
+     * @return byte[]: the content of the BinaryCIF file
+     * @throws FileNotFoundException if the entry is not cached and not available in BinaryCIF format
+     * @throws IOException if the entry cannot be downloaded
+     */
+    public static byte[] fetchBinaryCIF(String id) throws IOException {
+        String name = id.toLowerCase();
+        return PDBFileCache.getDefault().getBytes(name + ".bcif", getBinaryCIFURI(name));
+    }
+
+    /**
+     * Returns the digest of the given entry in the persistent cache, which identifies the file a snapshot of the entry
+     * has been created from (see PDBSnapshot). The formats are looked up in the order they are loaded in: BinaryCIF
+     * (fetchBinaryCIF) first, then PDB and mmCIF (fetchEntry and openEntry).
+     * @param id (String): the four-letter name of the PDB file
+     * @return String: the digest or null if the entry is not cached
+     */
+    public static String getCachedDigest(String id) {
+        String name = id.toLowerCase();
+        for (String format : List.of(".bcif", ".pdb", ".cif")) {
+            String digest = PDBFileCache.getDefault().getDigest(name + format);
+            if (digest != null)
+                return digest;
+        }
+        return null;
+    }
+
+    /**
+     * Returns the URI of the given entry in BinaryCIF format at the model server.
+     * @param id (String): the four-letter name of the PDB file
+     * @return URI: address of the file
+     */
+    public static URI getBinaryCIFURI(String id) {
+        return URI.create(modelsUrl + id.toLowerCase() + ".bcif");
+    }
+
+    /**
+     * Returns the URI of the given PDB file at the file server.
+     * @param id (String): the four-letter name of the PDB file
+     * @return URI: address of the file
+     */
+    public static URI getFileURI(String id) {
+        return getFileURI(id, "pdb");
+    }
+
+    /**
+     * Returns the URI of the given entry in the given format at the file server.
+     * @param id (String): the four-letter name of the PDB file
+     * @param format (String): file extension of the format, e.g. pdb or cif
+     * @return URI: address of the file
+     */
+    public static URI getFileURI(String id, String format) {
+        return URI.create(filesUrl + id.toLowerCase() + "." + format);
+    }
+
+    /**
+     * Returns the URI of the list of all entries held at the PDB.
+     * @return URI: address of the list
+     */
+    public static URI getListURI() {
+        return URI.create(dataUrl + "holdings/current/entry_ids");
+    }
+
+    /**
+     * Sets the base URLs of the file server and the data service, e.g. to use a local mirror.
+     * @param files (String): base URL of PDB files, the file name is appended to it
+     * @param data (String): base URL of the data service
+     */
+    public static void setBaseURLs(String files, String data) {
+        filesUrl = withSlash(files);
+        dataUrl = withSlash(data);
+    }
+
+    /**
+     * Appends a slash to the given base URL if it does not end with one.
+     */
+    private static String withSlash(String url) {
+        return url.endsWith("/") ? url : url + "/";
+    }
+
+    /**
+     * Sends a GET request for the given URI with the given headers and returns the response with a decompressed body.
+     * Connection errors, server errors (5xx) and rate limiting (429) are retried with exponential backoff.
+     * @param uri (URI): the address
+     * @param headers (String...): header names and values in alternating order
+     * @return HttpResponse: the response with decompressed body
+     * @throws IOException if the request fails after all retries
+     */
+    public static HttpResponse<byte[]> send(URI uri, String... headers) throws IOException {
+        return send(uri, decompressingHandler(), headers);
+    }
+
+    /**
+     * Sends a GET request like send, but returns as soon as the headers have been received, with a body that is read
+     * while it arrives. Only failures before the body is read are retried. The body is given as sent by the server,
+     * use openBody to decompress it.
+     * @param uri (URI): the address
+     * @param headers (String...): header names and values in alternating order
+     * @return HttpResponse: the response with a body to be read and closed by the caller
+     * @throws IOException if the request fails after all retries
+     */
+    public static HttpResponse<InputStream> sendStreaming(URI uri, String... headers) throws IOException {
+        return send(uri, HttpResponse.BodyHandlers.ofInputStream(), headers);
+    }
+
+    /**
+     * Returns the body of a response of sendStreaming, decompressed if the server sent it gzip compressed.
+     * @param response (HttpResponse): the response
+     * @return InputStream: the decompressed body
+     * @throws IOException if the body cannot be read
+     */
+    public static InputStream openBody(HttpResponse<InputStream> response) throws IOException {
+        if (!response.headers().firstValue("Content-Encoding").orElse("").equalsIgnoreCase("gzip"))
+            return response.body();
+        return new GZIPInputStream(response.body(), 1 << 16);
+    }
+
+    /**
+     * Sends a GET request with retries, the body is handled by the given handler.
+     */
+    private static <T> HttpResponse<T> send(URI uri, HttpResponse.BodyHandler<T> handler, String... headers)
+            throws IOException {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(uri).GET()
+                .timeout(Duration.ofSeconds(60))
+                .header("Accept-Encoding", "gzip");
+        if (headers.length > 0)
+            builder.headers(headers);
+        HttpRequest request = builder.build();
+
+        HttpRequestEvent event = new HttpRequestEvent();
+        event.begin();
+        long backoff = INITIAL_BACKOFF_MILLIS;
+        for (int attempt = 1; ; attempt++) {
+            try {
+                HttpResponse<T> response = client.send(request, handler);
+                int status = response.statusCode();
+                if ((status >= 500 || status == 429) && attempt < MAX_ATTEMPTS) {
+                    if (response.body() instanceof InputStream body)
+                        body.close(); // a streamed body of a failed request is not read
+                    sleep(backoff);
+                    backoff *= 2;
+                    continue;
+                }
+                event.finish(uri, status, attempt, response.body() instanceof byte[] body ? body.length : 0);
+                return response;
+            } catch (UncheckedIOException e) {
+                event.finish(uri, 0, attempt, 0);
+                throw e.getCause(); // corrupt compressed body, retrying would not help
+            } catch (IOException e) {
+                if (attempt >= MAX_ATTEMPTS) {
+                    event.finish(uri, 0, attempt, 0);
+                    throw e;
+                }
+                sleep(backoff);
+                backoff *= 2;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Request interrupted: " + uri);
+            }
+        }
+    }
+
+    /**
+     * Returns a body handler that decompresses the body if the server sent it gzip compressed.
+     */
+    private static HttpResponse.BodyHandler<byte[]> decompressingHandler() {
+        return info -> {
+            if (!info.headers().firstValue("Content-Encoding").orElse("").equalsIgnoreCase("gzip"))
+                return HttpResponse.BodySubscribers.ofByteArray();
+            return HttpResponse.BodySubscribers.mapping(HttpResponse.BodySubscribers.ofByteArray(), body -> {
+                try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(body))) {
+                    return in.readAllBytes();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        };
+    }
+
+    /**
+     * Waits before retrying a request.
+     */
+    private static void sleep(long millis) throws InterruptedIOException {
+        try {
+            Thread.sleep(millis + ThreadLocalRandom.current().nextLong(millis / 4 + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
         }
     }
 
@@ -73,10 +411,14 @@ public class PDBWebClient {
      * @throws IOException in case of errors
      */
     public static InputStream getFromURL(URL url) throws IOException {
-        var connection = (HttpURLConnection) url.openConnection();
-        connection.setRequestMethod("GET");
-        connection.connect();
-        return connection.getInputStream();
+        HttpResponse<byte[]> response;
+        try {
+            response = send(url.toURI());
+        } catch (java.net.URISyntaxException e) {
+            throw new IOException(e);
+        }
+        if (response.statusCode() != 200)
+            throw new IOException("Server returned status " + response.statusCode() + " for " + url);
+        return new ByteArrayInputStream(response.body());
     }
-
 }
@@ -0,0 +1,298 @@
+package pdbexplorer.model.analysis;
+
+import javafx.concurrent.Task;
+import pdbexplorer.model.geometry.Coordinates;
+import pdbexplorer.model.geometry.SpatialGrid;
+import pdbexplorer.model.protein.PDBAtom;
+import pdbexplorer.model.protein.PDBMonomer;
+import pdbexplorer.model.util.FloatList;
+import pdbexplorer.model.util.IntList;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+/**
+ * This class holds a residue-residue contact map. Only pairs of residues closer than the cutoff are stored, row by row
+ * in compressed form (column indices and distances of each row are consecutive and sorted by column). Distances are
+ * either measured between c-alpha atoms or as minimum distance between any two heavy atoms of both residues.
+ * The map is computed with the task ComputeContactMap: candidate pairs are found with a spatial grid and rows are
+ * processed in blocks in parallel.
+ */
+public class ContactMap {
+    public static final double DEFAULT_C_ALPHA_CUTOFF = 8.0;
+    public static final double DEFAULT_HEAVY_ATOM_CUTOFF = 4.5;
+    private static final int BLOCK_SIZE = 256;
+
+    private final List<PDBMonomer> monomers;
+    private final double cutoff;
+    private final boolean heavyAtoms;
+    private final int[] rowStart;
+    private final int[] columns;
+    private final float[] distances;
+
+    /**
+     * Callback used to iterate over the contacts of a row.
+     */
+    public interface ContactConsumer {
+        void accept(int column, float distance);
+    }
+
+    /**
+     * Constructor for a ContactMap object.
+     * @param monomers (List): the residues along both axes of the map
+     * @param cutoff (double): the distance cutoff in Angstrom
+     * @param heavyAtoms (boolean): whether distances are minimum heavy atom distances (else c-alpha distances)
+     * @param rowStart (int[]): start of each row in columns and distances, length is number of residues + 1
+     * @param columns (int[]): column indices of all contacts
+     * @param distances (float[]): distances of all contacts
+     */
+    private ContactMap(List<PDBMonomer> monomers, double cutoff, boolean heavyAtoms, int[] rowStart, int[] columns,
+                       float[] distances) {
+        this.monomers = monomers;
+        this.cutoff = cutoff;
+        this.heavyAtoms = heavyAtoms;
+        this.rowStart = rowStart;
+        this.columns = columns;
+        this.distances = distances;
+    }
+
+    /**
+     * This task computes the contact map for the given list of residues.
+     */
+    public static class ComputeContactMap extends Task<ContactMap> {
+        private final List<PDBMonomer> monomers;
+        private final boolean heavyAtoms;
+        private final double cutoff;
+
+        /**
+         * Constructor of the ComputeContactMap task.
+         * @param monomers (List): the residues for which the contact map should be computed
+         * @param heavyAtoms (boolean): whether to use minimum heavy atom distances instead of c-alpha distances
+         * @param cutoff (double): the distance cutoff in Angstrom
+         */
+        public ComputeContactMap(List<PDBMonomer> monomers, boolean heavyAtoms, double cutoff) {
+            this.monomers = new ArrayList<>(monomers);
+            this.heavyAtoms = heavyAtoms;
+            this.cutoff = cutoff;
+        }
+
+        @Override
+        public ContactMap call() {
+            return compute(monomers, heavyAtoms, cutoff, this);
+        }
+
+        /**
+         * Makes the progress update accessible for the parallel computation.
+         */
+        private void reportProgress(long done, long total) {
+            updateProgress(done, total);
+        }
+    }
+
+    /**
+     * Computes the contact map for the given list of residues. Can be used outside of JavaFX.
+     * @param monomers (List): the residues for which the contact map should be computed
+     * @param heavyAtoms (boolean): whether to use minimum heavy atom distances instead of c-alpha distances
+     * @param cutoff (double): the distance cutoff in Angstrom
+     * @return ContactMap: the computed contact map
+     */
+    public static ContactMap compute(List<PDBMonomer> monomers, boolean heavyAtoms, double cutoff) {
+        return compute(monomers, heavyAtoms, cutoff, null);
+    }
+
+    /**
+     * Computes the contact map. The task is used for progress reports and cancellation and may be null.
+     */
+    private static ContactMap compute(List<PDBMonomer> monomers, boolean heavyAtoms, double cutoff,
+                                      ComputeContactMap task) {
+        int size = monomers.size();
+
+        // Collect all atom coordinates per residue, as well as a center and a bounding radius for each residue
+        int[] atomStart = new int[size + 1];
+        for (int i = 0; i < size; i++) {
+            atomStart[i + 1] = atomStart[i] + monomers.get(i).getAtoms().size();
+        }
+        double[] atoms = new double[3 * atomStart[size]];
+        double[] centers = new double[3 * size];
+        double[] radii = new double[size];
+        double maxRadius = 0;
+        for (int i = 0; i < size; i++) {
+            PDBMonomer monomer = monomers.get(i);
+            for (int k = 0; k < monomer.getAtoms().size(); k++) {
+                Coordinates.set(atoms, atomStart[i] + k, monomer.getAtoms().get(k).getCoordinates());
+            }
+            PDBAtom cAlpha = monomer.getCAlpha();
+            if (!heavyAtoms && cAlpha != null) {
+                Coordinates.set(centers, i, cAlpha.getCoordinates());
+            } else { // use the centroid of the residue
+                for (int k = atomStart[i]; k < atomStart[i + 1]; k++) {
+                    for (int d = 0; d < 3; d++)
+                        centers[3 * i + d] += atoms[3 * k + d] / (atomStart[i + 1] - atomStart[i]);
+                }
+            }
+            if (heavyAtoms) {
+                for (int k = atomStart[i]; k < atomStart[i + 1]; k++) {
+                    radii[i] = Math.max(radii[i], Math.sqrt(Coordinates.distanceSquared(atoms, k, centers, i)));
+                }
+                maxRadius = Math.max(maxRadius, radii[i]);
+            }
+        }
+
+        // Sort residue centers into a spatial grid; the search radius covers the residue extents in heavy atom mode
+        double largestRadius = maxRadius;
+        SpatialGrid grid = new SpatialGrid(centers, cutoff + 2 * largestRadius);
+
+        // Process blocks of rows in parallel, each block writes its own part of the compressed matrix
+        int blocks = (size + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        int[][] blockColumns = new int[blocks][];
+        float[][] blockDistances = new float[blocks][];
+        int[] rowLength = new int[size];
+        AtomicInteger done = new AtomicInteger();
+        double cutoffSquared = cutoff * cutoff;
+
+        IntStream.range(0, blocks).parallel().forEach(block -> {
+            if (task != null && task.isCancelled())
+                return;
+            IntList blockCols = new IntList();
+            FloatList blockDists = new FloatList();
+            IntList candidates = new IntList();
+
+            for (int i = block * BLOCK_SIZE; i < Math.min(size, (block + 1) * BLOCK_SIZE); i++) {
+                candidates.clear();
+                grid.forEachNeighbour(i, heavyAtoms ? cutoff + radii[i] + largestRadius : cutoff, candidates::add);
+                candidates.sort();
+
+                int before = blockCols.size();
+                for (int c = 0; c < candidates.size(); c++) {
+                    int j = candidates.get(c);
+                    double distanceSquared;
+                    if (heavyAtoms) {
+                        // prune pairs whose bounding spheres are further apart than the cutoff
+                        double centerDistance = Math.sqrt(Coordinates.distanceSquared(centers, i, centers, j));
+                        if (centerDistance - radii[i] - radii[j] > cutoff)
+                            continue;
+                        distanceSquared = minDistanceSquared(atoms, atomStart[i], atomStart[i + 1],
+                                atomStart[j], atomStart[j + 1]);
+                    } else {
+                        distanceSquared = Coordinates.distanceSquared(centers, i, centers, j);
+                    }
+                    if (distanceSquared <= cutoffSquared) {
+                        blockCols.add(j);
+                        blockDists.add((float) Math.sqrt(distanceSquared));
+                    }
+                }
+                rowLength[i] = blockCols.size() - before;
+            }
+            blockColumns[block] = blockCols.toArray();
+            blockDistances[block] = blockDists.toArray();
+
+            if (task != null)
+                task.reportProgress(done.incrementAndGet(), blocks);
+        });
+
+        if (task != null && task.isCancelled())
+            return null;
+
+        // Concatenate the blocks
+        int[] rowStart = new int[size + 1];
+        for (int i = 0; i < size; i++) {
+            rowStart[i + 1] = rowStart[i] + rowLength[i];
+        }
+        int[] columns = new int[rowStart[size]];
+        float[] distances = new float[rowStart[size]];
+        for (int block = 0; block < blocks; block++) {
+            int offset = rowStart[block * BLOCK_SIZE];
+            System.arraycopy(blockColumns[block], 0, columns, offset, blockColumns[block].length);
+            System.arraycopy(blockDistances[block], 0, distances, offset, blockDistances[block].length);
+        }
+
+        return new ContactMap(monomers, cutoff, heavyAtoms, rowStart, columns, distances);
+    }
+
+    /**
+     * Computes the minimum squared distance between two ranges of atoms of the same coordinate array.
+     */
+    private static double minDistanceSquared(double[] atoms, int fromA, int toA, int fromB, int toB) {
+        double min = Double.POSITIVE_INFINITY;
+        for (int a = fromA; a < toA; a++) {
+            double x = atoms[3 * a], y = atoms[3 * a + 1], z = atoms[3 * a + 2];
+            for (int b = fromB; b < toB; b++) {
+                double dx = atoms[3 * b] - x;
+                double dy = atoms[3 * b + 1] - y;
+                double dz = atoms[3 * b + 2] - z;
+                min = Math.min(min, dx * dx + dy * dy + dz * dz);
+            }
+        }
+        return min;
+    }
+
+    /**
+     * Calls the consumer for all contacts of the given row whose column lies in the range [fromColumn, toColumn).
+     * @param row (int): the row (residue index)
+     * @param fromColumn (int): first column, inclusive
+     * @param toColumn (int): last column, exclusive
+     * @param consumer (ContactConsumer): gets column and distance of each contact
+     */
+    public void forEachContact(int row, int fromColumn, int toColumn, ContactConsumer consumer) {
+        int k = Arrays.binarySearch(columns, rowStart[row], rowStart[row + 1], fromColumn);
+        if (k < 0)
+            k = -k - 1;
+        for (; k < rowStart[row + 1] && columns[k] < toColumn; k++) {
+            consumer.accept(columns[k], distances[k]);
+        }
+    }
+
+    /**
+     * Returns the distance between the two given residues or NaN if they are not in contact.
+     * @param row (int): index of the first residue
+     * @param column (int): index of the second residue
+     * @return double: the distance in Angstrom or NaN
+     */
+    public double getDistance(int row, int column) {
+        int k = Arrays.binarySearch(columns, rowStart[row], rowStart[row + 1], column);
+        return k < 0 ? Double.NaN : distances[k];
+    }
+
+    /**
+     * Getter method for the number of residues along each axis of the map.
+     * @return int: number of residues
+     */
+    public int size() {
+        return monomers.size();
+    }
+
+    /**
+     * Getter method for the number of stored contacts (each pair counted in both directions).
+     * @return int: number of contacts
+     */
+    public int getContactCount() {
+        return columns.length;
+    }
+
+    /**
+     * Getter method for the residues of the map.
+     * @return List: residues along both axes
+     */
+    public List<PDBMonomer> getMonomers() {
+        return monomers;
+    }
+
+    /**
+     * Getter method for the distance cutoff.
+     * @return double: the cutoff in Angstrom
+     */
+    public double getCutoff() {
+        return cutoff;
+    }
+
+    /**
+     * Getter method for the distance type.
+     * @return boolean: whether distances are minimum heavy atom distances
+     */
+    public boolean isHeavyAtoms() {
+        return heavyAtoms;
+    }
+}
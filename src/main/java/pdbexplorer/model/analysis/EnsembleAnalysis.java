@@ -0,0 +1,318 @@
+package pdbexplorer.model.analysis;
+
+import javafx.concurrent.Task;
+import javafx.geometry.Point3D;
+import pdbexplorer.model.geometry.Coordinates;
+import pdbexplorer.model.geometry.Superposition;
+import pdbexplorer.model.protein.PDBAtom;
+import pdbexplorer.model.protein.PDBComplex;
+import pdbexplorer.model.protein.PDBMonomer;
+import pdbexplorer.model.protein.PDBPolymer;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+/**
+ * This class compares the models of a multi-model PDB file (e.g. an NMR ensemble). It computes the matrix of pairwise
+ * RMSDs after optimal superposition and the per-residue root mean square fluctuation (RMSF) after fitting all models
+ * onto the first one. Only c-alpha or backbone (N, CA, C, O) atoms that are present in every model are compared.
+ * The task AlignModels superposes all models onto a reference model and returns a new complex with moved atoms.
+ */
+public class EnsembleAnalysis {
+    private static final Set<String> BACKBONE = Set.of("N", "CA", "C", "O");
+
+    private final List<PDBMonomer> residues;
+    private final double[][] rmsdMatrix;
+    private final double[] rmsf;
+    private final boolean backbone;
+
+    /**
+     * Constructor for an EnsembleAnalysis object.
+     * @param residues (List): the compared residues of the first model
+     * @param rmsdMatrix (double[][]): the pairwise RMSD between all models
+     * @param rmsf (double[]): the RMSF of each residue
+     * @param backbone (boolean): whether backbone atoms (else only c-alpha atoms) were compared
+     */
+    private EnsembleAnalysis(List<PDBMonomer> residues, double[][] rmsdMatrix, double[] rmsf, boolean backbone) {
+        this.residues = residues;
+        this.rmsdMatrix = rmsdMatrix;
+        this.rmsf = rmsf;
+        this.backbone = backbone;
+    }
+
+    /**
+     * This task computes the pairwise RMSD matrix and the RMSF of the models of a complex.
+     */
+    public static class ComputeEnsemble extends Task<EnsembleAnalysis> {
+        private final PDBComplex complex;
+        private final boolean backbone;
+
+        /**
+         * Constructor of the ComputeEnsemble task.
+         * @param complex (PDBComplex): a complex containing at least two models
+         * @param backbone (boolean): whether to compare backbone atoms instead of c-alpha atoms only
+         */
+        public ComputeEnsemble(PDBComplex complex, boolean backbone) {
+            this.complex = complex;
+            this.backbone = backbone;
+        }
+
+        @Override
+        public EnsembleAnalysis call() {
+            return compute(complex, backbone, this);
+        }
+
+        /**
+         * Makes the progress update accessible for the parallel computation.
+         */
+        private void reportProgress(long done, long total) {
+            updateProgress(done, total);
+        }
+    }
+
+    /**
+     * This task superposes all models of a complex onto a reference model and returns the moved complex.
+     */
+    public static class AlignModels extends Task<PDBComplex> {
+        private final PDBComplex complex;
+        private final int referenceModel;
+        private final boolean backbone;
+
+        /**
+         * Constructor of the AlignModels task.
+         * @param complex (PDBComplex): a complex containing at least two models
+         * @param referenceModel (int): index of the model the others are fitted onto (0 for the first model)
+         * @param backbone (boolean): whether to fit backbone atoms instead of c-alpha atoms only
+         */
+        public AlignModels(PDBComplex complex, int referenceModel, boolean backbone) {
+            this.complex = complex;
+            this.referenceModel = referenceModel;
+            this.backbone = backbone;
+        }
+
+        @Override
+        public PDBComplex call() {
+            return align(complex, referenceModel, backbone);
+        }
+    }
+
+    /**
+     * Computes the pairwise RMSD matrix and the RMSF of the models of the given complex. Can be used outside of JavaFX.
+     * @param complex (PDBComplex): a complex containing at least two models
+     * @param backbone (boolean): whether to compare backbone atoms instead of c-alpha atoms only
+     * @return EnsembleAnalysis: the results
+     */
+    public static EnsembleAnalysis compute(PDBComplex complex, boolean backbone) {
+        return compute(complex, backbone, null);
+    }
+
+    /**
+     * Computes the analysis. The task is used for progress reports and cancellation and may be null.
+     */
+    private static EnsembleAnalysis compute(PDBComplex complex, boolean backbone, ComputeEnsemble task) {
+        MatchedAtoms matched = matchAtoms(complex, backbone);
+        int models = matched.coordinates.length;
+
+        // Center all models once, then all pairs can be compared in parallel
+        for (double[] coordinates : matched.coordinates) {
+            Superposition.center(coordinates);
+        }
+        double[][] rmsdMatrix = new double[models][models];
+        AtomicInteger done = new AtomicInteger();
+        IntStream.range(0, models).parallel().forEach(i -> {
+            for (int j = i + 1; j < models; j++) {
+                if (task != null && task.isCancelled())
+                    return;
+                double rmsd = Superposition.rmsd(matched.coordinates[i], matched.coordinates[j]);
+                rmsdMatrix[i][j] = rmsd;
+                rmsdMatrix[j][i] = rmsd;
+            }
+            if (task != null)
+                task.reportProgress(done.incrementAndGet(), models);
+        });
+        if (task != null && task.isCancelled())
+            return null;
+
+        // Fit all models onto the first one and compute the fluctuation around the mean position of each atom
+        int size = matched.atomToResidue.length;
+        double[] mean = new double[3 * size];
+        double[][] fitted = new double[models][];
+        for (int m = 0; m < models; m++) {
+            fitted[m] = matched.coordinates[m].clone();
+            double[] rotation = new double[9];
+            Superposition.superpose(matched.coordinates[0], fitted[m], rotation);
+            Superposition.rotate(fitted[m], rotation);
+            for (int k = 0; k < mean.length; k++)
+                mean[k] += fitted[m][k] / models;
+        }
+        double[] squaredFluctuation = new double[matched.residues.size()];
+        int[] atomsPerResidue = new int[matched.residues.size()];
+        for (int a = 0; a < size; a++) {
+            double sum = 0;
+            for (int m = 0; m < models; m++)
+                sum += Coordinates.distanceSquared(fitted[m], a, mean, a);
+            squaredFluctuation[matched.atomToResidue[a]] += sum / models;
+            atomsPerResidue[matched.atomToResidue[a]]++;
+        }
+        double[] rmsf = new double[matched.residues.size()];
+        for (int r = 0; r < rmsf.length; r++)
+            rmsf[r] = Math.sqrt(squaredFluctuation[r] / Math.max(1, atomsPerResidue[r]));
+
+        return new EnsembleAnalysis(matched.residues, rmsdMatrix, rmsf, backbone);
+    }
+
+    /**
+     * Superposes all models of the given complex onto the reference model and returns a new complex, in which all
+     * atoms of each model are moved by the rotation and translation found for the model. Can be used outside of
+     * JavaFX.
+     * @param complex (PDBComplex): a complex containing at least two models
+     * @param referenceModel (int): index of the model the others are fitted onto (0 for the first model)
+     * @param backbone (boolean): whether to fit backbone atoms instead of c-alpha atoms only
+     * @return PDBComplex: a new complex with superposed models
+     */
+    public static PDBComplex align(PDBComplex complex, int referenceModel, boolean backbone) {
+        MatchedAtoms matched = matchAtoms(complex, backbone);
+        int models = matched.coordinates.length;
+
+        // Compute rotation and centroids per model
+        double[][] centroids = new double[models][];
+        for (int m = 0; m < models; m++)
+            centroids[m] = Superposition.center(matched.coordinates[m]);
+        double[][] rotations = new double[models][9];
+        IntStream.range(0, models).parallel().forEach(m ->
+                Superposition.superpose(matched.coordinates[referenceModel], matched.coordinates[m], rotations[m]));
+
+        // Copy the complex with moved atoms: x' = R (x - c_model) + c_reference
+        double[] target = centroids[referenceModel];
+        ArrayList<PDBPolymer> polymers = new ArrayList<>();
+        for (PDBPolymer polymer : complex.getPolymers()) {
+            int m = modelIndex(polymer);
+            double[] r = rotations[m];
+            double[] c = centroids[m];
+            ArrayList<PDBMonomer> monomers = new ArrayList<>();
+            for (PDBMonomer monomer : polymer.getMonomers()) {
+                ArrayList<PDBAtom> atoms = new ArrayList<>();
+                for (PDBAtom atom : monomer.getAtoms()) {
+                    double x = atom.getCoordinates().getX() - c[0];
+                    double y = atom.getCoordinates().getY() - c[1];
+                    double z = atom.getCoordinates().getZ() - c[2];
+                    Point3D moved = new Point3D(r[0] * x + r[1] * y + r[2] * z + target[0],
+                            r[3] * x + r[4] * y + r[5] * z + target[1], r[6] * x + r[7] * y + r[8] * z + target[2]);
+                    atoms.add(new PDBAtom(atom.getLetter(), atom.getRole(), atom.getId(), moved, atom.getModel(),
+                            atom.getChain()));
+                }
+                monomers.add(new PDBMonomer(atoms, monomer.getLabel(), monomer.getId(),
+                        monomer.getSecondaryStructureType()));
+            }
+            polymers.add(new PDBPolymer(monomers, polymer.getNumber(), polymer.getLabel(), polymer.getModelNumber()));
+        }
+        return new PDBComplex(polymers, complex.getNumberOfModels(), complex.getChains(), complex.isProtein());
+    }
+
+    /**
+     * Collects the coordinates of all c-alpha (or backbone) atoms that are present in every model, identified by
+     * chain, residue ID and atom role, in the order of the first model.
+     */
+    private static MatchedAtoms matchAtoms(PDBComplex complex, boolean backbone) {
+        int models = Math.max(1, complex.getNumberOfModels());
+
+        // Map atom keys to atoms for each model
+        List<Map<String, PDBAtom>> atomsByKey = new ArrayList<>();
+        for (int m = 0; m < models; m++)
+            atomsByKey.add(new LinkedHashMap<>());
+        HashMap<String, PDBMonomer> residueByKey = new HashMap<>();
+        for (PDBPolymer polymer : complex.getPolymers()) {
+            int m = modelIndex(polymer);
+            for (PDBMonomer monomer : polymer.getMonomers()) {
+                for (PDBAtom atom : monomer.getAtoms()) {
+                    if (backbone ? BACKBONE.contains(atom.getRole()) : atom.getRole().equals("CA")) {
+                        String key = atom.getChain() + ":" + monomer.getId() + ":" + atom.getRole();
+                        atomsByKey.get(m).putIfAbsent(key, atom);
+                        if (m == 0)
+                            residueByKey.putIfAbsent(key, monomer);
+                    }
+                }
+            }
+        }
+
+        // Keep atoms that are present in all models
+        List<String> keys = new ArrayList<>();
+        for (String key : atomsByKey.get(0).keySet()) {
+            boolean inAll = true;
+            for (int m = 1; m < models && inAll; m++)
+                inAll = atomsByKey.get(m).containsKey(key);
+            if (inAll)
+                keys.add(key);
+        }
+
+        MatchedAtoms matched = new MatchedAtoms();
+        matched.coordinates = new double[models][3 * keys.size()];
+        matched.atomToResidue = new int[keys.size()];
+        HashMap<PDBMonomer, Integer> residueIndex = new HashMap<>();
+        for (int k = 0; k < keys.size(); k++) {
+            PDBMonomer residue = residueByKey.get(keys.get(k));
+            if (!residueIndex.containsKey(residue)) {
+                residueIndex.put(residue, matched.residues.size());
+                matched.residues.add(residue);
+            }
+            matched.atomToResidue[k] = residueIndex.get(residue);
+            for (int m = 0; m < models; m++)
+                Coordinates.set(matched.coordinates[m], k, atomsByKey.get(m).get(keys.get(k)).getCoordinates());
+        }
+        return matched;
+    }
+
+    /**
+     * Returns the model index (starting at 0) of the given polymer.
+     */
+    private static int modelIndex(PDBPolymer polymer) {
+        return polymer.getModelNumber() == 0 ? 0 : polymer.getModelNumber() - 1;
+    }
+
+    /**
+     * Coordinates of matched atoms for all models as well as their residues.
+     */
+    private static class MatchedAtoms {
+        double[][] coordinates;
+        int[] atomToResidue;
+        final List<PDBMonomer> residues = new ArrayList<>();
+    }
+
+    /**
+     * Getter method for the compared residues.
+     * @return List: the compared residues of the first model
+     */
+    public List<PDBMonomer> getResidues() {
+        return residues;
+    }
+
+    /**
+     * Getter method for the RMSD matrix.
+     * @return double[][]: the pairwise RMSD between all models in Angstrom
+     */
+    public double[][] getRmsdMatrix() {
+        return rmsdMatrix;
+    }
+
+    /**
+     * Getter method for the RMSF.
+     * @return double[]: the RMSF of each compared residue in Angstrom
+     */
+    public double[] getRmsf() {
+        return rmsf;
+    }
+
+    /**
+     * Getter method for the compared atoms.
+     * @return boolean: whether backbone atoms (else only c-alpha atoms) were compared
+     */
+    public boolean isBackbone() {
+        return backbone;
+    }
+}
@@ -0,0 +1,145 @@
+package pdbexplorer.model.analysis;
+
+import pdbexplorer.model.protein.PDBComplex;
+import pdbexplorer.model.protein.PDBMonomer;
+import pdbexplorer.model.protein.PDBPolymer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class holds the composition of a set of residues: the count of each amino acid, of each secondary structure
+ * type and of each amino acid property. It is used both for the pie charts and for batch analyses without a user
+ * interface, so it does not depend on any chart classes.
+ */
+public class ResidueStatistics {
+    public static final String HELIX = "HELIX", SHEET = "SHEET", COIL = "COIL";
+
+    // To have three-letter codes; unknown amino acids are counted as "UNK"
+    private static final List<String> oneLetterCode = Arrays.asList("A", "C", "D", "E", "F", "H", "I", "K", "L", "M",
+            "N", "P", "Q", "R", "S", "T", "V", "W", "Y", "G", "O", "U", "X");
+    private static final List<String> threeLetterCode = Arrays.asList("ALA", "CYS", "ASP", "GLU", "PHE", "HIS",
+            "ILE", "LYS", "LEU", "MET", "ASN", "PRO", "GLN", "ARG", "SER", "THR", "VAL", "TRP", "TYR", "GLY", "PYL",
+            "SEC", "UNK");
+    // To map amino acids to their corresponding property; properties taken from
+    // http://www.geneinfinity.org/sp/sp_aaprops.html; O and U treated like K and C, respectively
+    private static final List<String> properties = Arrays.asList("Nonpolar", "Polar", "Neg. charged",
+            "Neg. charged", "Aromatic", "Pos. charged", "Nonpolar", "Pos. charged", "Nonpolar", "Nonpolar", "Polar",
+            "Polar", "Polar", "Pos. charged", "Polar", "Polar", "Nonpolar", "Aromatic", "Aromatic", "Nonpolar",
+            "Pos. charged", "Polar", "Unknown");
+
+    private final HashMap<String, Integer> residueCount = new HashMap<>();
+    private final HashMap<String, Integer> secondaryStructureCount = new HashMap<>();
+    private final HashMap<String, Integer> propertyCount = new HashMap<>();
+    private int totalCount;
+
+    /**
+     * Constructor for a ResidueStatistics object, counts the given residues.
+     * @param monomers (List): the residues
+     */
+    public ResidueStatistics(List<PDBMonomer> monomers) {
+        for (PDBMonomer monomer : monomers) {
+            // Count occurrence of different residues
+            int index = oneLetterCode.indexOf(monomer.getLabel());
+            String residue = index < 0 ? "UNK" : threeLetterCode.get(index);
+            residueCount.merge(residue, 1, Integer::sum);
+            totalCount += 1;
+
+            // Count occurrence of different secondary structure types
+            secondaryStructureCount.merge(getSecondaryStructure(monomer), 1, Integer::sum);
+
+            // Count occurrences of amino acid properties
+            propertyCount.merge(index < 0 ? "Unknown" : properties.get(index), 1, Integer::sum);
+        }
+    }
+
+    /**
+     * Returns the residues of the first model of the given complex. All models of a complex are assumed to have the
+     * same composition.
+     * @param complex (PDBComplex): the complex
+     * @return List: residues of the first model
+     */
+    public static List<PDBMonomer> getFirstModel(PDBComplex complex) {
+        List<PDBMonomer> monomers = new ArrayList<>();
+        for (PDBPolymer polymer : complex.getPolymers()) {
+            if (polymer.getModelNumber() == 0 || polymer.getModelNumber() == 1)
+                monomers.addAll(polymer.getMonomers());
+        }
+        return monomers;
+    }
+
+    /**
+     * Returns the secondary structure type of the given residue as HELIX, SHEET or COIL.
+     * @param monomer (PDBMonomer): the residue
+     * @return String: the secondary structure type
+     */
+    public static String getSecondaryStructure(PDBMonomer monomer) {
+        if (monomer.getSecondaryStructureType() == null)
+            return COIL;
+        return switch (monomer.getSecondaryStructureType()) {
+            case "H" -> HELIX;
+            case "S" -> SHEET;
+            default -> COIL;
+        };
+    }
+
+    /**
+     * Returns the three-letter codes of all amino acids that are counted, ending with UNK for unknown residues.
+     * @return List: the three-letter codes
+     */
+    public static List<String> getThreeLetterCodes() {
+        return threeLetterCode;
+    }
+
+    /**
+     * Returns the amino acid properties that are counted, without duplicates.
+     * @return List: the properties
+     */
+    public static List<String> getProperties() {
+        return properties.stream().distinct().toList();
+    }
+
+    /**
+     * Getter method for the number of residues.
+     * @return int: number of residues counted
+     */
+    public int getTotalCount() {
+        return totalCount;
+    }
+
+    /**
+     * Getter method for the count of each amino acid, by three-letter code. Amino acids that do not occur are missing.
+     * @return Map: count of each amino acid
+     */
+    public Map<String, Integer> getResidueCount() {
+        return residueCount;
+    }
+
+    /**
+     * Getter method for the count of each secondary structure type (HELIX, SHEET, COIL).
+     * @return Map: count of each secondary structure type
+     */
+    public Map<String, Integer> getSecondaryStructureCount() {
+        return secondaryStructureCount;
+    }
+
+    /**
+     * Getter method for the count of each amino acid property.
+     * @return Map: count of each property
+     */
+    public Map<String, Integer> getPropertyCount() {
+        return propertyCount;
+    }
+
+    /**
+     * Returns the fraction of residues with the given secondary structure type.
+     * @param type (String): HELIX, SHEET or COIL
+     * @return double: fraction between 0 and 1, 0 if no residues were counted
+     */
+    public double getSecondaryStructureFraction(String type) {
+        return totalCount == 0 ? 0 : (double) secondaryStructureCount.getOrDefault(type, 0) / totalCount;
+    }
+}
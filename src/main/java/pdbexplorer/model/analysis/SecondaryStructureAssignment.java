@@ -0,0 +1,252 @@
+package pdbexplorer.model.analysis;
+
+import pdbexplorer.model.geometry.Coordinates;
+import pdbexplorer.model.geometry.SpatialGrid;
+import pdbexplorer.model.protein.PDBAtom;
+import pdbexplorer.model.protein.PDBComplex;
+import pdbexplorer.model.protein.PDBMonomer;
+import pdbexplorer.model.protein.PDBPolymer;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * This class assigns secondary structure from the backbone geometry, following the DSSP definitions
+ * (Kabsch and Sander, 1983): backbone hydrogen bonds are detected with the electrostatic energy model, helices are
+ * formed by two consecutive 4-turns, and sheets by ladders of at least two consecutive bridges. Residues are marked
+ * with "H" (alpha helix) and "S" (sheet), like the HELIX and SHEET records of a PDB file; all other residues are
+ * set to null.
+ * Candidate pairs are found with a spatial grid over the c-alpha atoms, and both the hydrogen bond energies and the
+ * bridge patterns are computed for all residues in parallel.
+ */
+public class SecondaryStructureAssignment {
+    // coupling constant of the DSSP energy in kcal/mol*Angstrom (0.42e * 0.20e * 332)
+    private static final double ENERGY_FACTOR = 0.084 * 332;
+    private static final double MAX_HBOND_ENERGY = -0.5;
+    private static final double MIN_HBOND_ENERGY = -9.9;
+    // residues whose c-alpha atoms are further apart cannot form a backbone hydrogen bond
+    private static final double MAX_C_ALPHA_DISTANCE = 9.0;
+    private static final double MAX_PEPTIDE_BOND_LENGTH = 2.5;
+    private static final int NONE = -1;
+
+    /**
+     * Assigns secondary structure to all residues of the complex. Each model is processed on its own, chains of
+     * the same model may form sheets with each other.
+     * @param complex (PDBComplex): the complex whose residues should be assigned
+     */
+    public static void assign(PDBComplex complex) {
+        LinkedHashMap<Integer, List<PDBPolymer>> models = new LinkedHashMap<>();
+        for (PDBPolymer polymer : complex.getPolymers()) {
+            models.computeIfAbsent(polymer.getModelNumber(), k -> new ArrayList<>()).add(polymer);
+        }
+        for (List<PDBPolymer> polymers : models.values()) {
+            assign(polymers);
+        }
+    }
+
+    /**
+     * Assigns secondary structure to all residues of the given chains, which should belong to the same model.
+     * @param polymers (List): the chains whose residues should be assigned
+     */
+    public static void assign(List<PDBPolymer> polymers) {
+        // Collect all residues with a complete backbone, consecutive residues of a chain get the same segment number
+        ArrayList<PDBMonomer> residues = new ArrayList<>();
+        ArrayList<PDBAtom[]> backbones = new ArrayList<>();
+        for (PDBPolymer polymer : polymers) {
+            for (PDBMonomer monomer : polymer.getMonomers()) {
+                monomer.setSecondaryStructureType(null);
+                PDBAtom[] backbone = {monomer.getN(), monomer.getCAlpha(), monomer.getC(), monomer.getO()};
+                if (backbone[0] != null && backbone[1] != null && backbone[2] != null && backbone[3] != null) {
+                    residues.add(monomer);
+                    backbones.add(backbone);
+                }
+            }
+            residues.add(null); // marks the end of a chain
+            backbones.add(null);
+        }
+
+        int size = 0;
+        for (PDBMonomer residue : residues) {
+            if (residue != null)
+                size++;
+        }
+        double[] n = new double[3 * size];
+        double[] cAlpha = new double[3 * size];
+        double[] c = new double[3 * size];
+        double[] o = new double[3 * size];
+        double[] h = new double[3 * size];
+        boolean[] donor = new boolean[size];
+        int[] segment = new int[size];
+        PDBMonomer[] monomers = new PDBMonomer[size];
+
+        int index = 0;
+        int currentSegment = 0;
+        boolean chainEnded = true;
+        for (int k = 0; k < residues.size(); k++) {
+            if (residues.get(k) == null) {
+                chainEnded = true;
+                continue;
+            }
+            PDBAtom[] backbone = backbones.get(k);
+            monomers[index] = residues.get(k);
+            Coordinates.set(n, index, backbone[0].getCoordinates());
+            Coordinates.set(cAlpha, index, backbone[1].getCoordinates());
+            Coordinates.set(c, index, backbone[2].getCoordinates());
+            Coordinates.set(o, index, backbone[3].getCoordinates());
+
+            // A residue is connected to the previous one if there is a peptide bond between them
+            boolean connected = !chainEnded && residues.get(k - 1) != null
+                    && Coordinates.distanceSquared(c, index - 1, n, index)
+                    < MAX_PEPTIDE_BOND_LENGTH * MAX_PEPTIDE_BOND_LENGTH;
+            if (!connected)
+                currentSegment++;
+            segment[index] = currentSegment;
+
+            // The amide hydrogen lies opposite to the carbonyl oxygen of the previous residue; proline has none
+            if (connected && !monomers[index].getLabel().equals("P")) {
+                double dx = c[3 * index - 3] - o[3 * index - 3];
+                double dy = c[3 * index - 2] - o[3 * index - 2];
+                double dz = c[3 * index - 1] - o[3 * index - 1];
+                double length = Math.sqrt(dx * dx + dy * dy + dz * dz);
+                h[3 * index] = n[3 * index] + dx / length;
+                h[3 * index + 1] = n[3 * index + 1] + dy / length;
+                h[3 * index + 2] = n[3 * index + 2] + dz / length;
+                donor[index] = true;
+            }
+            chainEnded = false;
+            index++;
+        }
+
+        // For each donor N-H, keep the two acceptor C=O with the lowest energy, as DSSP does
+        int residueCount = size;
+        SpatialGrid grid = new SpatialGrid(cAlpha, MAX_C_ALPHA_DISTANCE);
+        int[] acceptor = new int[2 * size];
+        double[] energy = new double[2 * size];
+        IntStream.range(0, size).parallel().forEach(d -> {
+            acceptor[2 * d] = acceptor[2 * d + 1] = NONE;
+            if (!donor[d])
+                return;
+            grid.forEachNeighbour(d, MAX_C_ALPHA_DISTANCE, a -> {
+                if (a == d || (a == d - 1 && segment[a] == segment[d]))
+                    return;
+                double e = hydrogenBondEnergy(n, h, d, c, o, a);
+                if (e < energy[2 * d] || acceptor[2 * d] == NONE) {
+                    acceptor[2 * d + 1] = acceptor[2 * d];
+                    energy[2 * d + 1] = energy[2 * d];
+                    acceptor[2 * d] = a;
+                    energy[2 * d] = e;
+                } else if (e < energy[2 * d + 1] || acceptor[2 * d + 1] == NONE) {
+                    acceptor[2 * d + 1] = a;
+                    energy[2 * d + 1] = e;
+                }
+            });
+        });
+        Backbone hBonds = new Backbone(residueCount, segment, acceptor, energy);
+
+        // Helices: two consecutive 4-turns at i-1 and i make residues i to i+3 helical
+        boolean[] helix = new boolean[size];
+        for (int i = 1; i < size; i++) {
+            if (hBonds.isTurn(i - 1, 4) && hBonds.isTurn(i, 4)) {
+                for (int k = i; k < i + 4; k++)
+                    helix[k] = true;
+            }
+        }
+
+        // Sheets: residues in a ladder, i.e. a bridge that continues at a neighbouring residue
+        boolean[] sheet = new boolean[size];
+        IntStream.range(0, size).parallel().forEach(i -> grid.forEachNeighbour(i, MAX_C_ALPHA_DISTANCE, j -> {
+            if (sheet[i] || (segment[i] == segment[j] && Math.abs(i - j) < 3))
+                return;
+            if (hBonds.isParallelBridge(i, j) && (hBonds.isParallelBridge(i + 1, j + 1)
+                    || hBonds.isParallelBridge(i - 1, j - 1)))
+                sheet[i] = true;
+            else if (hBonds.isAntiparallelBridge(i, j) && (hBonds.isAntiparallelBridge(i + 1, j - 1)
+                    || hBonds.isAntiparallelBridge(i - 1, j + 1)))
+                sheet[i] = true;
+        }));
+
+        // Helices take priority over sheets
+        for (int i = 0; i < size; i++) {
+            if (helix[i])
+                monomers[i].setSecondaryStructureType("H");
+            else if (sheet[i])
+                monomers[i].setSecondaryStructureType("S");
+        }
+    }
+
+    /**
+     * Computes the DSSP hydrogen bond energy between the N-H group of the donor and the C=O group of the acceptor.
+     */
+    private static double hydrogenBondEnergy(double[] n, double[] h, int donor, double[] c, double[] o,
+                                             int acceptor) {
+        double distanceON = Math.sqrt(Coordinates.distanceSquared(o, acceptor, n, donor));
+        double distanceCH = Math.sqrt(Coordinates.distanceSquared(c, acceptor, h, donor));
+        double distanceOH = Math.sqrt(Coordinates.distanceSquared(o, acceptor, h, donor));
+        double distanceCN = Math.sqrt(Coordinates.distanceSquared(c, acceptor, n, donor));
+        if (distanceON < 0.5 || distanceCH < 0.5 || distanceOH < 0.5 || distanceCN < 0.5)
+            return MIN_HBOND_ENERGY; // overlapping atoms
+        double e = ENERGY_FACTOR * (1 / distanceON + 1 / distanceCH - 1 / distanceOH - 1 / distanceCN);
+        return Math.max(MIN_HBOND_ENERGY, e);
+    }
+
+    /**
+     * The hydrogen bonds of all residues, with the turn and bridge patterns defined on them.
+     */
+    private static class Backbone {
+        private final int size;
+        private final int[] segment;
+        private final int[] acceptor;
+        private final double[] energy;
+
+        Backbone(int size, int[] segment, int[] acceptor, double[] energy) {
+            this.size = size;
+            this.segment = segment;
+            this.acceptor = acceptor;
+            this.energy = energy;
+        }
+
+        /**
+         * Whether the C=O of residue a is hydrogen bonded to the N-H of residue d.
+         */
+        boolean isHBond(int a, int d) {
+            if (a < 0 || d < 0 || a >= size || d >= size)
+                return false;
+            return (acceptor[2 * d] == a && energy[2 * d] < MAX_HBOND_ENERGY)
+                    || (acceptor[2 * d + 1] == a && energy[2 * d + 1] < MAX_HBOND_ENERGY);
+        }
+
+        /**
+         * Whether residues i to i+n are connected and there is an n-turn at i.
+         */
+        boolean isTurn(int i, int n) {
+            return i + n < size && segment[i] == segment[i + n] && isHBond(i, i + n);
+        }
+
+        /**
+         * Whether residues i and j form a parallel bridge.
+         */
+        boolean isParallelBridge(int i, int j) {
+            if (!hasNeighbours(i) || !hasNeighbours(j))
+                return false;
+            return (isHBond(i - 1, j) && isHBond(j, i + 1)) || (isHBond(j - 1, i) && isHBond(i, j + 1));
+        }
+
+        /**
+         * Whether residues i and j form an antiparallel bridge.
+         */
+        boolean isAntiparallelBridge(int i, int j) {
+            if (!hasNeighbours(i) || !hasNeighbours(j))
+                return false;
+            return (isHBond(i, j) && isHBond(j, i)) || (isHBond(i - 1, j + 1) && isHBond(j - 1, i + 1));
+        }
+
+        /**
+         * Whether residue i is connected to both its predecessor and its successor.
+         */
+        private boolean hasNeighbours(int i) {
+            return i > 0 && i + 1 < size && segment[i - 1] == segment[i] && segment[i + 1] == segment[i];
+        }
+    }
+}
@@ -0,0 +1,260 @@
+package pdbexplorer.model.analysis;
+
+import javafx.concurrent.Task;
+import pdbexplorer.model.geometry.Coordinates;
+import pdbexplorer.model.geometry.SpatialGrid;
+import pdbexplorer.model.protein.PDBAtom;
+import pdbexplorer.model.protein.PDBComplex;
+import pdbexplorer.model.protein.PDBMonomer;
+import pdbexplorer.model.protein.PDBPolymer;
+import pdbexplorer.model.util.IntList;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+/**
+ * This class holds the solvent accessible surface area (SASA) of all atoms and residues of a complex, computed with
+ * the Shrake-Rupley algorithm: each atom is represented by a sphere of its van der Waals radius plus the probe radius,
+ * and the fraction of points on this sphere that are not buried in any neighbouring sphere gives its accessible area.
+ * The points of the unit sphere are computed once, neighbours are found with a spatial grid, and atoms are processed
+ * in parallel. Each model of a complex is treated on its own.
+ * Results are cached per complex, such that switching color schemes does not recompute them.
+ */
+public class SurfaceArea {
+    public static final double PROBE_RADIUS = 1.4;
+    private static final int SPHERE_POINTS = 240;
+    private static final float[] UNIT_SPHERE = computeUnitSphere(SPHERE_POINTS);
+
+    // van der Waals radii (in Angstrom), taken from Bondi (1964)
+    private static final Map<String, Double> VDW_RADII = Map.of("C", 1.7, "N", 1.55, "O", 1.52, "S", 1.8,
+            "SE", 1.9);
+    private static final double DEFAULT_VDW_RADIUS = 1.8;
+
+    // maximum accessible surface areas of residues in a Gly-X-Gly tripeptide, taken from Tien et al. (2013)
+    private static final Map<String, Double> MAX_RESIDUE_AREA = Map.ofEntries(Map.entry("A", 129.0),
+            Map.entry("R", 274.0), Map.entry("N", 195.0), Map.entry("D", 193.0), Map.entry("C", 167.0),
+            Map.entry("E", 223.0), Map.entry("Q", 225.0), Map.entry("G", 104.0), Map.entry("H", 224.0),
+            Map.entry("I", 197.0), Map.entry("L", 201.0), Map.entry("K", 236.0), Map.entry("M", 224.0),
+            Map.entry("F", 240.0), Map.entry("P", 159.0), Map.entry("S", 155.0), Map.entry("T", 172.0),
+            Map.entry("W", 285.0), Map.entry("Y", 263.0), Map.entry("V", 174.0));
+    private static final double DEFAULT_MAX_RESIDUE_AREA = 200.0;
+
+    // results of complexes computed before; weak keys such that closed complexes can be garbage collected
+    private static final Map<PDBComplex, SurfaceArea> cache = Collections.synchronizedMap(new WeakHashMap<>());
+
+    private final IdentityHashMap<PDBAtom, Double> atomArea;
+    private final IdentityHashMap<PDBMonomer, Double> residueArea;
+
+    /**
+     * Constructor for a SurfaceArea object.
+     * @param atomArea (IdentityHashMap): accessible area of each atom
+     * @param residueArea (IdentityHashMap): accessible area of each residue
+     */
+    private SurfaceArea(IdentityHashMap<PDBAtom, Double> atomArea, IdentityHashMap<PDBMonomer, Double> residueArea) {
+        this.atomArea = atomArea;
+        this.residueArea = residueArea;
+    }
+
+    /**
+     * This task computes the accessible surface area of the given complex and stores it in the cache.
+     */
+    public static class ComputeSurfaceArea extends Task<SurfaceArea> {
+        private final PDBComplex complex;
+
+        /**
+         * Constructor of the ComputeSurfaceArea task.
+         * @param complex (PDBComplex): the complex whose surface area should be computed
+         */
+        public ComputeSurfaceArea(PDBComplex complex) {
+            this.complex = complex;
+        }
+
+        @Override
+        public SurfaceArea call() {
+            SurfaceArea cached = getCached(complex);
+            return cached != null ? cached : compute(complex, this);
+        }
+
+        /**
+         * Makes the progress update accessible for the parallel computation.
+         */
+        private void reportProgress(long done, long total) {
+            updateProgress(done, total);
+        }
+    }
+
+    /**
+     * Returns the accessible surface area of the given complex, computing it if it is not cached yet.
+     * @param complex (PDBComplex): the complex
+     * @return SurfaceArea: the accessible surface area of all atoms and residues
+     */
+    public static SurfaceArea of(PDBComplex complex) {
+        SurfaceArea cached = getCached(complex);
+        return cached != null ? cached : compute(complex, null);
+    }
+
+    /**
+     * Returns the accessible surface area of the given complex if it has been computed before.
+     * @param complex (PDBComplex): the complex
+     * @return SurfaceArea: the cached result or null
+     */
+    public static SurfaceArea getCached(PDBComplex complex) {
+        return cache.get(complex);
+    }
+
+    /**
+     * Computes the accessible surface area of all models of the complex and caches the result. The task is used for
+     * progress reports and cancellation and may be null.
+     */
+    private static SurfaceArea compute(PDBComplex complex, ComputeSurfaceArea task) {
+        // Group atoms by model, atoms of different models do not bury each other
+        LinkedHashMap<Integer, ArrayList<PDBAtom>> models = new LinkedHashMap<>();
+        for (PDBPolymer polymer : complex.getPolymers()) {
+            models.computeIfAbsent(polymer.getModelNumber(), k -> new ArrayList<>()).addAll(polymer.getAtoms());
+        }
+        int total = 0;
+        for (ArrayList<PDBAtom> atoms : models.values())
+            total += atoms.size();
+
+        IdentityHashMap<PDBAtom, Double> atomArea = new IdentityHashMap<>();
+        AtomicInteger done = new AtomicInteger();
+        for (ArrayList<PDBAtom> atoms : models.values()) {
+            double[] area = computeAtomAreas(atoms, task, done, total);
+            if (task != null && task.isCancelled())
+                return null;
+            for (int i = 0; i < atoms.size(); i++)
+                atomArea.put(atoms.get(i), area[i]);
+        }
+
+        // Sum up atom areas per residue
+        IdentityHashMap<PDBMonomer, Double> residueArea = new IdentityHashMap<>();
+        for (PDBPolymer polymer : complex.getPolymers()) {
+            for (PDBMonomer monomer : polymer.getMonomers()) {
+                double sum = 0;
+                for (PDBAtom atom : monomer.getAtoms())
+                    sum += atomArea.get(atom);
+                residueArea.put(monomer, sum);
+            }
+        }
+
+        SurfaceArea result = new SurfaceArea(atomArea, residueArea);
+        cache.put(complex, result);
+        return result;
+    }
+
+    /**
+     * Computes the accessible surface area of each of the given atoms.
+     */
+    private static double[] computeAtomAreas(List<PDBAtom> atoms, ComputeSurfaceArea task, AtomicInteger done,
+                                             int total) {
+        int size = atoms.size();
+        double[] coordinates = Coordinates.of(atoms);
+        double[] radii = new double[size];
+        double maxRadius = 0;
+        for (int i = 0; i < size; i++) {
+            radii[i] = getVanDerWaalsRadius(atoms.get(i).getLetter()) + PROBE_RADIUS;
+            maxRadius = Math.max(maxRadius, radii[i]);
+        }
+        double largestRadius = maxRadius;
+        SpatialGrid grid = new SpatialGrid(coordinates, 2 * largestRadius);
+        double[] area = new double[size];
+
+        IntStream.range(0, size).parallel().forEach(i -> {
+            if (task != null && task.isCancelled())
+                return;
+
+            // Neighbour list of all spheres intersecting the sphere of atom i
+            IntList neighbours = new IntList();
+            grid.forEachNeighbour(i, radii[i] + largestRadius, j -> {
+                if (j != i && Coordinates.distanceSquared(coordinates, i, coordinates, j)
+                        < (radii[i] + radii[j]) * (radii[i] + radii[j]))
+                    neighbours.add(j);
+            });
+
+            double x = coordinates[3 * i], y = coordinates[3 * i + 1], z = coordinates[3 * i + 2];
+            int accessible = 0;
+            int lastBurying = 0; // neighbouring points are mostly buried by the same atom, so try it first
+            for (int p = 0; p < SPHERE_POINTS; p++) {
+                double px = x + radii[i] * UNIT_SPHERE[3 * p];
+                double py = y + radii[i] * UNIT_SPHERE[3 * p + 1];
+                double pz = z + radii[i] * UNIT_SPHERE[3 * p + 2];
+                boolean buried = false;
+                for (int k = 0, n = lastBurying; k < neighbours.size() && !buried; k++, n++) {
+                    if (n == neighbours.size())
+                        n = 0;
+                    int j = neighbours.get(n);
+                    double dx = coordinates[3 * j] - px;
+                    double dy = coordinates[3 * j + 1] - py;
+                    double dz = coordinates[3 * j + 2] - pz;
+                    if (dx * dx + dy * dy + dz * dz < radii[j] * radii[j]) {
+                        buried = true;
+                        lastBurying = n;
+                    }
+                }
+                if (!buried)
+                    accessible++;
+            }
+            area[i] = 4 * Math.PI * radii[i] * radii[i] * accessible / SPHERE_POINTS;
+
+            int finished = done.incrementAndGet();
+            if (task != null && finished % 1000 == 0)
+                task.reportProgress(finished, total);
+        });
+        return area;
+    }
+
+    /**
+     * Returns the van der Waals radius of the given element.
+     * @param letter (String): the element symbol
+     * @return double: radius in Angstrom
+     */
+    public static double getVanDerWaalsRadius(String letter) {
+        return VDW_RADII.getOrDefault(letter, DEFAULT_VDW_RADIUS);
+    }
+
+    /**
+     * Computes evenly distributed points on the unit sphere using the golden section spiral.
+     */
+    private static float[] computeUnitSphere(int count) {
+        float[] points = new float[3 * count];
+        double increment = Math.PI * (3 - Math.sqrt(5));
+        for (int i = 0; i < count; i++) {
+            double y = 1 - (2 * i + 1) / (double) count;
+            double radius = Math.sqrt(1 - y * y);
+            double phi = i * increment;
+            points[3 * i] = (float) (Math.cos(phi) * radius);
+            points[3 * i + 1] = (float) y;
+            points[3 * i + 2] = (float) (Math.sin(phi) * radius);
+        }
+        return points;
+    }
+
+    /**
+     * Returns the accessible surface area of the given atom.
+     * @param atom (PDBAtom): an atom of the complex
+     * @return double: accessible area in square Angstrom
+     */
+    public double getAtomArea(PDBAtom atom) {
+        return atomArea.getOrDefault(atom, 0.0);
+    }
+
+    /**
+     * Returns the accessible surface area of the given residue, i.e. the sum over its atoms.
+     * @param monomer (PDBMonomer): a residue of the complex
+     * @return double: accessible area in square Angstrom
+     */
+    public double getResidueArea(PDBMonomer monomer) {
+        return residueArea.getOrDefault(monomer, 0.0);
+    }
+
+    /**
+     * Returns the relative exposure of the given residue, i.e. its accessible area divided by the maximum area of
+     * this residue type. Values can exceed 1 for residues at chain ends.
+     * @param monomer (PDBMonomer): a residue of the complex
+     * @return double: relative accessible area
+     */
+    public double getRelativeExposure(PDBMonomer monomer) {
+        return getResidueArea(monomer) / MAX_RESIDUE_AREA.getOrDefault(monomer.getLabel(), DEFAULT_MAX_RESIDUE_AREA);
+    }
+}
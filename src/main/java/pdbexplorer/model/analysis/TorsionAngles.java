@@ -0,0 +1,138 @@
+package pdbexplorer.model.analysis;
+
+import javafx.geometry.Point3D;
+import pdbexplorer.model.protein.PDBAtom;
+import pdbexplorer.model.protein.PDBComplex;
+import pdbexplorer.model.protein.PDBMonomer;
+import pdbexplorer.model.protein.PDBPolymer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * This class holds the backbone torsion angles phi and psi of the residues of a complex, as shown in the Ramachandran
+ * plot. If more than one model is available, only the first one is used. The first and last residue of each chain
+ * and residues with missing backbone atoms are left out, as not both angles can be computed for them.
+ */
+public class TorsionAngles {
+    private final List<PDBMonomer> residues = new ArrayList<>();
+    private final List<String> chains = new ArrayList<>();
+    private double[] phi = new double[64];
+    private double[] psi = new double[64];
+
+    /**
+     * Constructor for a TorsionAngles object, computes the angles of the first model of the given complex.
+     * @param complex (PDBComplex): the complex
+     */
+    public TorsionAngles(PDBComplex complex) {
+        for (PDBPolymer polymer : complex.getPolymers()) {
+            if (polymer.getModelNumber() == 0 || polymer.getModelNumber() == 1) {
+                List<PDBMonomer> monomers = polymer.getMonomers();
+                // Go over all monomers contained (skip first and last residue because we cannot compute both angles)
+                for (int i = 1; i < monomers.size() - 1; i++) {
+                    // N, C, C-alpha of current monomer
+                    PDBAtom n = monomers.get(i).getN();
+                    PDBAtom c = monomers.get(i).getC();
+                    PDBAtom cAlpha = monomers.get(i).getCAlpha();
+                    // C of previous monomer
+                    PDBAtom cPrior = monomers.get(i - 1).getC();
+                    // N of next monomer
+                    PDBAtom nNext = monomers.get(i + 1).getN();
+
+                    // Only continue if all needed atoms are present
+                    if (n != null && c != null && cAlpha != null && cPrior != null && nNext != null) {
+                        add(monomers.get(i), polymer.getLabel(),
+                                computeDihedralAngle(cPrior.getCoordinates(), n.getCoordinates(),
+                                        cAlpha.getCoordinates(), c.getCoordinates()),
+                                computeDihedralAngle(n.getCoordinates(), cAlpha.getCoordinates(),
+                                        c.getCoordinates(), nNext.getCoordinates()));
+                    }
+                }
+            }
+        }
+    }
+
+    private void add(PDBMonomer residue, String chain, double phiAngle, double psiAngle) {
+        int index = residues.size();
+        if (index == phi.length) {
+            phi = Arrays.copyOf(phi, 2 * index);
+            psi = Arrays.copyOf(psi, 2 * index);
+        }
+        residues.add(residue);
+        chains.add(chain);
+        phi[index] = phiAngle;
+        psi[index] = psiAngle;
+    }
+
+    /**
+     * Returns the number of residues with both angles.
+     * @return int: number of residues
+     */
+    public int size() {
+        return residues.size();
+    }
+
+    /**
+     * Returns the residue with the given index.
+     * @param index (int): index between 0 and size() - 1
+     * @return PDBMonomer: the residue
+     */
+    public PDBMonomer getResidue(int index) {
+        return residues.get(index);
+    }
+
+    /**
+     * Returns the chain of the residue with the given index.
+     * @param index (int): index between 0 and size() - 1
+     * @return String: the chain ID
+     */
+    public String getChain(int index) {
+        return chains.get(index);
+    }
+
+    /**
+     * Returns the phi angle of the residue with the given index.
+     * @param index (int): index between 0 and size() - 1
+     * @return double: the angle in degrees between -180 and 180
+     */
+    public double getPhi(int index) {
+        return phi[index];
+    }
+
+    /**
+     * Returns the psi angle of the residue with the given index.
+     * @param index (int): index between 0 and size() - 1
+     * @return double: the angle in degrees between -180 and 180
+     */
+    public double getPsi(int index) {
+        return psi[index];
+    }
+
+    /**
+     * Computes dihedral angle between four atoms. Adapted for Java from
+     * https://stackoverflow.com/questions/20305272/dihedral-torsion-angle-from-four-points-in-cartesian-coordinates-in-python.
+     * @param p1 (Point3D): coordinates of first atom
+     * @param p2 (Point3D): coordinates of second atom
+     * @param p3 (Point3D): coordinates of third atom
+     * @param p4 (Point3D): coordinates of fourth atom
+     * @return double: the dihedral angle
+     */
+    public static double computeDihedralAngle(Point3D p1, Point3D p2, Point3D p3, Point3D p4) {
+        // Compute vectors of the three atom bonds, normalize b2 such that it does not influence magnitude of vector
+        // rejection
+        Point3D b1 = p2.subtract(p1).multiply(-1.0);
+        Point3D b2 = p3.subtract(p2).normalize();
+        Point3D b3 = p4.subtract(p3);
+
+        // vector rejections
+        Point3D n1 = b1.subtract(b2.multiply(b1.dotProduct(b2)));
+        Point3D n2 = b3.subtract(b2.multiply(b3.dotProduct(b2)));
+
+        // torsion angle: angle between n_1 and n_2 in a plane
+        double x = n1.dotProduct(n2);
+        double y = b2.crossProduct(n1).dotProduct(n2);
+
+        return Math.toDegrees(Math.atan2(y, x));
+    }
+}
@@ -0,0 +1,73 @@
+package pdbexplorer.model.geometry;
+
+import javafx.geometry.Point3D;
+import pdbexplorer.model.protein.PDBAtom;
+import pdbexplorer.model.protein.PDBMonomer;
+
+import java.util.List;
+
+/**
+ * This class contains helper methods to copy atom coordinates of the protein model into primitive coordinate arrays
+ * of the form x0, y0, z0, x1, y1, z1, ... These arrays are used by all numerical computations, as they are far more
+ * compact and faster to iterate than lists of Point3D objects.
+ */
+public class Coordinates {
+    /**
+     * Copies the coordinates of the given atoms into a primitive array.
+     * @param atoms (List): the atoms whose coordinates should be copied
+     * @return double[]: coordinates, three consecutive entries per atom
+     */
+    public static double[] of(List<PDBAtom> atoms) {
+        double[] coordinates = new double[3 * atoms.size()];
+        for (int i = 0; i < atoms.size(); i++) {
+            set(coordinates, i, atoms.get(i).getCoordinates());
+        }
+        return coordinates;
+    }
+
+    /**
+     * Copies the c-alpha coordinates of the given monomers into a primitive array. If a monomer has no c-alpha atom,
+     * its entries are set to NaN.
+     * @param monomers (List): the monomers whose c-alpha coordinates should be copied
+     * @return double[]: coordinates, three consecutive entries per monomer
+     */
+    public static double[] ofCAlphas(List<PDBMonomer> monomers) {
+        double[] coordinates = new double[3 * monomers.size()];
+        for (int i = 0; i < monomers.size(); i++) {
+            PDBAtom cAlpha = monomers.get(i).getCAlpha();
+            if (cAlpha == null) {
+                coordinates[3 * i] = coordinates[3 * i + 1] = coordinates[3 * i + 2] = Double.NaN;
+            } else {
+                set(coordinates, i, cAlpha.getCoordinates());
+            }
+        }
+        return coordinates;
+    }
+
+    /**
+     * Computes the squared distance between two points contained in primitive coordinate arrays.
+     * @param a (double[]): first coordinate array
+     * @param i (int): index of the point in the first array
+     * @param b (double[]): second coordinate array
+     * @param j (int): index of the point in the second array
+     * @return double: squared euclidean distance
+     */
+    public static double distanceSquared(double[] a, int i, double[] b, int j) {
+        double dx = a[3 * i] - b[3 * j];
+        double dy = a[3 * i + 1] - b[3 * j + 1];
+        double dz = a[3 * i + 2] - b[3 * j + 2];
+        return dx * dx + dy * dy + dz * dz;
+    }
+
+    /**
+     * Writes the given point into the coordinate array at the given index.
+     * @param coordinates (double[]): the coordinate array
+     * @param index (int): index of the point
+     * @param point (Point3D): the point to write
+     */
+    public static void set(double[] coordinates, int index, Point3D point) {
+        coordinates[3 * index] = point.getX();
+        coordinates[3 * index + 1] = point.getY();
+        coordinates[3 * index + 2] = point.getZ();
+    }
+}
@@ -0,0 +1,455 @@
+package pdbexplorer.model.geometry;
+
+import pdbexplorer.model.util.FloatList;
+import pdbexplorer.model.util.IntList;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.function.BooleanSupplier;
+import java.util.stream.IntStream;
+
+/**
+ * This class computes a molecular surface as an iso-surface of a Gaussian density. Every atom contributes a Gaussian
+ * exp(-k * (d^2 / r^2 - 1)) that equals the iso-value at its van der Waals radius r, such that isolated atoms appear as
+ * spheres and nearby atoms merge into a smooth surface. The density is sampled on a regular grid and the surface is
+ * extracted with marching cubes.
+ * The grid is split into slabs along z that are processed in parallel, both for sampling the density and for
+ * extracting the triangles. Vertices are shared between neighbouring cubes, and normals are computed from the
+ * density gradient, so the mesh can be rendered smoothly. The result is stored in primitive arrays that can be
+ * copied directly into a TriangleMesh.
+ */
+public class GaussianSurface {
+    public static final double DEFAULT_RESOLUTION = 1.0;
+    // larger values give a tighter surface, smaller values a smoother one
+    private static final double BLOBBINESS = 2.0;
+    private static final float ISO_VALUE = 1f;
+    // atoms contribute up to this multiple of their radius, beyond the density is negligible (< exp(-6))
+    private static final double CUTOFF_FACTOR = 2.0;
+    private static final int SLAB_SIZE = 8;
+    // upper bound of grid points, the grid spacing is increased if a surface would need more
+    private static final long MAX_GRID_POINTS = 1L << 22;
+
+    // corner c of a cube has the offset (c & 1, (c >> 1) & 1, (c >> 2) & 1); edge e runs along axis e / 4
+    private static final int[] EDGE_CORNER = {0, 2, 4, 6, 0, 1, 4, 5, 0, 1, 2, 3};
+    // for each of the 256 configurations of inside corners, the triangles as triples of edges
+    private static final int[][] TRIANGLE_TABLE = computeTriangleTable();
+
+    private final float[] points;
+    private final float[] normals;
+    private final int[] triangles;
+
+    /**
+     * Constructor for a GaussianSurface object.
+     * @param points (float[]): vertex coordinates, three entries per vertex
+     * @param normals (float[]): vertex normals pointing outwards, three entries per vertex
+     * @param triangles (int[]): vertex indices, three entries per triangle, counter-clockwise seen from outside
+     */
+    private GaussianSurface(float[] points, float[] normals, int[] triangles) {
+        this.points = points;
+        this.normals = normals;
+        this.triangles = triangles;
+    }
+
+    /**
+     * Computes the surface of the given atoms.
+     * @param coordinates (double[]): atom coordinates, three entries per atom
+     * @param radii (double[]): van der Waals radius of each atom
+     * @param resolution (double): the grid spacing in Angstrom; smaller values give finer surfaces but need more time
+     *                   and memory
+     * @param cancelled (BooleanSupplier): checked regularly, computation stops and returns null if it returns true
+     * @return GaussianSurface: the surface mesh or null if cancelled
+     */
+    public static GaussianSurface compute(double[] coordinates, double[] radii, double resolution,
+                                          BooleanSupplier cancelled) {
+        int atoms = radii.length;
+        if (atoms == 0)
+            return new GaussianSurface(new float[0], new float[0], new int[0]);
+
+        // Bounding box of all atoms including the range of their densities
+        double[] min = {Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY};
+        double[] max = {Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY};
+        double maxRadius = 0;
+        for (int i = 0; i < atoms; i++) {
+            maxRadius = Math.max(maxRadius, radii[i]);
+            for (int d = 0; d < 3; d++) {
+                min[d] = Math.min(min[d], coordinates[3 * i + d]);
+                max[d] = Math.max(max[d], coordinates[3 * i + d]);
+            }
+        }
+        double margin = CUTOFF_FACTOR * maxRadius + resolution;
+        double spacing = resolution;
+        int[] dim = new int[3];
+        while (true) {
+            for (int d = 0; d < 3; d++)
+                dim[d] = (int) Math.ceil((max[d] - min[d] + 2 * margin) / spacing) + 1;
+            if ((long) dim[0] * dim[1] * dim[2] <= MAX_GRID_POINTS)
+                break;
+            spacing *= 1.25;
+        }
+        Grid grid = new Grid(dim[0], dim[1], dim[2], min[0] - margin, min[1] - margin, min[2] - margin, spacing);
+
+        // Sort atoms into the slabs their density reaches
+        int slabs = (grid.nz + SLAB_SIZE - 1) / SLAB_SIZE;
+        ArrayList<int[]> slabAtoms = new ArrayList<>();
+        int[] slabCount = new int[slabs];
+        int[][] atomSlabs = new int[atoms][2];
+        for (int i = 0; i < atoms; i++) {
+            double reach = CUTOFF_FACTOR * radii[i];
+            atomSlabs[i][0] = Math.max(0, grid.toIndex(coordinates[3 * i + 2] - reach, 2) / SLAB_SIZE);
+            atomSlabs[i][1] = Math.min(slabs - 1, grid.toIndex(coordinates[3 * i + 2] + reach, 2) / SLAB_SIZE);
+            for (int s = atomSlabs[i][0]; s <= atomSlabs[i][1]; s++)
+                slabCount[s]++;
+        }
+        for (int s = 0; s < slabs; s++)
+            slabAtoms.add(new int[slabCount[s]]);
+        Arrays.fill(slabCount, 0);
+        for (int i = 0; i < atoms; i++) {
+            for (int s = atomSlabs[i][0]; s <= atomSlabs[i][1]; s++)
+                slabAtoms.get(s)[slabCount[s]++] = i;
+        }
+
+        // Sample the density, each slab only writes its own layers
+        IntStream.range(0, slabs).parallel().forEach(s -> {
+            if (!cancelled.getAsBoolean())
+                splatAtoms(grid, coordinates, radii, slabAtoms.get(s), s * SLAB_SIZE,
+                        Math.min(grid.nz, (s + 1) * SLAB_SIZE));
+        });
+        if (cancelled.getAsBoolean())
+            return null;
+
+        // Create one vertex on every grid edge crossing the iso-surface; edges belong to the slab of their start
+        int[] edgeVertex = new int[3 * grid.size()];
+        float[][] slabPoints = new float[slabs][];
+        float[][] slabNormals = new float[slabs][];
+        IntStream.range(0, slabs).parallel().forEach(s -> {
+            if (cancelled.getAsBoolean())
+                return;
+            FloatList slabPointList = new FloatList();
+            FloatList slabNormalList = new FloatList();
+            createVertices(grid, edgeVertex, s * SLAB_SIZE, Math.min(grid.nz, (s + 1) * SLAB_SIZE), slabPointList,
+                    slabNormalList);
+            slabPoints[s] = slabPointList.toArray();
+            slabNormals[s] = slabNormalList.toArray();
+        });
+        if (cancelled.getAsBoolean())
+            return null;
+        int[] slabOffset = new int[slabs + 1];
+        for (int s = 0; s < slabs; s++)
+            slabOffset[s + 1] = slabOffset[s] + slabPoints[s].length / 3;
+
+        // Triangulate all cubes with the marching cubes table
+        int[][] slabTriangles = new int[slabs][];
+        IntStream.range(0, slabs).parallel().forEach(s -> {
+            if (cancelled.getAsBoolean())
+                return;
+            slabTriangles[s] = createTriangles(grid, edgeVertex, slabOffset, s * SLAB_SIZE,
+                    Math.min(grid.nz - 1, (s + 1) * SLAB_SIZE));
+        });
+        if (cancelled.getAsBoolean())
+            return null;
+
+        // Concatenate the slabs
+        float[] points = new float[3 * slabOffset[slabs]];
+        float[] normals = new float[3 * slabOffset[slabs]];
+        int triangleEntries = 0;
+        for (int[] t : slabTriangles)
+            triangleEntries += t.length;
+        int[] triangles = new int[triangleEntries];
+        int position = 0;
+        for (int s = 0; s < slabs; s++) {
+            System.arraycopy(slabPoints[s], 0, points, 3 * slabOffset[s], slabPoints[s].length);
+            System.arraycopy(slabNormals[s], 0, normals, 3 * slabOffset[s], slabNormals[s].length);
+            System.arraycopy(slabTriangles[s], 0, triangles, position, slabTriangles[s].length);
+            position += slabTriangles[s].length;
+        }
+        return new GaussianSurface(points, normals, triangles);
+    }
+
+    /**
+     * Adds the density of the given atoms to the grid layers [fromZ, toZ). The Gaussian is separable, so it is
+     * evaluated once per axis and the grid values are products of three precomputed factors.
+     */
+    private static void splatAtoms(Grid grid, double[] coordinates, double[] radii, int[] atoms, int fromZ, int toZ) {
+        double scale = Math.exp(BLOBBINESS);
+        for (int i : atoms) {
+            double reach = CUTOFF_FACTOR * radii[i];
+            double factor = BLOBBINESS / (radii[i] * radii[i]);
+            int[] from = new int[3];
+            int[] to = new int[3];
+            double[][] weights = new double[3][];
+            for (int d = 0; d < 3; d++) {
+                from[d] = Math.max(0, grid.toIndex(coordinates[3 * i + d] - reach, d));
+                to[d] = Math.min(grid.dim(d) - 1, grid.toIndex(coordinates[3 * i + d] + reach, d) + 1);
+                if (d == 2) {
+                    from[d] = Math.max(from[d], fromZ);
+                    to[d] = Math.min(to[d], toZ - 1);
+                }
+                weights[d] = new double[Math.max(0, to[d] - from[d] + 1)];
+                for (int k = from[d]; k <= to[d]; k++) {
+                    double delta = grid.toCoordinate(k, d) - coordinates[3 * i + d];
+                    weights[d][k - from[d]] = Math.exp(-factor * delta * delta);
+                }
+            }
+            for (int z = from[2]; z <= to[2]; z++) {
+                double wz = scale * weights[2][z - from[2]];
+                for (int y = from[1]; y <= to[1]; y++) {
+                    double wyz = wz * weights[1][y - from[1]];
+                    int row = grid.index(0, y, z);
+                    for (int x = from[0]; x <= to[0]; x++)
+                        grid.density[row + x] += (float) (wyz * weights[0][x - from[0]]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Creates the vertices on all edges starting in the layers [fromZ, toZ) that cross the iso-surface. The index of
+     * each vertex relative to the first vertex of the slab is stored in edgeVertex.
+     */
+    private static void createVertices(Grid grid, int[] edgeVertex, int fromZ, int toZ, FloatList points,
+                                       FloatList normals) {
+        int[] end = new int[3];
+        for (int z = fromZ; z < toZ; z++) {
+            for (int y = 0; y < grid.ny; y++) {
+                for (int x = 0; x < grid.nx; x++) {
+                    int p = grid.index(x, y, z);
+                    float value = grid.density[p];
+                    for (int axis = 0; axis < 3; axis++) {
+                        end[0] = x;
+                        end[1] = y;
+                        end[2] = z;
+                        end[axis]++;
+                        if (end[axis] >= grid.dim(axis))
+                            continue;
+                        float endValue = grid.density[grid.index(end[0], end[1], end[2])];
+                        if ((value >= ISO_VALUE) == (endValue >= ISO_VALUE))
+                            continue;
+
+                        // interpolate position and gradient along the edge
+                        float t = (ISO_VALUE - value) / (endValue - value);
+                        float[] g0 = grid.gradient(x, y, z);
+                        float[] g1 = grid.gradient(end[0], end[1], end[2]);
+                        edgeVertex[3 * p + axis] = points.size() / 3;
+                        points.add((float) grid.toCoordinate(x + (axis == 0 ? t : 0), 0));
+                        points.add((float) grid.toCoordinate(y + (axis == 1 ? t : 0), 1));
+                        points.add((float) grid.toCoordinate(z + (axis == 2 ? t : 0), 2));
+                        float nx = -(g0[0] + t * (g1[0] - g0[0]));
+                        float ny = -(g0[1] + t * (g1[1] - g0[1]));
+                        float nz = -(g0[2] + t * (g1[2] - g0[2]));
+                        float length = (float) Math.sqrt(nx * nx + ny * ny + nz * nz);
+                        if (length == 0)
+                            length = 1;
+                        normals.add(nx / length);
+                        normals.add(ny / length);
+                        normals.add(nz / length);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Creates the triangles of all cubes whose lower corner lies in the layers [fromZ, toZ).
+     */
+    private static int[] createTriangles(Grid grid, int[] edgeVertex, int[] slabOffset, int fromZ, int toZ) {
+        IntList triangles = new IntList();
+        for (int z = fromZ; z < toZ; z++) {
+            for (int y = 0; y < grid.ny - 1; y++) {
+                for (int x = 0; x < grid.nx - 1; x++) {
+                    int configuration = 0;
+                    for (int c = 0; c < 8; c++) {
+                        if (grid.density[grid.index(x + (c & 1), y + ((c >> 1) & 1), z + ((c >> 2) & 1))]
+                                >= ISO_VALUE)
+                            configuration |= 1 << c;
+                    }
+                    for (int edge : TRIANGLE_TABLE[configuration]) {
+                        int c = EDGE_CORNER[edge];
+                        int cz = z + ((c >> 2) & 1);
+                        int p = grid.index(x + (c & 1), y + ((c >> 1) & 1), cz);
+                        triangles.add(slabOffset[cz / SLAB_SIZE] + edgeVertex[3 * p + edge / 4]);
+                    }
+                }
+            }
+        }
+        return triangles.toArray();
+    }
+
+    /**
+     * Computes the marching cubes triangle table. On each face of the cube, the crossed edges are connected such
+     * that inside corners are cut off (ambiguous faces thereby separate the inside corners, which is consistent
+     * between neighbouring cubes and keeps the surface closed). The segments are oriented with the inside on their
+     * left, joined to loops around the cube and each loop is triangulated as a fan.
+     */
+    private static int[][] computeTriangleTable() {
+        // edge between two corners
+        int[][] edgeOf = new int[8][8];
+        for (int e = 0; e < 12; e++) {
+            int a = EDGE_CORNER[e];
+            int b = a | (1 << (e / 4));
+            edgeOf[a][b] = edgeOf[b][a] = e;
+        }
+        // corners of each face, counter-clockwise seen from outside the cube
+        int[][] faces = new int[6][4];
+        for (int axis = 0; axis < 3; axis++) {
+            int u = 1 << ((axis + 1) % 3), w = 1 << ((axis + 2) % 3);
+            for (int side = 0; side < 2; side++) {
+                int base = side << axis;
+                int[] corners = {base, base | u, base | u | w, base | w};
+                if (side == 0) // seen from the other side
+                    corners = new int[]{corners[0], corners[3], corners[2], corners[1]};
+                faces[2 * axis + side] = corners;
+            }
+        }
+
+        // faces each edge lies on, as bit mask
+        int[] edgeFaces = new int[12];
+        for (int f = 0; f < 6; f++) {
+            for (int i = 0; i < 4; i++)
+                edgeFaces[edgeOf[faces[f][i]][faces[f][(i + 1) % 4]]] |= 1 << f;
+        }
+
+        int[][] table = new int[256][];
+        for (int configuration = 0; configuration < 256; configuration++) {
+            int[] next = new int[12];
+            Arrays.fill(next, -1);
+            for (int[] face : faces) {
+                for (int i = 0; i < 4; i++) {
+                    int corner = face[i], following = face[(i + 1) % 4];
+                    if (!isInside(configuration, corner) || isInside(configuration, following))
+                        continue;
+                    // the inside run ending at corner is left here; find where it was entered
+                    int j = i;
+                    while (isInside(configuration, face[(j + 3) % 4]))
+                        j = (j + 3) % 4;
+                    next[edgeOf[corner][following]] = edgeOf[face[(j + 3) % 4]][face[j]];
+                }
+            }
+
+            IntList triangles = new IntList();
+            boolean[] used = new boolean[12];
+            for (int start = 0; start < 12; start++) {
+                if (next[start] == -1 || used[start])
+                    continue;
+                IntList loop = new IntList();
+                for (int e = start; !used[e]; e = next[e]) {
+                    used[e] = true;
+                    loop.add(e);
+                }
+                // start the fan such that no triangle lies flat within a face of the cube, which happens if the loop
+                // passes an ambiguous face twice
+                int size = loop.size();
+                int first = 0;
+                for (int r = 0; r < size; r++) {
+                    boolean flat = false;
+                    for (int k = 1; k + 1 < size; k++) {
+                        flat |= (edgeFaces[loop.get(r)] & edgeFaces[loop.get((r + k) % size)]
+                                & edgeFaces[loop.get((r + k + 1) % size)]) != 0;
+                    }
+                    if (!flat) {
+                        first = r;
+                        break;
+                    }
+                }
+                // the loop runs clockwise around the outside region, so reverse it for outward facing triangles
+                for (int k = 1; k + 1 < size; k++) {
+                    triangles.add(loop.get(first));
+                    triangles.add(loop.get((first + k + 1) % size));
+                    triangles.add(loop.get((first + k) % size));
+                }
+            }
+            table[configuration] = triangles.toArray();
+        }
+        return table;
+    }
+
+    /**
+     * Whether the given corner is inside the surface in the given configuration.
+     */
+    private static boolean isInside(int configuration, int corner) {
+        return ((configuration >> corner) & 1) == 1;
+    }
+
+    /**
+     * Getter method for the vertex coordinates.
+     * @return float[]: vertex coordinates, three entries per vertex
+     */
+    public float[] getPoints() {
+        return points;
+    }
+
+    /**
+     * Getter method for the vertex normals.
+     * @return float[]: unit normals pointing outwards, three entries per vertex
+     */
+    public float[] getNormals() {
+        return normals;
+    }
+
+    /**
+     * Getter method for the triangles.
+     * @return int[]: vertex indices, three entries per triangle
+     */
+    public int[] getTriangles() {
+        return triangles;
+    }
+
+    /**
+     * Returns the number of triangles of the surface.
+     * @return int: number of triangles
+     */
+    public int getTriangleCount() {
+        return triangles.length / 3;
+    }
+
+    /**
+     * Regular grid holding the sampled density.
+     */
+    private static class Grid {
+        final int nx, ny, nz;
+        final double originX, originY, originZ, spacing;
+        final float[] density;
+
+        Grid(int nx, int ny, int nz, double originX, double originY, double originZ, double spacing) {
+            this.nx = nx;
+            this.ny = ny;
+            this.nz = nz;
+            this.originX = originX;
+            this.originY = originY;
+            this.originZ = originZ;
+            this.spacing = spacing;
+            this.density = new float[nx * ny * nz];
+        }
+
+        int size() {
+            return density.length;
+        }
+
+        int dim(int axis) {
+            return axis == 0 ? nx : axis == 1 ? ny : nz;
+        }
+
+        int index(int x, int y, int z) {
+            return (z * ny + y) * nx + x;
+        }
+
+        int toIndex(double coordinate, int axis) {
+            double origin = axis == 0 ? originX : axis == 1 ? originY : originZ;
+            return (int) Math.floor((coordinate - origin) / spacing);
+        }
+
+        double toCoordinate(double index, int axis) {
+            double origin = axis == 0 ? originX : axis == 1 ? originY : originZ;
+            return origin + index * spacing;
+        }
+
+        /**
+         * Central difference gradient of the density (one-sided at the border).
+         */
+        float[] gradient(int x, int y, int z) {
+            return new float[]{
+                    density[index(Math.min(x + 1, nx - 1), y, z)] - density[index(Math.max(x - 1, 0), y, z)],
+                    density[index(x, Math.min(y + 1, ny - 1), z)] - density[index(x, Math.max(y - 1, 0), z)],
+                    density[index(x, y, Math.min(z + 1, nz - 1))] - density[index(x, y, Math.max(z - 1, 0))]};
+        }
+    }
+}
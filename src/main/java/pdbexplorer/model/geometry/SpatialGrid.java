@@ -0,0 +1,170 @@
+package pdbexplorer.model.geometry;
+
+import java.util.function.IntConsumer;
+
+/**
+ * This class implements a uniform spatial grid (cell list) over a set of points given as a primitive coordinate array
+ * of the form x0, y0, z0, x1, y1, z1, ... It is used to find all points close to a query point without comparing
+ * against every point. The points of each cell are stored consecutively (compressed row storage), so the grid needs
+ * only two int arrays in addition to the coordinates.
+ */
+public class SpatialGrid {
+    // upper bound of grid cells per point, to avoid huge grids for sparse point clouds
+    private static final int MAX_CELLS_PER_POINT = 8;
+
+    private final double[] coordinates;
+    private final double cellSize;
+    private final double minX;
+    private final double minY;
+    private final double minZ;
+    private final int dimX;
+    private final int dimY;
+    private final int dimZ;
+    private final int[] cellStart;
+    private final int[] cellPoints;
+
+    /**
+     * Constructor for a SpatialGrid object. Sorts all points into cells of the given size.
+     * @param coordinates (double[]): the coordinates of all points, three consecutive entries per point
+     * @param cellSize (double): the edge length of a grid cell; ideally the largest query radius that is used
+     */
+    public SpatialGrid(double[] coordinates, double cellSize) {
+        this.coordinates = coordinates;
+        int size = coordinates.length / 3;
+
+        // Compute bounding box of all points
+        double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY, minZ = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY, maxZ = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < size; i++) {
+            minX = Math.min(minX, coordinates[3 * i]);
+            minY = Math.min(minY, coordinates[3 * i + 1]);
+            minZ = Math.min(minZ, coordinates[3 * i + 2]);
+            maxX = Math.max(maxX, coordinates[3 * i]);
+            maxY = Math.max(maxY, coordinates[3 * i + 1]);
+            maxZ = Math.max(maxZ, coordinates[3 * i + 2]);
+        }
+        if (size == 0) {
+            minX = minY = minZ = maxX = maxY = maxZ = 0;
+        }
+
+        // Enlarge cells in case the grid would get too large (e.g. for few points far apart)
+        cellSize = Math.max(cellSize, 1e-3);
+        long maxCells = Math.max(1000L, (long) MAX_CELLS_PER_POINT * size);
+        while (cellCount(maxX - minX, cellSize) * cellCount(maxY - minY, cellSize)
+                * cellCount(maxZ - minZ, cellSize) > maxCells) {
+            cellSize *= 1.5;
+        }
+
+        this.cellSize = cellSize;
+        this.minX = minX;
+        this.minY = minY;
+        this.minZ = minZ;
+        this.dimX = (int) cellCount(maxX - minX, cellSize);
+        this.dimY = (int) cellCount(maxY - minY, cellSize);
+        this.dimZ = (int) cellCount(maxZ - minZ, cellSize);
+
+        // Counting sort of the points into their cells
+        int[] cellOfPoint = new int[size];
+        cellStart = new int[dimX * dimY * dimZ + 1];
+        for (int i = 0; i < size; i++) {
+            int cell = cellIndex(coordinates[3 * i], coordinates[3 * i + 1], coordinates[3 * i + 2]);
+            cellOfPoint[i] = cell;
+            cellStart[cell + 1]++;
+        }
+        for (int c = 0; c < dimX * dimY * dimZ; c++) {
+            cellStart[c + 1] += cellStart[c];
+        }
+        int[] fill = new int[dimX * dimY * dimZ];
+        cellPoints = new int[size];
+        for (int i = 0; i < size; i++) {
+            int cell = cellOfPoint[i];
+            cellPoints[cellStart[cell] + fill[cell]++] = i;
+        }
+    }
+
+    /**
+     * Calls the consumer for every point whose distance to the given query point is at most the given radius.
+     * @param x (double): x coordinate of the query point
+     * @param y (double): y coordinate of the query point
+     * @param z (double): z coordinate of the query point
+     * @param radius (double): the query radius
+     * @param consumer (IntConsumer): gets the index of each point within the radius
+     */
+    public void forEachNeighbour(double x, double y, double z, double radius, IntConsumer consumer) {
+        double radiusSquared = radius * radius;
+        int fromX = clamp((int) Math.floor((x - radius - minX) / cellSize), dimX);
+        int toX = clamp((int) Math.floor((x + radius - minX) / cellSize), dimX);
+        int fromY = clamp((int) Math.floor((y - radius - minY) / cellSize), dimY);
+        int toY = clamp((int) Math.floor((y + radius - minY) / cellSize), dimY);
+        int fromZ = clamp((int) Math.floor((z - radius - minZ) / cellSize), dimZ);
+        int toZ = clamp((int) Math.floor((z + radius - minZ) / cellSize), dimZ);
+
+        for (int cx = fromX; cx <= toX; cx++) {
+            for (int cy = fromY; cy <= toY; cy++) {
+                for (int cz = fromZ; cz <= toZ; cz++) {
+                    int cell = (cx * dimY + cy) * dimZ + cz;
+                    for (int k = cellStart[cell]; k < cellStart[cell + 1]; k++) {
+                        int point = cellPoints[k];
+                        double dx = coordinates[3 * point] - x;
+                        double dy = coordinates[3 * point + 1] - y;
+                        double dz = coordinates[3 * point + 2] - z;
+                        if (dx * dx + dy * dy + dz * dz <= radiusSquared)
+                            consumer.accept(point);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Calls the consumer for every point whose distance to the given point of the grid is at most the given radius.
+     * The point itself is included.
+     * @param point (int): index of a point contained in the grid
+     * @param radius (double): the query radius
+     * @param consumer (IntConsumer): gets the index of each point within the radius
+     */
+    public void forEachNeighbour(int point, double radius, IntConsumer consumer) {
+        forEachNeighbour(coordinates[3 * point], coordinates[3 * point + 1], coordinates[3 * point + 2], radius,
+                consumer);
+    }
+
+    /**
+     * Returns the number of points contained in the grid.
+     * @return int: number of points
+     */
+    public int size() {
+        return cellPoints.length;
+    }
+
+    /**
+     * Returns the coordinate array the grid was built on.
+     * @return double[]: coordinates, three consecutive entries per point
+     */
+    public double[] getCoordinates() {
+        return coordinates;
+    }
+
+    /**
+     * Computes the index of the cell containing the given point.
+     */
+    private int cellIndex(double x, double y, double z) {
+        int cx = clamp((int) ((x - minX) / cellSize), dimX);
+        int cy = clamp((int) ((y - minY) / cellSize), dimY);
+        int cz = clamp((int) ((z - minZ) / cellSize), dimZ);
+        return (cx * dimY + cy) * dimZ + cz;
+    }
+
+    /**
+     * Clamps a cell coordinate to the range [0, dim - 1].
+     */
+    private static int clamp(int value, int dim) {
+        return value < 0 ? 0 : Math.min(value, dim - 1);
+    }
+
+    /**
+     * Returns the number of cells needed to cover the given extent.
+     */
+    private static long cellCount(double extent, double cellSize) {
+        return (long) Math.floor(extent / cellSize) + 1;
+    }
+}
@@ -0,0 +1,224 @@
+package pdbexplorer.model.geometry;
+
+/**
+ * This class implements the optimal superposition of two sets of corresponding points using the quaternion
+ * characteristic polynomial (QCP) method by Theobald (2005) and Liu et al. (2010). Instead of diagonalizing a matrix,
+ * the largest eigenvalue of the key matrix is found by Newton iteration on its characteristic polynomial, which makes
+ * the minimal RMSD between two structures very cheap to compute. All coordinates are given as primitive arrays of the
+ * form x0, y0, z0, x1, y1, z1, ... and are expected to be centered (see center()).
+ */
+public class Superposition {
+    private static final double EIGENVALUE_PRECISION = 1e-11;
+    private static final double EIGENVECTOR_PRECISION = 1e-6;
+
+    /**
+     * Moves the given points such that their centroid lies in the origin. The points are changed in place.
+     * @param coordinates (double[]): the points, three consecutive entries per point
+     * @return double[]: the previous centroid (x, y, z)
+     */
+    public static double[] center(double[] coordinates) {
+        int size = coordinates.length / 3;
+        double[] centroid = new double[3];
+        for (int i = 0; i < size; i++) {
+            for (int d = 0; d < 3; d++)
+                centroid[d] += coordinates[3 * i + d];
+        }
+        for (int d = 0; d < 3; d++)
+            centroid[d] /= Math.max(1, size);
+        for (int i = 0; i < size; i++) {
+            for (int d = 0; d < 3; d++)
+                coordinates[3 * i + d] -= centroid[d];
+        }
+        return centroid;
+    }
+
+    /**
+     * Computes the minimal RMSD between two centered sets of corresponding points without computing the rotation.
+     * @param reference (double[]): the centered reference points
+     * @param mobile (double[]): the centered points to fit onto the reference
+     * @return double: the RMSD after optimal superposition
+     */
+    public static double rmsd(double[] reference, double[] mobile) {
+        return superpose(reference, mobile, null);
+    }
+
+    /**
+     * Computes the minimal RMSD between two centered sets of corresponding points as well as the rotation that fits
+     * the mobile points onto the reference points. The rotation is written as row-major 3x3 matrix, such that
+     * rotation * mobile is superposed onto reference.
+     * @param reference (double[]): the centered reference points
+     * @param mobile (double[]): the centered points to fit onto the reference
+     * @param rotation (double[]): array of length 9 to store the rotation in; may be null if only the RMSD is needed
+     * @return double: the RMSD after optimal superposition
+     */
+    public static double superpose(double[] reference, double[] mobile, double[] rotation) {
+        int size = reference.length / 3;
+        if (size == 0) {
+            if (rotation != null)
+                setIdentity(rotation);
+            return 0;
+        }
+
+        // Inner product matrix and half of the sum of squared norms
+        double sxx = 0, sxy = 0, sxz = 0, syx = 0, syy = 0, syz = 0, szx = 0, szy = 0, szz = 0;
+        double g = 0;
+        for (int i = 0; i < size; i++) {
+            double x1 = reference[3 * i], y1 = reference[3 * i + 1], z1 = reference[3 * i + 2];
+            double x2 = mobile[3 * i], y2 = mobile[3 * i + 1], z2 = mobile[3 * i + 2];
+            g += x1 * x1 + y1 * y1 + z1 * z1 + x2 * x2 + y2 * y2 + z2 * z2;
+            sxx += x1 * x2;
+            sxy += x1 * y2;
+            sxz += x1 * z2;
+            syx += y1 * x2;
+            syy += y1 * y2;
+            syz += y1 * z2;
+            szx += z1 * x2;
+            szy += z1 * y2;
+            szz += z1 * z2;
+        }
+        double e0 = g / 2;
+
+        // Coefficients of the characteristic polynomial of the key matrix
+        double sxx2 = sxx * sxx, syy2 = syy * syy, szz2 = szz * szz;
+        double sxy2 = sxy * sxy, syz2 = syz * syz, sxz2 = sxz * sxz;
+        double syx2 = syx * syx, szy2 = szy * szy, szx2 = szx * szx;
+
+        double syzSzymSyySzz2 = 2.0 * (syz * szy - syy * szz);
+        double sxx2Syy2Szz2Syz2Szy2 = syy2 + szz2 - sxx2 + syz2 + szy2;
+
+        double c2 = -2.0 * (sxx2 + syy2 + szz2 + sxy2 + syx2 + sxz2 + szx2 + syz2 + szy2);
+        double c1 = 8.0 * (sxx * syz * szy + syy * szx * sxz + szz * sxy * syx
+                - sxx * syy * szz - syz * szx * sxy - szy * syx * sxz);
+
+        double sxzpSzx = sxz + szx, syzpSzy = syz + szy, sxypSyx = sxy + syx;
+        double syzmSzy = syz - szy, sxzmSzx = sxz - szx, sxymSyx = sxy - syx;
+        double sxxpSyy = sxx + syy, sxxmSyy = sxx - syy;
+        double sxy2Sxz2Syx2Szx2 = sxy2 + sxz2 - syx2 - szx2;
+
+        double c0 = sxy2Sxz2Syx2Szx2 * sxy2Sxz2Syx2Szx2
+                + (sxx2Syy2Szz2Syz2Szy2 + syzSzymSyySzz2) * (sxx2Syy2Szz2Syz2Szy2 - syzSzymSyySzz2)
+                + (-sxzpSzx * syzmSzy + sxymSyx * (sxxmSyy - szz)) * (-sxzmSzx * syzpSzy + sxymSyx * (sxxmSyy + szz))
+                + (-sxzpSzx * syzpSzy - sxypSyx * (sxxpSyy - szz)) * (-sxzmSzx * syzmSzy - sxypSyx * (sxxpSyy + szz))
+                + (sxypSyx * syzpSzy + sxzpSzx * (sxxmSyy + szz)) * (-sxymSyx * syzmSzy + sxzpSzx * (sxxpSyy + szz))
+                + (sxypSyx * syzmSzy + sxzmSzx * (sxxmSyy - szz)) * (-sxymSyx * syzpSzy + sxzmSzx * (sxxpSyy - szz));
+
+        // Newton iteration for the largest eigenvalue, starting from its upper bound e0
+        double eigenvalue = e0;
+        for (int i = 0; i < 50; i++) {
+            double old = eigenvalue;
+            double x2 = eigenvalue * eigenvalue;
+            double b = (x2 + c2) * eigenvalue;
+            double a = b + c1;
+            double delta = (a * eigenvalue + c0) / (2.0 * x2 * eigenvalue + b + a);
+            eigenvalue -= delta;
+            if (Math.abs(eigenvalue - old) < Math.abs(EIGENVALUE_PRECISION * eigenvalue))
+                break;
+        }
+        double rmsd = Math.sqrt(Math.abs(2.0 * (e0 - eigenvalue) / size));
+
+        if (rotation != null)
+            computeRotation(rotation, eigenvalue, sxx, syy, szz, sxxpSyy, sxxmSyy, syzmSzy, sxzmSzx, sxymSyx,
+                    sxypSyx, sxzpSzx, syzpSzy);
+
+        return rmsd;
+    }
+
+    /**
+     * Computes the rotation matrix from the eigenvector (quaternion) belonging to the largest eigenvalue. The
+     * eigenvector is computed from the adjoint of the shifted key matrix, using another column in case of numerical
+     * problems.
+     */
+    private static void computeRotation(double[] rotation, double eigenvalue, double sxx, double syy, double szz,
+                                        double sxxpSyy, double sxxmSyy, double syzmSzy, double sxzmSzx,
+                                        double sxymSyx, double sxypSyx, double sxzpSzx, double syzpSzy) {
+        double a11 = sxxpSyy + szz - eigenvalue, a12 = syzmSzy, a13 = -sxzmSzx, a14 = sxymSyx;
+        double a21 = syzmSzy, a22 = sxxmSyy - szz - eigenvalue, a23 = sxypSyx, a24 = sxzpSzx;
+        double a31 = a13, a32 = a23, a33 = syy - sxx - szz - eigenvalue, a34 = syzpSzy;
+        double a41 = a14, a42 = a24, a43 = a34, a44 = szz - sxxpSyy - eigenvalue;
+
+        double a3344_4334 = a33 * a44 - a43 * a34, a3244_4234 = a32 * a44 - a42 * a34;
+        double a3243_4233 = a32 * a43 - a42 * a33, a3143_4133 = a31 * a43 - a41 * a33;
+        double a3144_4134 = a31 * a44 - a41 * a34, a3142_4132 = a31 * a42 - a41 * a32;
+
+        double q1 = a22 * a3344_4334 - a23 * a3244_4234 + a24 * a3243_4233;
+        double q2 = -a21 * a3344_4334 + a23 * a3144_4134 - a24 * a3143_4133;
+        double q3 = a21 * a3244_4234 - a22 * a3144_4134 + a24 * a3142_4132;
+        double q4 = -a21 * a3243_4233 + a22 * a3143_4133 - a23 * a3142_4132;
+        double qsqr = q1 * q1 + q2 * q2 + q3 * q3 + q4 * q4;
+
+        if (qsqr < EIGENVECTOR_PRECISION) {
+            q1 = a12 * a3344_4334 - a13 * a3244_4234 + a14 * a3243_4233;
+            q2 = -a11 * a3344_4334 + a13 * a3144_4134 - a14 * a3143_4133;
+            q3 = a11 * a3244_4234 - a12 * a3144_4134 + a14 * a3142_4132;
+            q4 = -a11 * a3243_4233 + a12 * a3143_4133 - a13 * a3142_4132;
+            qsqr = q1 * q1 + q2 * q2 + q3 * q3 + q4 * q4;
+
+            if (qsqr < EIGENVECTOR_PRECISION) {
+                double a1324_1423 = a13 * a24 - a14 * a23, a1224_1422 = a12 * a24 - a14 * a22;
+                double a1223_1322 = a12 * a23 - a13 * a22, a1124_1421 = a11 * a24 - a14 * a21;
+                double a1123_1321 = a11 * a23 - a13 * a21, a1122_1221 = a11 * a22 - a12 * a21;
+
+                q1 = a42 * a1324_1423 - a43 * a1224_1422 + a44 * a1223_1322;
+                q2 = -a41 * a1324_1423 + a43 * a1124_1421 - a44 * a1123_1321;
+                q3 = a41 * a1224_1422 - a42 * a1124_1421 + a44 * a1122_1221;
+                q4 = -a41 * a1223_1322 + a42 * a1123_1321 - a43 * a1122_1221;
+                qsqr = q1 * q1 + q2 * q2 + q3 * q3 + q4 * q4;
+
+                if (qsqr < EIGENVECTOR_PRECISION) {
+                    q1 = a32 * a1324_1423 - a33 * a1224_1422 + a34 * a1223_1322;
+                    q2 = -a31 * a1324_1423 + a33 * a1124_1421 - a34 * a1123_1321;
+                    q3 = a31 * a1224_1422 - a32 * a1124_1421 + a34 * a1122_1221;
+                    q4 = -a31 * a1223_1322 + a32 * a1123_1321 - a33 * a1122_1221;
+                    qsqr = q1 * q1 + q2 * q2 + q3 * q3 + q4 * q4;
+
+                    if (qsqr < EIGENVECTOR_PRECISION) { // structures are already superposed
+                        setIdentity(rotation);
+                        return;
+                    }
+                }
+            }
+        }
+
+        // Convert normalized quaternion to rotation matrix
+        double norm = Math.sqrt(qsqr);
+        q1 /= norm;
+        q2 /= norm;
+        q3 /= norm;
+        q4 /= norm;
+
+        double a2 = q1 * q1, x2 = q2 * q2, y2 = q3 * q3, z2 = q4 * q4;
+        double xy = q2 * q3, az = q1 * q4, zx = q4 * q2, ay = q1 * q3, yz = q3 * q4, ax = q1 * q2;
+
+        rotation[0] = a2 + x2 - y2 - z2;
+        rotation[1] = 2 * (xy + az);
+        rotation[2] = 2 * (zx - ay);
+        rotation[3] = 2 * (xy - az);
+        rotation[4] = a2 - x2 + y2 - z2;
+        rotation[5] = 2 * (yz + ax);
+        rotation[6] = 2 * (zx + ay);
+        rotation[7] = 2 * (yz - ax);
+        rotation[8] = a2 - x2 - y2 + z2;
+    }
+
+    /**
+     * Applies the rotation (row-major 3x3 matrix) to the given points in place.
+     * @param coordinates (double[]): the points, three consecutive entries per point
+     * @param rotation (double[]): the rotation matrix
+     */
+    public static void rotate(double[] coordinates, double[] rotation) {
+        for (int i = 0; i < coordinates.length / 3; i++) {
+            double x = coordinates[3 * i], y = coordinates[3 * i + 1], z = coordinates[3 * i + 2];
+            coordinates[3 * i] = rotation[0] * x + rotation[1] * y + rotation[2] * z;
+            coordinates[3 * i + 1] = rotation[3] * x + rotation[4] * y + rotation[5] * z;
+            coordinates[3 * i + 2] = rotation[6] * x + rotation[7] * y + rotation[8] * z;
+        }
+    }
+
+    /**
+     * Sets the given matrix to the identity.
+     */
+    private static void setIdentity(double[] rotation) {
+        for (int i = 0; i < 9; i++)
+            rotation[i] = i % 4 == 0 ? 1 : 0;
+    }
+}
@@ -0,0 +1,284 @@
+package pdbexplorer.model.io;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class holds a decoded column of a BinaryCIF category. The column data is decoded by applying the encodings
+ * stored with it in reverse order, resulting in a primitive int or double array or in an array of Strings. The
+ * standard BinaryCIF codecs are supported: ByteArray, IntegerPacking, Delta, RunLength, FixedPoint,
+ * IntervalQuantization and StringArray. The optional mask marks values that are missing ('.') or unknown ('?').
+ */
+public class BinaryCIFColumn {
+    // ByteArray data types
+    private static final int INT8 = 1, INT16 = 2, INT32 = 3, UINT8 = 4, UINT16 = 5, UINT32 = 6, FLOAT32 = 32,
+            FLOAT64 = 33;
+
+    private final int[] ints;
+    private final double[] doubles;
+    private final String[] strings;
+    private final int[] mask;
+
+    /**
+     * Constructor for a BinaryCIFColumn object, decodes the given column.
+     * @param column (Map): the column as read from the file, with the entries name, data and mask
+     * @throws IllegalArgumentException if the column uses an unknown encoding
+     */
+    public BinaryCIFColumn(Map<String, Object> column) {
+        Object values = decode(asMap(column.get("data")));
+        ints = values instanceof int[] i ? i : null;
+        doubles = values instanceof double[] d ? d : null;
+        strings = values instanceof String[] s ? s : null;
+        Object maskData = column.get("mask");
+        mask = maskData == null ? null : toInts(decode(asMap(maskData)));
+    }
+
+    /**
+     * Returns the number of rows.
+     * @return int: number of values
+     */
+    public int size() {
+        return ints != null ? ints.length : doubles != null ? doubles.length : strings.length;
+    }
+
+    /**
+     * Returns whether the value in the given row is missing or unknown.
+     * @param row (int): row index
+     * @return boolean: true for null values
+     */
+    public boolean isNull(int row) {
+        return (mask != null && mask[row] != 0) || (strings != null && strings[row] == null);
+    }
+
+    /**
+     * Returns the value in the given row as integer.
+     * @param row (int): row index
+     * @return int: the value
+     * @throws NumberFormatException if the column holds text that is not an integer
+     */
+    public int getInt(int row) {
+        if (ints != null)
+            return ints[row];
+        if (doubles != null)
+            return (int) doubles[row];
+        return Integer.parseInt(strings[row]);
+    }
+
+    /**
+     * Returns the value in the given row as floating point number.
+     * @param row (int): row index
+     * @return double: the value
+     * @throws NumberFormatException if the column holds text that is not a number
+     */
+    public double getDouble(int row) {
+        if (doubles != null)
+            return doubles[row];
+        if (ints != null)
+            return ints[row];
+        return Double.parseDouble(strings[row]);
+    }
+
+    /**
+     * Returns the value in the given row as String.
+     * @param row (int): row index
+     * @return String: the value or null if it is missing or unknown
+     */
+    public String getString(int row) {
+        if (isNull(row))
+            return null;
+        if (strings != null)
+            return strings[row];
+        return ints != null ? Integer.toString(ints[row]) : Double.toString(doubles[row]);
+    }
+
+    /**
+     * Returns the array of doubles of a numeric column, converting integers if necessary. This avoids per-row access
+     * for the coordinate columns.
+     * @return double[]: the values
+     */
+    public double[] toDoubleArray() {
+        if (doubles != null)
+            return doubles;
+        double[] result = new double[size()];
+        for (int i = 0; i < result.length; i++)
+            result[i] = getDouble(i);
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> asMap(Object value) {
+        if (!(value instanceof Map))
+            throw new IllegalArgumentException("Malformed BinaryCIF column");
+        return (Map<String, Object>) value;
+    }
+
+    /**
+     * Decodes encoded data, i.e. a map holding the binary data and the list of encodings applied to it.
+     */
+    private static Object decode(Map<String, Object> encoded) {
+        return decode(encoded.get("data"), (List<?>) encoded.get("encoding"));
+    }
+
+    /**
+     * Decodes the given data by applying the given encodings in reverse order.
+     */
+    private static Object decode(Object data, List<?> encodings) {
+        for (int i = encodings.size() - 1; i >= 0; i--) {
+            Map<String, Object> encoding = asMap(encodings.get(i));
+            String kind = String.valueOf(encoding.get("kind"));
+            data = switch (kind) {
+                case "ByteArray" -> decodeByteArray((ByteBuffer) data, getInt(encoding, "type"));
+                case "IntegerPacking" -> decodeIntegerPacking(toInts(data), getInt(encoding, "byteCount"),
+                        Boolean.TRUE.equals(encoding.get("isUnsigned")), getInt(encoding, "srcSize"));
+                case "Delta" -> decodeDelta(toInts(data), getInt(encoding, "origin"));
+                case "RunLength" -> decodeRunLength(toInts(data), getInt(encoding, "srcSize"));
+                case "FixedPoint" -> decodeFixedPoint(toInts(data), getDouble(encoding, "factor"));
+                case "IntervalQuantization" -> decodeIntervalQuantization(toInts(data), getDouble(encoding, "min"),
+                        getDouble(encoding, "max"), getInt(encoding, "numSteps"));
+                case "StringArray" -> decodeStringArray(data, encoding);
+                default -> throw new IllegalArgumentException("Unsupported BinaryCIF encoding " + kind);
+            };
+        }
+        return data;
+    }
+
+    private static int getInt(Map<String, Object> encoding, String key) {
+        return ((Number) encoding.get(key)).intValue();
+    }
+
+    private static double getDouble(Map<String, Object> encoding, String key) {
+        return ((Number) encoding.get(key)).doubleValue();
+    }
+
+    private static int[] toInts(Object data) {
+        if (data instanceof int[] ints)
+            return ints;
+        throw new IllegalArgumentException("Expected integer data in BinaryCIF column");
+    }
+
+    /**
+     * Reads little-endian numbers of the given type from the binary data.
+     */
+    private static Object decodeByteArray(ByteBuffer data, int type) {
+        data = data.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        switch (type) {
+            case FLOAT32, FLOAT64 -> {
+                double[] result = new double[data.remaining() / (type == FLOAT32 ? 4 : 8)];
+                for (int i = 0; i < result.length; i++)
+                    result[i] = type == FLOAT32 ? data.getFloat() : data.getDouble();
+                return result;
+            }
+            case INT8, UINT8 -> {
+                int[] result = new int[data.remaining()];
+                for (int i = 0; i < result.length; i++)
+                    result[i] = type == INT8 ? data.get() : data.get() & 0xFF;
+                return result;
+            }
+            case INT16, UINT16 -> {
+                int[] result = new int[data.remaining() / 2];
+                for (int i = 0; i < result.length; i++)
+                    result[i] = type == INT16 ? data.getShort() : data.getShort() & 0xFFFF;
+                return result;
+            }
+            case INT32, UINT32 -> {
+                int[] result = new int[data.remaining() / 4];
+                data.asIntBuffer().get(result);
+                return result;
+            }
+            default -> throw new IllegalArgumentException("Unsupported BinaryCIF data type " + type);
+        }
+    }
+
+    /**
+     * Unpacks integers stored in 8 or 16 bit: values outside the range are written as a sequence of the limit values
+     * followed by the remainder, which are summed up again.
+     */
+    private static int[] decodeIntegerPacking(int[] data, int byteCount, boolean unsigned, int size) {
+        if (data.length == size) // nothing had to be split
+            return data;
+        int upper = byteCount == 1 ? (unsigned ? 0xFF : 0x7F) : (unsigned ? 0xFFFF : 0x7FFF);
+        int lower = unsigned ? 0 : -upper - 1;
+        int[] result = new int[size];
+        int j = 0;
+        for (int i = 0; i < size; i++) {
+            int value = 0;
+            int t = data[j];
+            while (t == upper || (!unsigned && t == lower)) {
+                value += t;
+                t = data[++j];
+            }
+            result[i] = value + t;
+            j++;
+        }
+        return result;
+    }
+
+    /**
+     * Sums up differences between consecutive values, starting at the origin.
+     */
+    private static int[] decodeDelta(int[] data, int origin) {
+        int[] result = new int[data.length];
+        int value = origin;
+        for (int i = 0; i < data.length; i++) {
+            value += data[i];
+            result[i] = value;
+        }
+        return result;
+    }
+
+    /**
+     * Expands pairs of value and repeat count.
+     */
+    private static int[] decodeRunLength(int[] data, int size) {
+        int[] result = new int[size];
+        int offset = 0;
+        for (int i = 0; i + 1 < data.length; i += 2) {
+            int count = data[i + 1];
+            Arrays.fill(result, offset, offset + count, data[i]);
+            offset += count;
+        }
+        return result;
+    }
+
+    /**
+     * Divides integers by the factor they were multiplied with.
+     */
+    private static double[] decodeFixedPoint(int[] data, double factor) {
+        double[] result = new double[data.length];
+        for (int i = 0; i < data.length; i++)
+            result[i] = data[i] / factor;
+        return result;
+    }
+
+    /**
+     * Maps step numbers back to equally spaced values between min and max.
+     */
+    private static double[] decodeIntervalQuantization(int[] data, double min, double max, int steps) {
+        double delta = (max - min) / (steps - 1);
+        double[] result = new double[data.length];
+        for (int i = 0; i < data.length; i++)
+            result[i] = min + delta * data[i];
+        return result;
+    }
+
+    /**
+     * Decodes strings given as indices into a list of unique strings, which are stored concatenated together with
+     * their offsets. Negative indices denote missing values.
+     */
+    private static String[] decodeStringArray(Object data, Map<String, Object> encoding) {
+        String stringData = String.valueOf(encoding.get("stringData"));
+        int[] offsets = toInts(decode(encoding.get("offsets"), (List<?>) encoding.get("offsetEncoding")));
+        int[] indices = toInts(decode(data, (List<?>) encoding.get("dataEncoding")));
+
+        String[] unique = new String[Math.max(offsets.length - 1, 0)];
+        for (int i = 0; i < unique.length; i++)
+            unique[i] = stringData.substring(offsets[i], offsets[i + 1]);
+        String[] result = new String[indices.length];
+        for (int i = 0; i < indices.length; i++)
+            result[i] = indices[i] < 0 ? null : unique[indices[i]];
+        return result;
+    }
+}
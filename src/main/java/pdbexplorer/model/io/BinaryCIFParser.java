@@ -0,0 +1,187 @@
+package pdbexplorer.model.io;
+
+import pdbexplorer.model.profiling.ParseEvent;
+import pdbexplorer.model.protein.PDBComplex;
+import pdbexplorer.model.protein.PDBPolymer;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+/**
+ * This class parses files in BinaryCIF format, the binary variant of mmCIF. The file is a MessagePack document holding
+ * the categories column by column, each column compressed with a chain of encodings. Unlike text formats, no number
+ * has to be parsed: the columns of _atom_site are decoded into primitive arrays and fed into the same model as the
+ * PDB and mmCIF parsers produce, which makes loading large entries much faster. Secondary structure is read from the
+ * _struct_conf and _struct_sheet_range categories. Only the first data block is read.
+ */
+public class BinaryCIFParser {
+    /**
+     * Returns whether the given data is in BinaryCIF format, i.e. starts with a MessagePack map. Text files never
+     * start with these bytes.
+     * @param data (byte[]): content of a structure file
+     * @return boolean: true for BinaryCIF files
+     */
+    public static boolean isBinaryCIF(byte[] data) {
+        if (data.length == 0)
+            return false;
+        int first = data[0] & 0xFF;
+        return (first >= 0x80 && first <= 0x8F) || first == 0xDE || first == 0xDF;
+    }
+
+    /**
+     * Parses the given BinaryCIF file.
+     * @param data (byte[]): the BinaryCIF file
+     * @return PDBComplex: protein complex object
+     * @throws IllegalArgumentException if the data is not a valid BinaryCIF file
+     */
+    public static PDBComplex parse(byte[] data) {
+        return parse(data, null, null);
+    }
+
+    /**
+     * Parses the given BinaryCIF file and passes on each chain as soon as it has been read completely.
+     * @param data (byte[]): the BinaryCIF file
+     * @param polymers (Consumer): receives each completed polymer on the parsing thread, null if not needed
+     * @param cancelled (BooleanSupplier): checked every few rows, parsing stops with a CancellationException once it
+     * returns true; null if parsing cannot be cancelled
+     * @return PDBComplex: protein complex object
+     * @throws IllegalArgumentException if the data is not a valid BinaryCIF file
+     */
+    public static PDBComplex parse(byte[] data, Consumer<PDBPolymer> polymers, BooleanSupplier cancelled) {
+        ParseEvent event = new ParseEvent();
+        event.begin();
+        Map<String, Object> file = asMap(new MessagePackReader(data).read());
+        List<?> dataBlocks = (List<?>) file.get("dataBlocks");
+        if (dataBlocks == null || dataBlocks.isEmpty())
+            throw new IllegalArgumentException("BinaryCIF file without data block");
+
+        PDBComplexBuilder builder = new PDBComplexBuilder();
+        builder.setPolymerListener(polymers);
+        builder.setCancellation(cancelled);
+        for (Object entry : (List<?>) asMap(dataBlocks.get(0)).get("categories")) {
+            Map<String, Object> category = asMap(entry);
+            String name = String.valueOf(category.get("name")).toLowerCase(Locale.ROOT);
+            if (!name.startsWith("_"))
+                name = "_" + name;
+            int rowCount = ((Number) category.get("rowCount")).intValue();
+            Map<String, Map<String, Object>> columns = new HashMap<>();
+            for (Object column : (List<?>) category.get("columns"))
+                columns.put(String.valueOf(asMap(column).get("name")).toLowerCase(Locale.ROOT), asMap(column));
+
+            if (name.equals("_atom_site"))
+                readAtomSite(columns, rowCount, builder);
+            else if (name.equals("_struct_conf") || name.equals("_struct_sheet_range"))
+                readSecondaryStructure(name, columns, rowCount, builder);
+        }
+        PDBComplex complex = builder.build();
+        event.finish("BinaryCIF", 0, complex);
+        return complex;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> asMap(Object value) {
+        if (!(value instanceof Map))
+            throw new IllegalArgumentException("Malformed BinaryCIF file");
+        return (Map<String, Object>) value;
+    }
+
+    /**
+     * Decodes the column with the given name, returns null if the category has no such column.
+     */
+    private static BinaryCIFColumn getColumn(Map<String, Map<String, Object>> columns, String name) {
+        Map<String, Object> column = columns.get(name);
+        return column == null ? null : new BinaryCIFColumn(column);
+    }
+
+    /**
+     * Returns the value of the preferred column in the given row, or the value of the fallback column if the
+     * preferred one is missing.
+     */
+    private static String getString(BinaryCIFColumn preferred, BinaryCIFColumn fallback, int row) {
+        if (preferred != null && !preferred.isNull(row))
+            return preferred.getString(row);
+        if (fallback != null && !fallback.isNull(row))
+            return fallback.getString(row);
+        return null;
+    }
+
+    /**
+     * Adds the atoms of the _atom_site category to the builder. Coordinates are taken from the decoded arrays
+     * directly.
+     */
+    private static void readAtomSite(Map<String, Map<String, Object>> columns, int rowCount,
+                                     PDBComplexBuilder builder) {
+        BinaryCIFColumn group = getColumn(columns, "group_pdb");
+        BinaryCIFColumn id = getColumn(columns, "id");
+        BinaryCIFColumn typeSymbol = getColumn(columns, "type_symbol");
+        BinaryCIFColumn labelAtom = getColumn(columns, "label_atom_id");
+        BinaryCIFColumn authAtom = getColumn(columns, "auth_atom_id");
+        BinaryCIFColumn altId = getColumn(columns, "label_alt_id");
+        BinaryCIFColumn labelComp = getColumn(columns, "label_comp_id");
+        BinaryCIFColumn authComp = getColumn(columns, "auth_comp_id");
+        BinaryCIFColumn labelAsym = getColumn(columns, "label_asym_id");
+        BinaryCIFColumn authAsym = getColumn(columns, "auth_asym_id");
+        BinaryCIFColumn labelSeq = getColumn(columns, "label_seq_id");
+        BinaryCIFColumn authSeq = getColumn(columns, "auth_seq_id");
+        BinaryCIFColumn model = getColumn(columns, "pdbx_pdb_model_num");
+        double[] x = getCoordinates(columns, "cartn_x", rowCount);
+        double[] y = getCoordinates(columns, "cartn_y", rowCount);
+        double[] z = getCoordinates(columns, "cartn_z", rowCount);
+
+        boolean modelStarted = false;
+        int modelNumber = 0;
+        for (int row = 0; row < rowCount; row++) {
+            builder.countRow();
+            if (model != null && (!modelStarted || model.getInt(row) != modelNumber)) {
+                modelStarted = true;
+                modelNumber = model.getInt(row);
+                builder.startModel();
+            }
+            String resName = getString(authComp, labelComp, row);
+            // modified amino acids are given as HETATM records
+            if (group != null && !"ATOM".equals(group.getString(row))
+                    && !("HETATM".equals(group.getString(row)) && PDBComplexBuilder.isModifiedAminoAcid(resName)))
+                continue;
+
+            String element = getString(typeSymbol, null, row);
+            String chain = getString(authAsym, labelAsym, row);
+            String atomName = getString(authAtom, labelAtom, row);
+            int residue = authSeq != null && !authSeq.isNull(row) ? authSeq.getInt(row)
+                    : labelSeq != null && !labelSeq.isNull(row) ? labelSeq.getInt(row) : 0;
+            String altLoc = getString(altId, null, row);
+            builder.addAtom(resName == null ? "" : resName,
+                    element == null ? "" : element.toUpperCase(Locale.ROOT), chain == null ? "" : chain, residue,
+                    altLoc == null || altLoc.isEmpty() ? ' ' : altLoc.charAt(0), atomName == null ? "" : atomName,
+                    id == null || id.isNull(row) ? 0 : id.getInt(row), x[row], y[row], z[row]);
+        }
+    }
+
+    /**
+     * Returns the decoded coordinates of the given column, zeros if the column is missing.
+     */
+    private static double[] getCoordinates(Map<String, Map<String, Object>> columns, String name, int rowCount) {
+        BinaryCIFColumn column = getColumn(columns, name);
+        return column == null ? new double[rowCount] : column.toDoubleArray();
+    }
+
+    /**
+     * Adds the rows of _struct_conf or _struct_sheet_range to the builder.
+     */
+    private static void readSecondaryStructure(String category, Map<String, Map<String, Object>> columns,
+                                               int rowCount, PDBComplexBuilder builder) {
+        HashMap<String, BinaryCIFColumn> decoded = new HashMap<>();
+        for (String name : columns.keySet())
+            decoded.put(name, getColumn(columns, name));
+        HashMap<String, String> values = new HashMap<>();
+        for (int row = 0; row < rowCount; row++) {
+            builder.countRow();
+            for (Map.Entry<String, BinaryCIFColumn> column : decoded.entrySet())
+                values.put(column.getKey(), column.getValue().getString(row));
+            MMCIFParser.addSecondaryStructure(category, values, builder);
+        }
+    }
+}
@@ -0,0 +1,317 @@
+package pdbexplorer.model.io;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+
+/**
+ * This class splits a CIF file into tokens while reading it from a Reader, such that files of any size can be read
+ * without holding them in memory. Each token is one of a data block header (data_), the start of a loop (loop_), a tag
+ * (starting with an underscore) or a value. Values can be unquoted, quoted with single or double quotes, or text fields
+ * enclosed by lines starting with a semicolon. Comments are skipped.
+ * The text of the current token is kept in a reusable buffer; numbers can be parsed from it directly without creating
+ * a String.
+ */
+public class CIFTokenizer {
+    public static final int DATA = 0;
+    public static final int LOOP = 1;
+    public static final int TAG = 2;
+    public static final int VALUE = 3;
+    private static final double[] POWERS_OF_TEN = {1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15};
+
+    private final Reader reader;
+    private final char[] buffer = new char[1 << 16];
+    private int position = 0;
+    private int limit = 0;
+    private boolean atLineStart = true;
+    private long lines = 0;
+
+    private char[] token = new char[256];
+    private int length;
+    private int type;
+    private boolean quoted;
+
+    /**
+     * Constructor for a CIFTokenizer object.
+     * @param reader (Reader): the CIF file
+     */
+    public CIFTokenizer(Reader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * Reads the next character without consuming it, returns -1 at the end of the file.
+     */
+    private int peek() {
+        if (position == limit) {
+            try {
+                limit = reader.read(buffer, 0, buffer.length);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            position = 0;
+            if (limit <= 0) {
+                limit = 0;
+                return -1;
+            }
+        }
+        return buffer[position];
+    }
+
+    /**
+     * Consumes the next character and returns it, returns -1 at the end of the file.
+     */
+    private int read() {
+        int c = peek();
+        if (c != -1) {
+            position++;
+            atLineStart = c == '\n' || c == '\r';
+            if (c == '\n')
+                lines++;
+        }
+        return c;
+    }
+
+    /**
+     * Returns the number of line breaks read so far.
+     * @return long: number of lines read
+     */
+    public long getLines() {
+        return lines;
+    }
+
+    /**
+     * Appends a character to the token buffer.
+     */
+    private void append(int c) {
+        if (length == token.length) {
+            char[] larger = new char[2 * length];
+            System.arraycopy(token, 0, larger, 0, length);
+            token = larger;
+        }
+        token[length++] = (char) c;
+    }
+
+    /**
+     * Advances to the next token.
+     * @return boolean: false if the end of the file has been reached
+     */
+    public boolean next() {
+        length = 0;
+        quoted = false;
+        int c;
+        // Skip whitespace and comments
+        while (true) {
+            boolean lineStart = atLineStart;
+            c = peek();
+            if (c == -1)
+                return false;
+            if (c == '#') {
+                while (c != -1 && c != '\n' && c != '\r')
+                    c = read() == -1 ? -1 : peek();
+            } else if (c == ';' && lineStart) {
+                readTextField();
+                return true;
+            } else if (c <= ' ') {
+                read();
+            } else {
+                break;
+            }
+        }
+
+        if (c == '\'' || c == '"') {
+            readQuoted((char) c);
+            return true;
+        }
+        while (c > ' ') {
+            append(read());
+            c = peek();
+        }
+        type = tokenType();
+        return true;
+    }
+
+    /**
+     * Determines the type of an unquoted token.
+     */
+    private int tokenType() {
+        if (token[0] == '_')
+            return TAG;
+        if (length >= 5 && (token[4] == '_') && startsWithIgnoreCase("data"))
+            return DATA;
+        if (length == 5 && startsWithIgnoreCase("loop_"))
+            return LOOP;
+        return VALUE;
+    }
+
+    private boolean startsWithIgnoreCase(String prefix) {
+        for (int i = 0; i < prefix.length(); i++) {
+            if (Character.toLowerCase(token[i]) != prefix.charAt(i))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Reads a value enclosed in quotes. The closing quote has to be followed by whitespace, other quote characters
+     * belong to the value.
+     */
+    private void readQuoted(char quote) {
+        read(); // opening quote
+        type = VALUE;
+        quoted = true;
+        while (true) {
+            int c = read();
+            if (c == -1 || c == '\n' || c == '\r')
+                return;
+            if (c == quote) {
+                int following = peek();
+                if (following == -1 || following <= ' ')
+                    return;
+            }
+            append(c);
+        }
+    }
+
+    /**
+     * Reads a text field, i.e. the lines between a line starting with a semicolon and the next such line.
+     */
+    private void readTextField() {
+        read(); // opening semicolon
+        type = VALUE;
+        quoted = true;
+        while (true) {
+            boolean lineStart = atLineStart;
+            int c = peek();
+            if (c == -1)
+                break;
+            if (c == ';' && lineStart) {
+                read();
+                break;
+            }
+            append(read());
+        }
+        // the line break before the closing semicolon is not part of the value
+        while (length > 0 && (token[length - 1] == '\n' || token[length - 1] == '\r'))
+            length--;
+    }
+
+    /**
+     * Returns the type of the current token, one of DATA, LOOP, TAG and VALUE.
+     * @return int: token type
+     */
+    public int getType() {
+        return type;
+    }
+
+    /**
+     * Returns whether the current value is missing or unknown, i.e. an unquoted '.' or '?'.
+     * @return boolean: true for null values
+     */
+    public boolean isNull() {
+        return !quoted && length == 1 && (token[0] == '.' || token[0] == '?');
+    }
+
+    /**
+     * Returns the text of the current token.
+     * @return String: token text
+     */
+    public String getText() {
+        return new String(token, 0, length);
+    }
+
+    /**
+     * Returns whether the text of the current token equals the given String.
+     * @param text (String): text to compare with
+     * @return boolean: true if equal
+     */
+    public boolean textEquals(String text) {
+        if (text.length() != length)
+            return false;
+        for (int i = 0; i < length; i++) {
+            if (token[i] != text.charAt(i))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the first character of the current token.
+     * @return char: first character, ' ' for empty tokens
+     */
+    public char getFirstChar() {
+        return length == 0 ? ' ' : token[0];
+    }
+
+    /**
+     * Parses the current token as integer.
+     * @return int: the value
+     * @throws NumberFormatException if the token is not an integer
+     */
+    public int getInt() {
+        if (length == 0)
+            throw new NumberFormatException("Empty value");
+        int i = 0;
+        boolean negative = token[0] == '-';
+        if (negative || token[0] == '+')
+            i++;
+        if (i == length)
+            throw new NumberFormatException(getText());
+        int value = 0;
+        for (; i < length; i++) {
+            int digit = token[i] - '0';
+            if (digit < 0 || digit > 9)
+                throw new NumberFormatException(getText());
+            value = 10 * value + digit;
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * Parses the current token as floating point number. Plain decimal numbers as used for coordinates are parsed
+     * directly, other notations are handed to Double.parseDouble. Standard uncertainties in parentheses are ignored.
+     * @return double: the value
+     * @throws NumberFormatException if the token is not a number
+     */
+    public double getDouble() {
+        int i = 0;
+        boolean negative = length > 0 && token[0] == '-';
+        if (length > 0 && (negative || token[0] == '+'))
+            i++;
+        long mantissa = 0;
+        int digits = 0;
+        int scale = 0;
+        boolean point = false;
+        for (; i < length; i++) {
+            char c = token[i];
+            if (c >= '0' && c <= '9') {
+                if (digits == 15) // beyond this, the division below might not be rounded correctly
+                    return parseSlow();
+                mantissa = 10 * mantissa + (c - '0');
+                digits++;
+                if (point)
+                    scale++;
+            } else if (c == '.' && !point) {
+                point = true;
+            } else if (c == '(') {
+                break;
+            } else {
+                return parseSlow();
+            }
+        }
+        if (digits == 0)
+            throw new NumberFormatException(getText());
+        double value = scale < POWERS_OF_TEN.length ? mantissa / POWERS_OF_TEN[scale] : parseSlow();
+        return negative ? -value : value;
+    }
+
+    /**
+     * Parses the current token with Double.parseDouble, ignoring a standard uncertainty in parentheses.
+     */
+    private double parseSlow() {
+        String text = getText();
+        int parenthesis = text.indexOf('(');
+        return Double.parseDouble(parenthesis >= 0 ? text.substring(0, parenthesis) : text);
+    }
+}
@@ -0,0 +1,283 @@
+package pdbexplorer.model.io;
+
+import pdbexplorer.model.profiling.ParseEvent;
+import pdbexplorer.model.protein.PDBComplex;
+import pdbexplorer.model.protein.PDBPolymer;
+
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+/**
+ * This class parses files in mmCIF (PDBx) format, the format in which large structures like ribosomes are distributed
+ * since they do not fit into the PDB format. The file is read as stream of tokens; the atoms of the _atom_site loop
+ * are read column by column into the same model as the PDB parser produces, without building a tree of all items of
+ * the file. Secondary structure is read from the _struct_conf (helices) and _struct_sheet_range (strands) categories.
+ * Like in PDB files, author chain IDs and residue numbers are used if present.
+ */
+public class MMCIFParser {
+    // roles of the _atom_site columns used
+    private static final int GROUP = 0, ID = 1, TYPE_SYMBOL = 2, LABEL_ATOM = 3, AUTH_ATOM = 4, ALT_ID = 5,
+            LABEL_COMP = 6, AUTH_COMP = 7, LABEL_ASYM = 8, AUTH_ASYM = 9, LABEL_SEQ = 10, AUTH_SEQ = 11, X = 12,
+            Y = 13, Z = 14, MODEL = 15;
+    private static final List<String> ATOM_SITE_COLUMNS = List.of("group_pdb", "id", "type_symbol", "label_atom_id",
+            "auth_atom_id", "label_alt_id", "label_comp_id", "auth_comp_id", "label_asym_id", "auth_asym_id",
+            "label_seq_id", "auth_seq_id", "cartn_x", "cartn_y", "cartn_z", "pdbx_pdb_model_num");
+
+    /**
+     * Returns whether the given file content is in mmCIF format, i.e. starts with a data block.
+     * @param content (String): content of a structure file
+     * @return boolean: true for mmCIF files
+     */
+    public static boolean isMMCIF(String content) {
+        int i = 0;
+        while (i < content.length()) {
+            char c = content.charAt(i);
+            if (c == '#') {
+                while (i < content.length() && content.charAt(i) != '\n')
+                    i++;
+            } else if (Character.isWhitespace(c)) {
+                i++;
+            } else {
+                return content.regionMatches(true, i, "data_", 0, 5);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Parses the given mmCIF file.
+     * @param content (String): the mmCIF file in String format
+     * @return PDBComplex: protein complex object
+     */
+    public static PDBComplex parse(String content) {
+        return parse(new StringReader(content));
+    }
+
+    /**
+     * Parses an mmCIF file read from the given Reader. Only the first data block is read.
+     * @param reader (Reader): the mmCIF file
+     * @return PDBComplex: protein complex object
+     */
+    public static PDBComplex parse(Reader reader) {
+        return parse(reader, null, null);
+    }
+
+    /**
+     * Parses an mmCIF file read from the given Reader and passes on each chain as soon as it has been read completely.
+     * Only the first data block is read.
+     * @param reader (Reader): the mmCIF file
+     * @param polymers (Consumer): receives each completed polymer on the parsing thread, null if not needed
+     * @param cancelled (BooleanSupplier): checked every few rows, parsing stops with a CancellationException once it
+     * returns true; null if parsing cannot be cancelled
+     * @return PDBComplex: protein complex object
+     */
+    public static PDBComplex parse(Reader reader, Consumer<PDBPolymer> polymers, BooleanSupplier cancelled) {
+        ParseEvent event = new ParseEvent();
+        event.begin();
+        CIFTokenizer tokenizer = new CIFTokenizer(reader);
+        PDBComplexBuilder builder = new PDBComplexBuilder();
+        builder.setPolymerListener(polymers);
+        builder.setCancellation(cancelled);
+
+        // items given as single tag-value pairs outside of loops, collected per category
+        String itemCategory = null;
+        HashMap<String, String> items = new HashMap<>();
+        boolean dataBlockSeen = false;
+
+        boolean hasToken = tokenizer.next();
+        while (hasToken) {
+            int type = tokenizer.getType();
+            if (type == CIFTokenizer.DATA) {
+                if (dataBlockSeen)
+                    break;
+                dataBlockSeen = true;
+                hasToken = tokenizer.next();
+            } else if (type == CIFTokenizer.LOOP) {
+                addItems(itemCategory, items, builder);
+                itemCategory = null;
+                hasToken = readLoop(tokenizer, builder);
+            } else if (type == CIFTokenizer.TAG) {
+                String tag = tokenizer.getText().toLowerCase(Locale.ROOT);
+                hasToken = tokenizer.next();
+                if (hasToken && tokenizer.getType() == CIFTokenizer.VALUE) {
+                    String category = getCategory(tag);
+                    if (!category.equals(itemCategory)) {
+                        addItems(itemCategory, items, builder);
+                        itemCategory = category;
+                    }
+                    items.put(getItem(tag), tokenizer.isNull() ? null : tokenizer.getText());
+                    hasToken = tokenizer.next();
+                }
+            } else {
+                hasToken = tokenizer.next(); // values without tag are ignored
+            }
+        }
+        addItems(itemCategory, items, builder);
+        PDBComplex complex = builder.build();
+        event.finish("mmCIF", tokenizer.getLines(), complex);
+        return complex;
+    }
+
+    /**
+     * Returns the category of a tag, e.g. _atom_site for _atom_site.Cartn_x.
+     */
+    private static String getCategory(String tag) {
+        int dot = tag.indexOf('.');
+        return dot < 0 ? tag : tag.substring(0, dot);
+    }
+
+    /**
+     * Returns the item name of a tag, e.g. cartn_x for _atom_site.Cartn_x.
+     */
+    private static String getItem(String tag) {
+        return tag.substring(tag.indexOf('.') + 1);
+    }
+
+    /**
+     * Adds the items of a category given outside of a loop (i.e. a single row) to the builder and clears them.
+     */
+    private static void addItems(String category, HashMap<String, String> items, PDBComplexBuilder builder) {
+        if (category != null && !items.isEmpty())
+            addSecondaryStructure(category, items, builder);
+        items.clear();
+    }
+
+    /**
+     * Reads a loop. Rows of _atom_site are added as atoms, rows of the secondary structure categories as helices and
+     * strands, all other loops are skipped. Returns whether there is a token after the loop.
+     */
+    private static boolean readLoop(CIFTokenizer tokenizer, PDBComplexBuilder builder) {
+        ArrayList<String> columns = new ArrayList<>();
+        boolean hasToken = tokenizer.next();
+        while (hasToken && tokenizer.getType() == CIFTokenizer.TAG) {
+            columns.add(tokenizer.getText().toLowerCase(Locale.ROOT));
+            hasToken = tokenizer.next();
+        }
+        if (columns.isEmpty())
+            return hasToken;
+        String category = getCategory(columns.get(0));
+
+        if (category.equals("_atom_site"))
+            return readAtomSite(tokenizer, builder, columns, hasToken);
+
+        boolean secondaryStructure = category.equals("_struct_conf") || category.equals("_struct_sheet_range");
+        HashMap<String, String> row = new HashMap<>();
+        int column = 0;
+        while (hasToken && tokenizer.getType() == CIFTokenizer.VALUE) {
+            if (secondaryStructure) {
+                row.put(getItem(columns.get(column)), tokenizer.isNull() ? null : tokenizer.getText());
+                if (column == columns.size() - 1)
+                    addSecondaryStructure(category, row, builder);
+            }
+            if (column == columns.size() - 1)
+                builder.countRow();
+            column = (column + 1) % columns.size();
+            hasToken = tokenizer.next();
+        }
+        return hasToken;
+    }
+
+    /**
+     * Adds a row of _struct_conf or _struct_sheet_range to the builder, rows of other categories are ignored. Item
+     * names are given in lower case without category, e.g. beg_auth_asym_id.
+     */
+    static void addSecondaryStructure(String category, HashMap<String, String> row,
+                                              PDBComplexBuilder builder) {
+        boolean helix = category.equals("_struct_conf");
+        if (!helix && !category.equals("_struct_sheet_range"))
+            return;
+        // _struct_conf also lists turns
+        if (helix && (row.get("conf_type_id") == null || !row.get("conf_type_id").startsWith("HELX")))
+            return;
+        String chain = firstNonNull(row.get("beg_auth_asym_id"), row.get("beg_label_asym_id"));
+        String start = firstNonNull(row.get("beg_auth_seq_id"), row.get("beg_label_seq_id"));
+        String stop = firstNonNull(row.get("end_auth_seq_id"), row.get("end_label_seq_id"));
+        if (chain == null || start == null || stop == null)
+            return;
+        try {
+            if (helix)
+                builder.addHelix(chain, Integer.parseInt(start), Integer.parseInt(stop));
+            else
+                builder.addSheet(chain, Integer.parseInt(start), Integer.parseInt(stop));
+        } catch (NumberFormatException ignored) {
+            // incomplete record, skip it
+        }
+    }
+
+    private static String firstNonNull(String first, String second) {
+        return first != null ? first : second;
+    }
+
+    /**
+     * Reads the rows of the _atom_site loop and adds them to the builder. Only the columns used are converted, numbers
+     * are parsed directly from the token. Returns whether there is a token after the loop.
+     */
+    private static boolean readAtomSite(CIFTokenizer tokenizer, PDBComplexBuilder builder, List<String> columns,
+                                        boolean hasToken) {
+        int[] roles = new int[columns.size()];
+        for (int i = 0; i < columns.size(); i++)
+            roles[i] = ATOM_SITE_COLUMNS.indexOf(getItem(columns.get(i)));
+
+        String[] text = new String[ATOM_SITE_COLUMNS.size()];
+        boolean isAtom = true, isHetero = false;
+        int id = 0, labelSeq = 0, authSeq = 0;
+        boolean hasAuthSeq = false;
+        char altLoc = ' ';
+        double x = 0, y = 0, z = 0;
+        String modelNumber = null;
+        int column = 0;
+
+        while (hasToken && tokenizer.getType() == CIFTokenizer.VALUE) {
+            int role = roles[column];
+            boolean isNull = tokenizer.isNull();
+            switch (role) {
+                case GROUP -> {
+                    isAtom = tokenizer.textEquals("ATOM");
+                    isHetero = tokenizer.textEquals("HETATM");
+                }
+                case ID -> id = isNull ? 0 : tokenizer.getInt();
+                case ALT_ID -> altLoc = isNull ? ' ' : tokenizer.getFirstChar();
+                case LABEL_SEQ -> labelSeq = isNull ? 0 : tokenizer.getInt();
+                case AUTH_SEQ -> {
+                    hasAuthSeq = !isNull;
+                    authSeq = isNull ? 0 : tokenizer.getInt();
+                }
+                case X -> x = tokenizer.getDouble();
+                case Y -> y = tokenizer.getDouble();
+                case Z -> z = tokenizer.getDouble();
+                case MODEL -> {
+                    if (!tokenizer.textEquals(modelNumber == null ? "" : modelNumber)) {
+                        modelNumber = tokenizer.getText();
+                        builder.startModel();
+                    }
+                }
+                case -1 -> { }
+                default -> text[role] = isNull ? null : tokenizer.getText();
+            }
+
+            if (column == columns.size() - 1) {
+                String resName = firstNonNull(text[AUTH_COMP], text[LABEL_COMP]);
+                // modified amino acids are given as HETATM records
+                if (isAtom || isHetero && PDBComplexBuilder.isModifiedAminoAcid(resName)) {
+                    String element = text[TYPE_SYMBOL] == null ? "" : text[TYPE_SYMBOL].toUpperCase(Locale.ROOT);
+                    String chain = firstNonNull(text[AUTH_ASYM], text[LABEL_ASYM]);
+                    String atomName = firstNonNull(text[AUTH_ATOM], text[LABEL_ATOM]);
+                    builder.addAtom(resName == null ? "" : resName, element, chain == null ? "" : chain,
+                            hasAuthSeq ? authSeq : labelSeq, altLoc, atomName == null ? "" : atomName, id, x, y, z);
+                }
+                builder.countRow();
+                column = 0;
+            } else {
+                column++;
+            }
+            hasToken = tokenizer.next();
+        }
+        return hasToken;
+    }
+}
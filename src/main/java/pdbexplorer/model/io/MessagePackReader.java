@@ -0,0 +1,117 @@
+package pdbexplorer.model.io;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class decodes data in MessagePack format, the binary serialization BinaryCIF files are written in. Values are
+ * returned as Java objects: maps as Map, arrays as List, strings as String, integers as Integer or Long, floating point
+ * numbers as Double, booleans as Boolean and nil as null. Binary data is returned as little-endian ByteBuffer sharing
+ * the input, such that large columns are not copied before they are decoded.
+ */
+public class MessagePackReader {
+    private final ByteBuffer buffer;
+
+    /**
+     * Constructor for a MessagePackReader object.
+     * @param data (byte[]): the encoded data
+     */
+    public MessagePackReader(byte[] data) {
+        this.buffer = ByteBuffer.wrap(data).order(ByteOrder.BIG_ENDIAN);
+    }
+
+    /**
+     * Reads the next value.
+     * @return Object: the decoded value
+     * @throws IllegalArgumentException if the data is not valid MessagePack or uses extension types
+     */
+    public Object read() {
+        try {
+            return readValue();
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Unexpected end of MessagePack data");
+        }
+    }
+
+    private Object readValue() {
+        int type = buffer.get() & 0xFF;
+        if (type <= 0x7F) // positive fixint
+            return type;
+        if (type >= 0xE0) // negative fixint
+            return type - 0x100;
+        if (type <= 0x8F)
+            return readMap(type & 0x0F);
+        if (type <= 0x9F)
+            return readArray(type & 0x0F);
+        if (type <= 0xBF)
+            return readString(type & 0x1F);
+
+        return switch (type) {
+            case 0xC0 -> null;
+            case 0xC2 -> false;
+            case 0xC3 -> true;
+            case 0xC4 -> readBinary(buffer.get() & 0xFF);
+            case 0xC5 -> readBinary(buffer.getShort() & 0xFFFF);
+            case 0xC6 -> readBinary(buffer.getInt());
+            case 0xCA -> (double) buffer.getFloat();
+            case 0xCB -> buffer.getDouble();
+            case 0xCC -> buffer.get() & 0xFF;
+            case 0xCD -> buffer.getShort() & 0xFFFF;
+            case 0xCE -> toNumber(buffer.getInt() & 0xFFFFFFFFL);
+            case 0xCF, 0xD3 -> toNumber(buffer.getLong());
+            case 0xD0 -> (int) buffer.get();
+            case 0xD1 -> (int) buffer.getShort();
+            case 0xD2 -> buffer.getInt();
+            case 0xD9 -> readString(buffer.get() & 0xFF);
+            case 0xDA -> readString(buffer.getShort() & 0xFFFF);
+            case 0xDB -> readString(buffer.getInt());
+            case 0xDC -> readArray(buffer.getShort() & 0xFFFF);
+            case 0xDD -> readArray(buffer.getInt());
+            case 0xDE -> readMap(buffer.getShort() & 0xFFFF);
+            case 0xDF -> readMap(buffer.getInt());
+            default -> throw new IllegalArgumentException("Unsupported MessagePack type 0x" + Integer.toHexString(type));
+        };
+    }
+
+    /**
+     * Returns integers that fit into an int as Integer, such that callers only need to handle Long for large values.
+     */
+    private static Number toNumber(long value) {
+        return value == (int) value ? Integer.valueOf((int) value) : Long.valueOf(value);
+    }
+
+    private Map<String, Object> readMap(int size) {
+        Map<String, Object> map = new LinkedHashMap<>();
+        for (int i = 0; i < size; i++) {
+            Object key = readValue();
+            map.put(String.valueOf(key), readValue());
+        }
+        return map;
+    }
+
+    private List<Object> readArray(int size) {
+        List<Object> list = new ArrayList<>(Math.min(size, 1024));
+        for (int i = 0; i < size; i++)
+            list.add(readValue());
+        return list;
+    }
+
+    private String readString(int length) {
+        String text = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length,
+                StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return text;
+    }
+
+    private ByteBuffer readBinary(int length) {
+        ByteBuffer binary = buffer.slice(buffer.position(), length).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.position(buffer.position() + length);
+        return binary;
+    }
+}
@@ -0,0 +1,273 @@
+package pdbexplorer.model.io;
+
+import javafx.geometry.Point3D;
+import pdbexplorer.model.analysis.SecondaryStructureAssignment;
+import pdbexplorer.model.protein.PDBAtom;
+import pdbexplorer.model.protein.PDBComplex;
+import pdbexplorer.model.protein.PDBMonomer;
+import pdbexplorer.model.protein.PDBPolymer;
+
+import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+/**
+ * This class assembles a PDBComplex from atoms given in file order, as read by the parsers of the different file
+ * formats. Atoms are grouped into residues, chains and models, such that all formats result in the same model: only
+ * non-hydrogen atoms of amino acid residues are kept, alternative conformers other than the first are left out, and
+ * residues are numbered as given by the author of the structure. Secondary structure ranges can be added at any time,
+ * they are assigned to the residues when the complex is built. A listener can be notified of each chain as soon as
+ * all of its atoms have been added, e.g. to display it while the rest of the file is still being read. The parsers
+ * count the rows they read with countRow, which stops parsing if it has been cancelled.
+ */
+public class PDBComplexBuilder {
+    private static final List<String> oneLetterCode = Arrays.asList("A", "C", "D", "E", "F", "H", "I", "K", "L", "M",
+            "N", "P", "Q", "R", "S", "T", "V", "W", "Y", "G", "O", "U", "X");
+    private static final List<String> threeLetterCode = Arrays.asList("ALA", "CYS", "ASP", "GLU", "PHE", "HIS",
+            "ILE", "LYS", "LEU", "MET", "ASN", "PRO", "GLN", "ARG", "SER", "THR", "VAL", "TRP", "TYR", "GLY", "PYL",
+            "SEC", "UNK");
+    // common modified amino acids and their standard amino acid, e.g. selenomethionine, phosphoserine
+    private static final Map<String, String> modifiedToStandard = Map.ofEntries(Map.entry("MSE", "MET"),
+            Map.entry("SEP", "SER"), Map.entry("TPO", "THR"), Map.entry("PTR", "TYR"), Map.entry("HYP", "PRO"),
+            Map.entry("MLY", "LYS"), Map.entry("M3L", "LYS"), Map.entry("KCX", "LYS"), Map.entry("LLP", "LYS"),
+            Map.entry("CSO", "CYS"), Map.entry("CSD", "CYS"), Map.entry("CME", "CYS"), Map.entry("OCS", "CYS"),
+            Map.entry("PCA", "GLU"), Map.entry("CGU", "GLU"));
+    // unknown amino acids are added as "X"
+    private static final Map<String, String> threeToOneLetterCode = createThreeToOneLetterCode();
+    // number of rows read between two checks whether parsing has been cancelled
+    private static final int CANCELLATION_INTERVAL = 1 << 10;
+
+    private String previousChainID = "";
+    private int previousResidueID = Integer.MAX_VALUE;
+    private String previousResName = "";
+    private ArrayList<PDBAtom> atoms = new ArrayList<>();
+    private ArrayList<PDBMonomer> monomers = new ArrayList<>();
+    private final ArrayList<PDBPolymer> complex = new ArrayList<>();
+    private int polymerCount = 1;
+    private final HashMap<String, HashSet<Integer>> helices = new HashMap<>();
+    private final HashMap<String, HashSet<Integer>> sheets = new HashMap<>();
+    private int model = 0;
+    private int previousModel = 0;
+    private final TreeSet<String> chains = new TreeSet<>();
+    private boolean containsProtein = false;
+    private Consumer<PDBPolymer> polymerListener;
+    private BooleanSupplier cancelled;
+    private long rows = 0;
+
+    /**
+     * Creates the map from three-letter to one-letter codes of amino acids, including D-amino acids and modified amino
+     * acids, which are mapped to the code of their standard amino acid.
+     */
+    private static Map<String, String> createThreeToOneLetterCode() {
+        List<String> threeLetterDAA = Arrays.asList("DAL", "DCY", "DAS", "DGL", "DPN", "DHI", "DIL",
+                "DLY", "DLE", "MED", "DSG", "DPR", "DGN", "DAR", "DSN", "DTH", "DVA", "DTR", "DTY");
+
+        HashMap<String, String> map = new HashMap<>();
+        for (int i = 0; i < oneLetterCode.size(); i++) {
+            map.put(threeLetterCode.get(i), oneLetterCode.get(i));
+            if (i < oneLetterCode.size() - 4)
+                map.put(threeLetterDAA.get(i), oneLetterCode.get(i));
+        }
+        for (Map.Entry<String, String> modified : modifiedToStandard.entrySet())
+            map.put(modified.getKey(), map.get(modified.getValue()));
+        return map;
+    }
+
+    /**
+     * Returns whether the residue is a modified amino acid, which is part of the chain although its atoms are given as
+     * HETATM records, e.g. selenomethionine (MSE).
+     * @param resName (String): three-letter code of the residue
+     * @return boolean: true for known modified amino acids
+     */
+    static boolean isModifiedAminoAcid(String resName) {
+        return resName != null && modifiedToStandard.containsKey(resName);
+    }
+
+    /**
+     * Returns the three-letter code of the standard amino acid with the given one-letter code, e.g. for writing files.
+     * Modified residues are read as their standard amino acid, so the original name is not restored.
+     * @param code (String): one-letter code
+     * @return String: three-letter code, UNK for unknown codes
+     */
+    static String toThreeLetterCode(String code) {
+        int index = code == null ? -1 : oneLetterCode.indexOf(code);
+        return index < 0 ? "UNK" : threeLetterCode.get(index);
+    }
+
+    /**
+     * Sets the listener that is notified of each polymer (a chain of a model) as soon as it is complete. The
+     * secondary structure of its residues is only assigned when the complex is built.
+     * @param polymerListener (Consumer): receives each completed polymer, on the thread adding the atoms
+     */
+    public void setPolymerListener(Consumer<PDBPolymer> polymerListener) {
+        this.polymerListener = polymerListener;
+    }
+
+    /**
+     * Sets the check whether parsing has been cancelled, e.g. Task.isCancelled of the task running the parser.
+     * @param cancelled (BooleanSupplier): returns true once parsing should stop, null if it cannot be cancelled
+     */
+    public void setCancellation(BooleanSupplier cancelled) {
+        this.cancelled = cancelled;
+    }
+
+    /**
+     * Counts a row read by a parser, e.g. a line of a PDB file or a row of a loop of an mmCIF file, and checks every
+     * CANCELLATION_INTERVAL rows whether parsing has been cancelled.
+     * @throws CancellationException if parsing has been cancelled
+     */
+    public void countRow() {
+        if (cancelled != null && ++rows % CANCELLATION_INTERVAL == 0 && cancelled.getAsBoolean())
+            throw new CancellationException();
+    }
+
+    /**
+     * Starts a new model, all following atoms belong to it. Models are numbered from 1, atoms added before the first
+     * model is started belong to model 0.
+     */
+    public void startModel() {
+        model += 1;
+    }
+
+    /**
+     * Adds a helix ranging over the given residues of a chain.
+     * @param chain (String): the chain ID
+     * @param startResidue (int): the first residue of the helix
+     * @param stopResidue (int): the last residue of the helix
+     */
+    public void addHelix(String chain, int startResidue, int stopResidue) {
+        HashSet<Integer> residues = helices.computeIfAbsent(chain, k -> new HashSet<>());
+        for (int i = startResidue; i <= stopResidue; i++)
+            residues.add(i);
+    }
+
+    /**
+     * Adds a sheet strand ranging over the given residues of a chain.
+     * @param chain (String): the chain ID
+     * @param startResidue (int): the first residue of the strand
+     * @param stopResidue (int): the last residue of the strand
+     */
+    public void addSheet(String chain, int startResidue, int stopResidue) {
+        HashSet<Integer> residues = sheets.computeIfAbsent(chain, k -> new HashSet<>());
+        for (int i = startResidue; i <= stopResidue; i++)
+            residues.add(i);
+    }
+
+    /**
+     * Adds an atom of a polymer (ATOM record). Atoms of residues that are not amino acids and hydrogen atoms are
+     * ignored.
+     * @param resName (String): three-letter code of the residue
+     * @param atomSymbol (String): element symbol
+     * @param chainID (String): ID of the chain
+     * @param residueID (int): number of the residue
+     * @param altLoc (char): alternative location indicator, ' ' if there is none
+     * @param atomFullName (String): name of the atom within the residue, e.g. CA
+     * @param atomID (int): serial number of the atom
+     * @param x (double): x coordinate
+     * @param y (double): y coordinate
+     * @param z (double): z coordinate
+     */
+    public void addAtom(String resName, String atomSymbol, String chainID, int residueID, char altLoc,
+                        String atomFullName, int atomID, double x, double y, double z) {
+        // only interested in proteins -> amino acids 3-letter, others 1 or 2
+        if (resName.length() != 3)
+            return;
+        containsProtein = true;
+        if (atomSymbol.equals("H")) // ignore H-atoms
+            return;
+
+        chains.add(chainID);
+        // Set previous chain ID and model number in case of start of new chain
+        if (monomers.isEmpty()) {
+            previousChainID = chainID;
+            previousModel = model;
+        }
+
+        // Set previous residue ID and name at beginning
+        if (previousResidueID == Integer.MAX_VALUE)
+            previousResidueID = residueID;
+        if (previousResName.equals(""))
+            previousResName = resName;
+
+        if (previousResidueID != residueID) {
+            addMonomer();
+            // Reset atoms list as well as info of previous residue
+            atoms = new ArrayList<>();
+            previousResidueID = residueID;
+            previousResName = resName;
+        }
+
+        // Add Polymer to list if new model is started
+        if (model != previousModel) {
+            addPolymer();
+            monomers = new ArrayList<>();
+            polymerCount = 1;
+        } else if (!chainID.equals(previousChainID)) { // Add Polymer to list if new chain is started
+            addPolymer();
+            monomers = new ArrayList<>();
+            polymerCount += 1;
+        }
+
+        // Add new atom to atoms list; alternative conformers are not taken into account
+        if (altLoc == 'A' || altLoc == ' ')
+            atoms.add(new PDBAtom(atomSymbol, atomFullName, atomID, new Point3D(x, y, z), model, chainID));
+    }
+
+    /**
+     * Adds the atoms collected for the previous residue as monomer.
+     */
+    private void addMonomer() {
+        if (!previousResName.isEmpty() && !threeToOneLetterCode.containsKey(previousResName))
+            previousResName = "UNK"; // for non-typical or unknown residues -> set to X
+        monomers.add(new PDBMonomer(atoms, threeToOneLetterCode.get(previousResName), previousResidueID));
+    }
+
+    /**
+     * Adds the monomers collected for the previous chain as polymer and notifies the listener.
+     */
+    private void addPolymer() {
+        PDBPolymer polymer = new PDBPolymer(monomers, polymerCount, previousChainID, previousModel);
+        complex.add(polymer);
+        if (polymerListener != null)
+            polymerListener.accept(polymer);
+    }
+
+    /**
+     * Returns the number of models started so far.
+     * @return int: number of models
+     */
+    public int getNumberOfModels() {
+        return model;
+    }
+
+    /**
+     * Builds the complex from all atoms added. Secondary structure is taken from the added helices and sheets or, if
+     * there are none, assigned from the backbone geometry.
+     * @return PDBComplex: protein complex object
+     */
+    public PDBComplex build() {
+        // add last monomer to list of monomers and last chain of monomers to complex as polymer
+        addMonomer();
+        addPolymer();
+
+        for (PDBPolymer polymer : complex) {
+            HashSet<Integer> helix = helices.getOrDefault(polymer.getLabel(), new HashSet<>());
+            HashSet<Integer> sheet = sheets.getOrDefault(polymer.getLabel(), new HashSet<>());
+            for (PDBMonomer monomer : polymer.getMonomers()) {
+                if (helix.contains(monomer.getId()))
+                    monomer.setSecondaryStructureType("H");
+                else if (sheet.contains(monomer.getId()))
+                    monomer.setSecondaryStructureType("S");
+            }
+        }
+
+        PDBComplex pdbComplex = new PDBComplex(complex, model, new ArrayList<>(chains), containsProtein);
+
+        // Many files (e.g. cryo-EM or predicted models) have no secondary structure records -> assign from geometry
+        if (containsProtein && helices.isEmpty() && sheets.isEmpty())
+            SecondaryStructureAssignment.assign(pdbComplex);
+
+        return pdbComplex;
+    }
+}
@@ -0,0 +1,284 @@
+package pdbexplorer.model.io;
+
+import javafx.geometry.Point3D;
+import javafx.util.Pair;
+import pdbexplorer.model.profiling.ParseEvent;
+import pdbexplorer.model.protein.PDBAtom;
+import pdbexplorer.model.protein.PDBComplex;
+import pdbexplorer.model.protein.PDBMonomer;
+import pdbexplorer.model.protein.PDBPolymer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * This class writes a parsed PDBComplex into a compact binary snapshot and reads it back, such that an entry opened
+ * before does not need to be parsed again. The snapshot holds all strings once in a table and the residue, chain and
+ * atom data as tables of integers, followed by the coordinates and optionally the bonds of each chain. Reading loads
+ * the file with one read and copies the tables with bulk reads, so it is bound by I/O rather than by parsing. The file
+ * is not memory-mapped, such that it can be replaced on all platforms while the application runs.
+ * A snapshot stores a digest of the file it was created from (see PDBFileCache.getDigest) and is only used for the
+ * same file; snapshots of an older version of the format are ignored.
+ * File format (big-endian): magic "PDBS", version, flags, source digest (length and UTF-8 bytes), number of models,
+ * protein flag, string table, chain table, polymer table, monomer table, atom table, coordinates, bonds (if flagged).
+ */
+public class PDBSnapshot {
+    private static final int MAGIC = 0x50444253; // "PDBS"
+    public static final int VERSION = 2;
+    private static final int FLAG_BONDS = 1;
+    // ints per row of the tables
+    private static final int POLYMER_INTS = 4, MONOMER_INTS = 4, ATOM_INTS = 5;
+
+    /**
+     * Writes a snapshot of the given complex. The file is written to a temporary file first and then moved, such that
+     * readers never see a partial snapshot.
+     * @param complex (PDBComplex): the parsed complex
+     * @param source (String): digest of the file the complex was parsed from
+     * @param path (Path): where to write the snapshot
+     * @param includeBonds (boolean): whether to compute and store the bonds of each chain
+     * @throws IOException in case the snapshot cannot be written
+     */
+    public static void write(PDBComplex complex, String source, Path path, boolean includeBonds) throws IOException {
+        byte[] sourceBytes = source.getBytes(StandardCharsets.UTF_8);
+        LinkedHashMap<String, Integer> strings = new LinkedHashMap<>();
+        ArrayList<PDBPolymer> polymers = complex.getPolymers();
+
+        int[] chains = new int[complex.getChains().size()];
+        for (int i = 0; i < chains.length; i++)
+            chains[i] = indexOf(strings, complex.getChains().get(i));
+
+        int monomerCount = 0, atomCount = 0;
+        for (PDBPolymer polymer : polymers) {
+            monomerCount += polymer.getMonomers().size();
+            for (PDBMonomer monomer : polymer.getMonomers())
+                atomCount += monomer.getAtoms().size();
+        }
+        int[] polymerTable = new int[POLYMER_INTS * polymers.size()];
+        int[] monomerTable = new int[MONOMER_INTS * monomerCount];
+        int[] atomTable = new int[ATOM_INTS * atomCount];
+        double[] coordinates = new double[3 * atomCount];
+        int p = 0, m = 0, a = 0;
+        for (PDBPolymer polymer : polymers) {
+            polymerTable[p++] = polymer.getNumber();
+            polymerTable[p++] = indexOf(strings, polymer.getLabel());
+            polymerTable[p++] = polymer.getModelNumber();
+            polymerTable[p++] = polymer.getMonomers().size();
+            for (PDBMonomer monomer : polymer.getMonomers()) {
+                monomerTable[m++] = indexOf(strings, monomer.getLabel());
+                monomerTable[m++] = monomer.getId();
+                monomerTable[m++] = indexOf(strings, monomer.getSecondaryStructureType());
+                monomerTable[m++] = monomer.getAtoms().size();
+                for (PDBAtom atom : monomer.getAtoms()) {
+                    atomTable[ATOM_INTS * a] = indexOf(strings, atom.getLetter());
+                    atomTable[ATOM_INTS * a + 1] = indexOf(strings, atom.getRole());
+                    atomTable[ATOM_INTS * a + 2] = atom.getId();
+                    atomTable[ATOM_INTS * a + 3] = atom.getModel();
+                    atomTable[ATOM_INTS * a + 4] = indexOf(strings, atom.getChain());
+                    coordinates[3 * a] = atom.getCoordinates().getX();
+                    coordinates[3 * a + 1] = atom.getCoordinates().getY();
+                    coordinates[3 * a + 2] = atom.getCoordinates().getZ();
+                    a++;
+                }
+            }
+        }
+
+        // bonds as pairs of atom indices within their chain
+        ArrayList<int[]> bonds = new ArrayList<>();
+        if (includeBonds) {
+            for (PDBPolymer polymer : polymers) {
+                IdentityHashMap<PDBAtom, Integer> index = new IdentityHashMap<>();
+                for (PDBAtom atom : polymer.getAtoms())
+                    index.put(atom, index.size());
+                ArrayList<Pair<PDBAtom, PDBAtom>> polymerBonds = polymer.getBonds();
+                int[] pairs = new int[2 * polymerBonds.size()];
+                for (int i = 0; i < polymerBonds.size(); i++) {
+                    pairs[2 * i] = index.get(polymerBonds.get(i).getKey());
+                    pairs[2 * i + 1] = index.get(polymerBonds.get(i).getValue());
+                }
+                bonds.add(pairs);
+            }
+        }
+
+        List<byte[]> encoded = strings.keySet().stream().map(s -> s.getBytes(StandardCharsets.UTF_8)).toList();
+        long size = 4L * 6 + sourceBytes.length + 4;
+        for (byte[] bytes : encoded)
+            size += 4 + bytes.length;
+        size += 4L * (4 + chains.length + polymerTable.length + monomerTable.length + atomTable.length)
+                + 8L * coordinates.length;
+        for (int[] pairs : bonds)
+            size += 4 + 4L * pairs.length;
+        if (size > Integer.MAX_VALUE)
+            throw new IOException("Complex too large for a snapshot");
+
+        ByteBuffer buffer = ByteBuffer.allocate((int) size);
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(includeBonds ? FLAG_BONDS : 0)
+                .putInt(sourceBytes.length).put(sourceBytes)
+                .putInt(complex.getNumberOfModels()).putInt(complex.isProtein() ? 1 : 0);
+        buffer.putInt(encoded.size());
+        for (byte[] bytes : encoded)
+            buffer.putInt(bytes.length).put(bytes);
+        putInts(buffer, chains);
+        putInts(buffer, polymerTable);
+        putInts(buffer, monomerTable);
+        putInts(buffer, atomTable);
+        buffer.asDoubleBuffer().put(coordinates);
+        buffer.position(buffer.position() + 8 * coordinates.length);
+        for (int[] pairs : bonds)
+            putInts(buffer, pairs);
+        buffer.flip();
+
+        Files.createDirectories(path.toAbsolutePath().getParent());
+        Path temporary = Files.createTempFile(path.toAbsolutePath().getParent(), path.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+                while (buffer.hasRemaining())
+                    channel.write(buffer);
+            }
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * Reads the snapshot at the given path if it has been created from the given file.
+     * @param path (Path): the snapshot
+     * @param source (String): digest of the file the complex should be parsed from
+     * @return PDBComplex: the complex or null if there is no snapshot for this file in the current format
+     * @throws IOException in case the snapshot cannot be read or is damaged
+     */
+    public static PDBComplex read(Path path, String source) throws IOException {
+        if (!Files.exists(path))
+            return null;
+        ParseEvent event = new ParseEvent();
+        event.begin();
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE)
+                throw new IOException("Damaged snapshot " + path);
+            buffer = ByteBuffer.allocate((int) channel.size());
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                // read the whole file
+            }
+            buffer.flip();
+        }
+        try {
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION)
+                return null;
+            int flags = buffer.getInt();
+            byte[] sourceBytes = new byte[buffer.getInt()];
+            buffer.get(sourceBytes);
+            if (!source.equals(new String(sourceBytes, StandardCharsets.UTF_8)))
+                return null;
+            PDBComplex complex = readComplex(buffer, flags);
+            event.finish("snapshot", 0, complex);
+            return complex;
+        } catch (RuntimeException e) { // e.g. truncated file or invalid index
+            throw new IOException("Damaged snapshot " + path, e);
+        }
+    }
+
+    /**
+     * Reconstructs the complex from the tables following the header.
+     */
+    private static PDBComplex readComplex(ByteBuffer buffer, int flags) {
+        int numberOfModels = buffer.getInt();
+        boolean protein = buffer.getInt() != 0;
+        String[] strings = new String[buffer.getInt()];
+        for (int i = 0; i < strings.length; i++) {
+            byte[] bytes = new byte[buffer.getInt()];
+            buffer.get(bytes);
+            strings[i] = new String(bytes, StandardCharsets.UTF_8);
+        }
+        int[] chainTable = getInts(buffer);
+        int[] polymerTable = getInts(buffer);
+        int[] monomerTable = getInts(buffer);
+        int[] atomTable = getInts(buffer);
+        int atomCount = atomTable.length / ATOM_INTS;
+        double[] coordinates = new double[3 * atomCount];
+        buffer.asDoubleBuffer().get(coordinates);
+        buffer.position(buffer.position() + 8 * coordinates.length);
+
+        ArrayList<String> chains = new ArrayList<>(chainTable.length);
+        for (int chain : chainTable)
+            chains.add(strings[chain]);
+
+        ArrayList<PDBPolymer> polymers = new ArrayList<>(polymerTable.length / POLYMER_INTS);
+        int m = 0, a = 0;
+        for (int p = 0; p < polymerTable.length; p += POLYMER_INTS) {
+            int monomerCount = polymerTable[p + 3];
+            ArrayList<PDBMonomer> monomers = new ArrayList<>(monomerCount);
+            ArrayList<PDBAtom> polymerAtoms = new ArrayList<>();
+            for (int i = 0; i < monomerCount; i++, m += MONOMER_INTS) {
+                int count = monomerTable[m + 3];
+                ArrayList<PDBAtom> atoms = new ArrayList<>(count);
+                for (int j = 0; j < count; j++, a++) {
+                    int row = ATOM_INTS * a;
+                    atoms.add(new PDBAtom(string(strings, atomTable[row]), string(strings, atomTable[row + 1]),
+                            atomTable[row + 2], new Point3D(coordinates[3 * a], coordinates[3 * a + 1],
+                            coordinates[3 * a + 2]), atomTable[row + 3], string(strings, atomTable[row + 4])));
+                }
+                polymerAtoms.addAll(atoms);
+                monomers.add(new PDBMonomer(atoms, string(strings, monomerTable[m]), monomerTable[m + 1],
+                        string(strings, monomerTable[m + 2])));
+            }
+            PDBPolymer polymer = new PDBPolymer(monomers, polymerTable[p], string(strings, polymerTable[p + 1]),
+                    polymerTable[p + 2]);
+            if ((flags & FLAG_BONDS) != 0) {
+                int[] pairs = getInts(buffer);
+                ArrayList<Pair<PDBAtom, PDBAtom>> bonds = new ArrayList<>(pairs.length / 2);
+                for (int i = 0; i < pairs.length; i += 2)
+                    bonds.add(new Pair<>(polymerAtoms.get(pairs[i]), polymerAtoms.get(pairs[i + 1])));
+                polymer.setBonds(bonds);
+            }
+            polymers.add(polymer);
+        }
+        return new PDBComplex(polymers, numberOfModels, chains, protein);
+    }
+
+    /**
+     * Returns the index of the given string in the string table, adding it if necessary; -1 stands for null.
+     */
+    private static int indexOf(LinkedHashMap<String, Integer> strings, String value) {
+        if (value == null)
+            return -1;
+        Integer index = strings.get(value);
+        if (index == null) {
+            index = strings.size();
+            strings.put(value, index);
+        }
+        return index;
+    }
+
+    private static String string(String[] strings, int index) {
+        return index < 0 ? null : strings[index];
+    }
+
+    /**
+     * Writes the length of the array followed by its values.
+     */
+    private static void putInts(ByteBuffer buffer, int[] values) {
+        buffer.putInt(values.length);
+        buffer.asIntBuffer().put(values);
+        buffer.position(buffer.position() + 4 * values.length);
+    }
+
+    /**
+     * Reads an array written by putInts.
+     */
+    private static int[] getInts(ByteBuffer buffer) {
+        int[] values = new int[buffer.getInt()];
+        IntBuffer view = buffer.asIntBuffer();
+        view.get(values);
+        buffer.position(buffer.position() + 4 * values.length);
+        return values;
+    }
+}
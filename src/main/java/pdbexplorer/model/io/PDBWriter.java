@@ -0,0 +1,333 @@
+package pdbexplorer.model.io;
+
+import javafx.concurrent.Task;
+import javafx.geometry.Point3D;
+import pdbexplorer.model.protein.PDBAtom;
+import pdbexplorer.model.protein.PDBComplex;
+import pdbexplorer.model.protein.PDBMonomer;
+import pdbexplorer.model.protein.PDBPolymer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * This class writes a protein complex in PDB format. The file is generated from the model rather than from the text
+ * it has been read from, such that only parts of the complex can be exported, e.g. a single model, the selected
+ * residues or the visible chains. Each record is formatted into a reusable line of fixed columns, without creating
+ * Strings for the numbers, and the lines are collected in a byte buffer that is written to the file channel whenever
+ * it is full. Secondary structure is written as HELIX and SHEET records, which are derived from the runs of residues
+ * of the same type in the first exported model of each chain.
+ */
+public class PDBWriter implements Closeable {
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int LINE_LENGTH = 80;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private final byte[] line = new byte[LINE_LENGTH + 1];
+    private int serial = 1;
+
+    /**
+     * This task writes the given part of a protein complex to a PDB file.
+     */
+    public static class WritePDB extends Task<Integer> {
+        private final PDBComplex complex;
+        private final String file;
+        private final Predicate<PDBPolymer> polymers;
+        private final Predicate<PDBMonomer> monomers;
+
+        /**
+         * Constructor of the WritePDB task.
+         * @param complex (PDBComplex): the protein complex
+         * @param file (String): path of the PDB file to write
+         * @param polymers (Predicate): returns true for the polymers (chains of one model) to export
+         * @param monomers (Predicate): returns true for the residues of these polymers to export
+         */
+        public WritePDB(PDBComplex complex, String file, Predicate<PDBPolymer> polymers,
+                        Predicate<PDBMonomer> monomers) {
+            this.complex = complex;
+            this.file = file;
+            this.polymers = polymers;
+            this.monomers = monomers;
+        }
+
+        /**
+         * Writes the PDB file.
+         * @return Integer: number of atoms written
+         * @throws IOException in case the file cannot be written
+         */
+        @Override
+        public Integer call() throws IOException {
+            return write(complex, Path.of(file), polymers, monomers);
+        }
+    }
+
+    /**
+     * Writes the given part of a protein complex to a PDB file. MODEL records are only written if residues of more
+     * than one model are exported.
+     * @param complex (PDBComplex): the protein complex
+     * @param file (Path): the PDB file, replaced if it exists
+     * @param polymers (Predicate): returns true for the polymers (chains of one model) to export
+     * @param monomers (Predicate): returns true for the residues of these polymers to export
+     * @return int: number of atoms written
+     * @throws IOException in case the file cannot be written
+     */
+    public static int write(PDBComplex complex, Path file, Predicate<PDBPolymer> polymers,
+                            Predicate<PDBMonomer> monomers) throws IOException {
+        // collect the exported residues per polymer, in the order of the complex (models, then chains)
+        List<PDBPolymer> exported = new ArrayList<>();
+        List<List<PDBMonomer>> residues = new ArrayList<>();
+        Set<Integer> models = new HashSet<>();
+        for (PDBPolymer polymer : complex.getPolymers()) {
+            if (!polymers.test(polymer))
+                continue;
+            List<PDBMonomer> included = new ArrayList<>();
+            for (PDBMonomer monomer : polymer.getMonomers()) {
+                if (monomers.test(monomer))
+                    included.add(monomer);
+            }
+            if (!included.isEmpty()) {
+                exported.add(polymer);
+                residues.add(included);
+                models.add(polymer.getModelNumber());
+            }
+        }
+
+        try (PDBWriter writer = new PDBWriter(file)) {
+            writer.writeSecondaryStructure(exported, residues);
+            boolean multipleModels = models.size() > 1;
+            int model = -1;
+            for (int i = 0; i < exported.size(); i++) {
+                PDBPolymer polymer = exported.get(i);
+                if (multipleModels && polymer.getModelNumber() != model) {
+                    if (model != -1)
+                        writer.writeRecord("ENDMDL");
+                    model = polymer.getModelNumber();
+                    writer.writeModel(model);
+                }
+                writer.writeChain(polymer.getLabel(), residues.get(i));
+            }
+            if (multipleModels && model != -1)
+                writer.writeRecord("ENDMDL");
+            writer.writeRecord("END");
+            return writer.serial - 1;
+        }
+    }
+
+    /**
+     * Constructor for a PDBWriter object, opens the file.
+     */
+    private PDBWriter(Path file) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    /**
+     * Writes HELIX and SHEET records for the first exported model of each chain. Consecutive residues with the same
+     * secondary structure type form one record.
+     */
+    private void writeSecondaryStructure(List<PDBPolymer> polymers, List<List<PDBMonomer>> residues)
+            throws IOException {
+        Set<String> chains = new HashSet<>();
+        int helices = 0, strands = 0;
+        for (int i = 0; i < polymers.size(); i++) {
+            String chain = polymers.get(i).getLabel();
+            if (!chains.add(chain))
+                continue;
+            List<PDBMonomer> monomers = residues.get(i);
+            int start = 0;
+            while (start < monomers.size()) {
+                String type = monomers.get(start).getSecondaryStructureType();
+                int end = start;
+                while (end + 1 < monomers.size() && type != null
+                        && type.equals(monomers.get(end + 1).getSecondaryStructureType()))
+                    end++;
+                if ("H".equals(type))
+                    writeHelix(++helices, chain, monomers.get(start), monomers.get(end));
+                else if ("S".equals(type))
+                    writeSheet(++strands, chain, monomers.get(start), monomers.get(end));
+                start = end + 1;
+            }
+        }
+    }
+
+    private void writeHelix(int number, String chain, PDBMonomer start, PDBMonomer end) throws IOException {
+        clearLine();
+        putText(1, "HELIX");
+        putNumber(8, 3, number);
+        putNumber(12, 3, number);
+        putText(16, PDBComplexBuilder.toThreeLetterCode(start.getLabel()));
+        putChain(20, chain);
+        putNumber(22, 4, start.getId());
+        putText(28, PDBComplexBuilder.toThreeLetterCode(end.getLabel()));
+        putChain(32, chain);
+        putNumber(34, 4, end.getId());
+        putNumber(39, 2, 1); // right-handed alpha helix
+        flushLine(LINE_LENGTH);
+    }
+
+    private void writeSheet(int number, String chain, PDBMonomer start, PDBMonomer end) throws IOException {
+        clearLine();
+        putText(1, "SHEET");
+        putNumber(8, 3, 1); // each strand is written as its own sheet
+        putNumber(12, 3, number);
+        putNumber(15, 2, 1);
+        putText(18, PDBComplexBuilder.toThreeLetterCode(start.getLabel()));
+        putChain(22, chain);
+        putNumber(23, 4, start.getId());
+        putText(29, PDBComplexBuilder.toThreeLetterCode(end.getLabel()));
+        putChain(33, chain);
+        putNumber(34, 4, end.getId());
+        putNumber(39, 2, 0);
+        flushLine(LINE_LENGTH);
+    }
+
+    private void writeModel(int model) throws IOException {
+        clearLine();
+        putText(1, "MODEL");
+        putNumber(11, 4, model);
+        flushLine(LINE_LENGTH);
+    }
+
+    /**
+     * Writes the atoms of the given residues of a chain followed by a TER record.
+     */
+    private void writeChain(String chain, List<PDBMonomer> monomers) throws IOException {
+        String resName = "UNK";
+        int resSeq = 0;
+        for (PDBMonomer monomer : monomers) {
+            resName = PDBComplexBuilder.toThreeLetterCode(monomer.getLabel());
+            resSeq = monomer.getId();
+            for (PDBAtom atom : monomer.getAtoms())
+                writeAtom(atom, resName, chain, resSeq);
+        }
+        clearLine();
+        putText(1, "TER");
+        putNumber(7, 5, serial++ % 100000);
+        putText(18, resName);
+        putChain(22, chain);
+        putNumber(23, 4, resSeq);
+        flushLine(LINE_LENGTH);
+    }
+
+    private void writeAtom(PDBAtom atom, String resName, String chain, int resSeq) throws IOException {
+        clearLine();
+        putText(1, "ATOM");
+        putNumber(7, 5, serial++ % 100000);
+        String name = atom.getRole();
+        String element = atom.getLetter();
+        // names of atoms with one-letter elements start in column 14, unless they take up all four columns
+        putText(element.length() == 1 && name.length() < 4 ? 14 : 13, name);
+        putText(18, resName);
+        putChain(22, chain);
+        putNumber(23, 4, resSeq);
+        Point3D coordinates = atom.getCoordinates();
+        putDecimal(31, coordinates.getX());
+        putDecimal(39, coordinates.getY());
+        putDecimal(47, coordinates.getZ());
+        putText(55, "  1.00  0.00");
+        putText(79 - element.length(), element);
+        flushLine(LINE_LENGTH);
+    }
+
+    /**
+     * Writes a record that consists of its name only.
+     */
+    private void writeRecord(String record) throws IOException {
+        clearLine();
+        putText(1, record);
+        flushLine(LINE_LENGTH);
+    }
+
+    private void clearLine() {
+        Arrays.fill(line, (byte) ' ');
+    }
+
+    /**
+     * Puts ASCII text into the line, starting at the given column (1-based as in the format specification).
+     */
+    private void putText(int column, String text) {
+        int length = Math.min(text.length(), LINE_LENGTH - column + 1);
+        for (int i = 0; i < length; i++)
+            line[column - 1 + i] = (byte) text.charAt(i);
+    }
+
+    private void putChain(int column, String chain) {
+        if (chain != null && !chain.isEmpty())
+            line[column - 1] = (byte) chain.charAt(0);
+    }
+
+    /**
+     * Puts an integer right-aligned into the field of the given width.
+     */
+    private void putNumber(int column, int width, long value) {
+        int position = column - 2 + width;
+        boolean negative = value < 0;
+        long rest = Math.abs(value);
+        do {
+            line[position--] = (byte) ('0' + rest % 10);
+            rest /= 10;
+        } while (rest > 0 && position >= column - 1);
+        if (negative && position >= column - 1)
+            line[position] = '-';
+    }
+
+    /**
+     * Puts a number with three decimals right-aligned into a field of width 8, as used for coordinates.
+     */
+    private void putDecimal(int column, double value) {
+        long scaled = Math.round(Math.abs(value) * 1000);
+        int position = column + 6;
+        for (int i = 0; i < 3; i++) {
+            line[position--] = (byte) ('0' + scaled % 10);
+            scaled /= 10;
+        }
+        line[position--] = '.';
+        do {
+            line[position--] = (byte) ('0' + scaled % 10);
+            scaled /= 10;
+        } while (scaled > 0 && position >= column - 1);
+        if (value < 0 && Math.round(Math.abs(value) * 1000) != 0 && position >= column - 1)
+            line[position] = '-';
+    }
+
+    /**
+     * Appends the first columns of the line to the buffer and writes the buffer to the file if it is full.
+     */
+    private void flushLine(int length) throws IOException {
+        line[length] = '\n';
+        if (buffer.remaining() < length + 1)
+            flushBuffer();
+        buffer.put(line, 0, length + 1);
+    }
+
+    private void flushBuffer() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining())
+            channel.write(buffer);
+        buffer.clear();
+    }
+
+    /**
+     * Writes the remaining data and closes the file.
+     * @throws IOException in case the file cannot be written
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            flushBuffer();
+        } finally {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package pdbexplorer.model.io;
+
+import javafx.concurrent.Task;
+import pdbexplorer.model.protein.PDBComplex;
+import pdbexplorer.model.protein.PDBPolymer;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * This class reads structure files from the file system that may be compressed, as in archive mirrors, which store
+ * the files as .pdb.gz or .cif.gz. Compression is recognized from the first bytes of the file rather than from its
+ * name: gzip files are decompressed while reading, and of a zip archive the first file is read. The decompressed
+ * data is handed to the parsers as a stream, such that the uncompressed text is never held in memory as a whole.
+ * The format of the structure (PDB, mmCIF or BinaryCIF) is recognized from its content as well.
+ */
+public class StructureFileReader {
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * This task reads and parses a possibly compressed structure file.
+     */
+    public static class ReadStructureFile extends Task<PDBComplex> {
+        private final String file;
+
+        /**
+         * Constructor of the ReadStructureFile task.
+         * @param file (String): Path to the structure file
+         */
+        public ReadStructureFile(String file) {
+            this.file = file;
+        }
+
+        @Override
+        public PDBComplex call() throws IOException {
+            return read(Path.of(file), null, this::isCancelled);
+        }
+    }
+
+    /**
+     * Reads and parses the given structure file.
+     * @param file (Path): the structure file, compressed or not
+     * @return PDBComplex: protein complex object
+     * @throws IOException in case the file cannot be read
+     */
+    public static PDBComplex read(Path file) throws IOException {
+        return read(file, null, null);
+    }
+
+    /**
+     * Reads and parses the given structure file and passes on each chain as soon as it has been read completely.
+     * @param file (Path): the structure file, compressed or not
+     * @param polymers (Consumer): receives each completed polymer on the reading thread, null if not needed
+     * @param cancelled (BooleanSupplier): checked every few rows, reading stops with a CancellationException once it
+     * returns true; null if reading cannot be cancelled
+     * @return PDBComplex: protein complex object
+     * @throws IOException in case the file cannot be read
+     */
+    public static PDBComplex read(Path file, Consumer<PDBPolymer> polymers, BooleanSupplier cancelled)
+            throws IOException {
+        try (InputStream input = open(file)) {
+            input.mark(1);
+            int first = input.read();
+            input.reset();
+            // BinaryCIF is decoded column by column and needs all of its (compressed) data
+            if (first != -1 && BinaryCIFParser.isBinaryCIF(new byte[]{(byte) first}))
+                return BinaryCIFParser.parse(input.readAllBytes(), polymers, cancelled);
+            return PDBParser.parse(new InputStreamReader(input, StandardCharsets.UTF_8), polymers, cancelled);
+        }
+    }
+
+    /**
+     * Opens the given file, decompressing it while reading if it is gzip compressed or a zip archive.
+     * @param file (Path): the file
+     * @return InputStream: buffered stream of the decompressed content, supporting mark and reset
+     * @throws IOException in case the file cannot be opened or a zip archive is empty
+     */
+    public static InputStream open(Path file) throws IOException {
+        InputStream input = new BufferedInputStream(Files.newInputStream(file), BUFFER_SIZE);
+        try {
+            input.mark(4);
+            int first = input.read(), second = input.read(), third = input.read(), fourth = input.read();
+            input.reset();
+            if (first == 0x1F && second == 0x8B) // gzip
+                return new BufferedInputStream(new GZIPInputStream(input, BUFFER_SIZE), BUFFER_SIZE);
+            if (first == 'P' && second == 'K' && third == 3 && fourth == 4) { // zip
+                ZipInputStream zip = new ZipInputStream(input);
+                ZipEntry entry;
+                while ((entry = zip.getNextEntry()) != null) {
+                    if (!entry.isDirectory())
+                        return new BufferedInputStream(zip, BUFFER_SIZE);
+                }
+                throw new IOException("Empty zip archive " + file);
+            }
+            return input;
+        } catch (IOException e) {
+            input.close();
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package pdbexplorer.model.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import pdbexplorer.model.protein.PDBPolymer;
+
+/**
+ * Flight recorder event for computing the bonds of a chain from the distances of its atoms.
+ */
+@Name("pdbexplorer.BondPerception")
+@Label("Bond Perception")
+@Description("Bonds of a chain computed from atom distances")
+@Category({"PDB Explorer", "Model"})
+@StackTrace(false)
+public class BondPerceptionEvent extends jdk.jfr.Event {
+    @Label("Chain")
+    public String chain;
+
+    @Label("Model")
+    public int model;
+
+    @Label("Atoms")
+    public int atoms;
+
+    @Label("Bonds")
+    public int bonds;
+
+    /**
+     * Ends the event and commits it if it is enabled and exceeds the threshold.
+     * @param polymer (PDBPolymer): the chain
+     * @param atoms (int): number of atoms of the chain
+     * @param bonds (int): number of bonds found
+     */
+    public void finish(PDBPolymer polymer, int atoms, int bonds) {
+        end();
+        if (shouldCommit()) {
+            this.chain = polymer.getLabel();
+            this.model = polymer.getModelNumber();
+            this.atoms = atoms;
+            this.bonds = bonds;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package pdbexplorer.model.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+import java.net.URI;
+
+/**
+ * Flight recorder event for getting an entry through the persistent cache, which either serves the entry from disk
+ * or downloads it.
+ */
+@Name("pdbexplorer.CacheFetch")
+@Label("Cache Fetch")
+@Description("Entry served from the persistent cache or downloaded")
+@Category({"PDB Explorer", "Web Client"})
+public class CacheFetchEvent extends jdk.jfr.Event {
+    // How an entry has been served
+    public static final String CACHED = "cached", VALIDATED = "validated", DOWNLOADED = "downloaded",
+            OFFLINE = "offline";
+
+    @Label("Entry")
+    public String entry;
+
+    @Label("URL")
+    public String url;
+
+    @Label("Source")
+    @Description("cached (recently validated), validated (not modified on the server), downloaded or offline")
+    public String source;
+
+    @Label("Cache Hit")
+    @Description("Whether the entry has been read from disk instead of being downloaded")
+    public boolean cacheHit;
+
+    @Label("Bytes")
+    @DataAmount
+    public long bytes;
+
+    /**
+     * Ends the event and commits it if it is enabled and exceeds the threshold.
+     * @param entry (String): file name of the entry
+     * @param uri (URI): address the entry is downloaded from
+     * @param source (String): CACHED, VALIDATED, DOWNLOADED or OFFLINE
+     * @param bytes (long): size of the entry
+     */
+    public void finish(String entry, URI uri, String source, long bytes) {
+        end();
+        if (shouldCommit()) {
+            this.entry = entry;
+            this.url = uri.toString();
+            this.source = source;
+            this.cacheHit = !source.equals(DOWNLOADED);
+            this.bytes = bytes;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package pdbexplorer.model.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event for coloring the atoms by another color scheme.
+ */
+@Name("pdbexplorer.ColorChange")
+@Label("Color Change")
+@Description("Atoms colored by a color scheme")
+@Category({"PDB Explorer", "Interaction"})
+public class ColorChangeEvent extends jdk.jfr.Event {
+    @Label("Color Scheme")
+    @Description("0 atom, 1 residue, 2 secondary structure, 3 molecule, 4 exposure")
+    public int colorScheme;
+
+    @Label("Atoms")
+    @Description("Number of spheres recolored")
+    public int atoms;
+
+    /**
+     * Ends the event and commits it if it is enabled and exceeds the threshold.
+     * @param colorScheme (int): the color scheme
+     * @param atoms (int): number of spheres recolored
+     */
+    public void finish(int colorScheme, int atoms) {
+        end();
+        if (shouldCommit()) {
+            this.colorScheme = colorScheme;
+            this.atoms = atoms;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package pdbexplorer.model.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event for building the nodes of one representation of a chain, e.g. its balls and sticks or its
+ * ribbon. The nodes are created on a background thread, adding them to the scene is not part of the event.
+ */
+@Name("pdbexplorer.Geometry")
+@Label("Geometry")
+@Description("Nodes of a representation built for a chain")
+@Category({"PDB Explorer", "Renderer"})
+@StackTrace(false)
+public class GeometryEvent extends jdk.jfr.Event {
+    // Representations
+    public static final String BALLS_AND_STICKS = "balls and sticks", RIBBON = "ribbon", SURFACE = "surface";
+
+    @Label("Representation")
+    public String representation;
+
+    @Label("Chain")
+    public String chain;
+
+    @Label("Model")
+    public int model;
+
+    @Label("Nodes")
+    @Description("Shapes or meshes created")
+    public int nodes;
+
+    /**
+     * Ends the event and commits it if it is enabled and exceeds the threshold.
+     * @param representation (String): BALLS_AND_STICKS, RIBBON or SURFACE
+     * @param chain (String): the chain ID
+     * @param model (int): the model number
+     * @param nodes (int): number of nodes created
+     */
+    public void finish(String representation, String chain, int model, int nodes) {
+        end();
+        if (shouldCommit()) {
+            this.representation = representation;
+            this.chain = chain;
+            this.model = model;
+            this.nodes = nodes;
+            commit();
+        }
+    }
+}
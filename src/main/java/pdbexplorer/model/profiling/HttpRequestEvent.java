@@ -0,0 +1,54 @@
+package pdbexplorer.model.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+import java.net.URI;
+
+/**
+ * Flight recorder event for a request to a PDB server, including retries. The duration of the event is the latency
+ * of the request until the body has been received and decompressed.
+ */
+@Name("pdbexplorer.HttpRequest")
+@Label("HTTP Request")
+@Description("Request to a PDB server, including retries")
+@Category({"PDB Explorer", "Web Client"})
+@StackTrace(false)
+public class HttpRequestEvent extends jdk.jfr.Event {
+    @Label("URL")
+    public String url;
+
+    @Label("Status")
+    @Description("HTTP status of the response, 0 if the request failed")
+    public int status;
+
+    @Label("Attempts")
+    public int attempts;
+
+    @Label("Bytes")
+    @Description("Size of the decompressed body, 0 for bodies that are read while they arrive")
+    @DataAmount
+    public long bytes;
+
+    /**
+     * Ends the event and commits it if it is enabled and exceeds the threshold.
+     * @param uri (URI): the requested address
+     * @param status (int): status of the response, 0 if the request failed
+     * @param attempts (int): number of attempts made
+     * @param bytes (long): size of the body
+     */
+    public void finish(URI uri, int status, int attempts, long bytes) {
+        end();
+        if (shouldCommit()) {
+            this.url = uri.toString();
+            this.status = status;
+            this.attempts = attempts;
+            this.bytes = bytes;
+            commit();
+        }
+    }
+}
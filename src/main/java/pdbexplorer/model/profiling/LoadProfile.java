@@ -0,0 +1,227 @@
+package pdbexplorer.model.profiling;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * This class records how long each stage of loading an entry takes: downloading, parsing, computing the figure, the
+ * sequence, the selection model and the charts. For each stage, the duration, the bytes allocated by the thread that
+ * ran it and counts like the number of atoms, bonds or created nodes are kept. Stages run on background threads as
+ * well as on the JavaFX application thread, so a stage must be ended on the thread that began it for the allocation
+ * to be measured; stages of one profile may be recorded from different threads.
+ */
+public class LoadProfile {
+    // Keys of the counts recorded for a stage
+    public static final String BYTES = "bytes", ATOMS = "atoms", BONDS = "bonds", NODES = "nodes";
+    private static final List<String> countKeys = List.of(BYTES, ATOMS, BONDS, NODES);
+
+    private static final com.sun.management.ThreadMXBean threads = getThreadBean();
+
+    private final String entry;
+    private final long start = System.nanoTime();
+    private final List<Stage> stages = new CopyOnWriteArrayList<>();
+
+    /**
+     * A single stage of a load. A stage is begun with LoadProfile.begin and ended with end, counts can be added at
+     * any time in between.
+     */
+    public static class Stage {
+        private final String name;
+        private final long start;
+        private final long startAllocated;
+        private final Map<String, Long> counts = new LinkedHashMap<>();
+        private volatile long duration = -1;
+        private volatile long allocated = -1;
+
+        private Stage(String name) {
+            this.name = name;
+            this.startAllocated = getAllocatedBytes();
+            this.start = System.nanoTime();
+        }
+
+        /**
+         * Adds to a count of this stage, e.g. the number of atoms parsed.
+         * @param key (String): BYTES, ATOMS, BONDS, NODES or any other key
+         * @param value (long): the value to add
+         * @return Stage: this stage
+         */
+        public synchronized Stage count(String key, long value) {
+            counts.merge(key, value, Long::sum);
+            return this;
+        }
+
+        /**
+         * Ends this stage. Has to be called on the thread that began the stage; calling it again has no effect.
+         */
+        public void end() {
+            if (duration >= 0)
+                return;
+            duration = System.nanoTime() - start;
+            long allocatedNow = getAllocatedBytes();
+            allocated = startAllocated < 0 || allocatedNow < 0 ? -1 : allocatedNow - startAllocated;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Getter method for the duration of the stage.
+         * @return long: duration in nanoseconds, -1 while the stage is running
+         */
+        public long getDuration() {
+            return duration;
+        }
+
+        /**
+         * Getter method for the bytes allocated by the thread while running the stage.
+         * @return long: allocated bytes, -1 if unknown or while the stage is running
+         */
+        public long getAllocated() {
+            return allocated;
+        }
+
+        /**
+         * Returns a count of this stage.
+         * @param key (String): key of the count
+         * @return long: the count, -1 if it has not been recorded
+         */
+        public synchronized long getCount(String key) {
+            return counts.getOrDefault(key, -1L);
+        }
+
+        private synchronized Map<String, Long> getCounts() {
+            return new LinkedHashMap<>(counts);
+        }
+    }
+
+    /**
+     * Constructor for a LoadProfile object, starts the profile of loading the given entry.
+     * @param entry (String): name of the entry, e.g. a PDB ID or file name
+     */
+    public LoadProfile(String entry) {
+        this.entry = entry;
+    }
+
+    public String getEntry() {
+        return entry;
+    }
+
+    /**
+     * Begins a new stage on the current thread.
+     * @param name (String): name of the stage
+     * @return Stage: the stage, to be ended with Stage.end
+     */
+    public Stage begin(String name) {
+        Stage stage = new Stage(name);
+        stages.add(stage);
+        return stage;
+    }
+
+    public List<Stage> getStages() {
+        return stages;
+    }
+
+    /**
+     * Returns the time from the start of the profile to the end of its last ended stage.
+     * @return long: time in nanoseconds
+     */
+    public long getElapsed() {
+        long end = start;
+        for (Stage stage : stages) {
+            if (stage.duration >= 0)
+                end = Math.max(end, stage.start + stage.duration);
+        }
+        return end - start;
+    }
+
+    /**
+     * Formats the stages as a table with one line per stage, as shown on screen.
+     * @return String: the table
+     */
+    public String format() {
+        StringBuilder table = new StringBuilder(String.format(Locale.ROOT, "%s: %.1f ms%n", entry,
+                getElapsed() / 1e6));
+        for (Stage stage : stages) {
+            table.append(String.format(Locale.ROOT, "%-24s %9s %10s", stage.name,
+                    stage.duration < 0 ? "..." : String.format(Locale.ROOT, "%.1f ms", stage.duration / 1e6),
+                    stage.allocated < 0 ? "" : formatBytes(stage.allocated)));
+            stage.getCounts().forEach((key, value) -> table.append("  ").append(key).append(' ')
+                    .append(key.equals(BYTES) ? formatBytes(value) : value));
+            table.append(System.lineSeparator());
+        }
+        return table.toString();
+    }
+
+    /**
+     * Writes the stages of the given profiles to a CSV file, one line per stage, e.g. to compare loads of the same
+     * entry before and after a change. The duration and allocation of stages that are still running are left empty.
+     * @param profiles (List): the profiles
+     * @param file (Path): the CSV file
+     * @throws IOException in case the file cannot be written
+     */
+    public static void writeCSV(List<LoadProfile> profiles, Path file) throws IOException {
+        try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write("entry,stage,start_ms,duration_ms,allocated_bytes," + String.join(",", countKeys) + "\n");
+            for (LoadProfile profile : profiles) {
+                for (Stage stage : profile.stages) {
+                    StringBuilder line = new StringBuilder(quoteCSV(profile.entry)).append(',')
+                            .append(quoteCSV(stage.name)).append(',')
+                            .append(String.format(Locale.ROOT, "%.3f", (stage.start - profile.start) / 1e6))
+                            .append(',').append(stage.duration < 0 ? "" : String.format(Locale.ROOT, "%.3f",
+                                    stage.duration / 1e6))
+                            .append(',').append(stage.allocated < 0 ? "" : stage.allocated);
+                    for (String key : countKeys)
+                        line.append(',').append(stage.getCount(key) < 0 ? "" : stage.getCount(key));
+                    writer.write(line.append('\n').toString());
+                }
+            }
+        }
+    }
+
+    /**
+     * Quotes a field of a CSV file if it contains a separator, quote or line break, doubling the quotes within.
+     */
+    private static String quoteCSV(String field) {
+        if (field == null)
+            return "";
+        if (field.indexOf(',') < 0 && field.indexOf('"') < 0 && field.indexOf('\n') < 0 && field.indexOf('\r') < 0)
+            return field;
+        return '"' + field.replace("\"", "\"\"") + '"';
+    }
+
+    private static String formatBytes(long bytes) {
+        if (bytes < 1024)
+            return bytes + " B";
+        if (bytes < 1024 * 1024)
+            return String.format(Locale.ROOT, "%.1f KB", bytes / 1024.0);
+        return String.format(Locale.ROOT, "%.1f MB", bytes / (1024.0 * 1024));
+    }
+
+    /**
+     * Returns the bytes allocated by the current thread so far, -1 if the JVM does not measure them.
+     */
+    private static long getAllocatedBytes() {
+        return threads == null ? -1 : threads.getCurrentThreadAllocatedBytes();
+    }
+
+    private static com.sun.management.ThreadMXBean getThreadBean() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean threadBean
+                && threadBean.isThreadAllocatedMemorySupported()) {
+            threadBean.setThreadAllocatedMemoryEnabled(true);
+            return threadBean;
+        }
+        return null;
+    }
+}
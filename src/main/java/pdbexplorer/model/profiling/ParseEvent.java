@@ -0,0 +1,57 @@
+package pdbexplorer.model.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import pdbexplorer.model.protein.PDBComplex;
+import pdbexplorer.model.protein.PDBMonomer;
+import pdbexplorer.model.protein.PDBPolymer;
+
+/**
+ * Flight recorder event for parsing a structure file or reading a snapshot of it.
+ */
+@Name("pdbexplorer.Parse")
+@Label("Parse")
+@Description("Structure file parsed into a complex")
+@Category({"PDB Explorer", "Parser"})
+public class ParseEvent extends jdk.jfr.Event {
+    @Label("Format")
+    public String format;
+
+    @Label("Lines")
+    @Description("Lines of text read, 0 for binary formats")
+    public long lines;
+
+    @Label("Atoms")
+    @Description("Atoms kept in the complex")
+    public int atoms;
+
+    @Label("Chains")
+    public int chains;
+
+    @Label("Models")
+    public int models;
+
+    /**
+     * Ends the event and commits it if it is enabled and exceeds the threshold. The atoms are only counted in this
+     * case.
+     * @param format (String): format of the file, e.g. PDB or mmCIF
+     * @param lines (long): number of lines read
+     * @param complex (PDBComplex): the parsed complex
+     */
+    public void finish(String format, long lines, PDBComplex complex) {
+        end();
+        if (shouldCommit()) {
+            this.format = format;
+            this.lines = lines;
+            for (PDBPolymer polymer : complex.getPolymers()) {
+                for (PDBMonomer monomer : polymer.getMonomers())
+                    this.atoms += monomer.getAtoms().size();
+            }
+            this.chains = complex.getChains().size();
+            this.models = complex.getNumberOfModels();
+            commit();
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package pdbexplorer.model.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event for handling a change of the residue selection: updating the opacity of the shapes and the
+ * text of the sequence, or updating the charts for the selected residues.
+ */
+@Name("pdbexplorer.Selection")
+@Label("Selection")
+@Description("Handling of a change of the residue selection")
+@Category({"PDB Explorer", "Interaction"})
+public class SelectionEvent extends jdk.jfr.Event {
+    // Parts of handling a selection change
+    public static final String OPACITY = "opacity", CHARTS = "charts";
+
+    @Label("Operation")
+    @Description("opacity or charts")
+    public String operation;
+
+    @Label("Added")
+    @Description("Whether the residue has been added to the selection or removed from it")
+    public boolean added;
+
+    @Label("Selected")
+    @Description("Number of selected residues after the change")
+    public int selected;
+
+    @Label("Shapes")
+    @Description("Number of shapes whose opacity has been changed")
+    public int shapes;
+
+    /**
+     * Ends the event and commits it if it is enabled and exceeds the threshold.
+     * @param operation (String): OPACITY or CHARTS
+     * @param added (boolean): whether a residue has been added
+     * @param selected (int): number of selected residues
+     * @param shapes (int): number of shapes changed
+     */
+    public void finish(String operation, boolean added, int selected, int shapes) {
+        end();
+        if (shouldCommit()) {
+            this.operation = operation;
+            this.added = added;
+            this.selected = selected;
+            this.shapes = shapes;
+            commit();
+        }
+    }
+}
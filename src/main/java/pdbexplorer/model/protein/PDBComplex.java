@@ -36,6 +36,19 @@ public class PDBComplex {
         this.protein = false;
     }
 
+    /**
+     * Returns a copy of the complex with its own chains and residues, e.g. to display a complex that is kept in a
+     * cache: the secondary structure of the residues can be reassigned, and the bonds of a chain are kept once they
+     * have been computed. The atoms are immutable and shared with the copy.
+     * @return PDBComplex: the copy
+     */
+    public PDBComplex copy() {
+        ArrayList<PDBPolymer> copies = new ArrayList<>(polymers.size());
+        for (PDBPolymer polymer : polymers)
+            copies.add(polymer.copy());
+        return new PDBComplex(copies, numberOfModels, new ArrayList<>(chains), protein);
+    }
+
     /**
      * Getter method for list of polymers.
      * @return ArrayList: list of polymers contained in the complex
@@ -37,6 +37,13 @@ public class PDBMonomer {
         this.id = id;
     }
 
+    /**
+     * Returns a copy of the monomer, sharing the atoms.
+     */
+    PDBMonomer copy() {
+        return new PDBMonomer(new ArrayList<>(atoms), label, id, secondaryStructureType);
+    }
+
     /**
      * Getter method for list of atoms.
      * @return ArrayList: atoms contained in the monomer
@@ -69,6 +76,14 @@ public class PDBMonomer {
         return secondaryStructureType;
     }
 
+    /**
+     * Setter method for secondary structure type, e.g. if it is assigned from the backbone geometry.
+     * @param secondaryStructureType (String): one of H (helix) and S (sheet) or null
+     */
+    public void setSecondaryStructureType(String secondaryStructureType) {
+        this.secondaryStructureType = secondaryStructureType;
+    }
+
     /**
      * Returns the c-alpha atom of the monomer. Returns null if no c-alpha is present.
      * @return PDBAtom: the c-alpha atom
@@ -137,4 +152,21 @@ public class PDBMonomer {
 
         return n;
     }
+
+    /**
+     * Returns the backbone O atom of the monomer. Returns null if not present.
+     * @return PDBAtom: the backbone O atom
+     */
+    public PDBAtom getO() {
+        PDBAtom o = null;
+
+        for (PDBAtom atom : this.atoms) {
+            if (atom.getRole().equals("O")) {
+                o = atom;
+                break; // assume first atom declared as O is right one in case there has been a mis-classification
+            }
+        }
+
+        return o;
+    }
 }
@@ -1,6 +1,7 @@
 package pdbexplorer.model.protein;
 
 import javafx.util.Pair;
+import pdbexplorer.model.profiling.BondPerceptionEvent;
 
 import java.util.ArrayList;
 
@@ -12,6 +13,7 @@ public class PDBPolymer {
     private final int number;
     private final String label;
     private final int modelNumber;
+    private ArrayList<Pair<PDBAtom, PDBAtom>> bonds;
 
     /**
      * Constructor for polymer object.
@@ -41,10 +43,14 @@ public class PDBPolymer {
 
     /**
      * Computes all bonds between atoms based on the following heuristic: distance between location of two atoms <= 2.
-     * Returns a list of pairs of atoms that are bonded with each other.
+     * Returns a list of pairs of atoms that are bonded with each other. The bonds are computed once and kept.
      * @return ArrayList: list of pairs of atoms that are bonded with each other
      */
     public ArrayList<Pair<PDBAtom, PDBAtom>> getBonds() {
+        if (bonds != null)
+            return bonds;
+        BondPerceptionEvent event = new BondPerceptionEvent();
+        event.begin();
         ArrayList<PDBAtom> allAtoms = this.getAtoms(); // get all atoms of the current polymer
         ArrayList<Pair<PDBAtom, PDBAtom>> allBonds = new ArrayList<>();
         // compute all bonds according to heuristic: distance between atom locations <= 2
@@ -55,9 +61,32 @@ public class PDBPolymer {
                     allBonds.add(new Pair<>(allAtoms.get(i), allAtoms.get(j)));
             }
         }
+        bonds = allBonds;
+        event.finish(this, allAtoms.size(), allBonds.size());
         return allBonds;
     }
 
+    /**
+     * Sets bonds computed before, e.g. read from a snapshot, such that they are not computed again.
+     * @param bonds (ArrayList): list of pairs of atoms that are bonded with each other
+     */
+    public void setBonds(ArrayList<Pair<PDBAtom, PDBAtom>> bonds) {
+        this.bonds = bonds;
+    }
+
+    /**
+     * Returns a copy of the polymer with copies of its monomers and the bonds computed so far.
+     */
+    PDBPolymer copy() {
+        ArrayList<PDBMonomer> copies = new ArrayList<>(monomers.size());
+        for (PDBMonomer monomer : monomers)
+            copies.add(monomer.copy());
+        PDBPolymer copy = new PDBPolymer(copies, number, label, modelNumber);
+        if (bonds != null)
+            copy.setBonds(new ArrayList<>(bonds));
+        return copy;
+    }
+
     /**
      * Getter method for list of monomers.
      * @return ArrayList: list of monomers contained in polymer
@@ -14,4 +14,14 @@ public interface Command {
     boolean canUndo();
 
     boolean canRedo();
+
+    /**
+     * Merges this command with the given command that directly follows it, such that both are undone in one step,
+     * e.g. consecutive changes of the same property while a slider is dragged.
+     * @param next (Command): the command following this one
+     * @return Command: a command doing both, or null if they cannot be merged
+     */
+    default Command mergeWith(Command next) {
+        return null;
+    }
 }
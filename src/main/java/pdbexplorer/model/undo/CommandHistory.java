@@ -0,0 +1,82 @@
+package pdbexplorer.model.undo;
+
+import java.util.Arrays;
+
+/**
+ * This class implements a stack of commands with a fixed capacity as a ring buffer: when the stack is full, pushing a
+ * command drops the oldest one, so the memory used by the undo and redo history does not grow with the session.
+ */
+class CommandHistory {
+    private final Command[] commands;
+    private int first = 0; // index of the oldest command
+    private int size = 0;
+
+    /**
+     * Constructor for a CommandHistory.
+     * @param capacity (int): maximal number of commands kept
+     */
+    CommandHistory(int capacity) {
+        if (capacity < 1)
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        commands = new Command[capacity];
+    }
+
+    /**
+     * Pushes a command onto the stack, dropping the oldest command if the stack is full.
+     * @param command (Command): the command
+     */
+    void push(Command command) {
+        if (size == commands.length) {
+            commands[first] = null;
+            first = (first + 1) % commands.length;
+            size--;
+        }
+        commands[(first + size) % commands.length] = command;
+        size++;
+    }
+
+    /**
+     * Removes the most recent command.
+     * @return Command: the command, or null if the stack is empty
+     */
+    Command pop() {
+        if (size == 0)
+            return null;
+        int last = (first + size - 1) % commands.length;
+        Command command = commands[last];
+        commands[last] = null;
+        size--;
+        return command;
+    }
+
+    /**
+     * Returns the most recent command without removing it.
+     * @return Command: the command, or null if the stack is empty
+     */
+    Command peek() {
+        return size == 0 ? null : commands[(first + size - 1) % commands.length];
+    }
+
+    /**
+     * Replaces the most recent command, e.g. by a command merged with it.
+     * @param command (Command): the new command
+     */
+    void replaceLast(Command command) {
+        if (size > 0)
+            commands[(first + size - 1) % commands.length] = command;
+    }
+
+    void clear() {
+        Arrays.fill(commands, null);
+        first = 0;
+        size = 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    int capacity() {
+        return commands.length;
+    }
+}
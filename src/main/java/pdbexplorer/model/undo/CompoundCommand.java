@@ -0,0 +1,74 @@
+package pdbexplorer.model.undo;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class implements a command consisting of several commands that are undone and redone as one, e.g. the
+ * commands recorded during a transaction of the UndoRedoManager. Undo runs the commands in reverse order.
+ */
+public class CompoundCommand implements Command {
+    private final String name;
+    private final List<Command> commands;
+
+    /**
+     * Constructor for a CompoundCommand.
+     * @param name (String): name of the command
+     * @param commands (List<Command>): the commands, in the order they have been done
+     */
+    public CompoundCommand(String name, List<Command> commands) {
+        this.name = name;
+        this.commands = new ArrayList<>(commands);
+    }
+
+    /**
+     * Undoes all commands, the last one first.
+     */
+    @Override
+    public void undo() {
+        for (int i = commands.size() - 1; i >= 0; i--)
+            commands.get(i).undo();
+    }
+
+    /**
+     * Redoes all commands, the first one first.
+     */
+    @Override
+    public void redo() {
+        for (Command command : commands)
+            command.redo();
+    }
+
+    /**
+     * Returns the name of the command.
+     * @return String: name of the command
+     */
+    @Override
+    public String name() {
+        return name;
+    }
+
+    /**
+     * Checks whether all commands can be undone.
+     */
+    @Override
+    public boolean canUndo() {
+        return commands.stream().allMatch(Command::canUndo);
+    }
+
+    /**
+     * Checks whether all commands can be re-done.
+     */
+    @Override
+    public boolean canRedo() {
+        return commands.stream().allMatch(Command::canRedo);
+    }
+
+    /**
+     * Returns the number of commands.
+     * @return int: number of commands
+     */
+    public int size() {
+        return commands.size();
+    }
+}
@@ -2,11 +2,17 @@ package pdbexplorer.model.undo;
 
 import javafx.beans.property.Property;
 
+import java.util.Objects;
+
 /**
  * This class implements a PropertyCommand.
  * Implemented and provided by Daniel Huson 6.2023
  */
 public class PropertyCommand<T> extends SimpleCommand {
+    private final Property<T> property;
+    private final T oldValue;
+    private final T newValue;
+
     /**
      * Constructor for a PropertyCommand.
      * @param name (String): name of the command
@@ -16,5 +22,25 @@ public class PropertyCommand<T> extends SimpleCommand {
      */
     public PropertyCommand(String name, Property<T> v, T oldValue, T newValue) {
         super(name, () -> v.setValue(oldValue), () -> v.setValue(newValue));
+        this.property = v;
+        this.oldValue = oldValue;
+        this.newValue = newValue;
+    }
+
+    /**
+     * Merges with a following change of the same property into a change from the old value of this command to the
+     * new value of the following one.
+     * @param next (Command): the command following this one
+     * @return Command: the merged command, or null if the next command changes something else
+     */
+    @Override
+    public Command mergeWith(Command next) {
+        if (next instanceof PropertyCommand<?> other && other.property == property && other.name().equals(name())
+                && Objects.equals(other.oldValue, newValue)) {
+            @SuppressWarnings("unchecked")
+            T value = (T) other.newValue;
+            return new PropertyCommand<>(name(), property, oldValue, value);
+        }
+        return null;
     }
 }
@@ -1,18 +1,32 @@
 package pdbexplorer.model.undo;
 
-import javafx.beans.InvalidationListener;
-import javafx.beans.binding.Bindings;
 import javafx.beans.property.*;
-import javafx.collections.FXCollections;
-import javafx.collections.ObservableList;
+
+import java.util.ArrayList;
 
 /**
  * This class manages the undo and redo stacks.
  * Implemented and provided by Daniel Huson 6.2023
+ * The stacks keep a limited number of commands, dropping the oldest ones. A command added shortly after the previous
+ * one is merged with it if possible (see Command.mergeWith), such that dragging a slider gives a single command. The
+ * labels and flags are updated once per operation, and only change when the top of a stack changes.
+ * Commands added during a transaction (see beginTransaction) are collected and added as one CompoundCommand, such that
+ * an operation consisting of several changes is undone in one step.
  */
 public class UndoRedoManager {
-    private final ObservableList<Command> undoStack = FXCollections.observableArrayList();
-    private final ObservableList<Command> redoStack = FXCollections.observableArrayList();
+    public static final int DEFAULT_DEPTH = 100;
+    public static final long DEFAULT_MERGE_WINDOW = 500; // milliseconds
+
+    private final CommandHistory undoStack;
+    private final CommandHistory redoStack;
+    private final long mergeWindow; // nanoseconds
+    // the command last added and when, to merge the next command with it
+    private Command lastAdded = null;
+    private long lastAddedTime;
+    // commands of the open transaction, null if there is none
+    private ArrayList<Command> transaction = null;
+    private String transactionName;
+    private int transactionDepth = 0;
 
     private final StringProperty undoLabel = new SimpleStringProperty("Undo");
     private final StringProperty redoLabel = new SimpleStringProperty("Redo");
@@ -24,15 +38,23 @@ public class UndoRedoManager {
     // when undoing or redoing changes a property that is being observed so as to add to the undo stack
 
     /**
-     * Constructor for the UndoRedoManager.
+     * Constructor for the UndoRedoManager, keeping DEFAULT_DEPTH commands and merging commands within
+     * DEFAULT_MERGE_WINDOW.
      */
     public UndoRedoManager() {
-        undoStack.addListener((InvalidationListener) e ->
-                undoLabel.set("Undo " + (undoStack.size() == 0 ? "" : undoStack.get(undoStack.size() - 1).name())));
-        redoStack.addListener((InvalidationListener) e ->
-                redoLabel.set("Redo " + (redoStack.size() == 0 ? "" : redoStack.get(redoStack.size() - 1).name())));
-        canUndo.bind(Bindings.size(undoStack).isNotEqualTo(0));
-        canRedo.bind(Bindings.size(redoStack).isNotEqualTo(0));
+        this(DEFAULT_DEPTH, DEFAULT_MERGE_WINDOW);
+    }
+
+    /**
+     * Constructor for the UndoRedoManager.
+     * @param depth (int): maximal number of commands kept on each of the undo and redo stacks
+     * @param mergeWindow (long): time in milliseconds within which a command is merged with the previous one, 0 to
+     *                    never merge
+     */
+    public UndoRedoManager(int depth, long mergeWindow) {
+        undoStack = new CommandHistory(depth);
+        redoStack = new CommandHistory(depth);
+        this.mergeWindow = mergeWindow * 1_000_000;
     }
 
     /**
@@ -42,13 +64,15 @@ public class UndoRedoManager {
         inUndoRedo.set(true);
         try {
             if (isCanUndo()) {
-                var command = undoStack.remove(undoStack.size() - 1);
+                var command = undoStack.pop();
                 command.undo();
                 if (command.canRedo())
-                    redoStack.add(command);
+                    redoStack.push(command);
             }
         } finally {
             inUndoRedo.set(false);
+            lastAdded = null;
+            update();
         }
     }
 
@@ -59,29 +83,126 @@ public class UndoRedoManager {
         inUndoRedo.set(true);
         try {
             if (isCanRedo()) {
-                var command = redoStack.remove(redoStack.size() - 1);
+                var command = redoStack.pop();
                 command.redo();
                 if (command.canUndo())
-                    undoStack.add(command);
+                    undoStack.push(command);
             }
         } finally {
             inUndoRedo.set(false);
+            lastAdded = null;
+            update();
         }
     }
 
     /**
-     * Adds the given command to the undo stack.
+     * Adds the given command to the undo stack. If the previous command was added within the merge window and is still
+     * on top of the stack, the two are merged if possible.
      * @param command (Command): the command to add to the undo stack
      */
     public void add(Command command) {
-        if (!isInUndoRedo()) {
-            if (command.canUndo())
-                undoStack.add(command);
+        if (transaction != null && !isInUndoRedo()) {
+            Command merged = transaction.isEmpty() ? null : transaction.get(transaction.size() - 1).mergeWith(command);
+            if (merged != null)
+                transaction.set(transaction.size() - 1, merged);
             else
+                transaction.add(command);
+        } else if (!isInUndoRedo()) {
+            long now = System.nanoTime();
+            if (command.canUndo()) {
+                Command merged = lastAdded != null && undoStack.peek() == lastAdded
+                        && now - lastAddedTime <= mergeWindow ? lastAdded.mergeWith(command) : null;
+                if (merged != null) {
+                    undoStack.replaceLast(merged);
+                    lastAdded = merged;
+                } else {
+                    undoStack.push(command);
+                    lastAdded = command;
+                }
+                lastAddedTime = now;
+            } else {
                 undoStack.clear();
+                lastAdded = null;
+            }
+            update();
+        }
+    }
+
+    /**
+     * Begins a transaction: until it is committed, added commands are collected instead of being put on the undo
+     * stack. Transactions can be nested, the commands are added when the outermost transaction is committed.
+     * @param name (String): name of the command the transaction results in
+     */
+    public void beginTransaction(String name) {
+        if (transactionDepth++ == 0) {
+            transaction = new ArrayList<>();
+            transactionName = name;
         }
     }
 
+    /**
+     * Commits the transaction begun last. When the outermost transaction is committed, its commands are added to the
+     * undo stack as one CompoundCommand, if there are any.
+     */
+    public void commitTransaction() {
+        if (transactionDepth == 0)
+            throw new IllegalStateException("No transaction to commit");
+        if (--transactionDepth == 0) {
+            ArrayList<Command> commands = transaction;
+            transaction = null;
+            if (!commands.isEmpty())
+                add(new CompoundCommand(transactionName, commands));
+        }
+    }
+
+    /**
+     * Rolls back all open transactions: the commands collected so far are undone, last one first, and discarded.
+     */
+    public void rollbackTransaction() {
+        if (transactionDepth == 0)
+            throw new IllegalStateException("No transaction to roll back");
+        ArrayList<Command> commands = transaction;
+        transaction = null;
+        transactionDepth = 0;
+        inUndoRedo.set(true);
+        try {
+            for (int i = commands.size() - 1; i >= 0; i--) {
+                if (commands.get(i).canUndo())
+                    commands.get(i).undo();
+            }
+        } finally {
+            inUndoRedo.set(false);
+        }
+    }
+
+    /**
+     * Runs the given operation in a transaction, such that all commands it adds are undone in one step. If the
+     * operation fails with any exception or error, its changes are rolled back.
+     * @param name (String): name of the resulting command
+     * @param operation (Runnable): the operation
+     */
+    public void runAsTransaction(String name, Runnable operation) {
+        beginTransaction(name);
+        boolean completed = false;
+        try {
+            operation.run();
+            completed = true;
+        } finally {
+            if (completed)
+                commitTransaction();
+            else if (isInTransaction())
+                rollbackTransaction();
+        }
+    }
+
+    /**
+     * Returns whether a transaction is open.
+     * @return boolean: whether commands are currently collected
+     */
+    public boolean isInTransaction() {
+        return transaction != null;
+    }
+
     /**
      * Adds the given command to the undo stack and directly performs the redo action.
      * @param command (Command): the command to add to the undo stack
@@ -99,6 +220,45 @@ public class UndoRedoManager {
     public void clear() {
         undoStack.clear();
         redoStack.clear();
+        lastAdded = null;
+        update();
+    }
+
+    /**
+     * Returns the number of commands that can be undone.
+     * @return int: size of the undo stack, at most the depth
+     */
+    public int getUndoCount() {
+        return undoStack.size();
+    }
+
+    /**
+     * Returns the number of commands that can be redone.
+     * @return int: size of the redo stack, at most the depth
+     */
+    public int getRedoCount() {
+        return redoStack.size();
+    }
+
+    /**
+     * Returns the maximal number of commands kept on each stack.
+     * @return int: the depth
+     */
+    public int getDepth() {
+        return undoStack.capacity();
+    }
+
+    /**
+     * Updates labels and flags after the stacks have changed. Properties only notify their listeners if their value
+     * changes, e.g. not while commands are merged.
+     */
+    private void update() {
+        Command undo = undoStack.peek();
+        Command redo = redoStack.peek();
+        undoLabel.set("Undo " + (undo == null ? "" : undo.name()));
+        redoLabel.set("Redo " + (redo == null ? "" : redo.name()));
+        canUndo.set(undo != null);
+        canRedo.set(redo != null);
     }
 
     /**
@@ -0,0 +1,29 @@
+package pdbexplorer.model.util;
+
+import java.util.Arrays;
+
+/**
+ * Minimal growable float array, to avoid boxing when collecting many values, e.g. distances or coordinates.
+ */
+public class FloatList {
+    private float[] values = new float[64];
+    private int size;
+
+    public void add(float value) {
+        if (size == values.length)
+            values = Arrays.copyOf(values, 2 * size);
+        values[size++] = value;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the values as an array.
+     * @return float[]: a copy of the values
+     */
+    public float[] toArray() {
+        return Arrays.copyOf(values, size);
+    }
+}
@@ -0,0 +1,44 @@
+package pdbexplorer.model.util;
+
+import java.util.Arrays;
+
+/**
+ * Minimal growable int array, to avoid boxing when collecting many values, e.g. contacts or triangles.
+ */
+public class IntList {
+    private int[] values = new int[64];
+    private int size;
+
+    public void add(int value) {
+        if (size == values.length)
+            values = Arrays.copyOf(values, 2 * size);
+        values[size++] = value;
+    }
+
+    public int get(int index) {
+        return values[index];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Sorts the values in ascending order.
+     */
+    public void sort() {
+        Arrays.sort(values, 0, size);
+    }
+
+    /**
+     * Returns the values as an array.
+     * @return int[]: a copy of the values
+     */
+    public int[] toArray() {
+        return Arrays.copyOf(values, size);
+    }
+}
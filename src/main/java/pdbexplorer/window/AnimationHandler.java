@@ -21,7 +21,7 @@ import java.util.Collection;
 public class AnimationHandler {
     /**
      * Generates a Timeline object for the animated rotation of the molecule.
-     * @param outerGroup (Group): Group containing all balls, sticks and ribbons
+     * @param outerGroup (Group): Group containing all balls, sticks, ribbons and surfaces
      * @param rotate (Rotate): rotation to apply based on mouse drag
      * @return TimeLine: the timeline for the rotation animation
      */
@@ -41,7 +41,7 @@ public class AnimationHandler {
     /**
      * Generates an animation where all chains contained in the molecule first move away from each other and then back
      * together.
-     * @param outerGroup (Group): Group containing all balls, sticks and ribbons
+     * @param outerGroup (Group): Group containing all balls, sticks, ribbons and surfaces
      * @param chains (ArrayList): the chains contained in the molecule
      * @param numberOfModels (int): the number of models available for the molecule
      * @return TimeLine: the timeline for the explode-animation
@@ -76,8 +76,8 @@ public class AnimationHandler {
         for (int h = 0; h < outerGroup.getChildren().size(); h++) {
             Group nodeGroup = (Group) outerGroup.getChildren().get(h);
 
-            if (h == 2 && nodeGroup.getChildren().isEmpty()) // in case ribbons have not been computed yet
-                break;
+            if (h >= 2 && nodeGroup.getChildren().isEmpty()) // in case ribbons or surfaces have not been computed yet
+                continue;
 
             for (int i = 0; i < (numberOfModels == 0 ? 1 : numberOfModels); i++) {
                 for (int j = 0; j < chains.size(); j++) {
@@ -2,8 +2,10 @@ package pdbexplorer.window;
 
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
-import javafx.geometry.Point3D;
 import javafx.scene.Node;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.chart.LineChart;
 import javafx.scene.chart.NumberAxis;
 import javafx.scene.chart.PieChart;
 import javafx.scene.chart.ScatterChart;
@@ -11,10 +13,11 @@ import javafx.scene.chart.XYChart;
 import javafx.scene.control.Label;
 import javafx.scene.paint.Color;
 import javafx.scene.shape.Circle;
-import pdbexplorer.model.protein.PDBAtom;
+import pdbexplorer.model.analysis.EnsembleAnalysis;
+import pdbexplorer.model.analysis.ResidueStatistics;
+import pdbexplorer.model.analysis.TorsionAngles;
 import pdbexplorer.model.protein.PDBComplex;
 import pdbexplorer.model.protein.PDBMonomer;
-import pdbexplorer.model.protein.PDBPolymer;
 import pdbexplorer.model.selection.MonomerSelectionModel;
 
 import java.util.*;
@@ -33,17 +36,9 @@ public class ChartHandler {
      */
     public static void createPieCharts(PDBComplex model, PieChart pieChartResidue, PieChart pieChartSecStruc,
                                        PieChart pieChartProperties) {
-        // Prepare list of monomers used for creation of pie charts, Take into account all monomers of first model,
-        // assumes that all models have the same composition
-        List<PDBMonomer> monomers = new ArrayList<>();
-
-        for (PDBPolymer polymer : model.getPolymers()) {
-            if (polymer.getModelNumber() == 0 || polymer.getModelNumber() == 1) {
-                monomers.addAll(polymer.getMonomers());
-            }
-        }
-
-        createPieCharts(monomers, pieChartResidue, pieChartSecStruc, pieChartProperties);
+        // Take into account all monomers of first model, assumes that all models have the same composition
+        createPieCharts(ResidueStatistics.getFirstModel(model), pieChartResidue, pieChartSecStruc,
+                pieChartProperties);
     }
 
     /**
@@ -78,79 +73,31 @@ public class ChartHandler {
      */
     private static void createPieCharts(List<PDBMonomer> monomers, PieChart pieChartResidue, PieChart pieChartSecStruc,
                                         PieChart pieChartProperties) {
-        // To have three-letter codes in chart; unknown amino acids are added as "UNK"
-        List<String> oneLetterCode = Arrays.asList("A", "C", "D", "E", "F", "H", "I", "K", "L", "M", "N",
-                "P", "Q", "R", "S", "T", "V", "W", "Y", "G", "O", "U", "X");
-        List<String> threeLetterCode = Arrays.asList("ALA", "CYS", "ASP", "GLU", "PHE", "HIS", "ILE",
-                "LYS", "LEU", "MET", "ASN", "PRO", "GLN", "ARG", "SER", "THR", "VAL", "TRP", "TYR", "GLY",
-                "PYL", "SEC", "UNK");
-
-        HashMap<String, String> oneToThreeLetterCode = new HashMap<>();
-        for (int i = 0; i < oneLetterCode.size(); i++) {
-            oneToThreeLetterCode.put(oneLetterCode.get(i), threeLetterCode.get(i));
-        }
-
-        // To map amino acids to their corresponding property; properties taken from
-        // http://www.geneinfinity.org/sp/sp_aaprops.html; O and U treated like K and C, respectively
-        List<String> properties = Arrays.asList("Nonpolar", "Polar", "Neg. charged", "Neg. charged", "Aromatic",
-                "Pos. charged", "Nonpolar", "Pos. charged", "Nonpolar", "Nonpolar", "Polar", "Polar", "Polar",
-                "Pos. charged", "Polar", "Polar", "Nonpolar", "Aromatic", "Aromatic", "Nonpolar", "Pos. charged",
-                "Polar", "Unknown");
-
-        HashMap<String, String> residueToProperty = new HashMap<>();
-        for (int i = 0; i < oneLetterCode.size(); i++) {
-            residueToProperty.put(oneLetterCode.get(i), properties.get(i));
-        }
-
         // Clear previous pie charts
         pieChartResidue.getData().clear();
         pieChartSecStruc.getData().clear();
         pieChartProperties.getData().clear();
 
-        // HashMap to compute residue and secondary structure counts
-        HashMap<String, Integer> residueCount = new HashMap<>();
-        HashMap<String, Integer> secStrucCount = new HashMap<>();
-        HashMap<String, Integer> propertyCount = new HashMap<>();
-        int totalCount = 0;
-
-        // Prepare data for PieChart
-        for (PDBMonomer monomer : monomers) {
-            // Count occurrence of different residues
-            String monomerLabel = oneToThreeLetterCode.get(monomer.getLabel());
-            residueCount.put(monomerLabel, residueCount.getOrDefault(monomerLabel, 0) + 1);
-            totalCount += 1;
-
-            // Count occurrence of different secondary structure types
-            String monomerSecStruc;
-            if (monomer.getSecondaryStructureType() == null)
-                monomerSecStruc = "COIL";
-            else
-                monomerSecStruc = switch (monomer.getSecondaryStructureType()) {
-                case "H" -> "HELIX";
-                case "S" -> "SHEET";
-                default -> "COIL";
-            };
-            secStrucCount.put(monomerSecStruc, secStrucCount.getOrDefault(monomerSecStruc, 0) + 1);
-
-            // Count occurrences of amino acid properties
-            String property = residueToProperty.get(monomer.getLabel());
-            propertyCount.put(property, propertyCount.getOrDefault(property, 0) + 1);
-        }
+        // Count residues, secondary structure types and amino acid properties
+        ResidueStatistics statistics = new ResidueStatistics(monomers);
+        int totalCount = statistics.getTotalCount();
 
         // Compute Pie Charts
-        computePieChart(residueCount, "Residue Composition (n = " + totalCount + ")", pieChartResidue, totalCount);
-        computePieChart(secStrucCount, "Secondary Structure Composition", pieChartSecStruc, totalCount);
-        computePieChart(propertyCount, "Amino Acid Properties", pieChartProperties, totalCount);
+        computePieChart(statistics.getResidueCount(), "Residue Composition (n = " + totalCount + ")",
+                pieChartResidue, totalCount);
+        computePieChart(statistics.getSecondaryStructureCount(), "Secondary Structure Composition", pieChartSecStruc,
+                totalCount);
+        computePieChart(statistics.getPropertyCount(), "Amino Acid Properties", pieChartProperties, totalCount);
     }
 
     /**
      * Computes a pie chart using the given data and title.
-     * @param countsToDisplay (HashMap): contains values and counts to display in Pie Chart
+     * @param countsToDisplay (Map): contains values and counts to display in Pie Chart
      * @param title (String): title of the HashMap
      * @param pieChart (PieChart): the object to display the pie chart in
      * @param totalCount (int): the total amino acid count
      */
-    private static void computePieChart(HashMap<String, Integer> countsToDisplay, String title, PieChart pieChart,
+    private static void computePieChart(Map<String, Integer> countsToDisplay, String title, PieChart pieChart,
                                         int totalCount) {
         HashMap<String, Double> percentages = new HashMap<>(); // to compute percentages
         // Add residue counts to Pie Chart
@@ -236,35 +183,9 @@ public class ChartHandler {
         XYChart.Series<Number, Number> series = new XYChart.Series<>(); // x = phi, y = psi angles
         series.setName("Torsion Angles");
 
-        // Loop through model
-        for (PDBPolymer polymer : model.getPolymers()) {
-            if (polymer.getModelNumber() == 0 || polymer.getModelNumber() == 1) {
-                // Go over all monomers contained (skip first and last residue because we cannot compute both angles)
-                for (int i = 1; i < polymer.getMonomers().size()-1; i++) {
-                    // Extract needed atoms
-                    // N, C, C-alpha of current monomer
-                    PDBAtom n = polymer.getMonomers().get(i).getN();
-                    PDBAtom c = polymer.getMonomers().get(i).getC();
-                    PDBAtom cAlpha = polymer.getMonomers().get(i).getCAlpha();
-                    // C of previous monomer
-                    PDBAtom cPrior = polymer.getMonomers().get(i-1).getC();
-                    // N of next monomer
-                    PDBAtom nNext = polymer.getMonomers().get(i+1).getN();
-
-                    // Only continue if all needed atoms are present
-                    if (n != null && c != null && cAlpha != null && cPrior != null && nNext != null) {
-                        // Compute phi and psi angles
-                        double phi = computeDihedralAngle(cPrior.getCoordinates(), n.getCoordinates(),
-                                cAlpha.getCoordinates(), c.getCoordinates());
-                        double psi = computeDihedralAngle(n.getCoordinates(), cAlpha.getCoordinates(),
-                                c.getCoordinates(), nNext.getCoordinates());
-
-                        // Add to series
-                        series.getData().add(new XYChart.Data<>(phi, psi));
-                    }
-                }
-            }
-        }
+        TorsionAngles angles = new TorsionAngles(model);
+        for (int i = 0; i < angles.size(); i++)
+            series.getData().add(new XYChart.Data<>(angles.getPhi(i), angles.getPsi(i)));
 
         // Add data to Ramachandran plot
         ObservableList<XYChart.Series<Number, Number>> data = FXCollections.observableArrayList();
@@ -274,30 +195,59 @@ public class ChartHandler {
     }
 
     /**
-     * Computes dihedral angle between four atoms. Adapted for Java from
-     * https://stackoverflow.com/questions/20305272/dihedral-torsion-angle-from-four-points-in-cartesian-coordinates-in-python.
-     * @param p1 (Point3D): coordinates of first atom
-     * @param p2 (Point3D): coordinates of second atom
-     * @param p3 (Point3D): coordinates of third atom
-     * @param p4 (Point3D): coordinates of fourth atom
-     * @return double: the dihedral angle
+     * Draws the pairwise RMSD matrix of an ensemble as heat map (white for identical models, red for the largest RMSD)
+     * and plots the RMSF of each residue as one line per chain.
+     * @param ensemble (EnsembleAnalysis): the results of the ensemble analysis
+     * @param rmsdCanvas (Canvas): the canvas to draw the RMSD matrix on
+     * @param rmsdLabel (Label): the label above the RMSD matrix
+     * @param rmsfChart (LineChart): the chart to plot the RMSF in
      */
-    private static double computeDihedralAngle(Point3D p1, Point3D p2, Point3D p3, Point3D p4) {
-        // Compute vectors of the three atom bonds, normalize b2 such that it does not influence magnitude of vector
-        // rejection
-        Point3D b1 = p2.subtract(p1).multiply(-1.0);
-        Point3D b2 = p3.subtract(p2).normalize();
-        Point3D b3 = p4.subtract(p3);
-
-        // vector rejections
-        Point3D n1 = b1.subtract(b2.multiply(b1.dotProduct(b2)));
-        Point3D n2 = b3.subtract(b2.multiply(b3.dotProduct(b2)));
-
-        // torsion angle: angle between n_1 and n_2 in a plane
-        double x = n1.dotProduct(n2);
-        double y = b2.crossProduct(n1).dotProduct(n2);
-
-        return Math.toDegrees(Math.atan2(y, x));
+    public static void createEnsembleCharts(EnsembleAnalysis ensemble, Canvas rmsdCanvas, Label rmsdLabel,
+                                            LineChart<Number, Number> rmsfChart) {
+        String atoms = ensemble.isBackbone() ? "Backbone" : "Cα";
+
+        // Draw RMSD matrix
+        double[][] rmsd = ensemble.getRmsdMatrix();
+        double max = 0;
+        for (double[] row : rmsd) {
+            for (double value : row)
+                max = Math.max(max, value);
+        }
+        GraphicsContext gc = rmsdCanvas.getGraphicsContext2D();
+        gc.clearRect(0, 0, rmsdCanvas.getWidth(), rmsdCanvas.getHeight());
+        double cell = Math.min(rmsdCanvas.getWidth(), rmsdCanvas.getHeight()) / Math.max(1, rmsd.length);
+        for (int i = 0; i < rmsd.length; i++) {
+            for (int j = 0; j < rmsd.length; j++) {
+                gc.setFill(Color.WHITE.interpolate(Color.RED, max == 0 ? 0 : rmsd[i][j] / max));
+                gc.fillRect(j * cell, i * cell, Math.ceil(cell), Math.ceil(cell));
+            }
+        }
+        gc.setStroke(Color.GRAY);
+        gc.strokeRect(0, 0, cell * rmsd.length, cell * rmsd.length);
+        rmsdLabel.setText("Pairwise " + atoms + " RMSD between " + rmsd.length + " Models (max. "
+                + Math.round(max * 100) / 100.0 + " Å)");
+
+        // Plot RMSF, one series per chain
+        NumberAxis xAxis = (NumberAxis) rmsfChart.getXAxis();
+        NumberAxis yAxis = (NumberAxis) rmsfChart.getYAxis();
+        xAxis.setLabel("Residue");
+        xAxis.setForceZeroInRange(false);
+        yAxis.setLabel("RMSF (Å)");
+        rmsfChart.setTitle(atoms + " RMSF per Residue");
+
+        LinkedHashMap<String, XYChart.Series<Number, Number>> seriesByChain = new LinkedHashMap<>();
+        for (int i = 0; i < ensemble.getResidues().size(); i++) {
+            PDBMonomer residue = ensemble.getResidues().get(i);
+            String chain = residue.getAtoms().get(0).getChain();
+            if (!seriesByChain.containsKey(chain)) {
+                XYChart.Series<Number, Number> series = new XYChart.Series<>();
+                series.setName("Chain " + chain);
+                seriesByChain.put(chain, series);
+            }
+            seriesByChain.get(chain).getData().add(new XYChart.Data<>(residue.getId(), ensemble.getRmsf()[i]));
+        }
+        rmsfChart.setData(FXCollections.observableArrayList(seriesByChain.values()));
+        rmsfChart.setLegendVisible(seriesByChain.size() > 1);
     }
 
     /**
@@ -5,31 +5,34 @@ import javafx.concurrent.Task;
 import javafx.geometry.Point3D;
 import javafx.scene.Group;
 import javafx.scene.Node;
-import javafx.scene.control.ScrollPane;
 import javafx.scene.paint.Color;
 import javafx.scene.paint.PhongMaterial;
 import javafx.scene.shape.*;
-import javafx.scene.text.Font;
-import javafx.scene.text.FontWeight;
-import javafx.scene.text.Text;
-import javafx.scene.text.TextFlow;
 import javafx.util.Pair;
+import pdbexplorer.model.analysis.SurfaceArea;
+import pdbexplorer.model.geometry.Coordinates;
+import pdbexplorer.model.geometry.GaussianSurface;
+import pdbexplorer.model.profiling.ColorChangeEvent;
+import pdbexplorer.model.profiling.GeometryEvent;
 import pdbexplorer.model.protein.PDBAtom;
 import pdbexplorer.model.protein.PDBComplex;
 import pdbexplorer.model.protein.PDBMonomer;
 import pdbexplorer.model.protein.PDBPolymer;
 
 import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.function.BiConsumer;
+import java.util.function.IntConsumer;
 
 /**
  * This class contains methods and tasks needed for the display of the figure corresponding to the molecule contained
  * in a PDB file. The task ComputeFigure computes the balls- and sticks-representation of the molecule, the task
- * ComputeRibbon the ribbon-representation. The method setAtomColor() is used to change the color scheme of the atoms.
- * The method computeSequence() generates Text(Flow) objects for the sequence taking into account all models.
+ * ComputeRibbon the ribbon-representation and ComputeSurface the molecular surface of each chain. The color scheme of
+ * the atoms is changed with computeAtomColors(), which computes the colors of a scheme such that they can be kept, and
+ * applyAtomColors(), which shows them.
  */
 public class ComplexFigure {
     private static final double DEFAULT_RADIUS = 0.1;
-    private static final int DEFAULT_FONT_SIZE = 18;
 
     /**
      * This Task gets as input a model and computes all sticks and balls for this. These are then added to the
@@ -63,53 +66,69 @@ public class ComplexFigure {
 
             // Create as many "sub"groups in balls and sticks as numberOfModels (in case there is more than one)
             Platform.runLater(() -> {
+                if (isCancelled())
+                    return;
                 createSubGroups(balls, numberOfModels, chains);
                 createSubGroups(sticks, numberOfModels, chains);
             });
 
-            // Get all atoms and bonds contained in the complex (i.e. in all contained polymers)
-            ArrayList<PDBAtom> atoms = new ArrayList<>();
-            ArrayList<Pair<PDBAtom, PDBAtom>> bonds = new ArrayList<>();
-            for (PDBPolymer polymer : model.getPolymers()) { // get all atoms
-                atoms.addAll(polymer.getAtoms());
-                bonds.addAll(polymer.getBonds());
-            }
-
-            int total = atoms.size() + bonds.size();
+            // Count all atoms and bonds contained in the complex (i.e. in all contained polymers)
+            int total = 0;
+            for (PDBPolymer polymer : model.getPolymers())
+                total += polymer.getAtoms().size() + polymer.getBonds().size();
 
             // Compute the mean coordinate that is needed for centering
             ArrayList<Point3D> meanPoints = computeMeanPoint(model, numberOfModels);
 
-            // Add all balls
-            for (int i = 0; i < atoms.size(); i++) {
-                PDBAtom atom = atoms.get(i);
-
-                // generate the respective ball
-                Sphere ball = new Sphere((float) atom.getRadius(), 18);
+            // Add the balls and sticks chain by chain
+            int done = 0;
+            for (PDBPolymer polymer : model.getPolymers()) {
+                if (isCancelled()) // superseded by another model
+                    return atomToSphere;
+                GeometryEvent event = new GeometryEvent();
+                event.begin();
+                ArrayList<PDBAtom> atoms = polymer.getAtoms();
+                ArrayList<Pair<PDBAtom, PDBAtom>> bonds = polymer.getBonds();
+                addBalls(atoms, meanPoints, atomToSphere, done, total);
+                addSticks(bonds, meanPoints, done + atoms.size(), total);
+                done += atoms.size() + bonds.size();
+                event.finish(GeometryEvent.BALLS_AND_STICKS, polymer.getLabel(), polymer.getModelNumber(),
+                        atoms.size() + bonds.size());
+            }
 
-                // compute centered coordinates
-                Point3D meanCoordinate = atom.getCoordinates().subtract(meanPoints
-                        .get(atom.getModel() == 0 ? 0 : atom.getModel() - 1));
+            return atomToSphere;
+        }
 
-                // set the centered coordinates
-                ball.setTranslateX(meanCoordinate.getX());
-                ball.setTranslateY(meanCoordinate.getY());
-                ball.setTranslateZ(meanCoordinate.getZ());
+        /**
+         * Creates the balls of the given atoms and adds them to the balls group.
+         */
+        private void addBalls(ArrayList<PDBAtom> atoms, ArrayList<Point3D> meanPoints,
+                              HashMap<PDBAtom, Sphere> atomToSphere, int done, int total) {
+            for (int i = 0; i < atoms.size() && !isCancelled(); i++) {
+                PDBAtom atom = atoms.get(i);
 
-                // setup and add the material/color
-                ball.setMaterial(new PhongMaterial(atom.getColor()));
+                // generate the respective ball, centered
+                Sphere ball = createBall(atom, meanPoints.get(atom.getModel() == 0 ? 0 : atom.getModel() - 1));
 
-                // add ball (i.e., atom) to the respective group
-                Platform.runLater(() -> putIntoSubGroups(atom, ball, balls, chains));
+                // add ball (i.e., atom) to the respective group, unless the groups belong to another model by now
+                Platform.runLater(() -> {
+                    if (!isCancelled())
+                        putIntoSubGroups(atom, ball, balls, chains);
+                });
                 // add atom and ball to hashmap
                 atomToSphere.put(atom, ball);
 
-                int finalI = i;
+                int finalI = done + i;
                 Platform.runLater(() -> updateProgress(finalI, total));
             }
+        }
 
-            // Add all sticks (i.e., bonds)
-            for (int i = 0; i < bonds.size(); i++) {
+        /**
+         * Creates the sticks of the given bonds and adds them to the sticks group.
+         */
+        private void addSticks(ArrayList<Pair<PDBAtom, PDBAtom>> bonds, ArrayList<Point3D> meanPoints, int done,
+                               int total) {
+            for (int i = 0; i < bonds.size() && !isCancelled(); i++) {
                 Pair<PDBAtom, PDBAtom> bond = bonds.get(i);
 
                 PDBAtom atom1 = bond.getKey();
@@ -121,16 +140,33 @@ public class ComplexFigure {
                         atom2.getCoordinates().subtract(meanPoints.get(currentModel)));
 
                 // add stick (i.e., bond) to the respective group
-                Platform.runLater(() -> putIntoSubGroups(atom1, stick, sticks, chains));
+                Platform.runLater(() -> {
+                    if (!isCancelled())
+                        putIntoSubGroups(atom1, stick, sticks, chains);
+                });
 
-                int finalI = i + atoms.size();
+                int finalI = done + i;
                 Platform.runLater(() -> updateProgress(finalI, total));
             }
-
-            return atomToSphere;
         }
     }
 
+    /**
+     * This function creates the ball (Sphere) of an atom, colored by its element.
+     *
+     * @param atom the atom
+     * @param center point of the model that is moved to the origin
+     * @return Sphere at the centered coordinates of the atom
+     */
+    static Sphere createBall(PDBAtom atom, Point3D center) {
+        Sphere ball = new Sphere((float) atom.getRadius(), 18);
+        ball.setTranslateX(atom.getCoordinates().getX() - center.getX());
+        ball.setTranslateY(atom.getCoordinates().getY() - center.getY());
+        ball.setTranslateZ(atom.getCoordinates().getZ() - center.getZ());
+        ball.setMaterial(new PhongMaterial(atom.getColor()));
+        return ball;
+    }
+
     /**
      * This function creates a stick (Cylinder) between the two given points.
      *
@@ -138,31 +174,69 @@ public class ComplexFigure {
      * @param b second 3D point
      * @return Cylinder that spans between the two given points
      */
-    private static Cylinder createStickBetweenPoints(Point3D a, Point3D b) {
+    static Cylinder createStickBetweenPoints(Point3D a, Point3D b) {
+        Cylinder cylinder = new Cylinder(DEFAULT_RADIUS, 100, 6);
+        placeStickBetweenPoints(cylinder, a, b);
+        cylinder.setMaterial(new PhongMaterial(Color.ORANGE));
+        return cylinder;
+    }
+
+    /**
+     * This function moves a stick created by createStickBetweenPoints, such that it spans between the two given
+     * points, e.g. to follow the balls at its ends when they move.
+     *
+     * @param cylinder the stick
+     * @param a first 3D point
+     * @param b second 3D point
+     */
+    static void placeStickBetweenPoints(Cylinder cylinder, Point3D a, Point3D b) {
         Point3D YAXIS = new Point3D(0, 100, 0);
         Point3D midpoint = a.midpoint(b);
         Point3D direction = b.subtract(a);
         Point3D perpendicularAxis = YAXIS.crossProduct(direction);
         double angle = YAXIS.angle(direction);
 
-        Cylinder cylinder = new Cylinder(DEFAULT_RADIUS, 100, 6);
         cylinder.setRotationAxis(perpendicularAxis);
         cylinder.setRotate(angle);
         cylinder.setTranslateX(midpoint.getX());
         cylinder.setTranslateY(midpoint.getY());
         cylinder.setTranslateZ(midpoint.getZ());
         cylinder.setScaleY(a.distance(b) / cylinder.getHeight());
-        cylinder.setMaterial(new PhongMaterial(Color.ORANGE));
-        return cylinder;
     }
 
     /**
-     * Changes the color of the atoms according to the selected color scheme.
-     * @param model (PDBComplex): Molecule for which its 3D Ball and stick representation will be calculated.
-     * @param atomToSphere (HashMap): Maps atoms to their corresponding spheres.
-     * @param colorScheme (int): The new color scheme, which should be employed.
+     * The colors of all atoms of a model in one color scheme, as an index into a palette of the distinct colors per
+     * atom, in the order of the polymers, monomers and atoms of the model. Switching from one snapshot to another only
+     * changes the atoms whose color differs, and a snapshot can be kept to restore a color scheme (e.g. on undo)
+     * without computing it again.
+     */
+    public static class AtomColors {
+        private final int colorScheme;
+        private final ArrayList<Color> palette = new ArrayList<>();
+        private final int[] colorIndex;
+
+        private AtomColors(int colorScheme, int numberOfAtoms) {
+            this.colorScheme = colorScheme;
+            this.colorIndex = new int[numberOfAtoms];
+        }
+
+        public int getColorScheme() {
+            return colorScheme;
+        }
+
+        private Color getColor(int atom) {
+            return palette.get(colorIndex[atom]);
+        }
+    }
+
+    /**
+     * Computes the colors of the atoms in the given color scheme.
+     * @param model (PDBComplex): the molecule
+     * @param colorScheme (int): 0 atom, 1 residue, 2 secondary structure, 3 molecule, 4 exposure; the surface area
+     *                    of the model has to be computed before coloring by exposure
+     * @return AtomColors: the colors of the atoms
      */
-    public static void setAtomColor(PDBComplex model, HashMap<PDBAtom, Sphere> atomToSphere, int colorScheme) {
+    public static AtomColors computeAtomColors(PDBComplex model, int colorScheme) {
         // Residue coloring according to CINEMA scheme taken from https://www.bioinformatics.nl/~berndb/aacolour.html
         HashMap<String, Color> colorByResidue = getColorByResidue();
 
@@ -171,38 +245,91 @@ public class ComplexFigure {
         final List<Color> colorByChain = Arrays.asList(Color.VIOLET, Color.RED, Color.ORANGE, Color.YELLOW, Color.GREEN,
                 Color.CYAN, Color.BLUE);
 
+        // color by solvent exposure uses the cached surface area of the model
+        SurfaceArea surfaceArea = colorScheme == 4 ? SurfaceArea.of(model) : null;
+
+        int numberOfAtoms = 0;
+        for (PDBPolymer polymer : model.getPolymers()) {
+            for (PDBMonomer monomer : polymer.getMonomers())
+                numberOfAtoms += monomer.getAtoms().size();
+        }
+        AtomColors colors = new AtomColors(colorScheme, numberOfAtoms);
+        HashMap<Color, Integer> paletteIndex = new HashMap<>();
+
+        int i = 0;
         for (PDBPolymer polymer : model.getPolymers()) {
             int chainNumber = polymer.getNumber() % colorByChain.size();
             for (PDBMonomer monomer : polymer.getMonomers()) {
                 for (PDBAtom atom : monomer.getAtoms()) {
-                    double opacity = ((PhongMaterial) atomToSphere.get(atom).getMaterial())
-                            .getDiffuseColor().getOpacity();
-                    if (colorScheme == 0) { // color by atom
-                        Color color = atom.getColor();
-                        atomToSphere.get(atom).setMaterial(new PhongMaterial(
-                                new Color(color.getRed(), color.getGreen(), color.getBlue(), opacity)));
-                    } else if (colorScheme == 1) { // color by residue
-                        Color color = colorByResidue.get(monomer.getLabel());
-                        atomToSphere.get(atom).setMaterial(new PhongMaterial(
-                                new Color(color.getRed(), color.getGreen(), color.getBlue(), opacity)));
-                    } else if (colorScheme == 2) { // color by secondary structure
-                        Color color;
+                    Color color;
+                    if (colorScheme == 1) // color by residue
+                        color = colorByResidue.get(monomer.getLabel());
+                    else if (colorScheme == 2) { // color by secondary structure
                         if (monomer.getSecondaryStructureType() == null)
                             color = Color.GRAY;
                         else if (monomer.getSecondaryStructureType().equals("H"))
                             color = Color.RED;
                         else
                             color = Color.LIGHTGREEN;
-                        atomToSphere.get(atom).setMaterial(new PhongMaterial(
-                                new Color(color.getRed(), color.getGreen(), color.getBlue(), opacity)));
-                    } else if (colorScheme == 3) { // color by molecule
-                        Color color = colorByChain.get(chainNumber);
-                        atomToSphere.get(atom).setMaterial(new PhongMaterial(
-                                new Color(color.getRed(), color.getGreen(), color.getBlue(), opacity)));
+                    } else if (colorScheme == 3) // color by molecule
+                        color = colorByChain.get(chainNumber);
+                    else if (colorScheme == 4) // color by relative solvent exposure of the residue
+                        color = getColorByExposure(surfaceArea.getRelativeExposure(monomer));
+                    else // color by atom
+                        color = atom.getColor();
+                    colors.colorIndex[i++] = paletteIndex.computeIfAbsent(color, c -> {
+                        colors.palette.add(c);
+                        return colors.palette.size() - 1;
+                    });
+                }
+            }
+        }
+        return colors;
+    }
+
+    /**
+     * Applies the given colors to the atoms, keeping their opacity. If the currently shown colors are given, only
+     * the atoms whose color differs are changed.
+     * @param model (PDBComplex): the molecule the colors have been computed for
+     * @param atomToSphere (HashMap): Maps atoms to their corresponding spheres.
+     * @param colors (AtomColors): the colors to show
+     * @param shown (AtomColors): the colors currently shown, or null to change all atoms
+     * @return int: number of atoms whose color has been changed
+     */
+    public static int applyAtomColors(PDBComplex model, HashMap<PDBAtom, Sphere> atomToSphere, AtomColors colors,
+                                      AtomColors shown) {
+        ColorChangeEvent event = new ColorChangeEvent();
+        event.begin();
+        int recolored = 0;
+
+        int i = 0;
+        for (PDBPolymer polymer : model.getPolymers()) {
+            for (PDBMonomer monomer : polymer.getMonomers()) {
+                for (PDBAtom atom : monomer.getAtoms()) {
+                    Color color = colors.getColor(i);
+                    if (shown == null || !shown.getColor(i).equals(color)) {
+                        PhongMaterial material = (PhongMaterial) atomToSphere.get(atom).getMaterial();
+                        material.setDiffuseColor(new Color(color.getRed(), color.getGreen(), color.getBlue(),
+                                material.getDiffuseColor().getOpacity()));
+                        recolored++;
                     }
+                    i++;
                 }
             }
         }
+        event.finish(colors.getColorScheme(), recolored);
+        return recolored;
+    }
+
+    /**
+     * Returns the color for the given relative solvent exposure, going from blue (buried) over white to red (exposed).
+     * @param exposure (double): relative accessible surface area of a residue
+     * @return Color: the corresponding color
+     */
+    private static Color getColorByExposure(double exposure) {
+        if (exposure < 0.5)
+            return Color.BLUE.interpolate(Color.WHITE, exposure / 0.5);
+        return Color.WHITE.interpolate(Color.RED, Math.min(1, (exposure - 0.5) / 0.5));
     }
 
     /**
@@ -230,95 +357,219 @@ public class ComplexFigure {
         @Override
         public Void call() {
             // Create as many "sub"groups in ribbons as numberOfModels (in case there is more than one)
-            Platform.runLater(() -> createSubGroups(ribbons, numberOfModels, chains));
+            Platform.runLater(() -> {
+                if (!isCancelled())
+                    createSubGroups(ribbons, numberOfModels, chains);
+            });
 
-            // Compute the mean coordinate that is needed for centering
-            ArrayList<Point3D> meanPoints = computeMeanPoint(model, numberOfModels);
+            // Compute ribbons and add each mesh (i.e., ribbon) to the respective group, stop once cancelled
+            int total = model.getPolymers().size();
+            computeRibbonSegments(model, (atom, meshView) -> {
+                if (isCancelled())
+                    throw new CancellationException();
+                Platform.runLater(() -> {
+                    if (!isCancelled())
+                        putIntoSubGroups(atom, meshView, ribbons, chains);
+                });
+            }, i -> Platform.runLater(() -> updateProgress(i, total)));
+            return null;
+        }
+    }
 
-            // Compute the mean distance of c-betas to c-alphas
-            Point3D meanDistance = meanDistanceOfCBeta(model);
+    /**
+     * Computes the ribbon segments between consecutive residues of all polymers of the given model, centered like the
+     * balls. This does not need a running JavaFX application, such that it can be measured and used on its own.
+     * @param model (PDBComplex): Molecule for which the ribbon is calculated
+     * @param segments (BiConsumer): receives each segment together with the first atom of its residue, which gives
+     *                 its model and chain
+     * @param progress (IntConsumer): receives the index of the polymer after each segment
+     */
+    public static void computeRibbonSegments(PDBComplex model, BiConsumer<PDBAtom, MeshView> segments,
+                                             IntConsumer progress) {
+        // Compute the mean coordinate that is needed for centering
+        ArrayList<Point3D> meanPoints = computeMeanPoint(model, model.getNumberOfModels());
 
-            // Compute ribbons
-            ArrayList<Point3D> prevMonomerCoords;
-            ArrayList<Point3D> currentMonomerCoords;
+        // Compute the mean distance of c-betas to c-alphas
+        Point3D meanDistance = meanDistanceOfCBeta(model);
 
-            // Compute total
-            int total = model.getPolymers().size();
+        // Compute ribbons
+        ArrayList<Point3D> prevMonomerCoords;
+        ArrayList<Point3D> currentMonomerCoords;
 
-            for (int i = 0; i < model.getPolymers().size(); i++) {
-                PDBPolymer polymer = model.getPolymers().get(i);
+        for (int i = 0; i < model.getPolymers().size(); i++) {
+            PDBPolymer polymer = model.getPolymers().get(i);
+
+            prevMonomerCoords = null; // Make coordinates null for the start of each polymer
+            GeometryEvent event = new GeometryEvent();
+            event.begin();
+            int segmentCount = 0;
 
-                prevMonomerCoords = null; // Make coordinates null for the start of each polymer
+            // Get mean point corresponding to current model
+            Point3D meanPoint = meanPoints.get(polymer.getModelNumber() == 0 ? 0 : polymer.getModelNumber() - 1);
 
-                // Get mean point corresponding to current model
+            for (PDBMonomer monomer : polymer.getMonomers()) {
+                if (prevMonomerCoords == null) { // Get coordinates for the first monomer in the polymer
+                    prevMonomerCoords = getMoleculeCoordinates(monomer, meanPoint, meanDistance);
+                } else {
+                    currentMonomerCoords = getMoleculeCoordinates(monomer, meanPoint, meanDistance);
+
+                    // Define points for the Mesh
+                    float[] points = {
+                            (float) prevMonomerCoords.get(0).getX(), (float) prevMonomerCoords.get(0).getY(), (float) prevMonomerCoords.get(0).getZ(),
+                            (float) prevMonomerCoords.get(1).getX(), (float) prevMonomerCoords.get(1).getY(), (float) prevMonomerCoords.get(1).getZ(),
+                            (float) prevMonomerCoords.get(2).getX(), (float) prevMonomerCoords.get(2).getY(), (float) prevMonomerCoords.get(2).getZ(),
+                            (float) currentMonomerCoords.get(0).getX(), (float) currentMonomerCoords.get(0).getY(), (float) currentMonomerCoords.get(0).getZ(),
+                            (float) currentMonomerCoords.get(1).getX(), (float) currentMonomerCoords.get(1).getY(), (float) currentMonomerCoords.get(1).getZ(),
+                            (float) currentMonomerCoords.get(2).getX(), (float) currentMonomerCoords.get(2).getY(), (float) currentMonomerCoords.get(2).getZ()
+                    };
+
+                    // Define texture mapping coordinates
+                    float[] texCoords = {
+                            0, 0,       // t0
+                            0, 0.5f,    // t1
+                            0, 1,       // . . .
+                            1, 1,
+                            1, 0.5f,
+                            1, 0        // t5
+                    };
+
+                    // Define faces for the Mesh
+                    int[] faces = {
+                            0, 0, 1, 1, 4, 4,
+                            0, 0, 4, 4, 5, 5,
+                            1, 1, 2, 2, 3, 3,
+                            1, 1, 3, 3, 4, 4,
+
+                            0, 0, 4, 4, 1, 1, // same triangles, facing the other way
+                            0, 0, 5, 5, 4, 4,
+                            1, 1, 3, 3, 2, 2,
+                            1, 1, 4, 4, 3, 3,
+                    };
+
+                    // Define smoothing groups for the mesh
+                    int[] smoothing = {1, 1, 1, 1, 2, 2, 2, 2};
+
+                    // Define TriangleMesh
+                    TriangleMesh mesh = new TriangleMesh();
+                    mesh.getPoints().addAll(points);
+                    mesh.getTexCoords().addAll(texCoords);
+                    mesh.getFaces().addAll(faces);
+                    mesh.getFaceSmoothingGroups().addAll(smoothing);
+
+                    // Create MeshView
+                    MeshView meshView = new MeshView(mesh);
+                    meshView.setMaterial(new PhongMaterial(Color.YELLOW));
+                    meshView.setDrawMode(DrawMode.FILL);
+
+                    // pass on the mesh (i.e., ribbon) with the residue it belongs to
+                    segments.accept(monomer.getAtoms().get(0), meshView);
+                    segmentCount++;
+
+                    // Set this monomer as the new previous monomer
+                    prevMonomerCoords = currentMonomerCoords;
+
+                    // Update progress for the progress bar
+                    progress.accept(i);
+                }
+            }
+            event.finish(GeometryEvent.RIBBON, polymer.getLabel(), polymer.getModelNumber(), segmentCount);
+        }
+    }
+
+    /**
+     * This Task gets as input a model and computes the molecular surface (a Gaussian surface, see GaussianSurface) of
+     * each chain as one MeshView. These are added to the respective groups and centered like the balls.
+     */
+    public static class ComputeSurface extends Task<Void> {
+        private final PDBComplex model;
+        private final Group surfaces;
+        private final double resolution;
+        private final int numberOfModels;
+        private final ArrayList<String> chains;
+
+        /**
+         * Constructor for the Task ComputeSurface object.
+         * @param model (PDBComplex): Molecule for which the surface will be calculated.
+         * @param surfaces (Group): Grouping to which the meshViews for display are added.
+         * @param resolution (double): grid spacing in Angstrom, smaller values give finer but more costly surfaces
+         */
+        public ComputeSurface(PDBComplex model, Group surfaces, double resolution) {
+            this.model = model;
+            this.surfaces = surfaces;
+            this.resolution = resolution;
+            this.numberOfModels = model.getNumberOfModels();
+            this.chains = model.getChains();
+        }
+
+        @Override
+        public Void call() {
+            // Create as many "sub"groups in surfaces as numberOfModels (in case there is more than one)
+            Platform.runLater(() -> {
+                if (!isCancelled())
+                    createSubGroups(surfaces, numberOfModels, chains);
+            });
+
+            // Compute the mean coordinate that is needed for centering
+            ArrayList<Point3D> meanPoints = computeMeanPoint(model, numberOfModels);
+
+            final List<Color> colorByChain = Arrays.asList(Color.VIOLET, Color.RED, Color.ORANGE, Color.YELLOW,
+                    Color.GREEN, Color.CYAN, Color.BLUE);
+
+            for (int i = 0; i < model.getPolymers().size(); i++) {
+                PDBPolymer polymer = model.getPolymers().get(i);
+                ArrayList<PDBAtom> atoms = polymer.getAtoms();
+                if (atoms.isEmpty())
+                    continue;
+                GeometryEvent event = new GeometryEvent();
+                event.begin();
+
+                // Compute surface of the chain
+                double[] radii = new double[atoms.size()];
+                for (int k = 0; k < atoms.size(); k++)
+                    radii[k] = SurfaceArea.getVanDerWaalsRadius(atoms.get(k).getLetter());
+                GaussianSurface surface = GaussianSurface.compute(Coordinates.of(atoms), radii, resolution,
+                        this::isCancelled);
+                if (surface == null || isCancelled())
+                    return null;
+
+                // Center the points
                 Point3D meanPoint = meanPoints.get(polymer.getModelNumber() == 0 ? 0 : polymer.getModelNumber() - 1);
+                float[] points = surface.getPoints();
+                for (int k = 0; k < points.length; k += 3) {
+                    points[k] -= (float) meanPoint.getX();
+                    points[k + 1] -= (float) meanPoint.getY();
+                    points[k + 2] -= (float) meanPoint.getZ();
+                }
 
-                for (PDBMonomer monomer : polymer.getMonomers()) {
-                    if (prevMonomerCoords == null) { // Get coordinates for the first monomer in the polymer
-                        prevMonomerCoords = getMoleculeCoordinates(monomer, meanPoint, meanDistance);
-                    } else {
-                        currentMonomerCoords = getMoleculeCoordinates(monomer, meanPoint, meanDistance);
-
-                        // Define points for the Mesh
-                        float[] points = {
-                                (float) prevMonomerCoords.get(0).getX(), (float) prevMonomerCoords.get(0).getY(), (float) prevMonomerCoords.get(0).getZ(),
-                                (float) prevMonomerCoords.get(1).getX(), (float) prevMonomerCoords.get(1).getY(), (float) prevMonomerCoords.get(1).getZ(),
-                                (float) prevMonomerCoords.get(2).getX(), (float) prevMonomerCoords.get(2).getY(), (float) prevMonomerCoords.get(2).getZ(),
-                                (float) currentMonomerCoords.get(0).getX(), (float) currentMonomerCoords.get(0).getY(), (float) currentMonomerCoords.get(0).getZ(),
-                                (float) currentMonomerCoords.get(1).getX(), (float) currentMonomerCoords.get(1).getY(), (float) currentMonomerCoords.get(1).getZ(),
-                                (float) currentMonomerCoords.get(2).getX(), (float) currentMonomerCoords.get(2).getY(), (float) currentMonomerCoords.get(2).getZ()
-                        };
-
-                        // Define texture mapping coordinates
-                        float[] texCoords = {
-                                0, 0,       // t0
-                                0, 0.5f,    // t1
-                                0, 1,       // . . .
-                                1, 1,
-                                1, 0.5f,
-                                1, 0        // t5
-                        };
-
-                        // Define faces for the Mesh
-                        int[] faces = {
-                                0, 0, 1, 1, 4, 4,
-                                0, 0, 4, 4, 5, 5,
-                                1, 1, 2, 2, 3, 3,
-                                1, 1, 3, 3, 4, 4,
-
-                                0, 0, 4, 4, 1, 1, // same triangles, facing the other way
-                                0, 0, 5, 5, 4, 4,
-                                1, 1, 3, 3, 2, 2,
-                                1, 1, 4, 4, 3, 3,
-                        };
-
-                        // Define smoothing groups for the mesh
-                        int[] smoothing = {1, 1, 1, 1, 2, 2, 2, 2};
-
-                        // Define TriangleMesh
-                        TriangleMesh mesh = new TriangleMesh();
-                        mesh.getPoints().addAll(points);
-                        mesh.getTexCoords().addAll(texCoords);
-                        mesh.getFaces().addAll(faces);
-                        mesh.getFaceSmoothingGroups().addAll(smoothing);
-
-                        // Create MeshView
-                        MeshView meshView = new MeshView(mesh);
-                        meshView.setMaterial(new PhongMaterial(Color.YELLOW));
-                        meshView.setDrawMode(DrawMode.FILL);
-
-                        // add mesh (i.e., ribbon) to the respective group
-                        PDBAtom atom = monomer.getAtoms().get(0);
-                        Platform.runLater(() -> putIntoSubGroups(atom, meshView, ribbons, chains));
-
-                        // Set this monomer as the new previous monomer
-                        prevMonomerCoords = currentMonomerCoords;
-
-                        // Update progress for the progress bar
-                        int finalI = i;
-                        Platform.runLater(() -> updateProgress(finalI, total));
-                    }
+                // Faces consist of point, normal and texture coordinate indices; point and normal indices coincide
+                int[] triangles = surface.getTriangles();
+                int[] faces = new int[3 * triangles.length];
+                for (int k = 0; k < triangles.length; k++) {
+                    faces[3 * k] = triangles[k];
+                    faces[3 * k + 1] = triangles[k];
                 }
+
+                // Define TriangleMesh with the normals of the surface
+                TriangleMesh mesh = new TriangleMesh(VertexFormat.POINT_NORMAL_TEXCOORD);
+                mesh.getPoints().setAll(points);
+                mesh.getNormals().setAll(surface.getNormals());
+                mesh.getTexCoords().setAll(0, 0);
+                mesh.getFaces().setAll(faces);
+
+                // Create MeshView colored like the chain
+                MeshView meshView = new MeshView(mesh);
+                meshView.setMaterial(new PhongMaterial(colorByChain.get(polymer.getNumber() % colorByChain.size())));
+                meshView.setCullFace(CullFace.NONE);
+
+                // add mesh (i.e., surface) to the respective group
+                PDBAtom atom = atoms.get(0);
+                Platform.runLater(() -> {
+                    if (!isCancelled())
+                        putIntoSubGroups(atom, meshView, surfaces, chains);
+                });
+                event.finish(GeometryEvent.SURFACE, polymer.getLabel(), polymer.getModelNumber(), 1);
+
+                updateProgress(i + 1, model.getPolymers().size());
             }
             return null;
         }
@@ -392,7 +643,7 @@ public class ComplexFigure {
      * @param model (PDBComplex): Molecule for which its 3D Ball and stick representation will be calculated.
      * @return Point3D: Mean point of the coordinates of the model
      */
-    private static ArrayList<Point3D> computeMeanPoint(PDBComplex model, int numberOfModels) {
+    public static ArrayList<Point3D> computeMeanPoint(PDBComplex model, int numberOfModels) {
         ArrayList<Point3D> meanPoints = new ArrayList<>();
         ArrayList<Integer> numberofAtoms = new ArrayList<>();
         for (int i = 0; i < (numberOfModels == 0 ? 1 : numberOfModels); i++) {
@@ -447,118 +698,11 @@ public class ComplexFigure {
                 .getChildren().get(chains.indexOf(atom.getChain()))).getChildren().add(node);
     }
 
-    /**
-     * Computes TextFlow elements for all models contained in the PDB file.
-     * @param model (PDBComplex): Molecule for which its sequence display will be calculated
-     * @param sequences (ArrayList): to store all sequence TextFlow objects
-     * @param tf (TextFlow): the TextFlow in which the sequence will be displayed in the GUI
-     * @param sp (ScrollPane): the ScrollPane in which the TextFlow is contained
-     * @return HashMap: to map monomers to their corresponding Text object
-     */
-    public static HashMap<PDBMonomer, Text> computeSequence(PDBComplex model, ArrayList<TextFlow> sequences,
-                                                            TextFlow tf, ScrollPane sp) {
-        HashMap<PDBMonomer, Text> monomerToText = new HashMap<>(); // to map monomers to the corresponding Text object
-        ArrayList<TextFlow> sequence = new ArrayList<>(); // to store all sequences per model
-        ArrayList<TextFlow> secStructure = new ArrayList<>(); // to store all secondary structures per model
-        HashMap<String, Color> colorByResidue = getColorByResidue();
-
-        // Add as many TextFlow objects as models
-        for (int i = 0; i < (model.getNumberOfModels() == 0 ? 1 : model.getNumberOfModels()); i++) {
-            sequence.add(null); // set null at first to check whether we are at the beginning of a sequences
-            secStructure.add(new TextFlow());
-        }
-
-        boolean containsSecStruc = false; // to check whether a molecule contains information about secondary structure
-
-        for (PDBPolymer polymer : model.getPolymers()) {
-            int modelIndex = polymer.getModelNumber() == 0 ? 0 : polymer.getModelNumber() - 1; // the model index
-            TextFlow seq = sequence.get(modelIndex); // the current sequence
-            TextFlow sec = secStructure.get(modelIndex); // the current secondary structure
-
-            if (seq == null) // Beginning of sequence for that model
-                seq = new TextFlow();
-            else { // Add spaces between chains
-                Text spaceSeq = new Text("   ");
-                spaceSeq.setFont(Font.font("Monospaced", FontWeight.THIN, DEFAULT_FONT_SIZE));
-                Text spaceSec = new Text("   ");
-                spaceSec.setFont(Font.font("Monospaced", FontWeight.THIN, DEFAULT_FONT_SIZE));
-
-                seq.getChildren().add(spaceSeq);
-                sec.getChildren().add(spaceSec);
-            }
-
-            // Add chain label at beginning of each chain
-            Text seqChain = new Text("Chain " + polymer.getLabel() + ": ");
-            seqChain.setFont(Font.font("Monospaced", FontWeight.THIN, DEFAULT_FONT_SIZE));
-            Text secChain = new Text("         ");
-            secChain.setFont(Font.font("Monospaced", FontWeight.THIN, DEFAULT_FONT_SIZE));
-
-            seq.getChildren().add(seqChain);
-            sec.getChildren().add(secChain);
-
-            // Add amino acid sequence and secondary structure
-            for (PDBMonomer monomer : polymer.getMonomers()) {
-                // Get amino acid label
-                Text residue = new Text(monomer.getLabel());
-                residue.setFont(Font.font("Monospaced", FontWeight.NORMAL, DEFAULT_FONT_SIZE));
-                residue.setFill(colorByResidue.get(monomer.getLabel()).saturate());
-                seq.getChildren().add(residue);
-
-                // Add to monomer-text HashMap
-                monomerToText.put(monomer, residue);
-
-                // Get secondary structure at the position
-                String secStruct = monomer.getSecondaryStructureType();
-                if (secStruct == null) {
-                    Text space = new Text(" ");
-                    space.setFont(Font.font("Monospaced", FontWeight.NORMAL, DEFAULT_FONT_SIZE));
-                    sec.getChildren().add(space);
-                } else {
-                    Text secRes = new Text(secStruct);
-                    secRes.setFont(Font.font("Monospaced", FontWeight.NORMAL, DEFAULT_FONT_SIZE));
-                    secRes.setFill(secStruct.equals("H") ? Color.RED.saturate() : Color.LIGHTGREEN.saturate());
-                    sec.getChildren().add(secRes);
-                    containsSecStruc = true;
-                }
-            }
-
-            // Reset the sequence and secondary structure for that model
-            sequence.set(modelIndex, seq);
-            secStructure.set(modelIndex, sec);
-        }
-
-        // Add everything to sequences ArrayList
-        for (int i = 0; i < sequence.size(); i++) {
-            if (!containsSecStruc) {
-                sequences.add(new TextFlow(sequence.get(i))); // wrap in TextFlow to make model selection easier
-            } else {
-                sequences.add(new TextFlow(sequence.get(i), new Text("\n"), secStructure.get(i)));
-            }
-        }
-
-        // Clear sequence and sec. structure from before
-        tf.getChildren().clear();
-
-        // Add sequence and sec. structure information of first model to current display
-        tf.getChildren().add(sequences.get(0));
-
-        // Adjust height of the ScrollPane depending on availability of secondary structure information
-        if (!containsSecStruc) {
-            sp.setPrefHeight(35);
-            sp.setMaxHeight(35);
-        } else {
-            sp.setPrefHeight(55);
-            sp.setMaxHeight(55);
-        }
-
-        return monomerToText;
-    }
-
     /**
      * Returns a HashMap that maps residues to a color following the Lesk coloring scheme for amino acids.
      * @return HashMap: to map residues to colors
      */
-    private static HashMap<String, Color> getColorByResidue() {
+    static HashMap<String, Color> getColorByResidue() {
         // Residue coloring according to Lesk scheme taken from https://www.bioinformatics.nl/~berndb/aacolour.html
         // PYL (O) treated as LYS, SEC (U) as CYS; unknown amino acids get assigned dark gray color
         final List<String> oneLetterCode = Arrays.asList("G", "A", "S", "T", "C", "V", "I", "L", "P", "F", "Y", "M",
@@ -641,6 +785,16 @@ public class ComplexFigure {
                     htmlContent.append("</span></div>");
                 }
             }
+            case 4 -> { // colored by solvent exposure
+                for (int percent = 100; percent >= 0; percent -= 25) {
+                    htmlContent.append("<div><span class=\"circle\" style=\"background-color: #");
+                    htmlContent.append(getColorByExposure(percent / 100.0).toString(), 2, 8);
+                    htmlContent.append(";\"></span><span style=\"font-size: 13px;\">");
+                    htmlContent.append(percent == 100 ? "Exposed (100 %)" : percent == 0 ? "Buried (0 %)"
+                            : percent + " %");
+                    htmlContent.append("</span></div>");
+                }
+            }
         }
 
         // Attach end to the StringBuilder; always the same
@@ -12,10 +12,7 @@ import javafx.scene.paint.PhongMaterial;
 import javafx.scene.shape.Cylinder;
 import javafx.scene.shape.Shape3D;
 import javafx.scene.shape.Sphere;
-import javafx.scene.text.Font;
-import javafx.scene.text.FontWeight;
-import javafx.scene.text.Text;
-import javafx.scene.text.TextFlow;
+import pdbexplorer.model.profiling.SelectionEvent;
 import pdbexplorer.model.protein.PDBAtom;
 import pdbexplorer.model.protein.PDBComplex;
 import pdbexplorer.model.protein.PDBMonomer;
@@ -34,16 +31,13 @@ public class ComplexSelectionHandler {
     private final PDBComplex model;
     private final Group balls;
     private final Group sticks;
-    private final ArrayList<TextFlow> sequences;
+    private final SequenceView sequenceView;
     private final Button deselect;
     private final HashMap<PDBAtom, Sphere> atomToSphere;
-    private final HashMap<PDBMonomer, Text> monomerToText;
     private final HashMap<Sphere, PDBMonomer> ballToMonomer;
     private final HashMap<PDBMonomer, ArrayList<Sphere>> monomerToBalls;
-    private final HashMap<Text, PDBMonomer> textToMonomer;
     private final ArrayList<Cylinder> listOfSticks = new ArrayList<>();
     private final MonomerSelectionModel monomerSelectionModel = new MonomerSelectionModel();
-    private static final int DEFAULT_FONT_SIZE = 18;
     private final PieChart pieChartRes;
     private final PieChart pieChartSec;
     private final PieChart pieChartProp;
@@ -54,38 +48,33 @@ public class ComplexSelectionHandler {
      * @param balls (Group): Group containing all balls of the figure
      * @param sticks (Group): Group containing all sticks of the figure
      * @param atomToSphere (HashMap): Maps atoms to their corresponding spheres
-     * @param sequences (ArrayList): List containing of sequence TextFlow objects
-     * @param monomerToText (HashMap): Maps monomers to their corresponding texts
+     * @param sequenceView (SequenceView): the view of the sequence of the molecule
      * @param deselect (Button): Button to clear the whole selection
      * @param pieChartRes (PieChart): the object to display the residue pie chart in, needed for re-computation
      * @param pieChartSec (PieChart): the object to display the sec. structure pie chart in, needed for re-computation
      */
     public ComplexSelectionHandler(PDBComplex model, Group balls, Group sticks, HashMap<PDBAtom, Sphere> atomToSphere,
-                                   ArrayList<TextFlow> sequences, HashMap<PDBMonomer, Text> monomerToText,
-                                   Button deselect, PieChart pieChartRes,
+                                   SequenceView sequenceView, Button deselect, PieChart pieChartRes,
                                    PieChart pieChartSec, PieChart pieChartProp) {
         this.model = model;
         this.balls = balls;
         this.sticks = sticks;
-        this.sequences = sequences;
+        this.sequenceView = sequenceView;
         this.deselect = deselect;
-        this.monomerToText = monomerToText;
         this.atomToSphere = atomToSphere;
         this.pieChartRes = pieChartRes;
         this.pieChartSec = pieChartSec;
         this.pieChartProp = pieChartProp;
 
-        // Generate a HashMap that maps Spheres to monomers, vice versa and text to monomers
+        // Generate a HashMap that maps Spheres to monomers and vice versa
         ballToMonomer = new HashMap<>();
         monomerToBalls = new HashMap<>();
-        textToMonomer = new HashMap<>();
         for (PDBPolymer polymer : model.getPolymers()) {
             for (PDBMonomer monomer : polymer.getMonomers()) {
                 monomerToBalls.put(monomer, new ArrayList<>());
                 for (PDBAtom atom : monomer.getAtoms()) {
                     ballToMonomer.put(atomToSphere.get(atom), monomer);
                     monomerToBalls.get(monomer).add(atomToSphere.get(atom));
-                    textToMonomer.put(monomerToText.get(monomer), monomer);
                 }
             }
         }
@@ -93,7 +82,7 @@ public class ComplexSelectionHandler {
 
     /**
      * Computes the monomer selection model for a given molecule. It first connects the selection gestures to all
-     * Spheres and Text objects of the structure. Then, a Change Listener is added that updates the opacity of the
+     * Spheres and to the residues of the sequence. Then, a Change Listener is added that updates the opacity of the
      * molecule based on the selected items.
      * @return MonomerSelectionModel: the monomer selection model for the given molecule
      */
@@ -110,18 +99,13 @@ public class ComplexSelectionHandler {
             }
         }
 
-        // Connect selection gestures to each text
-        for (TextFlow modelTF : sequences) {
-            for (Node residue : ((TextFlow) modelTF.getChildren().get(0)).getChildren()) {
-                if (textToMonomer.containsKey((Text) residue))
-                    residue.setOnMouseClicked(e -> {
-                        if (!e.isShiftDown())
-                            monomerSelectionModel.clearSelection();
-                        boolean isSelected = monomerSelectionModel.isSelected(textToMonomer.get(residue));
-                        monomerSelectionModel.setSelected(textToMonomer.get(residue), !isSelected);
-                    });
-            }
-        }
+        // Connect selection gestures to the sequence
+        sequenceView.setOnResidueClicked((residue, e) -> {
+            if (!e.isShiftDown())
+                monomerSelectionModel.clearSelection();
+            boolean isSelected = monomerSelectionModel.isSelected(residue);
+            monomerSelectionModel.setSelected(residue, !isSelected);
+        });
 
         // Generate list of all sticks
         for (Node modelGroup : sticks.getChildren()) {
@@ -134,33 +118,44 @@ public class ComplexSelectionHandler {
         double selected = 1.0; // opacity to set for selected items
         double notSelected = 0.2; // opacity to set for not selected items
         monomerSelectionModel.getSelectedItems().addListener((SetChangeListener<? super PDBMonomer>) c -> {
+            // the sequence view redraws once for all changes
+            if (c.wasAdded())
+                sequenceView.setSelected(c.getElementAdded(), true);
+            else if (c.wasRemoved())
+                sequenceView.setSelected(c.getElementRemoved(), false);
             if (c.wasAdded()) {
                 Platform.runLater(() -> {
+                    SelectionEvent event = new SelectionEvent();
+                    event.begin();
+                    int shapes = 0;
                     if (monomerSelectionModel.getSelectedItems().size() == 1) { // previously nothing selected
-                        updateOpacity(atomToSphere.values(), notSelected);
-                        updateOpacity(listOfSticks, notSelected); // set all sticks to low opacity
-                        monomerToText.values().forEach(text -> text.setOpacity(notSelected));
+                        shapes += updateOpacity(atomToSphere.values(), notSelected);
+                        shapes += updateOpacity(listOfSticks, notSelected); // set all sticks to low opacity
                     }
-                    updateOpacity(monomerToBalls.get(c.getElementAdded()), selected);
-                    monomerToText.get(c.getElementAdded()).setFont(Font.font("Monospaced", FontWeight.BOLD, DEFAULT_FONT_SIZE));
-                    monomerToText.get(c.getElementAdded()).setOpacity(selected);
+                    shapes += updateOpacity(monomerToBalls.get(c.getElementAdded()), selected);
+                    event.finish(SelectionEvent.OPACITY, true, monomerSelectionModel.getSelectedItems().size(), shapes);
                 });
             } else if (c.wasRemoved()) {
                 Platform.runLater(() -> {
+                    SelectionEvent event = new SelectionEvent();
+                    event.begin();
+                    int shapes;
                     if (monomerSelectionModel.getSelectedItems().size() > 0) {
-                        updateOpacity(monomerToBalls.get(c.getElementRemoved()), notSelected);
-                        monomerToText.get(c.getElementRemoved()).setOpacity(notSelected);
+                        shapes = updateOpacity(monomerToBalls.get(c.getElementRemoved()), notSelected);
                     }
                     else {
-                        updateOpacity(atomToSphere.values(), selected); // nothing selected
-                        updateOpacity(listOfSticks, selected);
-                        monomerToText.values().forEach(text -> text.setOpacity(selected));
+                        shapes = updateOpacity(atomToSphere.values(), selected); // nothing selected
+                        shapes += updateOpacity(listOfSticks, selected);
                     }
+                    event.finish(SelectionEvent.OPACITY, false, monomerSelectionModel.getSelectedItems().size(),
+                            shapes);
                 });
-                monomerToText.get(c.getElementRemoved()).setFont(Font.font("Monospaced", FontWeight.NORMAL, DEFAULT_FONT_SIZE));
             }
             // Update Residue Pie Chart
+            SelectionEvent event = new SelectionEvent();
+            event.begin();
             ChartHandler.createPieCharts(model, monomerSelectionModel, pieChartRes, pieChartSec, pieChartProp);
+            event.finish(SelectionEvent.CHARTS, c.wasAdded(), monomerSelectionModel.getSelectedItems().size(), 0);
         });
 
         // Add function to deselect button
@@ -174,12 +169,14 @@ public class ComplexSelectionHandler {
      * Updates the opacity of given Shape objects according to the given opacity.
      * @param list (Collection): list of spheres or cylinders
      * @param opacity (double): the new opacity value to be applied to the shapes
+     * @return int: number of shapes updated
      */
-    private static void updateOpacity(Collection<? extends Shape3D> list, double opacity) {
+    private static int updateOpacity(Collection<? extends Shape3D> list, double opacity) {
         for (var shape : list) {
             Color color = ((PhongMaterial) shape.getMaterial()).getDiffuseColor();
             color = new Color(color.getRed(), color.getGreen(), color.getBlue(), opacity);
             ((PhongMaterial) shape.getMaterial()).setDiffuseColor(color);
         }
+        return list.size();
     }
 }
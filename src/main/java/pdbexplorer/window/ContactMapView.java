@@ -0,0 +1,265 @@
+package pdbexplorer.window;
+
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.control.Label;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+import javafx.scene.layout.Pane;
+import javafx.scene.paint.Color;
+import javafx.scene.shape.Rectangle;
+import pdbexplorer.model.analysis.ContactMap;
+import pdbexplorer.model.protein.PDBMonomer;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * This class displays a contact map as a zoomable image on a Canvas. The image is split into square tiles that are
+ * only rendered once they become visible at the current zoom level and are then kept in a small cache. Scrolling
+ * zooms in and out around the mouse position, dragging moves the map, and hovering shows the residue pair below the
+ * mouse in the given label.
+ */
+public class ContactMapView {
+    private static final int TILE_SIZE = 256;
+    private static final int MAX_CACHED_TILES = 256;
+    private static final double ZOOM_STEP = Math.sqrt(2);
+    private static final double MAX_PIXELS_PER_RESIDUE = 32;
+    private static final Color NEAR_COLOR = Color.DARKBLUE;
+    private static final Color FAR_COLOR = Color.LIGHTSKYBLUE;
+
+    private final Pane pane;
+    private final Canvas canvas = new Canvas();
+    private final Label infoLabel;
+
+    private ContactMap contactMap;
+    private double fitScale = 1; // pixels per residue at zoom level 0
+    private boolean fitted = false; // whether fitScale has been computed for the current map
+    private int zoomLevel = 0;
+    private double offsetX = 0; // position of the map origin on the canvas
+    private double offsetY = 0;
+    private double xPrev;
+    private double yPrev;
+
+    // cache of rendered tiles, least recently used tiles are dropped first
+    private final Map<Long, WritableImage> tiles = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, WritableImage> eldest) {
+            return size() > MAX_CACHED_TILES;
+        }
+    };
+
+    /**
+     * Constructor for a ContactMapView object. Adds the canvas to the given pane.
+     * @param pane (Pane): the pane to display the contact map in
+     * @param infoLabel (Label): label to show information about the residue pair below the mouse
+     */
+    public ContactMapView(Pane pane, Label infoLabel) {
+        this.pane = pane;
+        this.infoLabel = infoLabel;
+
+        // Let canvas fill the pane and clip it to the pane
+        pane.getChildren().add(canvas);
+        canvas.widthProperty().bind(pane.widthProperty());
+        canvas.heightProperty().bind(pane.heightProperty());
+        Rectangle clip = new Rectangle();
+        clip.widthProperty().bind(pane.widthProperty());
+        clip.heightProperty().bind(pane.heightProperty());
+        pane.setClip(clip);
+        canvas.widthProperty().addListener(e -> draw());
+        canvas.heightProperty().addListener(e -> draw());
+
+        // Zoom by scrolling around the mouse position
+        canvas.setOnScroll(e -> {
+            if (contactMap == null)
+                return;
+            int newLevel = zoomLevel + (e.getDeltaY() > 0 ? 1 : e.getDeltaY() < 0 ? -1 : 0);
+            if (newLevel < 0 || fitScale * Math.pow(ZOOM_STEP, newLevel) > Math.max(MAX_PIXELS_PER_RESIDUE, fitScale))
+                return;
+            double factor = Math.pow(ZOOM_STEP, newLevel - zoomLevel);
+            offsetX = e.getX() - (e.getX() - offsetX) * factor;
+            offsetY = e.getY() - (e.getY() - offsetY) * factor;
+            zoomLevel = newLevel;
+            draw();
+        });
+
+        // Move by dragging
+        canvas.setOnMousePressed(e -> {
+            xPrev = e.getX();
+            yPrev = e.getY();
+        });
+        canvas.setOnMouseDragged(e -> {
+            offsetX += e.getX() - xPrev;
+            offsetY += e.getY() - yPrev;
+            xPrev = e.getX();
+            yPrev = e.getY();
+            draw();
+        });
+
+        // Show residue pair under the mouse
+        canvas.setOnMouseMoved(e -> {
+            if (contactMap == null)
+                return;
+            int row = (int) Math.floor((e.getY() - offsetY) / getScale());
+            int column = (int) Math.floor((e.getX() - offsetX) / getScale());
+            if (row < 0 || column < 0 || row >= contactMap.size() || column >= contactMap.size()) {
+                infoLabel.setText(getSummary());
+                return;
+            }
+            double distance = contactMap.getDistance(row, column);
+            infoLabel.setText(residueName(contactMap.getMonomers().get(row)) + " - "
+                    + residueName(contactMap.getMonomers().get(column)) + ": "
+                    + (Double.isNaN(distance) ? "> " + contactMap.getCutoff() : Math.round(distance * 10) / 10.0)
+                    + " Å");
+        });
+    }
+
+    /**
+     * Sets the contact map to display and resets zoom and position, such that the whole map is visible.
+     * @param contactMap (ContactMap): the contact map to display
+     */
+    public void setContactMap(ContactMap contactMap) {
+        this.contactMap = contactMap;
+        tiles.clear();
+        zoomLevel = 0;
+        offsetX = 0;
+        offsetY = 0;
+        fitted = false;
+        infoLabel.setText(contactMap == null ? "" : getSummary());
+        draw();
+    }
+
+    /**
+     * Removes the displayed contact map.
+     */
+    public void clear() {
+        setContactMap(null);
+    }
+
+    /**
+     * Returns the displayed contact map.
+     * @return ContactMap: the displayed contact map or null
+     */
+    public ContactMap getContactMap() {
+        return contactMap;
+    }
+
+    /**
+     * Draws all visible tiles onto the canvas, rendering tiles that are not cached yet.
+     */
+    private void draw() {
+        GraphicsContext gc = canvas.getGraphicsContext2D();
+        gc.clearRect(0, 0, canvas.getWidth(), canvas.getHeight());
+        if (contactMap == null || contactMap.size() == 0)
+            return;
+
+        // Fit the map into the pane once it has a size (the tab might not have been shown before)
+        if (!fitted) {
+            if (pane.getWidth() <= 0 || pane.getHeight() <= 0)
+                return;
+            fitScale = Math.min(pane.getWidth(), pane.getHeight()) / contactMap.size();
+            fitted = true;
+            tiles.clear();
+        }
+
+        double mapSize = contactMap.size() * getScale();
+        gc.setFill(Color.WHITE);
+        gc.fillRect(offsetX, offsetY, mapSize, mapSize);
+
+        int tileCount = (int) Math.ceil(mapSize / TILE_SIZE);
+        int fromX = Math.max(0, (int) Math.floor(-offsetX / TILE_SIZE));
+        int toX = Math.min(tileCount - 1, (int) Math.floor((canvas.getWidth() - offsetX) / TILE_SIZE));
+        int fromY = Math.max(0, (int) Math.floor(-offsetY / TILE_SIZE));
+        int toY = Math.min(tileCount - 1, (int) Math.floor((canvas.getHeight() - offsetY) / TILE_SIZE));
+
+        for (int ty = fromY; ty <= toY; ty++) {
+            for (int tx = fromX; tx <= toX; tx++) {
+                long key = ((long) zoomLevel << 48) | ((long) ty << 24) | tx;
+                int finalTx = tx, finalTy = ty;
+                WritableImage tile = tiles.computeIfAbsent(key, k -> renderTile(finalTx, finalTy));
+                gc.drawImage(tile, offsetX + tx * TILE_SIZE, offsetY + ty * TILE_SIZE);
+            }
+        }
+
+        gc.setStroke(Color.GRAY);
+        gc.strokeRect(offsetX, offsetY, mapSize, mapSize);
+    }
+
+    /**
+     * Renders one tile of the contact map at the current zoom level. Only the stored contacts of the rows covered by
+     * the tile are visited, such that a tile costs time proportional to the number of contacts it shows. If several
+     * residues fall onto one pixel, the closest contact is shown.
+     * @param tx (int): column of the tile
+     * @param ty (int): row of the tile
+     * @return WritableImage: the rendered tile
+     */
+    private WritableImage renderTile(int tx, int ty) {
+        double scale = getScale();
+        float[] intensity = new float[TILE_SIZE * TILE_SIZE];
+        int block = Math.max(1, (int) Math.ceil(scale)); // pixels covered by one residue
+
+        int fromRow = Math.max(0, (int) Math.floor(ty * TILE_SIZE / scale));
+        int toRow = Math.min(contactMap.size(), (int) Math.ceil((ty + 1) * TILE_SIZE / scale));
+        int fromColumn = Math.max(0, (int) Math.floor(tx * TILE_SIZE / scale));
+        int toColumn = Math.min(contactMap.size(), (int) Math.ceil((tx + 1) * TILE_SIZE / scale));
+        double cutoff = contactMap.getCutoff();
+
+        for (int row = fromRow; row < toRow; row++) {
+            int py = (int) Math.floor(row * scale) - ty * TILE_SIZE;
+            contactMap.forEachContact(row, fromColumn, toColumn, (column, distance) -> {
+                int px = (int) Math.floor(column * scale) - tx * TILE_SIZE;
+                float value = (float) Math.max(0.05, 1 - distance / cutoff);
+                for (int y = Math.max(0, py); y < Math.min(TILE_SIZE, py + block); y++) {
+                    for (int x = Math.max(0, px); x < Math.min(TILE_SIZE, px + block); x++) {
+                        intensity[y * TILE_SIZE + x] = Math.max(intensity[y * TILE_SIZE + x], value);
+                    }
+                }
+            });
+        }
+
+        // Convert intensities to colors, pixels without contact stay transparent
+        int[] pixels = new int[TILE_SIZE * TILE_SIZE];
+        int[] palette = new int[256];
+        for (int i = 1; i < palette.length; i++) {
+            palette[i] = toArgb(FAR_COLOR.interpolate(NEAR_COLOR, i / 255.0));
+        }
+        Arrays.setAll(pixels, i -> intensity[i] == 0 ? 0 : palette[Math.max(1, Math.round(intensity[i] * 255))]);
+
+        WritableImage image = new WritableImage(TILE_SIZE, TILE_SIZE);
+        image.getPixelWriter().setPixels(0, 0, TILE_SIZE, TILE_SIZE, PixelFormat.getIntArgbInstance(), pixels, 0,
+                TILE_SIZE);
+        return image;
+    }
+
+    /**
+     * Returns the number of pixels per residue at the current zoom level.
+     */
+    private double getScale() {
+        return fitScale * Math.pow(ZOOM_STEP, zoomLevel);
+    }
+
+    /**
+     * Returns a short summary of the displayed contact map.
+     */
+    private String getSummary() {
+        return contactMap.size() + " residues, " + (contactMap.getContactCount() - contactMap.size()) / 2
+                + " contacts within " + contactMap.getCutoff() + " Å";
+    }
+
+    /**
+     * Returns a label of the given residue consisting of chain, one-letter-code and residue ID.
+     */
+    private static String residueName(PDBMonomer monomer) {
+        String chain = monomer.getAtoms().isEmpty() ? "" : monomer.getAtoms().get(0).getChain() + " ";
+        return chain + monomer.getLabel() + monomer.getId();
+    }
+
+    /**
+     * Converts a color to a packed ARGB int.
+     */
+    private static int toArgb(Color color) {
+        return ((int) Math.round(color.getOpacity() * 255) << 24) | ((int) Math.round(color.getRed() * 255) << 16)
+                | ((int) Math.round(color.getGreen() * 255) << 8) | (int) Math.round(color.getBlue() * 255);
+    }
+}
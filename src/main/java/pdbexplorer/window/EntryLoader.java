@@ -0,0 +1,307 @@
+package pdbexplorer.window;
+
+import javafx.application.Platform;
+import javafx.concurrent.Task;
+import javafx.geometry.Point3D;
+import javafx.scene.Group;
+import javafx.scene.Node;
+import javafx.scene.shape.Sphere;
+import javafx.util.Pair;
+import pdbexplorer.model.PDBEntryReader;
+import pdbexplorer.model.PDBWebClient;
+import pdbexplorer.model.io.PDBParser;
+import pdbexplorer.model.profiling.GeometryEvent;
+import pdbexplorer.model.profiling.LoadProfile;
+import pdbexplorer.model.protein.PDBAtom;
+import pdbexplorer.model.protein.PDBComplex;
+import pdbexplorer.model.protein.PDBPolymer;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * This class contains the task that loads a PDB entry as a pipeline: the balls and sticks of each chain are computed
+ * and shown as soon as the chain has been parsed. Entries are loaded in BinaryCIF format, which is decoded as a whole
+ * but much faster than text; entries that are not available in BinaryCIF format are loaded as text, which is parsed
+ * while it is downloaded, such that chains are shown while the rest of the entry is still downloading. Parsing runs
+ * on the thread of the task, the figure is computed on a second thread.
+ */
+public class EntryLoader {
+    // stages of the load recorded to the profile
+    public static final String STAGE_PARSE = "StreamParse", STAGE_FIGURE = "StreamFigure";
+    // count of the figure stage: time from the start of the load until the first chain is shown
+    public static final String FIRST_CHAIN = "firstChainMillis";
+
+    /**
+     * Result of loading an entry.
+     */
+    public static class Result {
+        private final PDBComplex complex;
+        private final HashMap<PDBAtom, Sphere> atomToSphere;
+
+        private Result(PDBComplex complex, HashMap<PDBAtom, Sphere> atomToSphere) {
+            this.complex = complex;
+            this.atomToSphere = atomToSphere;
+        }
+
+        public PDBComplex getComplex() {
+            return complex;
+        }
+
+        /**
+         * Getter method for the balls of the figure, which has been added to the groups given to the task.
+         * @return HashMap: map from atoms to their balls
+         */
+        public HashMap<PDBAtom, Sphere> getAtomToSphere() {
+            return atomToSphere;
+        }
+    }
+
+    /**
+     * This Task downloads, parses and displays an entry at the same time. Chains are added to the balls and sticks
+     * groups in the usual subgroups (per model, per chain) while they arrive; subgroups of chains are inserted in the
+     * order of the chain IDs, as in PDBComplex.getChains. Until the whole entry is known, each model is centered at the
+     * mean point of its first chain; the nodes are moved to the mean point of the whole model at the end.
+     */
+    public static class LoadEntry extends Task<Result> {
+        private final String id;
+        private final Group balls;
+        private final Group sticks;
+        private final LoadProfile profile;
+        private final long start = System.nanoTime();
+
+        // used by the figure thread only
+        private final HashMap<PDBAtom, Sphere> atomToSphere = new HashMap<>();
+        private final HashMap<Integer, Point3D> centers = new HashMap<>();
+        private LoadProfile.Stage figureStage;
+
+        // used by the JavaFX application thread only: chains that have subgroups, in order
+        private final ArrayList<String> shownChains = new ArrayList<>();
+
+        /**
+         * Constructor for the Task LoadEntry object.
+         * @param id (String): the four-letter name of the PDB entry
+         * @param balls (Group): empty group to which the balls for display are added
+         * @param sticks (Group): empty group to which the sticks for display are added
+         * @param profile (LoadProfile): profile the stages of the load are recorded to
+         */
+        public LoadEntry(String id, Group balls, Group sticks, LoadProfile profile) {
+            this.id = id;
+            this.balls = balls;
+            this.sticks = sticks;
+            this.profile = profile;
+        }
+
+        @Override
+        public Result call() throws IOException, InterruptedException, ExecutionException {
+            updateProgress(-1, 1);
+            ExecutorService figure = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "figure");
+                thread.setDaemon(true);
+                return thread;
+            });
+            try {
+                LoadProfile.Stage parseStage = profile.begin(STAGE_PARSE);
+                PDBComplex complex = PDBEntryReader.readBinaryCIF(id, this::isCancelled, parseStage);
+                if (complex != null) {
+                    for (PDBPolymer polymer : complex.getPolymers())
+                        figure.submit(() -> addChain(polymer));
+                } else {
+                    try (CountingInputStream input = new CountingInputStream(PDBWebClient.openEntry(id))) {
+                        complex = PDBParser.parse(new InputStreamReader(input, StandardCharsets.UTF_8),
+                                polymer -> figure.submit(() -> addChain(polymer)), this::isCancelled);
+                        // read to the end, such that the entry is kept in the cache
+                        input.transferTo(OutputStream.nullOutputStream());
+                        parseStage.count(LoadProfile.BYTES, input.count);
+                    }
+                }
+                parseStage.count(LoadProfile.ATOMS, countAtoms(complex)).end();
+
+                // wait for the last chains
+                figure.submit(() -> {
+                    if (figureStage != null)
+                        figureStage.end();
+                }).get();
+                if (isCancelled())
+                    return null;
+
+                PDBEntryReader.writeSnapshot(id, complex);
+
+                // move the nodes to the final centers, and add subgroups of chains without nodes
+                ArrayList<Point3D> meanPoints = ComplexFigure.computeMeanPoint(complex, complex.getNumberOfModels());
+                ArrayList<Point3D> shifts = new ArrayList<>();
+                for (int i = 0; i < meanPoints.size(); i++)
+                    shifts.add(centers.containsKey(i) ? centers.get(i).subtract(meanPoints.get(i)) : Point3D.ZERO);
+                ArrayList<String> chains = complex.getChains();
+                Platform.runLater(() -> {
+                    if (!isCancelled())
+                        finishFigure(chains, shifts);
+                });
+
+                return new Result(complex, atomToSphere);
+            } finally {
+                figure.shutdownNow();
+            }
+        }
+
+        /**
+         * Computes the balls and sticks of a chain that has been parsed, runs on the figure thread.
+         */
+        private void addChain(PDBPolymer polymer) {
+            if (isCancelled())
+                return;
+            if (figureStage == null)
+                figureStage = profile.begin(STAGE_FIGURE);
+            GeometryEvent event = new GeometryEvent();
+            event.begin();
+            int modelIndex = polymer.getModelNumber() == 0 ? 0 : polymer.getModelNumber() - 1;
+            ArrayList<PDBAtom> atoms = polymer.getAtoms();
+            ArrayList<Pair<PDBAtom, PDBAtom>> bonds = polymer.getBonds();
+            if (!atoms.isEmpty() && !centers.containsKey(modelIndex))
+                centers.put(modelIndex, meanPoint(atoms));
+            Point3D center = centers.getOrDefault(modelIndex, Point3D.ZERO);
+
+            List<Node> chainBalls = new ArrayList<>(atoms.size());
+            for (PDBAtom atom : atoms) {
+                Sphere ball = ComplexFigure.createBall(atom, center);
+                atomToSphere.put(atom, ball);
+                chainBalls.add(ball);
+            }
+            List<Node> chainSticks = new ArrayList<>(bonds.size());
+            for (Pair<PDBAtom, PDBAtom> bond : bonds) {
+                chainSticks.add(ComplexFigure.createStickBetweenPoints(bond.getKey().getCoordinates().subtract(center),
+                        bond.getValue().getCoordinates().subtract(center)));
+            }
+            event.finish(GeometryEvent.BALLS_AND_STICKS, polymer.getLabel(), polymer.getModelNumber(),
+                    atoms.size() + bonds.size());
+            figureStage.count(LoadProfile.ATOMS, atoms.size()).count(LoadProfile.BONDS, bonds.size())
+                    .count(LoadProfile.NODES, atoms.size() + bonds.size());
+
+            // add all nodes of the chain at once
+            String chain = polymer.getLabel();
+            Platform.runLater(() -> {
+                if (isCancelled())
+                    return;
+                if (shownChains.isEmpty() && balls.getChildren().isEmpty())
+                    figureStage.count(FIRST_CHAIN, (System.nanoTime() - start) / 1_000_000);
+                addModelGroups(modelIndex + 1);
+                int chainIndex = addChainGroups(chain);
+                ((Group) ((Group) balls.getChildren().get(modelIndex)).getChildren().get(chainIndex)).getChildren()
+                        .addAll(chainBalls);
+                ((Group) ((Group) sticks.getChildren().get(modelIndex)).getChildren().get(chainIndex)).getChildren()
+                        .addAll(chainSticks);
+            });
+        }
+
+        /**
+         * Adds subgroups for models until there are as many as given, runs on the JavaFX application thread.
+         */
+        private void addModelGroups(int numberOfModels) {
+            for (Group group : List.of(balls, sticks)) {
+                while (group.getChildren().size() < numberOfModels) {
+                    Group modelGroup = new Group();
+                    for (int i = 0; i < shownChains.size(); i++)
+                        modelGroup.getChildren().add(new Group());
+                    group.getChildren().add(modelGroup);
+                }
+            }
+        }
+
+        /**
+         * Adds the subgroup of the given chain to all models, if it does not exist yet, runs on the JavaFX
+         * application thread.
+         * @return int: index of the subgroup of the chain
+         */
+        private int addChainGroups(String chain) {
+            int chainIndex = Collections.binarySearch(shownChains, chain);
+            if (chainIndex < 0) {
+                chainIndex = -chainIndex - 1;
+                shownChains.add(chainIndex, chain);
+                for (Group group : List.of(balls, sticks)) {
+                    for (Node modelGroup : group.getChildren())
+                        ((Group) modelGroup).getChildren().add(chainIndex, new Group());
+                }
+            }
+            return chainIndex;
+        }
+
+        /**
+         * Completes the subgroups for all models and chains of the entry and moves the nodes of each model by the
+         * given shift, runs on the JavaFX application thread before the task succeeds.
+         */
+        private void finishFigure(ArrayList<String> chains, ArrayList<Point3D> shifts) {
+            addModelGroups(shifts.size());
+            for (String chain : chains)
+                addChainGroups(chain);
+            for (Group group : List.of(balls, sticks)) {
+                for (int i = 0; i < shifts.size(); i++) {
+                    Point3D shift = shifts.get(i);
+                    if (shift.equals(Point3D.ZERO))
+                        continue;
+                    for (Node chainGroup : ((Group) group.getChildren().get(i)).getChildren()) {
+                        for (Node node : ((Group) chainGroup).getChildren()) {
+                            node.setTranslateX(node.getTranslateX() + shift.getX());
+                            node.setTranslateY(node.getTranslateY() + shift.getY());
+                            node.setTranslateZ(node.getTranslateZ() + shift.getZ());
+                        }
+                    }
+                }
+            }
+        }
+
+        private static Point3D meanPoint(ArrayList<PDBAtom> atoms) {
+            double x = 0, y = 0, z = 0;
+            for (PDBAtom atom : atoms) {
+                x += atom.getCoordinates().getX();
+                y += atom.getCoordinates().getY();
+                z += atom.getCoordinates().getZ();
+            }
+            return new Point3D(x / atoms.size(), y / atoms.size(), z / atoms.size());
+        }
+
+        private static int countAtoms(PDBComplex complex) {
+            int atoms = 0;
+            for (PDBPolymer polymer : complex.getPolymers())
+                atoms += polymer.getAtoms().size();
+            return atoms;
+        }
+    }
+
+    /**
+     * Counts the bytes read from a stream.
+     */
+    private static class CountingInputStream extends FilterInputStream {
+        private long count;
+
+        private CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int read = super.read();
+            if (read >= 0)
+                count++;
+            return read;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            if (read > 0)
+                count += read;
+            return read;
+        }
+    }
+}
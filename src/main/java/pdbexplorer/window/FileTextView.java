@@ -0,0 +1,121 @@
+package pdbexplorer.window;
+
+import javafx.concurrent.Service;
+import javafx.concurrent.Task;
+import javafx.scene.control.Tab;
+import javafx.scene.control.TextArea;
+import pdbexplorer.model.PDBFileCache;
+import pdbexplorer.model.PDBWebClient;
+import pdbexplorer.model.io.BinaryCIFParser;
+import pdbexplorer.model.io.StructureFileReader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.concurrent.Callable;
+
+/**
+ * This class shows the text of the opened structure file in the PDB file tab. The text is not kept while the structure
+ * is shown: it is read in the background when the tab is selected and dropped when another tab is selected. Entries
+ * are read from the persistent cache, or downloaded as text if only their BinaryCIF file has been loaded; local files
+ * are read from disk, decompressed if necessary.
+ */
+public class FileTextView {
+    private final TextArea textArea;
+    private final Tab tab;
+    private Callable<String> source;
+
+    private final Service<String> serviceRead = new Service<>() {
+        @Override
+        protected Task<String> createTask() {
+            Callable<String> read = source;
+            return new Task<>() {
+                @Override
+                protected String call() throws Exception {
+                    return read.call();
+                }
+            };
+        }
+    };
+
+    /**
+     * Constructor for a FileTextView object.
+     * @param tab (Tab): the PDB file tab
+     * @param textArea (TextArea): the text area of the tab
+     */
+    public FileTextView(Tab tab, TextArea textArea) {
+        this.tab = tab;
+        this.textArea = textArea;
+        serviceRead.setOnSucceeded(e -> textArea.setText(serviceRead.getValue()));
+        serviceRead.setOnFailed(e -> textArea.setText(""));
+        tab.selectedProperty().addListener((v, o, n) -> update());
+    }
+
+    /**
+     * Shows the text of the given PDB entry in PDB or mmCIF format. The text is taken from the persistent cache, or
+     * downloaded when the tab is selected, e.g. if the entry has been loaded in BinaryCIF format.
+     * @param id (String): the four-letter name of the entry
+     */
+    public void showEntry(String id) {
+        String name = id.toLowerCase();
+        show(() -> {
+            String content = PDBFileCache.getDefault().getCached(name + ".pdb");
+            if (content == null)
+                content = PDBFileCache.getDefault().getCached(name + ".cif");
+            if (content == null) {
+                try {
+                    content = PDBWebClient.fetchEntry(name);
+                } catch (IOException e) {
+                    return "";
+                }
+            }
+            return content;
+        });
+    }
+
+    /**
+     * Shows the text of the given structure file, which may be compressed. BinaryCIF files are not shown.
+     * @param file (Path): the structure file
+     */
+    public void showFile(Path file) {
+        show(() -> {
+            try (InputStream input = StructureFileReader.open(file)) {
+                input.mark(1);
+                int first = input.read();
+                input.reset();
+                if (first != -1 && BinaryCIFParser.isBinaryCIF(new byte[]{(byte) first}))
+                    return "";
+                return new String(input.readAllBytes(), StandardCharsets.UTF_8);
+            } catch (IOException e) {
+                return "";
+            }
+        });
+    }
+
+    /**
+     * Clears the text, e.g. if a file could not be opened.
+     */
+    public void clear() {
+        show(null);
+    }
+
+    private void show(Callable<String> source) {
+        this.source = source;
+        textArea.setText("");
+        serviceRead.cancel();
+        update();
+    }
+
+    /**
+     * Reads the text if the tab is selected, drops it otherwise.
+     */
+    private void update() {
+        if (tab.isSelected() && source != null) {
+            serviceRead.restart();
+        } else {
+            serviceRead.cancel();
+            textArea.setText("");
+        }
+    }
+}
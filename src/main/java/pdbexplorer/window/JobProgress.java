@@ -0,0 +1,67 @@
+package pdbexplorer.window;
+
+import javafx.beans.InvalidationListener;
+import javafx.concurrent.Worker;
+import javafx.scene.control.ProgressBar;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class shows the progress of all background jobs (services) in one ProgressBar. The bar is visible while any
+ * tracked job is running; if several jobs run at the same time, it shows their mean progress, or an indeterminate
+ * progress if the progress of one of them is unknown. A job is tracked when it is started; jobs that have finished are
+ * dropped when the next job is tracked. All methods are called on the JavaFX application thread.
+ */
+public class JobProgress {
+    private final ProgressBar progressBar;
+    private final List<Worker<?>> jobs = new ArrayList<>();
+    private final InvalidationListener update = e -> update();
+
+    /**
+     * Constructor for a JobProgress object.
+     * @param progressBar (ProgressBar): the bar showing the progress, hidden while no job is running
+     */
+    public JobProgress(ProgressBar progressBar) {
+        this.progressBar = progressBar;
+        progressBar.setVisible(false);
+    }
+
+    /**
+     * Shows the progress of the given job while it runs, to be called before starting (or restarting) it.
+     * @param job (Worker): the job, e.g. a Service
+     */
+    public void track(Worker<?> job) {
+        jobs.removeIf(other -> {
+            if (other == job || other.isRunning())
+                return false;
+            other.runningProperty().removeListener(update);
+            other.progressProperty().removeListener(update);
+            return true;
+        });
+        if (!jobs.contains(job)) {
+            jobs.add(job);
+            job.runningProperty().addListener(update);
+            job.progressProperty().addListener(update);
+        }
+        update();
+    }
+
+    private void update() {
+        int running = 0;
+        double progress = 0;
+        boolean indeterminate = false;
+        for (Worker<?> job : jobs) {
+            if (job.isRunning()) {
+                running++;
+                if (job.getProgress() < 0)
+                    indeterminate = true;
+                else
+                    progress += job.getProgress();
+            }
+        }
+        progressBar.setVisible(running > 0);
+        if (running > 0)
+            progressBar.setProgress(indeterminate ? ProgressBar.INDETERMINATE_PROGRESS : progress / running);
+    }
+}
@@ -0,0 +1,439 @@
+package pdbexplorer.window;
+
+import javafx.application.Platform;
+import javafx.beans.InvalidationListener;
+import javafx.beans.property.BooleanProperty;
+import javafx.beans.property.SimpleBooleanProperty;
+import javafx.geometry.Point3D;
+import javafx.scene.Group;
+import javafx.scene.Node;
+import javafx.scene.PerspectiveCamera;
+import javafx.scene.SubScene;
+import javafx.scene.shape.Cylinder;
+import javafx.scene.shape.Sphere;
+import pdbexplorer.model.protein.PDBAtom;
+import pdbexplorer.model.protein.PDBComplex;
+import pdbexplorer.model.protein.PDBMonomer;
+import pdbexplorer.model.protein.PDBPolymer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * This class switches the representation of the atoms of each chain depending on how large the chain appears on
+ * screen: close chains are drawn with the balls of the figure, distant chains with low-poly balls and very distant
+ * chains as a trace of their Cα atoms (without sticks). The size on screen is estimated from the distance of the chain
+ * to the PerspectiveCamera; a chain only changes its level once the size has moved past the threshold by a margin
+ * (hysteresis), such that zooming does not make chains flicker between levels. If the triangles of all shown chains
+ * exceed a budget, the most distant chains are simplified further.
+ * The low-poly balls and the traces are built when a chain first needs them, in a group of the same structure as the
+ * balls (per model, per chain), and share the materials of the balls, so coloring and selection apply to them as well.
+ * The group is added to the outer group after balls, sticks, ribbons and surfaces, such that it is exploded with them.
+ */
+public class LevelOfDetail {
+    public enum Level {HIGH, LOW, TRACE}
+
+    public static final long DEFAULT_TRIANGLE_BUDGET = 3_000_000;
+    private static final int HIGH_DIVISIONS = 18; // divisions of the balls of the figure, see ComplexFigure.createBall
+    private static final int LOW_DIVISIONS = 4; // divisions of the low-poly balls, 16 triangles
+    private static final double LOW_PIXELS = 4; // radius of a ball on screen below which low-poly balls are used
+    private static final double TRACE_PIXELS = 1.5; // radius of a ball on screen below which the trace is used
+    private static final double HYSTERESIS = 0.2; // relative margin around the thresholds
+    private static final double TRACE_RADIUS = 0.5; // radius of the trace relative to the radius of the Cα balls
+
+    private final Group balls;
+    private final Group sticks;
+    private final Group lod = new Group();
+    private final PerspectiveCamera camera;
+    private final SubScene subScene;
+    private final BooleanProperty enabled = new SimpleBooleanProperty(true);
+    private long triangleBudget = DEFAULT_TRIANGLE_BUDGET;
+    private boolean updatePending = false;
+
+    // per chain (in the order of PDBComplex.getChains)
+    private final ArrayList<Chain> chains = new ArrayList<>();
+    private PDBComplex model;
+    private HashMap<PDBAtom, Sphere> atomToSphere;
+
+    /**
+     * State of one chain in all models.
+     */
+    private static class Chain {
+        private Level level = Level.HIGH;
+        private BooleanProperty shown;
+        private final BooleanProperty highDetail = new SimpleBooleanProperty(true);
+        private final BooleanProperty sticksShown = new SimpleBooleanProperty(true);
+        private int atoms, bonds, cAlphas; // of the first model
+        private Point3D[] centers; // per model, in coordinates of the chain group
+        private double[] radii; // per model, distance of the farthest ball from the center
+        private double distance; // of the last update
+        private boolean built = false;
+        private final ArrayList<Group> low = new ArrayList<>(); // per model
+        private final ArrayList<Group> trace = new ArrayList<>(); // per model
+
+        private long triangles(Level level) {
+            return switch (level) {
+                case HIGH -> atoms * ballTriangles(HIGH_DIVISIONS) + bonds * stickTriangles();
+                case LOW -> atoms * ballTriangles(LOW_DIVISIONS) + bonds * stickTriangles();
+                case TRACE -> cAlphas * ballTriangles(LOW_DIVISIONS) + Math.max(0, cAlphas - 1) * stickTriangles();
+            };
+        }
+    }
+
+    /**
+     * Constructor for a LevelOfDetail object. Adds the group of the simplified chains to the given group.
+     * @param outerGroup (Group): the group shown in the sub-scene, containing balls and sticks
+     * @param balls (Group): balls of the figure, per model and chain
+     * @param sticks (Group): sticks of the figure, per model and chain
+     * @param camera (PerspectiveCamera): the camera of the sub-scene, looking at the origin
+     * @param subScene (SubScene): the sub-scene, its height determines the size of the chains on screen
+     */
+    public LevelOfDetail(Group outerGroup, Group balls, Group sticks, PerspectiveCamera camera, SubScene subScene) {
+        this.balls = balls;
+        this.sticks = sticks;
+        this.camera = camera;
+        this.subScene = subScene;
+        lod.visibleProperty().bind(balls.visibleProperty());
+        outerGroup.getChildren().add(lod);
+
+        InvalidationListener update = e -> requestUpdate();
+        camera.translateZProperty().addListener(update);
+        camera.fieldOfViewProperty().addListener(update);
+        subScene.heightProperty().addListener(update);
+        outerGroup.getTransforms().addListener(update); // rotation
+        enabled.addListener(update);
+    }
+
+    public BooleanProperty enabledProperty() {
+        return enabled;
+    }
+
+    /**
+     * Sets the maximal number of triangles of the balls and sticks of all shown chains.
+     * @param triangleBudget (long): number of triangles
+     */
+    public void setTriangleBudget(long triangleBudget) {
+        this.triangleBudget = triangleBudget;
+        requestUpdate();
+    }
+
+    public long getTriangleBudget() {
+        return triangleBudget;
+    }
+
+    /**
+     * Sets up the levels of detail for the figure of a molecule, once its balls and sticks have been added to their
+     * groups. Binds the visibility of the chains of balls and sticks to the given properties and the level of detail.
+     * @param model (PDBComplex): the molecule
+     * @param atomToSphere (HashMap): Maps atoms to their corresponding spheres
+     * @param chainShown (List): per chain (in the order of PDBComplex.getChains), whether it is shown
+     */
+    public void setup(PDBComplex model, HashMap<PDBAtom, Sphere> atomToSphere, List<BooleanProperty> chainShown) {
+        clear();
+        this.model = model;
+        this.atomToSphere = atomToSphere;
+        ArrayList<String> chainLabels = model.getChains();
+        int numberOfModels = balls.getChildren().size();
+
+        for (int j = 0; j < chainLabels.size(); j++) {
+            Chain chain = new Chain();
+            chain.shown = chainShown.get(j);
+            chain.shown.addListener(e -> requestUpdate());
+            chain.centers = new Point3D[numberOfModels];
+            chain.radii = new double[numberOfModels];
+            chains.add(chain);
+        }
+        for (PDBPolymer polymer : model.getPolymers()) {
+            if (polymer.getModelNumber() > 1)
+                continue;
+            Chain chain = chains.get(chainLabels.indexOf(polymer.getLabel()));
+            chain.atoms += polymer.getAtoms().size();
+            chain.bonds += polymer.getBonds().size();
+            for (PDBMonomer monomer : polymer.getMonomers())
+                chain.cAlphas += monomer.getCAlpha() == null ? 0 : 1;
+        }
+
+        for (int i = 0; i < numberOfModels; i++) {
+            Group lodModel = new Group();
+            lodModel.visibleProperty().bind(balls.getChildren().get(i).visibleProperty());
+            for (int j = 0; j < chains.size(); j++) {
+                Chain chain = chains.get(j);
+                Group ballsChain = getChainGroup(balls, i, j);
+                ballsChain.visibleProperty().bind(chain.shown.and(chain.highDetail));
+                // sticks are hidden at the trace level, unless the atoms are hidden
+                getChainGroup(sticks, i, j).visibleProperty().bind(chain.shown.and(chain.sticksShown
+                        .or(balls.visibleProperty().not())));
+                computeBounds(chain, i, ballsChain);
+
+                Group lowGroup = new Group(), traceGroup = new Group();
+                chain.low.add(lowGroup);
+                chain.trace.add(traceGroup);
+                Group lodChain = new Group(lowGroup, traceGroup);
+                lodChain.visibleProperty().bind(chain.shown.and(chain.highDetail.not()));
+                lodModel.getChildren().add(lodChain);
+            }
+            lod.getChildren().add(lodModel);
+        }
+        requestUpdate();
+    }
+
+    /**
+     * Removes the simplified chains of the current molecule.
+     */
+    public void clear() {
+        chains.clear();
+        lod.getChildren().clear();
+        model = null;
+        atomToSphere = null;
+    }
+
+    /**
+     * Returns the level of detail of a chain.
+     * @param chain (int): index of the chain in PDBComplex.getChains
+     * @return Level: the level
+     */
+    public Level getLevel(int chain) {
+        return chains.get(chain).level;
+    }
+
+    /**
+     * Returns the number of triangles of the balls and sticks of all shown chains at their current level.
+     * @return long: number of triangles
+     */
+    public long getTriangles() {
+        long triangles = 0;
+        for (Chain chain : chains) {
+            if (chain.shown.get())
+                triangles += chain.triangles(chain.level);
+        }
+        return triangles;
+    }
+
+    /**
+     * Formats the number of chains per level and the triangles, e.g. for the performance overlay.
+     * @return String: one line of text
+     */
+    public String format() {
+        int[] counts = new int[Level.values().length];
+        for (Chain chain : chains)
+            counts[chain.level.ordinal()]++;
+        return String.format(Locale.ROOT, "LOD %s: %d high, %d low, %d trace, %.2fM of %.2fM triangles",
+                enabled.get() ? "on" : "off", counts[0], counts[1], counts[2], getTriangles() / 1e6,
+                triangleBudget / 1e6);
+    }
+
+    /**
+     * Updates the levels once after all pending changes, e.g. of a zoom by scrolling.
+     */
+    public void requestUpdate() {
+        if (updatePending)
+            return;
+        updatePending = true;
+        Platform.runLater(() -> {
+            updatePending = false;
+            update();
+        });
+    }
+
+    /**
+     * Chooses the level of each chain from its size on screen, then simplifies the most distant chains until the
+     * triangles fit in the budget.
+     */
+    private void update() {
+        if (chains.isEmpty())
+            return;
+        int shownModel = 0;
+        for (int i = 0; i < balls.getChildren().size(); i++) {
+            if (balls.getChildren().get(i).isVisible()) {
+                shownModel = i;
+                break;
+            }
+        }
+
+        Level[] levels = new Level[chains.size()];
+        long triangles = 0;
+        Point3D cameraPosition = new Point3D(camera.getTranslateX(), camera.getTranslateY(), camera.getTranslateZ());
+        double focalLength = subScene.getHeight() / 2 / Math.tan(Math.toRadians(camera.getFieldOfView() / 2));
+        for (int j = 0; j < chains.size(); j++) {
+            Chain chain = chains.get(j);
+            Group ballsChain = getChainGroup(balls, shownModel, j);
+            if (!enabled.get() || chain.centers[shownModel] == null) {
+                levels[j] = Level.HIGH;
+            } else {
+                Point3D center = ballsChain.localToScene(chain.centers[shownModel]);
+                chain.distance = Math.max(camera.getNearClip(),
+                        center.distance(cameraPosition) - chain.radii[shownModel]);
+                double pixels = ((Sphere) ballsChain.getChildren().get(0)).getRadius() * focalLength / chain.distance;
+                levels[j] = chooseLevel(chain.level, pixels);
+            }
+            if (chain.shown.get())
+                triangles += chain.triangles(levels[j]);
+        }
+
+        // simplify the most distant chains first, one level per pass
+        if (enabled.get() && triangles > triangleBudget) {
+            Integer[] byDistance = new Integer[chains.size()];
+            Arrays.setAll(byDistance, j -> j);
+            Arrays.sort(byDistance, Comparator.comparingDouble(j -> -chains.get(j).distance));
+            for (int pass = 0; pass < 2 && triangles > triangleBudget; pass++) {
+                for (int j : byDistance) {
+                    Chain chain = chains.get(j);
+                    if (triangles <= triangleBudget)
+                        break;
+                    if (!chain.shown.get() || levels[j] == Level.TRACE || chain.centers[shownModel] == null)
+                        continue;
+                    Level simpler = levels[j] == Level.HIGH ? Level.LOW : Level.TRACE;
+                    triangles += chain.triangles(simpler) - chain.triangles(levels[j]);
+                    levels[j] = simpler;
+                }
+            }
+        }
+
+        for (int j = 0; j < chains.size(); j++)
+            setLevel(chains.get(j), levels[j]);
+    }
+
+    /**
+     * Chooses the level for a chain at its current level whose balls have the given radius on screen.
+     */
+    private static Level chooseLevel(Level level, double pixels) {
+        while (true) {
+            Level next = level;
+            if (level == Level.HIGH && pixels < LOW_PIXELS * (1 - HYSTERESIS))
+                next = Level.LOW;
+            else if (level == Level.LOW && pixels > LOW_PIXELS * (1 + HYSTERESIS))
+                next = Level.HIGH;
+            else if (level == Level.LOW && pixels < TRACE_PIXELS * (1 - HYSTERESIS))
+                next = Level.TRACE;
+            else if (level == Level.TRACE && pixels > TRACE_PIXELS * (1 + HYSTERESIS))
+                next = Level.LOW;
+            if (next == level)
+                return level;
+            level = next;
+        }
+    }
+
+    private void setLevel(Chain chain, Level level) {
+        if (level == chain.level)
+            return;
+        if (level != Level.HIGH && !chain.built)
+            build(chain);
+        chain.level = level;
+        for (int i = 0; i < chain.low.size(); i++) {
+            chain.low.get(i).setVisible(level == Level.LOW);
+            chain.trace.get(i).setVisible(level == Level.TRACE);
+        }
+        chain.highDetail.set(level == Level.HIGH);
+        chain.sticksShown.set(level != Level.TRACE);
+    }
+
+    /**
+     * Builds the low-poly balls and the trace of a chain in all models. The nodes follow the balls of the figure in
+     * size, position and material, e.g. while the balls are moved by the jiggle animation; clicks are passed on to
+     * the balls, such that selecting works at every level.
+     */
+    private void build(Chain chain) {
+        int j = chains.indexOf(chain);
+        for (int i = 0; i < chain.low.size(); i++) {
+            for (Node node : getChainGroup(balls, i, j).getChildren())
+                chain.low.get(i).getChildren().add(createLowBall((Sphere) node));
+        }
+
+        String label = model.getChains().get(j);
+        for (PDBPolymer polymer : model.getPolymers()) {
+            if (!polymer.getLabel().equals(label))
+                continue;
+            Group traceGroup = chain.trace.get(polymer.getModelNumber() == 0 ? 0 : polymer.getModelNumber() - 1);
+            Sphere previous = null;
+            for (PDBMonomer monomer : polymer.getMonomers()) {
+                Sphere ball = monomer.getCAlpha() == null ? null : atomToSphere.get(monomer.getCAlpha());
+                if (ball == null)
+                    continue;
+                traceGroup.getChildren().add(createLowBall(ball));
+                if (previous != null) {
+                    Sphere start = previous, end = ball;
+                    Cylinder stick = ComplexFigure.createStickBetweenPoints(getPosition(start), getPosition(end));
+                    InvalidationListener follow = observable -> ComplexFigure.placeStickBetweenPoints(stick,
+                            getPosition(start), getPosition(end));
+                    for (Sphere moved : List.of(start, end)) {
+                        moved.translateXProperty().addListener(follow);
+                        moved.translateYProperty().addListener(follow);
+                        moved.translateZProperty().addListener(follow);
+                    }
+                    stick.radiusProperty().bind(ball.radiusProperty().multiply(TRACE_RADIUS));
+                    stick.materialProperty().bind(ball.materialProperty());
+                    forwardClicks(stick, ball);
+                    traceGroup.getChildren().add(stick);
+                }
+                previous = ball;
+            }
+        }
+        chain.built = true;
+    }
+
+    private static Sphere createLowBall(Sphere ball) {
+        Sphere low = new Sphere(ball.getRadius(), LOW_DIVISIONS);
+        low.radiusProperty().bind(ball.radiusProperty());
+        low.translateXProperty().bind(ball.translateXProperty());
+        low.translateYProperty().bind(ball.translateYProperty());
+        low.translateZProperty().bind(ball.translateZProperty());
+        low.materialProperty().bind(ball.materialProperty());
+        forwardClicks(low, ball);
+        return low;
+    }
+
+    private static void forwardClicks(Node node, Sphere ball) {
+        node.setOnMouseClicked(e -> {
+            if (ball.getOnMouseClicked() != null)
+                ball.getOnMouseClicked().handle(e);
+        });
+    }
+
+    private static Point3D getPosition(Node node) {
+        return new Point3D(node.getTranslateX(), node.getTranslateY(), node.getTranslateZ());
+    }
+
+    /**
+     * Computes center and radius of the balls of a chain in one model.
+     */
+    private static void computeBounds(Chain chain, int modelIndex, Group ballsChain) {
+        List<Node> nodes = ballsChain.getChildren();
+        if (nodes.isEmpty())
+            return;
+        double x = 0, y = 0, z = 0;
+        for (Node node : nodes) {
+            x += node.getTranslateX();
+            y += node.getTranslateY();
+            z += node.getTranslateZ();
+        }
+        Point3D center = new Point3D(x / nodes.size(), y / nodes.size(), z / nodes.size());
+        double radius = 0;
+        for (Node node : nodes)
+            radius = Math.max(radius, center.distance(getPosition(node)));
+        chain.centers[modelIndex] = center;
+        chain.radii[modelIndex] = radius;
+    }
+
+    private static Group getChainGroup(Group group, int modelIndex, int chainIndex) {
+        return (Group) ((Group) group.getChildren().get(modelIndex)).getChildren().get(chainIndex);
+    }
+
+    /**
+     * Number of triangles of a JavaFX Sphere with the given divisions, which are rounded up to a multiple of 4.
+     */
+    private static long ballTriangles(int divisions) {
+        long rounded = (divisions + 3) / 4 * 4;
+        return rounded * rounded;
+    }
+
+    /**
+     * Number of triangles of a stick, a JavaFX Cylinder with 6 divisions.
+     */
+    private static long stickTriangles() {
+        return 4 * 6;
+    }
+}
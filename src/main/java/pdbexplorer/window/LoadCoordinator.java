@@ -0,0 +1,91 @@
+package pdbexplorer.window;
+
+import javafx.concurrent.Service;
+import javafx.concurrent.Worker;
+import javafx.concurrent.WorkerStateEvent;
+import javafx.event.EventHandler;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class coordinates the jobs (services) that load an entry and build its display: downloading, parsing and
+ * computing the figure. Each load request gets a generation; beginning a new load supersedes the previous one, whose
+ * jobs are cancelled, such that browsing quickly through the list of entries does not keep the CPU busy with entries
+ * that are not shown anymore. The tasks check isCancelled in their loops and stop early. Results of superseded loads
+ * that complete anyway (e.g. just before they were cancelled) are discarded by handlers wrapped with ifCurrent. All
+ * methods are called on the JavaFX application thread.
+ */
+public class LoadCoordinator {
+    private long generation = 0;
+    private final List<Worker<?>> jobs = new ArrayList<>();
+
+    /**
+     * Begins a new load and cancels all jobs of the previous loads.
+     * @return long: the generation of the new load
+     */
+    public long begin() {
+        generation++;
+        for (Worker<?> job : jobs)
+            job.cancel();
+        jobs.clear();
+        return generation;
+    }
+
+    /**
+     * Getter method for the generation of the current load.
+     * @return long: the generation, 0 before the first load
+     */
+    public long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Returns whether the load with the given generation is the current one, i.e. has not been superseded.
+     * @param generation (long): generation of a load
+     * @return boolean: true if no load has begun since
+     */
+    public boolean isCurrent(long generation) {
+        return this.generation == generation;
+    }
+
+    /**
+     * Adds a job to the current load, such that it is cancelled when the load is superseded. Jobs that are added
+     * several times (e.g. restarted services) are only kept once.
+     * @param job (Worker): the job, e.g. a Service
+     */
+    public void add(Worker<?> job) {
+        jobs.removeIf(other -> other == job || other.getState() == Worker.State.SUCCEEDED
+                || other.getState() == Worker.State.FAILED || other.getState() == Worker.State.CANCELLED);
+        jobs.add(job);
+    }
+
+    /**
+     * Starts (or restarts) a job of the current load. Its handlers are only called if the load has not been
+     * superseded when the job finishes.
+     * @param service (Service): the job
+     * @param succeeded (EventHandler): handler for the succeeded event
+     * @param failed (EventHandler): handler for the failed event
+     */
+    public void start(Service<?> service, EventHandler<WorkerStateEvent> succeeded,
+                      EventHandler<WorkerStateEvent> failed) {
+        service.setOnSucceeded(ifCurrent(generation, succeeded));
+        service.setOnFailed(ifCurrent(generation, failed));
+        add(service);
+        service.restart();
+    }
+
+    /**
+     * Wraps a handler of a job of the load with the given generation, such that it is only called if the load has not
+     * been superseded in the meantime.
+     * @param generation (long): generation of the load the job belongs to
+     * @param handler (EventHandler): handler, e.g. for the succeeded or failed event
+     * @return EventHandler: the wrapped handler
+     */
+    public EventHandler<WorkerStateEvent> ifCurrent(long generation, EventHandler<WorkerStateEvent> handler) {
+        return event -> {
+            if (isCurrent(generation))
+                handler.handle(event);
+        };
+    }
+}
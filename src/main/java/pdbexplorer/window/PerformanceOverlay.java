@@ -0,0 +1,185 @@
+package pdbexplorer.window;
+
+import javafx.animation.AnimationTimer;
+import javafx.beans.property.BooleanProperty;
+import javafx.beans.property.SimpleBooleanProperty;
+import javafx.scene.Scene;
+import javafx.scene.control.Label;
+import javafx.scene.layout.Pane;
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import pdbexplorer.model.profiling.LoadProfile;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.Locale;
+
+/**
+ * This class shows performance figures on top of the 3D view: the frame rate, the time between frames and the time of
+ * the layout part of each pulse, the levels of detail of the chains and the stages of the last load of an entry. Frames
+ * are counted by an AnimationTimer, which requests a pulse for every frame while the overlay is shown, so the frame
+ * rate is the one the scene can reach rather than the one it currently needs. While the overlay is shown, a flight
+ * recording with the "profile" settings runs (including allocation samples), which can be written to a file.
+ */
+public class PerformanceOverlay {
+    private static final long UPDATE_INTERVAL = 500_000_000; // nanoseconds between updates of the text
+
+    private final Pane pane;
+    private final Label label = new Label();
+    private final BooleanProperty showing = new SimpleBooleanProperty(false);
+    private LoadProfile profile;
+    private LevelOfDetail levelOfDetail;
+    private Recording recording;
+
+    // frame and pulse times measured since the last update
+    private Scene scene;
+    private long windowStart;
+    private long lastFrame;
+    private long maxFrameTime;
+    private int frames;
+    private long layoutStart;
+    private long layoutTime;
+    private long maxLayoutTime;
+    private int layouts;
+    private final Runnable preLayoutListener = () -> layoutStart = System.nanoTime();
+    private final Runnable postLayoutListener = () -> {
+        long time = System.nanoTime() - layoutStart;
+        layoutTime += time;
+        maxLayoutTime = Math.max(maxLayoutTime, time);
+        layouts++;
+    };
+
+    private final AnimationTimer timer = new AnimationTimer() {
+        @Override
+        public void handle(long now) {
+            if (lastFrame != 0)
+                maxFrameTime = Math.max(maxFrameTime, now - lastFrame);
+            lastFrame = now;
+            frames++;
+            if (now - windowStart >= UPDATE_INTERVAL) {
+                update(now);
+                windowStart = now;
+                maxFrameTime = 0;
+                frames = 0;
+                layoutTime = 0;
+                maxLayoutTime = 0;
+                layouts = 0;
+            }
+        }
+    };
+
+    /**
+     * Constructor for a PerformanceOverlay object. Adds the (hidden) overlay to the top right corner of the given pane.
+     * @param pane (Pane): pane containing the 3D view
+     */
+    public PerformanceOverlay(Pane pane) {
+        this.pane = pane;
+        label.setStyle("-fx-font-family: monospace; -fx-font-size: 11; -fx-text-fill: white; "
+                + "-fx-background-color: rgba(0, 0, 0, 0.6); -fx-padding: 6;");
+        label.setMouseTransparent(true);
+        label.setVisible(false);
+        label.layoutXProperty().bind(pane.widthProperty().subtract(label.widthProperty()).subtract(10));
+        label.setLayoutY(10);
+        pane.getChildren().add(label);
+
+        showing.addListener((v, o, n) -> {
+            if (n)
+                show();
+            else
+                hide();
+        });
+    }
+
+    public BooleanProperty showingProperty() {
+        return showing;
+    }
+
+    /**
+     * Sets the load profile to show. Its stages are shown as they are recorded.
+     * @param profile (LoadProfile): the profile of the last load
+     */
+    public void setProfile(LoadProfile profile) {
+        this.profile = profile;
+    }
+
+    /**
+     * Sets the level of detail manager whose levels and triangles are shown.
+     * @param levelOfDetail (LevelOfDetail): the manager of the 3D view
+     */
+    public void setLevelOfDetail(LevelOfDetail levelOfDetail) {
+        this.levelOfDetail = levelOfDetail;
+    }
+
+    /**
+     * Returns whether a flight recording has been made that can be written to a file.
+     * @return boolean: true if there is a recording
+     */
+    public boolean hasRecording() {
+        return recording != null;
+    }
+
+    /**
+     * Writes the flight recording made while the overlay was shown (last shown, if hidden) to a file.
+     * @param file (Path): the JFR file
+     * @throws IOException in case the file cannot be written
+     */
+    public void dumpRecording(Path file) throws IOException {
+        if (recording == null)
+            throw new IOException("No flight recording has been made.");
+        recording.dump(file);
+    }
+
+    private void show() {
+        scene = pane.getScene();
+        if (scene != null) {
+            scene.addPreLayoutPulseListener(preLayoutListener);
+            scene.addPostLayoutPulseListener(postLayoutListener);
+        }
+        label.setText("Measuring...");
+        label.setVisible(true);
+        label.toFront();
+        windowStart = System.nanoTime();
+        lastFrame = 0;
+        timer.start();
+
+        if (recording != null)
+            recording.close();
+        try {
+            recording = new Recording(Configuration.getConfiguration("profile"));
+            recording.setName("PDB-Explorer");
+            recording.setMaxAge(Duration.ofMinutes(10));
+            recording.start();
+        } catch (IOException | ParseException | IllegalStateException | SecurityException e) {
+            recording = null; // flight recorder not available, only the overlay is shown
+        }
+    }
+
+    private void hide() {
+        timer.stop();
+        label.setVisible(false);
+        if (scene != null) {
+            scene.removePreLayoutPulseListener(preLayoutListener);
+            scene.removePostLayoutPulseListener(postLayoutListener);
+            scene = null;
+        }
+        if (recording != null)
+            recording.stop();
+    }
+
+    /**
+     * Updates the text of the overlay with the figures measured since the last update.
+     */
+    private void update(long now) {
+        StringBuilder text = new StringBuilder(String.format(Locale.ROOT,
+                "%.1f fps   frame max %.1f ms   layout avg %.2f ms, max %.2f ms",
+                frames * 1e9 / (now - windowStart), maxFrameTime / 1e6,
+                layouts == 0 ? 0 : layoutTime / 1e6 / layouts, maxLayoutTime / 1e6));
+        if (levelOfDetail != null)
+            text.append(System.lineSeparator()).append(levelOfDetail.format());
+        if (profile != null)
+            text.append(System.lineSeparator()).append(profile.format().stripTrailing());
+        label.setText(text.toString());
+    }
+}
@@ -0,0 +1,267 @@
+package pdbexplorer.window;
+
+import javafx.application.Platform;
+import javafx.geometry.Bounds;
+import javafx.geometry.VPos;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.control.ScrollPane;
+import javafx.scene.input.MouseEvent;
+import javafx.scene.layout.Pane;
+import javafx.scene.paint.Color;
+import javafx.scene.text.Font;
+import javafx.scene.text.FontWeight;
+import javafx.scene.text.Text;
+import pdbexplorer.model.protein.PDBComplex;
+import pdbexplorer.model.protein.PDBMonomer;
+import pdbexplorer.model.protein.PDBPolymer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.function.BiConsumer;
+
+/**
+ * This class displays the sequence of the shown model (and its secondary structure, if known) in a ScrollPane. The
+ * sequence is kept as one row of characters per model, with the chain labels in between, and drawn on a Canvas of the
+ * size of the visible part of the ScrollPane: only the visible columns are drawn, whatever the length of the
+ * sequence. Clicks are mapped to residues by their column, and selected residues are kept in a BitSet over the
+ * residues of all models, such that the number of nodes does not grow with the size of the complex.
+ */
+public class SequenceView {
+    private static final int DEFAULT_FONT_SIZE = 18;
+    private static final Font NORMAL_FONT = Font.font("Monospaced", FontWeight.NORMAL, DEFAULT_FONT_SIZE);
+    private static final Font BOLD_FONT = Font.font("Monospaced", FontWeight.BOLD, DEFAULT_FONT_SIZE);
+    private static final double NOT_SELECTED_OPACITY = 0.2;
+    private static final String CHAIN_GAP = "   ";
+    private static final Color HELIX_COLOR = Color.RED.saturate();
+    private static final Color SHEET_COLOR = Color.LIGHTGREEN.saturate();
+
+    private final ScrollPane scrollPane;
+    private final Pane content = new Pane();
+    private final Canvas canvas = new Canvas();
+    private final double charWidth;
+    private final double lineHeight;
+
+    // rows of the models, residues of all models (the index of a residue is its bit in selected) and the selection
+    private final ArrayList<Row> rows = new ArrayList<>();
+    private final ArrayList<PDBMonomer> residues = new ArrayList<>();
+    private final HashMap<PDBMonomer, Integer> residueIndex = new HashMap<>();
+    private final BitSet selected = new BitSet();
+    private final Color[] colorByLetter = new Color[128];
+    private boolean secondaryStructure;
+    private int shownModel;
+    private boolean redrawPending = false;
+    private BiConsumer<PDBMonomer, MouseEvent> onResidueClicked;
+
+    /**
+     * The characters of the sequence and secondary structure of one model, and for each column the index of its
+     * residue (-1 for chain labels and gaps).
+     */
+    private static class Row {
+        private final StringBuilder sequence = new StringBuilder();
+        private final StringBuilder secondary = new StringBuilder();
+        private int[] residueAt = new int[256];
+
+        private void append(String text) {
+            for (int i = 0; i < text.length(); i++)
+                append(text.charAt(i), ' ', -1);
+        }
+
+        private void append(char letter, char structure, int residue) {
+            int column = sequence.length();
+            if (column == residueAt.length)
+                residueAt = Arrays.copyOf(residueAt, 2 * column);
+            residueAt[column] = residue;
+            sequence.append(letter);
+            secondary.append(structure);
+        }
+    }
+
+    /**
+     * Constructor for a SequenceView object. Replaces the content of the given ScrollPane.
+     * @param scrollPane (ScrollPane): the (horizontally scrolling) pane to display the sequence in
+     */
+    public SequenceView(ScrollPane scrollPane) {
+        this.scrollPane = scrollPane;
+        Text measure = new Text("W");
+        measure.setFont(NORMAL_FONT);
+        charWidth = measure.getLayoutBounds().getWidth();
+        lineHeight = Math.ceil(measure.getLayoutBounds().getHeight());
+        ComplexFigure.getColorByResidue().forEach((letter, color) -> colorByLetter[letter.charAt(0)] = color.saturate());
+
+        content.getChildren().add(canvas);
+        content.setOnMouseClicked(e -> {
+            PDBMonomer residue = getResidueAt(e.getX(), e.getY());
+            if (residue != null && onResidueClicked != null)
+                onResidueClicked.accept(residue, e);
+        });
+        scrollPane.setContent(content);
+        // the visible part moves while scrolling
+        scrollPane.viewportBoundsProperty().addListener((v, o, n) -> redraw());
+    }
+
+    /**
+     * Sets the complex whose sequence is shown, showing its first model. The selection is cleared.
+     * @param model (PDBComplex): the complex
+     */
+    public void setModel(PDBComplex model) {
+        clear();
+        for (int i = 0; i < (model.getNumberOfModels() == 0 ? 1 : model.getNumberOfModels()); i++)
+            rows.add(new Row());
+        for (PDBPolymer polymer : model.getPolymers()) {
+            Row row = rows.get(polymer.getModelNumber() == 0 ? 0 : polymer.getModelNumber() - 1);
+            if (row.sequence.length() > 0) // spaces between chains
+                row.append(CHAIN_GAP);
+            row.append("Chain " + polymer.getLabel() + ": ");
+            for (PDBMonomer monomer : polymer.getMonomers()) {
+                String structure = monomer.getSecondaryStructureType();
+                secondaryStructure |= structure != null;
+                residueIndex.put(monomer, residues.size());
+                row.append(monomer.getLabel().charAt(0), structure == null ? ' ' : structure.charAt(0),
+                        residues.size());
+                residues.add(monomer);
+            }
+        }
+
+        // Adjust height of the ScrollPane depending on availability of secondary structure information
+        scrollPane.setPrefHeight(secondaryStructure ? 55 : 35);
+        scrollPane.setMaxHeight(secondaryStructure ? 55 : 35);
+        showModel(0);
+    }
+
+    /**
+     * Removes the sequence and the selection.
+     */
+    public void clear() {
+        rows.clear();
+        residues.clear();
+        residueIndex.clear();
+        selected.clear();
+        secondaryStructure = false;
+        shownModel = 0;
+        content.setPrefSize(0, 0);
+        redraw();
+    }
+
+    /**
+     * Shows the sequence of the given model, in case different models have different sequences.
+     * @param modelIndex (int): index of the model, starting at 0
+     */
+    public void showModel(int modelIndex) {
+        shownModel = modelIndex;
+        int columns = modelIndex < rows.size() ? rows.get(modelIndex).sequence.length() : 0;
+        content.setPrefSize(columns * charWidth, (secondaryStructure ? 2 : 1) * lineHeight);
+        content.setMinSize(columns * charWidth, (secondaryStructure ? 2 : 1) * lineHeight);
+        redraw();
+    }
+
+    /**
+     * Sets the handler called when a residue of the sequence is clicked.
+     * @param handler (BiConsumer): receives the residue and the mouse event
+     */
+    public void setOnResidueClicked(BiConsumer<PDBMonomer, MouseEvent> handler) {
+        this.onResidueClicked = handler;
+    }
+
+    /**
+     * Marks a residue as selected or not selected. Selected residues are shown in bold; if any residue is selected,
+     * the others are shown transparent.
+     * @param residue (PDBMonomer): the residue
+     * @param isSelected (boolean): whether it is selected
+     */
+    public void setSelected(PDBMonomer residue, boolean isSelected) {
+        Integer index = residueIndex.get(residue);
+        if (index == null)
+            return;
+        selected.set(index, isSelected);
+        requestRedraw();
+    }
+
+    /**
+     * Marks all residues as not selected.
+     */
+    public void clearSelection() {
+        selected.clear();
+        requestRedraw();
+    }
+
+    /**
+     * Returns the number of residues of all models.
+     * @return int: number of residues
+     */
+    public int getResidueCount() {
+        return residues.size();
+    }
+
+    /**
+     * Returns the residue shown at the given position of the sequence.
+     * @param x (double): x coordinate within the whole sequence
+     * @param y (double): y coordinate within the whole sequence
+     * @return PDBMonomer: the residue or null if there is none, e.g. for a chain label or the secondary structure
+     */
+    public PDBMonomer getResidueAt(double x, double y) {
+        if (shownModel >= rows.size() || y < 0 || y >= lineHeight || x < 0)
+            return null;
+        Row row = rows.get(shownModel);
+        int column = (int) (x / charWidth);
+        if (column >= row.sequence.length() || row.residueAt[column] < 0)
+            return null;
+        return residues.get(row.residueAt[column]);
+    }
+
+    /**
+     * Redraws once after all pending changes, e.g. after a selection of many residues.
+     */
+    private void requestRedraw() {
+        if (redrawPending)
+            return;
+        redrawPending = true;
+        Platform.runLater(() -> {
+            redrawPending = false;
+            redraw();
+        });
+    }
+
+    /**
+     * Draws the visible columns of the shown model on the canvas, which is moved to the visible part of the pane.
+     */
+    private void redraw() {
+        Bounds viewport = scrollPane.getViewportBounds();
+        double left = Math.max(0, -viewport.getMinX());
+        canvas.setLayoutX(left);
+        canvas.setWidth(Math.max(0, Math.min(viewport.getWidth(), content.getPrefWidth() - left)));
+        canvas.setHeight(content.getPrefHeight());
+        GraphicsContext gc = canvas.getGraphicsContext2D();
+        gc.clearRect(0, 0, canvas.getWidth(), canvas.getHeight());
+        if (shownModel >= rows.size())
+            return;
+
+        Row row = rows.get(shownModel);
+        boolean anySelected = !selected.isEmpty();
+        gc.setTextBaseline(VPos.TOP);
+        int first = (int) (left / charWidth);
+        int last = Math.min(row.sequence.length(), (int) Math.ceil((left + canvas.getWidth()) / charWidth));
+        for (int column = first; column < last; column++) {
+            double x = column * charWidth - left;
+            char letter = row.sequence.charAt(column);
+            int residue = row.residueAt[column];
+            boolean isSelected = residue >= 0 && selected.get(residue);
+            gc.setFont(isSelected ? BOLD_FONT : NORMAL_FONT);
+            gc.setGlobalAlpha(residue >= 0 && anySelected && !isSelected ? NOT_SELECTED_OPACITY : 1);
+            gc.setFill(residue < 0 || letter >= colorByLetter.length || colorByLetter[letter] == null ? Color.BLACK
+                    : colorByLetter[letter]);
+            gc.fillText(String.valueOf(letter), x, 0);
+
+            char structure = row.secondary.charAt(column);
+            if (secondaryStructure && structure != ' ') {
+                gc.setFont(NORMAL_FONT);
+                gc.setGlobalAlpha(1);
+                gc.setFill(structure == 'H' ? HELIX_COLOR : SHEET_COLOR);
+                gc.fillText(String.valueOf(structure), x, lineHeight);
+            }
+        }
+        gc.setGlobalAlpha(1);
+    }
+}
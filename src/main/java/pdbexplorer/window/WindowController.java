@@ -1,6 +1,8 @@
 package pdbexplorer.window;
 
 import javafx.fxml.FXML;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.chart.LineChart;
 import javafx.scene.chart.PieChart;
 import javafx.scene.chart.ScatterChart;
 import javafx.scene.control.Button;
@@ -20,7 +22,7 @@ import javafx.scene.control.TextArea;
 import javafx.scene.control.TextField;
 import javafx.scene.control.TitledPane;
 import javafx.scene.layout.Pane;
-import javafx.scene.text.TextFlow;
+import javafx.scene.layout.VBox;
 import javafx.scene.web.WebView;
 import pdbexplorer.model.CheckBoxListViewItem;
 
@@ -53,12 +55,27 @@ public class WindowController {
     @FXML
     private ChoiceBox<String> colorSchemeChoiceBox;
 
+    @FXML
+    private ChoiceBox<String> contactMapChoiceBox;
+
+    @FXML
+    private Label contactMapInfoLabel;
+
+    @FXML
+    private Pane contactMapPane;
+
+    @FXML
+    private Tab contactMapTab;
+
     @FXML
     private Button copyButton;
 
     @FXML
     private Button deselectButton;
 
+    @FXML
+    private VBox ensembleBox;
+
     @FXML
     private Button explodeButton;
 
@@ -92,12 +109,18 @@ public class WindowController {
     @FXML
     private MenuItem menuAbout;
 
+    @FXML
+    private CheckMenuItem menuAlignModels;
+
     @FXML
     private MenuItem menuClose;
 
     @FXML
     private RadioMenuItem menuColAtom;
 
+    @FXML
+    private RadioMenuItem menuColExposure;
+
     @FXML
     private RadioMenuItem menuColMolecule;
 
@@ -113,6 +136,18 @@ public class WindowController {
     @FXML
     private CheckMenuItem menuDarkMode;
 
+    @FXML
+    private MenuItem menuDownloadListed;
+
+    @FXML
+    private MenuItem menuExportProfile;
+
+    @FXML
+    private CheckMenuItem menuPerformanceOverlay;
+
+    @FXML
+    private CheckMenuItem menuLevelOfDetail;
+
     @FXML
     private MenuItem menuFullScreen;
 
@@ -137,6 +172,9 @@ public class WindowController {
     @FXML
     private CheckMenuItem menuShowSticks;
 
+    @FXML
+    private CheckMenuItem menuShowSurface;
+
     @FXML
     private MenuItem menuUndo;
 
@@ -155,6 +193,9 @@ public class WindowController {
     @FXML
     private TextArea pdbFileTA;
 
+    @FXML
+    private Tab pdbFileTab;
+
     @FXML
     private TextField pdbSearchTF;
 
@@ -173,6 +214,15 @@ public class WindowController {
     @FXML
     private CheckBox ribbonsCB;
 
+    @FXML
+    private Canvas rmsdCanvas;
+
+    @FXML
+    private Label rmsdLabel;
+
+    @FXML
+    private LineChart<Number, Number> rmsfChart;
+
     @FXML
     private Button saveButton;
 
@@ -183,10 +233,13 @@ public class WindowController {
     private ScrollPane sequenceScrollBar;
 
     @FXML
-    private TextFlow sequenceTextFlow;
+    private Tab statsTab;
 
     @FXML
-    private Tab statsTab;
+    private CheckBox surfaceCB;
+
+    @FXML
+    private ChoiceBox<String> surfaceResolutionChoiceBox;
 
     @FXML
     private Button undoButton;
@@ -233,6 +286,22 @@ public class WindowController {
         return colorSchemeChoiceBox;
     }
 
+    public ChoiceBox<String> getContactMapChoiceBox() {
+        return contactMapChoiceBox;
+    }
+
+    public Label getContactMapInfoLabel() {
+        return contactMapInfoLabel;
+    }
+
+    public Pane getContactMapPane() {
+        return contactMapPane;
+    }
+
+    public Tab getContactMapTab() {
+        return contactMapTab;
+    }
+
     public Button getCopyButton() {
         return copyButton;
     }
@@ -241,6 +310,10 @@ public class WindowController {
         return deselectButton;
     }
 
+    public VBox getEnsembleBox() {
+        return ensembleBox;
+    }
+
     public Button getExplodeButton() {
         return explodeButton;
     }
@@ -285,6 +358,10 @@ public class WindowController {
         return menuAbout;
     }
 
+    public CheckMenuItem getMenuAlignModels() {
+        return menuAlignModels;
+    }
+
     public MenuItem getMenuClose() {
         return menuClose;
     }
@@ -293,6 +370,10 @@ public class WindowController {
         return menuColAtom;
     }
 
+    public RadioMenuItem getMenuColExposure() {
+        return menuColExposure;
+    }
+
     public RadioMenuItem getMenuColMolecule() {
         return menuColMolecule;
     }
@@ -313,6 +394,22 @@ public class WindowController {
         return menuDarkMode;
     }
 
+    public MenuItem getMenuDownloadListed() {
+        return menuDownloadListed;
+    }
+
+    public MenuItem getMenuExportProfile() {
+        return menuExportProfile;
+    }
+
+    public CheckMenuItem getMenuPerformanceOverlay() {
+        return menuPerformanceOverlay;
+    }
+
+    public CheckMenuItem getMenuLevelOfDetail() {
+        return menuLevelOfDetail;
+    }
+
     public MenuItem getMenuFullScreen() {
         return menuFullScreen;
     }
@@ -345,6 +442,10 @@ public class WindowController {
         return menuShowSticks;
     }
 
+    public CheckMenuItem getMenuShowSurface() {
+        return menuShowSurface;
+    }
+
     public MenuItem getMenuUndo() {
         return menuUndo;
     }
@@ -369,6 +470,10 @@ public class WindowController {
         return pdbFileTA;
     }
 
+    public Tab getPdbFileTab() {
+        return pdbFileTab;
+    }
+
     public TextField getPdbSearchTF() {
         return pdbSearchTF;
     }
@@ -393,6 +498,18 @@ public class WindowController {
         return ribbonsCB;
     }
 
+    public Canvas getRmsdCanvas() {
+        return rmsdCanvas;
+    }
+
+    public Label getRmsdLabel() {
+        return rmsdLabel;
+    }
+
+    public LineChart<Number, Number> getRmsfChart() {
+        return rmsfChart;
+    }
+
     public Button getSaveButton() {
         return saveButton;
     }
@@ -405,14 +522,18 @@ public class WindowController {
         return sequenceScrollBar;
     }
 
-    public TextFlow getSequenceTextFlow() {
-        return sequenceTextFlow;
-    }
-
     public Tab getStatsTab() {
         return statsTab;
     }
 
+    public CheckBox getSurfaceCB() {
+        return surfaceCB;
+    }
+
+    public ChoiceBox<String> getSurfaceResolutionChoiceBox() {
+        return surfaceResolutionChoiceBox;
+    }
+
     public Button getUndoButton() {
         return undoButton;
     }
@@ -1,22 +1,26 @@
 package pdbexplorer.window;
 
 import javafx.animation.Animation;
+import javafx.animation.PauseTransition;
 import javafx.animation.Timeline;
 import javafx.application.Platform;
+import javafx.beans.InvalidationListener;
 import javafx.beans.binding.Bindings;
 import javafx.beans.property.*;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
-import javafx.collections.transformation.FilteredList;
 import javafx.concurrent.Service;
 import javafx.concurrent.Task;
 import javafx.concurrent.Worker;
 import javafx.concurrent.WorkerStateEvent;
+import javafx.event.EventHandler;
 import javafx.geometry.Point3D;
 import javafx.geometry.Pos;
 import javafx.scene.*;
 import javafx.scene.control.Alert;
 import javafx.scene.control.Button;
+import javafx.scene.control.ButtonType;
+import javafx.scene.control.ChoiceDialog;
 import javafx.scene.control.Label;
 import javafx.scene.control.ToggleGroup;
 import javafx.scene.control.cell.CheckBoxListCell;
@@ -25,8 +29,6 @@ import javafx.scene.input.ClipboardContent;
 import javafx.scene.layout.BorderPane;
 import javafx.scene.shape.Cylinder;
 import javafx.scene.shape.Sphere;
-import javafx.scene.text.Text;
-import javafx.scene.text.TextFlow;
 import javafx.scene.transform.Rotate;
 import javafx.scene.transform.Transform;
 import javafx.scene.web.WebEngine;
@@ -34,9 +36,20 @@ import javafx.scene.web.WebView;
 import javafx.stage.FileChooser;
 import javafx.stage.Modality;
 import javafx.stage.Stage;
+import javafx.util.Duration;
 import pdbexplorer.model.CheckBoxListViewItem;
+import pdbexplorer.model.PDBEntryReader;
+import pdbexplorer.model.PDBFileCache;
+import pdbexplorer.model.PDBHoldings;
+import pdbexplorer.model.PDBPrefetcher;
+import pdbexplorer.model.PDBSearchIndex;
 import pdbexplorer.model.PDBWebClient;
-import pdbexplorer.model.io.PDBParser;
+import pdbexplorer.model.analysis.ContactMap;
+import pdbexplorer.model.analysis.EnsembleAnalysis;
+import pdbexplorer.model.analysis.SurfaceArea;
+import pdbexplorer.model.io.PDBWriter;
+import pdbexplorer.model.io.StructureFileReader;
+import pdbexplorer.model.profiling.LoadProfile;
 import pdbexplorer.model.protein.PDBAtom;
 import pdbexplorer.model.protein.PDBComplex;
 import pdbexplorer.model.protein.PDBMonomer;
@@ -47,11 +60,18 @@ import pdbexplorer.model.undo.UndoRedoManager;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.PrintWriter;
 import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.function.BiConsumer;
+import java.util.function.Predicate;
 
 /**
  * This class implements the Presenter part of the ModelViewPresenter programming pattern.
@@ -62,14 +82,15 @@ public class WindowPresenter {
 
     // Model class containing all functions concerning the computations
     private PDBComplex model;
+    // Model as parsed, before models were aligned onto each other
+    private PDBComplex originalModel;
 
-    // Groups for display of balls, sticks and ribbons
+    // Groups for display of balls, sticks, ribbons and surfaces
     private final Group balls = new Group();
     private final Group sticks = new Group();
     private final Group ribbons = new Group();
+    private final Group surfaces = new Group();
     private final Group outerGroup = new Group();
-    // ArrayList to store sequences TextFlows
-    private final ArrayList<TextFlow> sequences = new ArrayList<>();
 
     // Define the camera globally as well as default camera settings
     private final PerspectiveCamera camera;
@@ -81,20 +102,59 @@ public class WindowPresenter {
     private double xPrev;
     private double yPrev;
 
-    // Hashmap to store references of PDBAtoms to Spheres and PDBMonomers to Texts
+    // Hashmap to store references of PDBAtoms to Spheres
     private HashMap<PDBAtom, Sphere> atomToSphere = new HashMap<>();
-    private HashMap<PDBMonomer, Text> monomerToText = new HashMap<>();
+    // colors of the atoms per color scheme computed so far, and the colors shown (null: colored by atom when built)
+    private final HashMap<Integer, ComplexFigure.AtomColors> atomColors = new HashMap<>();
+    private ComplexFigure.AtomColors shownColors;
 
-    // Filtered List for display of and search in PDB entries
-    private FilteredList<String> inputList;
+    // List of PDB entries for display of and search in PDB entries
+    private PDBHoldings holdings;
+
+    // Entries next to the selected one are loaded in the background after a short pause
+    private final PDBPrefetcher prefetcher = new PDBPrefetcher();
+    // superseded loads are cancelled and their results discarded
+    private final LoadCoordinator loadCoordinator = new LoadCoordinator();
+    private final PauseTransition prefetchDelay = new PauseTransition(Duration.millis(400));
+    private final int prefetchDistance = 2;
 
     // Services that are needed globally
     private Service<Void> serviceRibbon;
+    private Service<Void> serviceSurface;
+    private Service<ContactMap> serviceContactMap;
+    private Service<EnsembleAnalysis> serviceEnsemble;
+    private Service<SurfaceArea> serviceSurfaceArea;
+    private EventHandler<WorkerStateEvent> contactMapSucceeded, contactMapFailed;
+
+    // Model whose surface area is being computed
+    private PDBComplex surfaceAreaModel;
+
+    // Contact map display and whether it needs to be recomputed when its tab is shown
+    private ContactMapView contactMapView;
+    private SequenceView sequenceView;
+    private boolean contactMapOutdated = true;
 
-    // Text contained in PDB file
-    private String pdbFileContent;
+    // Name of the PDB file
     private String pdbFileName;
 
+    // Parts of the complex that can be saved
+    private static final String SAVE_ENTRY = "Whole entry", SAVE_MODEL = "Displayed model",
+            SAVE_SELECTION = "Selected residues", SAVE_CHAINS = "Visible chains";
+
+    // Profiles of the last loads, shown on the performance overlay and exported as report
+    private static final String STAGE_SNAPSHOT = "ReadSnapshot", STAGE_PARSE = "ParsePDB",
+            STAGE_FIGURE = "ComputeFigure", STAGE_SEQUENCE = "computeSequence", STAGE_CHARTS = "createCharts",
+            STAGE_SELECTION = "ComplexSelectionHandler";
+    private static final int MAX_LOAD_PROFILES = 100;
+    private final ObservableList<LoadProfile> loadProfiles = FXCollections.observableArrayList();
+    private LoadProfile loadProfile;
+    private PerformanceOverlay performanceOverlay;
+    // progress of all background jobs, shown in one ProgressBar
+    private JobProgress jobProgress;
+    // text of the opened file, read when the PDB file tab is shown
+    private FileTextView fileText;
+    private LevelOfDetail levelOfDetail;
+
     // Undo Redo Manager
     private final UndoRedoManager undoManager = new UndoRedoManager();
 
@@ -131,6 +191,7 @@ public class WindowPresenter {
         outerGroup.getChildren().add(balls);
         outerGroup.getChildren().add(sticks);
         outerGroup.getChildren().add(ribbons);
+        outerGroup.getChildren().add(surfaces);
         SubScene subScene = new SubScene(outerGroup, 1000, 600, true, SceneAntialiasing.BALANCED);
         subScene.setCamera(camera);
 
@@ -140,6 +201,13 @@ public class WindowPresenter {
 
         // add the sub-scene to the pane
         controller.getMainPane().getChildren().add(subScene);
+        performanceOverlay = new PerformanceOverlay(controller.getMainPane());
+        jobProgress = new JobProgress(controller.getGeneralProgress());
+        fileText = new FileTextView(controller.getPdbFileTab(), controller.getPdbFileTA());
+
+        // Simplify distant chains depending on the distance to the camera
+        levelOfDetail = new LevelOfDetail(outerGroup, balls, sticks, camera, subScene);
+        performanceOverlay.setLevelOfDetail(levelOfDetail);
 
         // Setup mouse pane action (rotation)
         setupPaneMouseAction();
@@ -153,12 +221,22 @@ public class WindowPresenter {
         // Setup model and chain selection from ListView in models and chains tabs
         setupSelectModelNumberAndChain();
 
-        // Setup visibility of Scrollbar showing sequence
+        // Setup the sequence display and the visibility of the Scrollbar showing it
+        sequenceView = new SequenceView(controller.getSequenceScrollBar());
         controller.getSequenceScrollBar().visibleProperty().bind(Bindings.isEmpty(balls.getChildren()).not());
 
         // Setup Service for Tasks: PDBWebClient
         setupWebClientService(stage);
 
+        // Setup computation of molecular surfaces
+        setupSurface();
+
+        // Setup contact map tab
+        setupContactMap();
+
+        // Setup comparison and alignment of models
+        setupEnsembleAnalysis(stage);
+
         // Clear undo redo manager at beginning
         undoManager.clear();
 
@@ -185,23 +263,18 @@ public class WindowPresenter {
      * Checkboxes and Sliders are created. Further, Camera and Checkboxes as well as Sliders reset.
      */
     private void updateMoleculeOnPane(Stage stage) {
-        // clear everything from previous model
-        balls.getChildren().clear();
-        sticks.getChildren().clear();
-        ribbons.getChildren().clear();
-        sequences.clear();
-        controller.getChainListView().getItems().clear();
-        chains.clear();
-        controller.getInfoLabel().setText("");
-        controller.getResiduePieChart().getData().clear();
-        controller.getSecStrucPieChart().getData().clear();
-        controller.getPropertiesPC().getData().clear();
-        controller.getRamachandranPlot().getData().clear();
+        updateMoleculeOnPane(stage, null);
+    }
 
-        // Stop rotation animation (if ongoing)
-        if (rotateAnimation != null) {
-            rotateAnimation.stop();
-        }
+    /**
+     * Updates the molecule on the pane, see above.
+     * @param stage (Stage): the main stage
+     * @param figure (HashMap): balls of the figure if it has already been added to the balls and sticks groups while
+     *               loading the entry (see EntryLoader), null to compute the figure
+     */
+    private void updateMoleculeOnPane(Stage stage, HashMap<PDBAtom, Sphere> figure) {
+        // clear everything from previous model
+        clearMolecule(figure == null);
 
         // Get size of protein to determine translateZ for camera
         int proteinSize = 0;
@@ -213,101 +286,37 @@ public class WindowPresenter {
         }
 
         // Reset camera
-        camera.setNearClip(defaultNearClip);
-        camera.setFarClip(defaultFarClip);
-        camera.setTranslateZ(defaultTranslateZ * Math.log(proteinSize == 0 ? 1000 : proteinSize));
+        resetCamera(proteinSize);
 
         if (model.isProtein()) { // Compute new figure in case PDB file contains protein
             // Reset chains list
             chains.addAll(model.getChains());
             numberOfModels.set(model.getNumberOfModels());
 
-            // Create service to compute nodes for the new model
-            Service<HashMap<PDBAtom, Sphere>> serviceFigure = new Service<>() {
-                @Override
-                protected Task<HashMap<PDBAtom, Sphere>> createTask() {
-                    return new ComplexFigure.ComputeFigure(model, balls, sticks);
-                }
-            };
-            // In case of failure:
-            serviceFigure.setOnFailed((WorkerStateEvent event) -> {
-                Alert alert = new Alert(Alert.AlertType.ERROR, "The molecule could not be rendered. Please select another PDB file.");
-                alert.show();
-            });
-            serviceFigure.setOnSucceeded((WorkerStateEvent event) -> {
-                atomToSphere = serviceFigure.getValue(); // retrieve atomToSphere HashMap
-
-                // Apply scales to all shapes
-                for (Node modelGroup : balls.getChildren()) {
-                    for (Node chainGroup : ((Group) modelGroup).getChildren()) {
-                        ((Group) chainGroup).getChildren().forEach(ball -> ((Sphere) ball).radiusProperty().bind(
-                                controller.getAtomsSlider().valueProperty().multiply(((Sphere) ball).getRadius())));
+            if (figure == null) {
+                // Create service to compute nodes for the new model
+                Service<HashMap<PDBAtom, Sphere>> serviceFigure = new Service<>() {
+                    @Override
+                    protected Task<HashMap<PDBAtom, Sphere>> createTask() {
+                        return timed(new ComplexFigure.ComputeFigure(model, balls, sticks), loadProfile,
+                                STAGE_FIGURE, (stage, figure) -> {
+                                    int bonds = 0;
+                                    for (PDBPolymer polymer : model.getPolymers())
+                                        bonds += polymer.getBonds().size();
+                                    stage.count(LoadProfile.ATOMS, figure.size()).count(LoadProfile.BONDS, bonds)
+                                            .count(LoadProfile.NODES, figure.size() + bonds);
+                                });
                     }
-                }
-                for (Node modelGroup : sticks.getChildren()) {
-                    for (Node chainGroup : ((Group) modelGroup).getChildren()) {
-                        ((Group) chainGroup).getChildren().forEach(ball -> ((Cylinder) ball).radiusProperty().bind(
-                                controller.getBondsSlider().valueProperty().multiply(((Cylinder) ball).getRadius())));
-                    }
-                }
-
-                // Fill list of chains
-                for (String chain : model.getChains()) {
-                    CheckBoxListViewItem item = new CheckBoxListViewItem("Chain " + chain, true);
-
-                    // Bind CheckBox to visibility of respective chain
-                    for (Node modelGroup : balls.getChildren()) {
-                        ((Group) modelGroup).getChildren().get(model.getChains().indexOf(chain)).visibleProperty()
-                                .bind(item.onProperty());
-                    }
-                    for (Node modelGroup : sticks.getChildren()) {
-                        ((Group) modelGroup).getChildren().get(model.getChains().indexOf(chain)).visibleProperty()
-                                .bind(item.onProperty());
-                    }
-
-                    // Add Undo/Redo functionality
-                    item.onProperty().addListener((v, o, n) ->
-                            undoManager.add(new PropertyCommand<>("chain selection", (BooleanProperty) v, o, n)));
-
-                    // Add CheckBox to ChainListView
-                    controller.getChainListView().getItems().add(item);
-                }
-                // Disable chains tab in case only one chain is present
-                controller.getChainsTab().setDisable(model.getChains().size() == 1 || model.getChains().size() == 0);
-
-                // Fill ArrayList of models
-                ArrayList<String> models = new ArrayList<>();
-                for (int i = 0; i < (model.getNumberOfModels() == 0 ? 1 : model.getNumberOfModels()); i++) {
-                    models.add("Model " + (i + 1));
-                }
-                // Add list of models to display
-                controller.getModelListView().setItems(FXCollections.observableArrayList(models));
-                controller.getModelListView().getSelectionModel().clearSelection();
-                if (model.getNumberOfModels() == 0) // disable models tab if only one model present
-                    controller.getModelsTab().setDisable(true);
-                else { // else enable models tab and show first model only
-                    controller.getModelsTab().setDisable(false);
-
-                    // First set all invisible
-                    sticks.getChildren().forEach(group -> group.setVisible(false));
-                    balls.getChildren().forEach(group -> group.setVisible(false));
-                    // Then set only first model visible through modelList listener
-                    controller.getModelListView().getSelectionModel().selectFirst();
-                }
-
-                // Reset color scheme choice
-                controller.getColorSchemeChoiceBox().getSelectionModel().selectFirst();
-
-                // Apply selection model to the molecule
-                ComplexSelectionHandler selectionHandler = new ComplexSelectionHandler(model, balls, sticks,
-                        atomToSphere, sequences, monomerToText, controller.getDeselectButton(),
-                        controller.getResiduePieChart(), controller.getSecStrucPieChart(), controller.getPropertiesPC());
-                selectionModel = selectionHandler.computeSelectionModel();
-            });
-            // bind visibility and progress of ProgressBar to the service (only show in case of loading PDB file)
-            controller.getGeneralProgress().visibleProperty().bind(serviceFigure.runningProperty());
-            controller.getGeneralProgress().progressProperty().bind(serviceFigure.progressProperty());
-            serviceFigure.restart(); // Start the calculation
+                };
+                // show the progress of the service in the ProgressBar (shown in case of loading PDB file)
+                jobProgress.track(serviceFigure);
+                // Start the calculation, in case of failure tell the user
+                loadCoordinator.start(serviceFigure, (WorkerStateEvent event) -> showFigure(serviceFigure.getValue()),
+                        (WorkerStateEvent event) -> {
+                            Alert alert = new Alert(Alert.AlertType.ERROR, "The molecule could not be rendered. Please select another PDB file.");
+                            alert.show();
+                        });
+            }
 
             // Setup ribbons service
             serviceRibbon = new Service<>() {
@@ -342,17 +351,31 @@ public class WindowPresenter {
             controller.getAtomsCB().setSelected(true);
             controller.getBondsCB().setSelected(true);
             controller.getRibbonsCB().setSelected(false);
+            controller.getSurfaceCB().setSelected(false);
             controller.getAtomsSlider().setValue(1.0);
             controller.getBondsSlider().setValue(1.0);
 
             // Display sequence of the molecule
-            monomerToText = ComplexFigure.computeSequence(model, sequences, controller.getSequenceTextFlow(),
-                    controller.getSequenceScrollBar());
+            LoadProfile.Stage sequenceStage = loadProfile.begin(STAGE_SEQUENCE);
+            sequenceView.setModel(model);
+            sequenceStage.count("residues", sequenceView.getResidueCount()).end();
 
             // Update Charts for the first models
+            LoadProfile.Stage chartsStage = loadProfile.begin(STAGE_CHARTS);
             ChartHandler.createPieCharts(model, controller.getResiduePieChart(), controller.getSecStrucPieChart(),
                     controller.getPropertiesPC());
             ChartHandler.createRamachandranPlot(model, controller.getRamachandranPlot());
+            chartsStage.end();
+
+            // The figure has been built while loading: show it now that the sequence is known
+            if (figure != null)
+                showFigure(figure);
+
+            // Compare models, if there are several
+            if (model.getNumberOfModels() > 1) {
+                loadCoordinator.add(serviceEnsemble);
+                serviceEnsemble.restart();
+            }
 
             // Set stylesheet for Ramachandran plot
             URL stylesURL = getClass().getResource("chart.css");
@@ -360,6 +383,8 @@ public class WindowPresenter {
                 stage.getScene().getStylesheets().add(stylesURL.toExternalForm());
             }
         } else { // In case a PDB file does not contain protein, tell the user
+            balls.getChildren().clear();
+            sticks.getChildren().clear();
             // Disable chains tab in case no protein is present
             controller.getChainsTab().setDisable(true);
             // Do not expand legend if no protein present
@@ -376,6 +401,128 @@ public class WindowPresenter {
         undoManager.clear();
     }
 
+    /**
+     * Clears the display of the previous model.
+     * @param figure (boolean): whether the balls and sticks are cleared as well
+     */
+    private void clearMolecule(boolean figure) {
+        if (figure) {
+            balls.getChildren().clear();
+            sticks.getChildren().clear();
+        }
+        atomColors.clear();
+        shownColors = null;
+        levelOfDetail.clear();
+        ribbons.getChildren().clear();
+        if (serviceSurface.isRunning())
+            serviceSurface.cancel();
+        surfaces.getChildren().clear();
+        sequenceView.clear();
+        controller.getChainListView().getItems().clear();
+        chains.clear();
+        controller.getInfoLabel().setText("");
+        controller.getResiduePieChart().getData().clear();
+        controller.getSecStrucPieChart().getData().clear();
+        controller.getPropertiesPC().getData().clear();
+        controller.getRamachandranPlot().getData().clear();
+        contactMapView.clear();
+        controller.getRmsfChart().getData().clear();
+        controller.getEnsembleBox().setVisible(false);
+        controller.getEnsembleBox().setManaged(false);
+
+        // Stop rotation animation (if ongoing)
+        if (rotateAnimation != null) {
+            rotateAnimation.stop();
+        }
+    }
+
+    /**
+     * Resets the camera to show a protein of the given size.
+     * @param proteinSize (int): number of residues, 0 if unknown
+     */
+    private void resetCamera(int proteinSize) {
+        camera.setNearClip(defaultNearClip);
+        camera.setFarClip(defaultFarClip);
+        camera.setTranslateZ(defaultTranslateZ * Math.log(proteinSize == 0 ? 1000 : proteinSize));
+    }
+
+    /**
+     * Shows the balls and sticks of the figure of the current model once they have been added to their groups: binds
+     * them to the sliders and chain CheckBoxes, fills the chain and model lists and applies the selection model.
+     * @param figure (HashMap): map from atoms to their balls
+     */
+    private void showFigure(HashMap<PDBAtom, Sphere> figure) {
+        atomToSphere = figure;
+
+        // Apply scales to all shapes
+        for (Node modelGroup : balls.getChildren()) {
+            for (Node chainGroup : ((Group) modelGroup).getChildren()) {
+                ((Group) chainGroup).getChildren().forEach(ball -> ((Sphere) ball).radiusProperty().bind(
+                        controller.getAtomsSlider().valueProperty().multiply(((Sphere) ball).getRadius())));
+            }
+        }
+        for (Node modelGroup : sticks.getChildren()) {
+            for (Node chainGroup : ((Group) modelGroup).getChildren()) {
+                ((Group) chainGroup).getChildren().forEach(ball -> ((Cylinder) ball).radiusProperty().bind(
+                        controller.getBondsSlider().valueProperty().multiply(((Cylinder) ball).getRadius())));
+            }
+        }
+
+        // Fill list of chains
+        ArrayList<BooleanProperty> chainShown = new ArrayList<>();
+        for (String chain : model.getChains()) {
+            CheckBoxListViewItem item = new CheckBoxListViewItem("Chain " + chain, true);
+            chainShown.add(item.onProperty());
+
+            // Add Undo/Redo functionality
+            item.onProperty().addListener((v, o, n) ->
+                    undoManager.add(new PropertyCommand<>("chain selection", (BooleanProperty) v, o, n)));
+
+            // Add CheckBox to ChainListView
+            controller.getChainListView().getItems().add(item);
+        }
+        // Bind CheckBoxes to visibility of respective chains, depending on their level of detail
+        levelOfDetail.setup(model, atomToSphere, chainShown);
+
+        // Disable chains tab in case only one chain is present
+        controller.getChainsTab().setDisable(model.getChains().size() == 1 || model.getChains().size() == 0);
+
+        // Fill ArrayList of models
+        ArrayList<String> models = new ArrayList<>();
+        for (int i = 0; i < (model.getNumberOfModels() == 0 ? 1 : model.getNumberOfModels()); i++) {
+            models.add("Model " + (i + 1));
+        }
+        // Add list of models to display
+        controller.getModelListView().setItems(FXCollections.observableArrayList(models));
+        controller.getModelListView().getSelectionModel().clearSelection();
+        if (model.getNumberOfModels() == 0) // disable models tab if only one model present
+            controller.getModelsTab().setDisable(true);
+        else { // else enable models tab and show first model only
+            controller.getModelsTab().setDisable(false);
+
+            // First set all invisible
+            sticks.getChildren().forEach(group -> group.setVisible(false));
+            balls.getChildren().forEach(group -> group.setVisible(false));
+            // Then set only first model visible through modelList listener
+            controller.getModelListView().getSelectionModel().selectFirst();
+        }
+
+        // Reset color scheme choice
+        controller.getColorSchemeChoiceBox().getSelectionModel().selectFirst();
+
+        // Apply selection model to the molecule
+        LoadProfile.Stage selectionStage = loadProfile.begin(STAGE_SELECTION);
+        ComplexSelectionHandler selectionHandler = new ComplexSelectionHandler(model, balls, sticks,
+                atomToSphere, sequenceView, controller.getDeselectButton(),
+                controller.getResiduePieChart(), controller.getSecStrucPieChart(), controller.getPropertiesPC());
+        selectionModel = selectionHandler.computeSelectionModel();
+        selectionStage.end();
+
+        // Contact map follows the selection
+        selectionModel.getSelectedItems().addListener((InvalidationListener) e -> updateContactMap());
+        updateContactMap();
+    }
+
     /**
      * Sets the functionality for the Model and Chain Tabs that display the different models and chains contained in a
      * PDB file (if applicable). The tabs are disabled if only one model/chain is present. In case there are more models
@@ -398,6 +545,8 @@ public class WindowPresenter {
                     sticks.getChildren().get(previousModel).setVisible(false);
                     if (!ribbons.getChildren().isEmpty())
                         ribbons.getChildren().get(previousModel).setVisible(false);
+                    if (!surfaces.getChildren().isEmpty())
+                        surfaces.getChildren().get(previousModel).setVisible(false);
                     selectionModel.getSelectedItems().clear();
                 }
 
@@ -406,16 +555,47 @@ public class WindowPresenter {
                 sticks.getChildren().get(selectedModel).setVisible(true);
                 if (!ribbons.getChildren().isEmpty())
                     ribbons.getChildren().get(selectedModel).setVisible(true);
+                if (!surfaces.getChildren().isEmpty())
+                    surfaces.getChildren().get(selectedModel).setVisible(true);
 
                 // also update sequence in case different models have different sequence
-                controller.getSequenceTextFlow().getChildren().clear();
-                controller.getSequenceTextFlow().getChildren().add(sequences.get(selectedModel));
+                sequenceView.showModel(selectedModel);
+                levelOfDetail.requestUpdate();
+
+                // contact map is computed per model
+                updateContactMap();
             }
         });
 
         // Setup chain selection from ListView in Chains Tab
         controller.getChainListView().setCellFactory(CheckBoxListCell.
                 forListView(CheckBoxListViewItem::onProperty));
+
+        // Double-clicking a chain shows only this chain, or all chains if it is the only one shown; the changes of the
+        // CheckBoxes are recorded in a transaction, such that they are undone in one step
+        controller.getChainListView().setOnMouseClicked(e -> {
+            CheckBoxListViewItem clicked = controller.getChainListView().getSelectionModel().getSelectedItem();
+            if (e.getClickCount() != 2 || clicked == null)
+                return;
+            ObservableList<CheckBoxListViewItem> items = controller.getChainListView().getItems();
+            boolean onlyClicked = items.stream().allMatch(item -> item.isOn() == (item == clicked));
+            undoManager.runAsTransaction(onlyClicked ? "show all chains" : "show only " + clicked.getName(), () -> {
+                for (CheckBoxListViewItem item : items)
+                    item.onProperty().set(onlyClicked || item == clicked);
+            });
+        });
+    }
+
+    /**
+     * Colors the atoms by the given color scheme. The colors of each scheme are computed once per molecule and kept,
+     * such that switching back to a scheme (e.g. on undo) only changes the atoms whose color differs.
+     * @param colorScheme (int): 0 atom, 1 residue, 2 secondary structure, 3 molecule, 4 exposure
+     */
+    private void showColorScheme(int colorScheme) {
+        ComplexFigure.AtomColors colors = atomColors.computeIfAbsent(colorScheme,
+                scheme -> ComplexFigure.computeAtomColors(model, scheme));
+        ComplexFigure.applyAtomColors(model, atomToSphere, colors, shownColors);
+        shownColors = colors;
     }
 
     /**
@@ -446,25 +626,53 @@ public class WindowPresenter {
 
         // Fill the color scheme choice box
         ObservableList<String> colorSchemes = FXCollections.observableArrayList("atom", "residue",
-                "sec. structure", "molecule");
+                "sec. structure", "molecule", "exposure");
         controller.getColorSchemeChoiceBox().setItems(colorSchemes);
         controller.getColorSchemeChoiceBox().setValue("atom");
 
+        // Handlers of the service that computes the solvent accessible surface area needed for coloring by exposure; they
+        // are only called for the entry the computation was started for (see LoadCoordinator)
+        EventHandler<WorkerStateEvent> surfaceAreaFailed = (WorkerStateEvent event) -> {
+            Alert alert = new Alert(Alert.AlertType.WARNING, "The solvent accessible surface could not be computed.");
+            alert.show();
+        };
+        EventHandler<WorkerStateEvent> surfaceAreaSucceeded = (WorkerStateEvent event) -> {
+            // apply only if the exposure is still the chosen color scheme of the same model, e.g. not of aligned models
+            if (surfaceAreaModel == model
+                    && controller.getColorSchemeChoiceBox().getSelectionModel().getSelectedIndex() == 4)
+                showColorScheme(4);
+        };
+
         controller.getColorSchemeChoiceBox().getSelectionModel().selectedIndexProperty().addListener((v, o, n) -> {
             switch ((int) n) { // Set Color Choice in Menu
                 case 0 -> controller.getMenuColAtom().setSelected(true);
                 case 1 -> controller.getMenuColResidue().setSelected(true);
                 case 2 -> controller.getMenuColSecStruc().setSelected(true);
                 case 3 -> controller.getMenuColMolecule().setSelected(true);
+                case 4 -> controller.getMenuColExposure().setSelected(true);
+            }
+            // Compute new colors; the surface area for the exposure is computed once per model in the background
+            if ((int) n == 4 && !atomColors.containsKey(4) && SurfaceArea.getCached(model) == null) {
+                surfaceAreaModel = model;
+                jobProgress.track(serviceSurfaceArea);
+                loadCoordinator.start(serviceSurfaceArea, surfaceAreaSucceeded, surfaceAreaFailed);
+            } else {
+                showColorScheme((int) n);
             }
-            // Compute new colors
-            ComplexFigure.setAtomColor(model, atomToSphere, (int) n);
 
             // Reset legend
             WebEngine webEngine = controller.getLegendWV().getEngine();
             webEngine.loadContent(ComplexFigure.generateLegendContent((int) n, model.getChains()));
         });
 
+        // Service to compute the solvent accessible surface area needed for coloring by exposure
+        serviceSurfaceArea = new Service<>() {
+            @Override
+            protected Task<SurfaceArea> createTask() {
+                return new SurfaceArea.ComputeSurfaceArea(surfaceAreaModel);
+            }
+        };
+
         // Give functionality to Checkboxes in ButtonBar
         balls.visibleProperty().bindBidirectional(controller.getAtomsCB().selectedProperty());
         sticks.visibleProperty().bindBidirectional(controller.getBondsCB().selectedProperty());
@@ -473,6 +681,19 @@ public class WindowPresenter {
         // Let Ribbons be computed on first selection
         controller.getRibbonsCB().selectedProperty().addListener((v, o, n) -> computeRibbons());
 
+        // Surface is computed on first selection and recomputed if the grid resolution changes
+        surfaces.visibleProperty().bindBidirectional(controller.getSurfaceCB().selectedProperty());
+        controller.getSurfaceCB().selectedProperty().addListener((v, o, n) -> computeSurface());
+        controller.getSurfaceResolutionChoiceBox().setItems(FXCollections.observableArrayList("2.0 Å", "1.5 Å",
+                "1.0 Å", "0.5 Å"));
+        controller.getSurfaceResolutionChoiceBox().setValue("1.0 Å");
+        controller.getSurfaceResolutionChoiceBox().valueProperty().addListener((v, o, n) -> {
+            if (serviceSurface.isRunning())
+                serviceSurface.cancel();
+            surfaces.getChildren().clear();
+            computeSurface();
+        });
+
         // Give functionality to zoom in/out buttons
         controller.getZoomInButton().setOnAction(e -> zoomIn());
         controller.getZoomOutButton().setOnAction(e -> zoomOut());
@@ -491,12 +712,16 @@ public class WindowPresenter {
         controller.getBondsSlider().disableProperty().bind(controller.getBondsCB().selectedProperty().not()
                 .or(Bindings.isEmpty(sticks.getChildren())));
         controller.getZoomInButton().disableProperty().bind((balls.visibleProperty().or(sticks.visibleProperty())
-                .or(ribbons.visibleProperty())).not().or(Bindings.isEmpty(balls.getChildren())));
+                .or(ribbons.visibleProperty()).or(surfaces.visibleProperty())).not()
+                .or(Bindings.isEmpty(balls.getChildren())));
         controller.getZoomOutButton().disableProperty().bind((balls.visibleProperty().or(sticks.visibleProperty())
-                .or(ribbons.visibleProperty())).not().or(Bindings.isEmpty(balls.getChildren())));
+                .or(ribbons.visibleProperty()).or(surfaces.visibleProperty())).not()
+                .or(Bindings.isEmpty(balls.getChildren())));
         controller.getColorSchemeChoiceBox().disableProperty().bind(balls.visibleProperty().not()
                 .or(Bindings.isEmpty(balls.getChildren())));
         controller.getRibbonsCB().disableProperty().bind(Bindings.isEmpty(balls.getChildren()));
+        controller.getSurfaceCB().disableProperty().bind(Bindings.isEmpty(balls.getChildren()));
+        controller.getSurfaceResolutionChoiceBox().disableProperty().bind(Bindings.isEmpty(balls.getChildren()));
         controller.getExplodeButton().disableProperty().bind((balls.visibleProperty().or(sticks.visibleProperty())
                 .or(ribbons.visibleProperty())).not().or(Bindings.isEmpty(balls.getChildren())
                 .or(Bindings.size(chains).isEqualTo(1))));
@@ -535,6 +760,11 @@ public class WindowPresenter {
         });
         controller.getMenuCopy().disableProperty().bind(Bindings.isEmpty(balls.getChildren()));
 
+        // Export of the load profiles and of the flight recording made while the performance overlay is shown
+        controller.getMenuExportProfile().setOnAction(e -> exportPerformanceReport(stage));
+        controller.getMenuExportProfile().disableProperty().bind(Bindings.isEmpty(loadProfiles)
+                .and(performanceOverlay.showingProperty().not()));
+
         // View Menu
         // Give functionality to Checkboxes in MenuBar
         balls.visibleProperty().bindBidirectional(controller.getMenuShowBalls().selectedProperty());
@@ -543,6 +773,10 @@ public class WindowPresenter {
         controller.getMenuShowBalls().disableProperty().bind(Bindings.isEmpty(balls.getChildren()));
         controller.getMenuShowSticks().disableProperty().bind(Bindings.isEmpty(balls.getChildren()));
         controller.getMenuShowRibbons().disableProperty().bind(Bindings.isEmpty(balls.getChildren()));
+        surfaces.visibleProperty().bindBidirectional(controller.getMenuShowSurface().selectedProperty());
+        controller.getMenuShowSurface().disableProperty().bind(Bindings.isEmpty(balls.getChildren()));
+        levelOfDetail.enabledProperty().bindBidirectional(controller.getMenuLevelOfDetail().selectedProperty());
+        controller.getAtomsSlider().valueProperty().addListener(e -> levelOfDetail.requestUpdate());
         // Let Ribbons be computed on first selection
         controller.getMenuShowRibbons().selectedProperty().addListener((v, o, n) -> computeRibbons());
 
@@ -552,6 +786,7 @@ public class WindowPresenter {
         controller.getMenuColResidue().setToggleGroup(toggleGroup);
         controller.getMenuColSecStruc().setToggleGroup(toggleGroup);
         controller.getMenuColMolecule().setToggleGroup(toggleGroup);
+        controller.getMenuColExposure().setToggleGroup(toggleGroup);
         // Functionality for color scheme
         toggleGroup.selectedToggleProperty().addListener((v, o, n) -> {
             String newColor = n.toString().substring(24);
@@ -561,6 +796,8 @@ public class WindowPresenter {
                 controller.getColorSchemeChoiceBox().getSelectionModel().select(1);
             else if (newColor.startsWith("SecStruc"))
                 controller.getColorSchemeChoiceBox().getSelectionModel().select(2);
+            else if (newColor.startsWith("Exposure"))
+                controller.getColorSchemeChoiceBox().getSelectionModel().select(4);
             else
                 controller.getColorSchemeChoiceBox().getSelectionModel().select(3);
         });
@@ -600,6 +837,9 @@ public class WindowPresenter {
                 }
             }
         });
+        // Performance overlay showing frame rate and the stages of the last load
+        performanceOverlay.showingProperty().bindBidirectional(controller.getMenuPerformanceOverlay()
+                .selectedProperty());
 
         // Help menu
         controller.getMenuHelp().setOnAction(e -> { // Help window
@@ -651,6 +891,8 @@ public class WindowPresenter {
                 undoManager.add(new PropertyCommand<>("bond width", (DoubleProperty) v, o, n)));
         controller.getRibbonsCB().selectedProperty().addListener((v, o, n) ->
                 undoManager.add(new PropertyCommand<>("ribbons", (BooleanProperty) v, o, n)));
+        controller.getSurfaceCB().selectedProperty().addListener((v, o, n) ->
+                undoManager.add(new PropertyCommand<>("surface", (BooleanProperty) v, o, n)));
         controller.getAtomsCB().selectedProperty().addListener((v, o, n) ->
                 undoManager.add(new PropertyCommand<>("atoms", (BooleanProperty) v, o, n)));
         controller.getBondsCB().selectedProperty().addListener((v, o, n) ->
@@ -664,19 +906,36 @@ public class WindowPresenter {
     /**
      * Sets up the services that call upon the Tasks of the PDBWebClient.
      * The first service is started once when launching the GUI. This will get a list of all PDB files listed in the
-     * database. The list is incorporated into the GUI in a ListView as a FilteredList. The FilteredList can also be
-     * used to search for specific PDB files using the specified TextField.
+     * database, from disk if it has been downloaded before. In that case, a second service refreshes the list in the
+     * background and replaces it if entries have been added or removed. The list is incorporated into the GUI in a
+     * ListView. Entering text in the specified TextField searches for specific PDB files using the search index of the
+     * list. Searches run in a service, such that each keystroke cancels the search of the previous one and only the
+     * results of the latest search are shown.
      * This function also handles the ProgressBar as well as bindings related to the service.
      */
     private void setupWebClientService(Stage stage) {
         // Setup service that calls upon the PDBWebClient task for getting the list of pdb files
-        Service<ArrayList<String>> serviceWebClientGetList = new Service<>() {
+        Service<PDBHoldings> serviceWebClientGetList = new Service<>() {
+            @Override
+            protected Task<PDBHoldings> createTask() {
+                return new PDBWebClient.GetList(false);
+            }
+        };
+        // Service that downloads the current list in the background if it was loaded from disk
+        Service<PDBHoldings> serviceWebClientRefreshList = new Service<>() {
             @Override
-            protected Task<ArrayList<String>> createTask() {
-                return new PDBWebClient.GetList();
+            protected Task<PDBHoldings> createTask() {
+                return new PDBWebClient.GetList(true);
             }
         };
-        if (inputList == null)
+        // Service that searches the list for the text of the search field
+        Service<List<String>> serviceSearch = new Service<>() {
+            @Override
+            protected Task<List<String>> createTask() {
+                return new PDBSearchIndex.Search(holdings.getSearchIndex(), controller.getPdbSearchTF().getText());
+            }
+        };
+        if (holdings == null)
             serviceWebClientGetList.restart(); // start service at launch of GUI
         // When WebClient starts, set info label
         serviceWebClientGetList.setOnRunning((WorkerStateEvent v) ->
@@ -686,76 +945,299 @@ public class WindowPresenter {
             Alert alert = new Alert(Alert.AlertType.ERROR, "List of PDB files could not be loaded. Trying again.");
             alert.show();
             // in case the initial loading fails: try again
-            if (inputList == null)
+            if (holdings == null)
                 serviceWebClientGetList.restart();
         });
         // In case the service succeeds:
         serviceWebClientGetList.setOnSucceeded((WorkerStateEvent v) -> {
-            // get return value from service
-            ArrayList<String> input = serviceWebClientGetList.getValue();
-
-            // turn into FilteredList
-            inputList = new FilteredList<>(
-                    FXCollections.observableArrayList(input), s -> true);
-
-            // set functionality for filtered list to be able to search for specific PDB files
-            controller.getPdbSearchTF().textProperty().addListener(o -> {
-                inSearch.set(true);
-                String filter = controller.getPdbSearchTF().getText().toUpperCase();
-                inputList.setPredicate(filter.isEmpty() ? s -> true : s -> s.contains(filter));
-                inSearch.set(false);
-            });
-
-            // Add filtered list as items of ListView in GUI
-            controller.getPdbEntryListView().setItems(inputList);
+            // get return value from service and add it to the ListView in GUI
+            holdings = serviceWebClientGetList.getValue();
+            serviceSearch.restart();
 
             // Reset info label
             controller.getInfoLabel().setText("");
+
+            // if the list has been loaded from disk, check for new entries
+            if (holdings.isLoaded())
+                serviceWebClientRefreshList.restart();
+        });
+        // After refreshing, replace the list only if it has changed (failures are ignored, the stored list is used)
+        serviceWebClientRefreshList.setOnSucceeded((WorkerStateEvent v) -> {
+            PDBHoldings refreshed = serviceWebClientRefreshList.getValue();
+            PDBHoldings.Diff diff = holdings.diff(refreshed);
+            holdings = refreshed;
+            if (!diff.isEmpty()) {
+                serviceSearch.restart();
+                controller.getInfoLabel().setText("List of PDB files updated: " + diff.getAdded() + " added, "
+                        + diff.getRemoved() + " removed.");
+            }
+        });
+
+        // set functionality for search field to be able to search for specific PDB files
+        controller.getPdbSearchTF().textProperty().addListener(o -> {
+            if (holdings != null)
+                serviceSearch.restart();
+        });
+        // Show the results of a search as a whole, keeping the selection if the selected entry is still contained
+        serviceSearch.setOnSucceeded((WorkerStateEvent v) -> {
+            String selected = controller.getPdbEntryListView().getSelectionModel().getSelectedItem();
+            inSearch.set(true);
+            controller.getPdbEntryListView().setItems(FXCollections.observableList(serviceSearch.getValue()));
+            if (selected != null)
+                controller.getPdbEntryListView().getSelectionModel().select(selected);
+            inSearch.set(false);
+            // prefetch the first results while the user looks at them
+            if (selected == null && !controller.getPdbSearchTF().getText().isEmpty())
+                schedulePrefetch();
         });
         // bind visibility and progress of ProgressBar to the service (only show in case of filling the PDB entry list)
         controller.getPdbEntriesProgress().visibleProperty().bind(serviceWebClientGetList.runningProperty());
         controller.getPdbEntriesProgress().progressProperty().bind(serviceWebClientGetList.progressProperty());
 
-        // Setup service that calls upon the PDBWebClient task for getting a pdb file
-        Service<String> serviceWebClientGetPDB = new Service<>() {
-            @Override
-            protected Task<String> createTask() {
-                return new PDBWebClient.GetPDBFile(controller.getPdbEntryListView().getSelectionModel()
-                        .getSelectedItem());
-            }
-        };
         // In case of failure: (fails, e.g. for 8ouc -> file not found error)
-        serviceWebClientGetPDB.setOnFailed((WorkerStateEvent v) -> {
+        EventHandler<WorkerStateEvent> downloadFailed = (WorkerStateEvent v) -> {
             Alert alert = new Alert(Alert.AlertType.ERROR,
                     "This file could not be downloaded from the PDB website! This could either be due to network problems or the file not being present on the PDB server. Please select another file or try again later.");
             alert.show();
-        });
-        // In case the service succeeds:
-        serviceWebClientGetPDB.setOnSucceeded((WorkerStateEvent v) -> {
-            // get return value from service
-            pdbFileContent = serviceWebClientGetPDB.getValue();
+        };
+        // Setup service that loads entries that have not been opened before as a pipeline: chains are shown while the
+        // rest of the file is downloading
+        Service<EntryLoader.Result> serviceLoad = new Service<>() {
+            @Override
+            protected Task<EntryLoader.Result> createTask() {
+                String entry = controller.getPdbEntryListView().getSelectionModel().getSelectedItem();
+                LoadProfile profile = startLoadProfile(entry);
+                // the chains are added to the empty figure while they arrive
+                clearMolecule(true);
+                resetCamera(0);
+                return new EntryLoader.LoadEntry(entry, balls, sticks, profile);
+            }
+        };
+        EventHandler<WorkerStateEvent> loadFailed = (WorkerStateEvent v) -> {
+            balls.getChildren().clear();
+            sticks.getChildren().clear();
+            downloadFailed.handle(v);
+        };
+        EventHandler<WorkerStateEvent> loadSucceeded = (WorkerStateEvent v) -> {
+            EntryLoader.Result result = serviceLoad.getValue();
+            pdbFileName = controller.getPdbEntryListView().getSelectionModel().getSelectedItem();
+            fileText.showEntry(pdbFileName);
+            showComplex(result.getComplex(), stage, result.getAtomToSphere());
 
-            // Get name of PDB file
+            // keep the entry and prefetch its neighbours
+            prefetcher.put(pdbFileName, model);
+            schedulePrefetch();
+        };
+        // Setup service that reads entries opened before from their snapshot, without downloading or parsing their
+        // file; entries whose snapshot is outdated are loaded like new ones
+        Service<PDBComplex> serviceSnapshot = new Service<>() {
+            @Override
+            protected Task<PDBComplex> createTask() {
+                String entry = controller.getPdbEntryListView().getSelectionModel().getSelectedItem();
+                return timed(new PDBEntryReader.ReadSnapshot(entry), startLoadProfile(entry), STAGE_SNAPSHOT,
+                        (stage, complex) -> stage.count(LoadProfile.ATOMS, complex == null ? 0 : countAtoms(complex)));
+            }
+        };
+        EventHandler<WorkerStateEvent> snapshotFailed = (WorkerStateEvent v) -> {
+            jobProgress.track(serviceLoad);
+            loadCoordinator.start(serviceLoad, loadSucceeded, loadFailed);
+        };
+        EventHandler<WorkerStateEvent> snapshotSucceeded = (WorkerStateEvent v) -> {
+            PDBComplex complex = serviceSnapshot.getValue();
+            if (complex == null) {
+                snapshotFailed.handle(v);
+                return;
+            }
             pdbFileName = controller.getPdbEntryListView().getSelectionModel().getSelectedItem();
+            fileText.showEntry(pdbFileName);
+            showComplex(complex, stage);
 
-            // Parse PDB
-            setupParserService(pdbFileContent, stage, true);
+            // keep the entry and prefetch its neighbours
+            prefetcher.put(pdbFileName, model);
+            schedulePrefetch();
+        };
 
-            // Add PDB file content to PDB File Tab
-            controller.getPdbFileTA().setText(pdbFileContent);
-        });
         // Setup file selection from ListView
         controller.getPdbEntryListView().getSelectionModel().selectedItemProperty().addListener((v, o, n) -> {
             // only start service if a pdb file gets selected not if one gets unselected!
-            if (controller.getPdbEntryListView().getSelectionModel().getSelectedIndex() != -1 && !inSearch.getValue())
-                serviceWebClientGetPDB.restart();
+            if (controller.getPdbEntryListView().getSelectionModel().getSelectedIndex() != -1 && !inSearch.getValue()) {
+                // entries around the previous selection are not needed anymore, neither is the previous load
+                prefetcher.cancel();
+                loadCoordinator.begin();
+                PDBPrefetcher.Entry entry = prefetcher.get(n);
+                if (entry == null) {
+                    // entries opened before are read from their snapshot, which is faster than parsing them
+                    if (Files.exists(PDBFileCache.getDefault().getSnapshotPath(n))) {
+                        jobProgress.track(serviceSnapshot);
+                        loadCoordinator.start(serviceSnapshot, snapshotSucceeded, snapshotFailed);
+                    } else {
+                        jobProgress.track(serviceLoad);
+                        loadCoordinator.start(serviceLoad, loadSucceeded, loadFailed);
+                    }
+                    return;
+                }
+                // the entry has been prefetched: show it right away
+                pdbFileName = n;
+                startLoadProfile(n);
+                fileText.showEntry(n);
+                showComplex(entry.getComplex(), stage);
+                schedulePrefetch();
+            }
         });
 
-        // bind ListView properties to services
-        controller.getPdbEntryListView().disableProperty().bind(serviceWebClientGetList.runningProperty()
-                .or(serviceWebClientGetPDB.runningProperty()));
-        controller.getPdbSearchTF().disableProperty().bind(serviceWebClientGetList.runningProperty()
-                .or(serviceWebClientGetPDB.runningProperty()));
+        // Setup service that downloads all listed entries into the cache, such that they can be opened offline
+        Service<List<String>> serviceDownloadBatch = new Service<>() {
+            @Override
+            protected Task<List<String>> createTask() {
+                return new PDBWebClient.DownloadBatch(controller.getPdbEntryListView().getItems(),
+                        PDBWebClient.DEFAULT_CONCURRENCY);
+            }
+        };
+        controller.getMenuDownloadListed().setOnAction(e -> {
+            int count = controller.getPdbEntryListView().getItems().size();
+            Alert alert = new Alert(Alert.AlertType.CONFIRMATION, "Download " + count
+                    + " listed PDB files for offline use? Use the search field to restrict the list.");
+            if (alert.showAndWait().orElse(ButtonType.CANCEL) != ButtonType.OK)
+                return;
+            jobProgress.track(serviceDownloadBatch);
+            controller.getInfoLabel().setText("Downloading " + count + " PDB files.");
+            serviceDownloadBatch.restart();
+        });
+        serviceDownloadBatch.setOnSucceeded((WorkerStateEvent v) -> {
+            List<String> failed = serviceDownloadBatch.getValue();
+            controller.getInfoLabel().setText("Download finished" + (failed.isEmpty() ? "." : ", "
+                    + failed.size() + " files could not be downloaded."));
+        });
+        serviceDownloadBatch.setOnFailed((WorkerStateEvent v) -> controller.getInfoLabel().setText(""));
+        controller.getMenuDownloadListed().disableProperty().bind(serviceDownloadBatch.runningProperty()
+                .or(serviceWebClientGetList.runningProperty()));
+
+        // bind ListView properties to services; loads of entries do not block the list, as selecting another entry
+        // supersedes them
+        controller.getPdbEntryListView().disableProperty().bind(serviceWebClientGetList.runningProperty());
+        controller.getPdbSearchTF().disableProperty().bind(serviceWebClientGetList.runningProperty());
+    }
+
+    /**
+     * Sets up the contact map tab. The contact map is computed by a service for the currently displayed model or, if
+     * residues are selected, for the selection only. It is only computed while the tab is shown, changes while the
+     * tab is hidden just mark the displayed map as outdated.
+     */
+    private void setupContactMap() {
+        contactMapView = new ContactMapView(controller.getContactMapPane(), controller.getContactMapInfoLabel());
+
+        controller.getContactMapChoiceBox().setItems(FXCollections.observableArrayList("Cα", "heavy atoms"));
+        controller.getContactMapChoiceBox().getSelectionModel().selectFirst();
+        controller.getContactMapChoiceBox().valueProperty().addListener(e -> updateContactMap());
+
+        serviceContactMap = new Service<>() {
+            @Override
+            protected Task<ContactMap> createTask() {
+                boolean heavyAtoms = controller.getContactMapChoiceBox().getSelectionModel().getSelectedIndex() == 1;
+                return new ContactMap.ComputeContactMap(getDisplayedMonomers(), heavyAtoms,
+                        heavyAtoms ? ContactMap.DEFAULT_HEAVY_ATOM_CUTOFF : ContactMap.DEFAULT_C_ALPHA_CUTOFF);
+            }
+        };
+        contactMapFailed = (WorkerStateEvent event) -> {
+            Alert alert = new Alert(Alert.AlertType.WARNING, "The contact map could not be computed.");
+            alert.show();
+        };
+        contactMapSucceeded = (WorkerStateEvent event) -> contactMapView.setContactMap(serviceContactMap.getValue());
+
+        // Compute contact map when tab is shown
+        controller.getContactMapTab().selectedProperty().addListener((v, o, n) -> {
+            if (n && contactMapOutdated)
+                updateContactMap();
+        });
+        controller.getContactMapTab().disableProperty().bind(Bindings.isEmpty(balls.getChildren()));
+    }
+
+    /**
+     * Sets up the comparison of the models of a multi-model PDB file. The pairwise RMSD matrix and the RMSF are
+     * computed by a service and shown in the stats tab. The menu item "Align Models" superposes all models onto the
+     * first one and displays the superposed models (e.g. for the jiggle animation), deselecting it shows the models
+     * as given in the file again.
+     * @param stage (Stage): the main stage
+     */
+    private void setupEnsembleAnalysis(Stage stage) {
+        serviceEnsemble = new Service<>() {
+            @Override
+            protected Task<EnsembleAnalysis> createTask() {
+                return new EnsembleAnalysis.ComputeEnsemble(model, false);
+            }
+        };
+        serviceEnsemble.setOnFailed((WorkerStateEvent event) -> {
+            Alert alert = new Alert(Alert.AlertType.WARNING, "The models could not be compared.");
+            alert.show();
+        });
+        serviceEnsemble.setOnSucceeded((WorkerStateEvent event) -> {
+            ChartHandler.createEnsembleCharts(serviceEnsemble.getValue(), controller.getRmsdCanvas(),
+                    controller.getRmsdLabel(), controller.getRmsfChart());
+            controller.getEnsembleBox().setVisible(true);
+            controller.getEnsembleBox().setManaged(true);
+        });
+
+        Service<PDBComplex> serviceAlign = new Service<>() {
+            @Override
+            protected Task<PDBComplex> createTask() {
+                return new EnsembleAnalysis.AlignModels(originalModel, 0, false);
+            }
+        };
+        EventHandler<WorkerStateEvent> alignFailed = (WorkerStateEvent event) -> {
+            Alert alert = new Alert(Alert.AlertType.WARNING, "The models could not be aligned.");
+            alert.show();
+        };
+        EventHandler<WorkerStateEvent> alignSucceeded = (WorkerStateEvent event) -> {
+            model = serviceAlign.getValue();
+            updateMoleculeOnPane(stage);
+        };
+
+        controller.getMenuAlignModels().selectedProperty().addListener((v, o, n) -> {
+            if (n) {
+                // the aligned models are dropped if another entry has been opened in the meantime
+                jobProgress.track(serviceAlign);
+                loadCoordinator.start(serviceAlign, alignSucceeded, alignFailed);
+            } else if (model != originalModel) {
+                model = originalModel;
+                updateMoleculeOnPane(stage);
+            }
+        });
+        controller.getMenuAlignModels().disableProperty().bind(numberOfModels.lessThan(2));
+    }
+
+    /**
+     * Recomputes the contact map if its tab is shown, otherwise marks it as outdated.
+     */
+    private void updateContactMap() {
+        if (!controller.getContactMapTab().isSelected() || !model.isProtein()) {
+            contactMapOutdated = true;
+            return;
+        }
+        contactMapOutdated = false;
+        // the map is dropped if another entry has been opened in the meantime
+        jobProgress.track(serviceContactMap);
+        loadCoordinator.start(serviceContactMap, contactMapSucceeded, contactMapFailed);
+    }
+
+    /**
+     * Returns the residues of the currently displayed model in the order of the PDB file. If residues are selected,
+     * only the selected residues are returned.
+     * @return List: the displayed (or selected) residues
+     */
+    private List<PDBMonomer> getDisplayedMonomers() {
+        int selectedModel = Math.max(0, controller.getModelListView().getSelectionModel().getSelectedIndex());
+        boolean onlySelected = selectionModel != null && !selectionModel.getSelectedItems().isEmpty();
+
+        List<PDBMonomer> monomers = new ArrayList<>();
+        for (PDBPolymer polymer : model.getPolymers()) {
+            if (polymer.getModelNumber() == 0 || polymer.getModelNumber() - 1 == selectedModel) {
+                for (PDBMonomer monomer : polymer.getMonomers()) {
+                    if (!onlySelected || selectionModel.isSelected(monomer))
+                        monomers.add(monomer);
+                }
+            }
+        }
+        return monomers;
     }
 
     /**
@@ -776,7 +1258,8 @@ public class WindowPresenter {
         outerGroup.getTransforms().add(new Rotate());
 
         controller.getMainPane().setOnMouseDragged(e -> {
-            if ((!balls.isVisible() && !sticks.isVisible() && !ribbons.isVisible()) || balls.getChildren().isEmpty())
+            if ((!balls.isVisible() && !sticks.isVisible() && !ribbons.isVisible() && !surfaces.isVisible())
+                    || balls.getChildren().isEmpty())
                 return;
 
             // Stop rotation animation (if ongoing)
@@ -804,7 +1287,8 @@ public class WindowPresenter {
 
         // Setup zoom in/out by mouse
         controller.getMainPane().setOnScroll(e -> {
-            if ((!balls.isVisible() && !sticks.isVisible() && !ribbons.isVisible()) || balls.getChildren().isEmpty())
+            if ((!balls.isVisible() && !sticks.isVisible() && !ribbons.isVisible() && !surfaces.isVisible())
+                    || balls.getChildren().isEmpty())
                 return;
             var delta = e.getDeltaY();
             if (delta > 0)
@@ -835,21 +1319,27 @@ public class WindowPresenter {
     private void openFile(Stage stage) {
         FileChooser chooser = new FileChooser();
         chooser.setInitialDirectory(new File(System.getProperty("user.home")));
-        chooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("PDB file (*.pdb)", "*.pdb"));
+        chooser.getExtensionFilters().addAll(new FileChooser.ExtensionFilter("PDB file (*.pdb)", "*.pdb"),
+                new FileChooser.ExtensionFilter("mmCIF file (*.cif)", "*.cif"),
+                new FileChooser.ExtensionFilter("BinaryCIF file (*.bcif)", "*.bcif"),
+                new FileChooser.ExtensionFilter("Compressed file (*.gz, *.zip)", "*.gz", "*.zip"),
+                new FileChooser.ExtensionFilter("All files", "*.*"));
         File file = chooser.showOpenDialog(stage);
 
         if (file != null) {
             try {
                 String filePath = file.getAbsolutePath();
+                loadCoordinator.begin();
+                startLoadProfile(file.getName());
 
-                // Read and parse PDB file
-                setupParserService(filePath, stage, false);
+                // Parse the file while reading it, its format and compression are recognized from its content
+                setupFileReaderService(filePath, stage);
+                fileText.showFile(file.toPath());
 
-                // Update pdb file name
-                pdbFileName = filePath.substring(filePath.length() - 8, filePath.length() - 4).toUpperCase();
-
-                // Add PDB file content to PDB File Tab
-                controller.getPdbFileTA().setText(pdbFileContent);
+                // Update pdb file name, e.g. 1ABC for 1abc.pdb or 1abc.cif.gz
+                String name = file.getName().replaceFirst("(?i)\\.(gz|zip)$", "");
+                int extension = name.lastIndexOf('.') < 0 ? name.length() : name.lastIndexOf('.');
+                pdbFileName = name.substring(Math.max(extension - 4, 0), extension).toUpperCase();
 
                 // Deselect PDB file from ListView
                 controller.getPdbEntryListView().getSelectionModel().clearSelection();
@@ -857,73 +1347,204 @@ public class WindowPresenter {
                 Alert alert = new Alert(Alert.AlertType.ERROR, "The given file could not be opened!");
                 alert.show();
 
-                controller.getPdbFileTA().setText("");
+                fileText.clear();
             }
         }
     }
 
     /**
-     * Sets up the service needed to run the task PDBParser.ParsePDB.
-     * @param input (String): the content of the PDB file in String format or the path to the PDB file
+     * Sets up the service needed to run the task StructureFileReader.ReadStructureFile, which parses structure files in
+     * all formats, compressed or not, while reading them.
+     * @param file (String): the path to the structure file
      * @param stage (Stage): the main stage
-     * @param parse (boolean): whether the parse or read method should be called
      */
-    private void setupParserService(String input, Stage stage, boolean parse) {
-        if (parse) {
-            // Create service to compute nodes for the new model
-            Service<PDBComplex> serviceParser = new Service<>() {
-                @Override
-                protected Task<PDBComplex> createTask() {
-                    return new PDBParser.ParsePDB(input);
-                }
-            };
-            // In case of failure:
-            serviceParser.setOnFailed((WorkerStateEvent event) -> {
-                Alert alert = new Alert(Alert.AlertType.ERROR, "This PDB file is corrupted and could not be parsed. Please select another PDB file.");
-                alert.show();
-            });
-            serviceParser.setOnSucceeded((WorkerStateEvent event) -> {
-                this.model = serviceParser.getValue(); // retrieve parsed model
+    private void setupFileReaderService(String file, Stage stage) {
+        long generation = loadCoordinator.getGeneration(); // the load the service belongs to
+        Service<PDBComplex> serviceParser = new Service<>() {
+            @Override
+            protected Task<PDBComplex> createTask() {
+                return timed(new StructureFileReader.ReadStructureFile(file), loadProfile, STAGE_PARSE,
+                        (stage, complex) -> stage.count(LoadProfile.BYTES, new File(file).length())
+                                .count(LoadProfile.ATOMS, countAtoms(complex)));
+            }
+        };
+        // In case of failure:
+        serviceParser.setOnFailed(loadCoordinator.ifCurrent(generation, (WorkerStateEvent event) -> {
+            Alert alert = new Alert(Alert.AlertType.ERROR, "This file is corrupted and could not be read. Please select another file.");
+            alert.show();
+        }));
+        serviceParser.setOnSucceeded(loadCoordinator.ifCurrent(generation, (WorkerStateEvent event) ->
+                showComplex(serviceParser.getValue(), stage)));
+        // show the progress of the service in the ProgressBar (shown in case of loading PDB file)
+        jobProgress.track(serviceParser);
+        loadCoordinator.add(serviceParser);
+        serviceParser.restart(); // Start reading
+    }
 
-                // Update display of molecule
-                updateMoleculeOnPane(stage);
-            });
-            // bind visibility and progress of ProgressBar to the service (only show in case of loading PDB file)
-            controller.getGeneralProgress().visibleProperty().bind(serviceParser.runningProperty());
-            controller.getGeneralProgress().progressProperty().bind(serviceParser.progressProperty());
-            serviceParser.restart(); // Start parsing
-        } else {
-            // Create service to compute nodes for the new model
-            Service<String> serviceParser = new Service<>() {
-                @Override
-                protected Task<String> createTask() {
-                    return new PDBParser.ReadPDB(input);
+    /**
+     * Displays the given complex as the new model.
+     */
+    private void showComplex(PDBComplex complex, Stage stage) {
+        showComplex(complex, stage, null);
+    }
+
+    /**
+     * Displays the given complex as the new model, using the figure that has been built while loading it if given.
+     */
+    private void showComplex(PDBComplex complex, Stage stage, HashMap<PDBAtom, Sphere> figure) {
+        this.model = complex;
+        this.originalModel = model;
+        controller.getMenuAlignModels().setSelected(false); // new models are shown as given in the file
+
+        // Update display of molecule
+        updateMoleculeOnPane(stage, figure);
+    }
+
+    /**
+     * Starts the profile of loading the given entry, which the stages of the load are recorded to.
+     * @param entry (String): name of the entry
+     * @return LoadProfile: the new profile
+     */
+    private LoadProfile startLoadProfile(String entry) {
+        loadProfile = new LoadProfile(entry);
+        if (loadProfiles.size() == MAX_LOAD_PROFILES)
+            loadProfiles.remove(0);
+        loadProfiles.add(loadProfile);
+        performanceOverlay.setProfile(loadProfile);
+        return loadProfile;
+    }
+
+    /**
+     * Wraps a task such that the time it takes is recorded as a stage of a load profile. The given task is run on the
+     * thread of the wrapping task; its progress is shown by the wrapping task, and cancelling the wrapping task
+     * cancels it as well.
+     * @param task (Task): the task to run
+     * @param profile (LoadProfile): the profile the stage is recorded to
+     * @param name (String): name of the stage
+     * @param counts (BiConsumer): records the counts of the stage from the result of the task, e.g. the number of
+     * atoms, runs on the thread of the task before the stage ends
+     * @return Task: the wrapping task
+     */
+    private static <V> Task<V> timed(Task<V> task, LoadProfile profile, String name,
+                                     BiConsumer<LoadProfile.Stage, V> counts) {
+        return new Task<>() {
+            {
+                task.progressProperty().addListener((observable, oldValue, newValue) ->
+                        updateProgress(task.getWorkDone(), task.getTotalWork()));
+            }
+
+            @Override
+            protected V call() throws Exception {
+                LoadProfile.Stage stage = profile.begin(name);
+                try {
+                    task.run();
+                    V value = task.get();
+                    counts.accept(stage, value);
+                    return value;
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof Exception exception)
+                        throw exception;
+                    throw (Error) e.getCause();
+                } finally {
+                    stage.end();
                 }
-            };
-            // In case of failure:
-            serviceParser.setOnFailed((WorkerStateEvent event) -> {
-                Alert alert = new Alert(Alert.AlertType.ERROR, "This PDB file is corrupted and could not be read. Please select another PDB file.");
-                alert.show();
-            });
-            serviceParser.setOnSucceeded((WorkerStateEvent event) -> {
-                pdbFileContent = serviceParser.getValue(); // retrieve parsed model
+            }
 
-                // Parse the PDB file
-                setupParserService(pdbFileContent, stage, true);
-            });
-            // bind visibility and progress of ProgressBar to the service (only show in case of loading PDB file)
-            controller.getGeneralProgress().visibleProperty().bind(serviceParser.runningProperty());
-            controller.getGeneralProgress().progressProperty().bind(serviceParser.progressProperty());
-            serviceParser.restart(); // Start reading
+            @Override
+            public boolean cancel(boolean mayInterruptIfRunning) {
+                task.cancel(mayInterruptIfRunning);
+                return super.cancel(mayInterruptIfRunning);
+            }
+        };
+    }
+
+    private static int countAtoms(PDBComplex complex) {
+        int atoms = 0;
+        for (PDBPolymer polymer : complex.getPolymers())
+            atoms += polymer.getAtoms().size();
+        return atoms;
+    }
+
+    /**
+     * Writes the profiles of the last loads to a CSV file, or the flight recording made while the performance overlay
+     * was shown to a JFR file, such that slow loads can be compared and analysed.
+     * @param stage (Stage): the main stage
+     */
+    private void exportPerformanceReport(Stage stage) {
+        FileChooser chooser = new FileChooser();
+        chooser.setInitialDirectory(new File(System.getProperty("user.home")));
+        chooser.setInitialFileName("pdbexplorer-profile");
+        FileChooser.ExtensionFilter csv = new FileChooser.ExtensionFilter("Load stages (*.csv)", "*.csv");
+        chooser.getExtensionFilters().add(csv);
+        if (performanceOverlay.hasRecording())
+            chooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("Flight recording (*.jfr)", "*.jfr"));
+        File file = chooser.showSaveDialog(stage);
+        if (file == null)
+            return;
+
+        // the format is given by the extension, or by the chosen filter if the name has none
+        boolean jfr = file.getName().endsWith(".jfr") || !file.getName().endsWith(".csv")
+                && chooser.getSelectedExtensionFilter() != null && chooser.getSelectedExtensionFilter() != csv;
+        try {
+            if (jfr) {
+                Path path = file.getName().endsWith(".jfr") ? file.toPath() : Path.of(file.getPath() + ".jfr");
+                performanceOverlay.dumpRecording(path);
+                controller.getInfoLabel().setText("Saved flight recording to " + path.getFileName());
+            } else {
+                Path path = file.getName().endsWith(".csv") ? file.toPath() : Path.of(file.getPath() + ".csv");
+                LoadProfile.writeCSV(loadProfiles, path);
+                controller.getInfoLabel().setText("Saved " + loadProfiles.size() + " load profiles to "
+                        + path.getFileName());
+            }
+        } catch (IOException e) {
+            Alert alert = new Alert(Alert.AlertType.ERROR, "The performance report could not be saved: "
+                    + e.getMessage());
+            alert.show();
         }
     }
 
     /**
-     * Opens a FileChooser to save the displayed PDB file to the file system.
+     * Prefetches the entries next to the selected one in the list (or the first entries if none is selected), once the
+     * user has stopped moving through the list for a moment. Closer entries are loaded first, entries below the
+     * selection before entries above it.
+     */
+    private void schedulePrefetch() {
+        prefetchDelay.setOnFinished(e -> {
+            List<String> items = controller.getPdbEntryListView().getItems();
+            int selected = controller.getPdbEntryListView().getSelectionModel().getSelectedIndex();
+            List<String> ids = new ArrayList<>();
+            for (int distance = 1; distance <= prefetchDistance; distance++) {
+                if (selected + distance < items.size())
+                    ids.add(items.get(selected + distance));
+                if (selected - distance >= 0)
+                    ids.add(items.get(selected - distance));
+            }
+            prefetcher.prefetch(ids);
+        });
+        prefetchDelay.playFromStart();
+    }
+
+    /**
+     * Opens a FileChooser to save the displayed complex to the file system in PDB format. The file is written from
+     * the model, so the user can choose to export only the displayed model, the selected residues or the visible
+     * chains instead of the whole entry.
      *
      * @param stage (Stage): the main stage
      */
     private void saveFile(Stage stage) {
+        List<String> scopes = new ArrayList<>(List.of(SAVE_ENTRY, SAVE_MODEL));
+        if (selectionModel != null && !selectionModel.getSelectedItems().isEmpty())
+            scopes.add(SAVE_SELECTION);
+        if (model.getChains().size() > 1)
+            scopes.add(SAVE_CHAINS);
+        ChoiceDialog<String> dialog = new ChoiceDialog<>(SAVE_ENTRY, scopes);
+        dialog.initOwner(stage);
+        dialog.setTitle("Save PDB file");
+        dialog.setHeaderText("Which part of the complex should be saved?");
+        Optional<String> scope = dialog.showAndWait();
+        if (scope.isEmpty())
+            return;
+
         FileChooser chooser = new FileChooser();
         // Add filter such that files are automatically saved as .pdb
         FileChooser.ExtensionFilter pdbFilter = new FileChooser.ExtensionFilter("PDB File (*.pdb)", "*.pdb");
@@ -935,14 +1556,87 @@ public class WindowPresenter {
         File file = chooser.showSaveDialog(stage);
 
         if (file != null) {
-            try {
-                PrintWriter writer;
-                writer = new PrintWriter(file);
-                writer.println(pdbFileContent);
-                writer.close();
-            } catch (IOException ex) {
-                System.out.println(Arrays.toString(ex.getStackTrace()));
+            // residues of the displayed model, in case of a single model all residues
+            int selectedModel = Math.max(0, controller.getModelListView().getSelectionModel().getSelectedIndex());
+            Predicate<PDBPolymer> displayed = polymer -> polymer.getModelNumber() == 0
+                    || polymer.getModelNumber() - 1 == selectedModel;
+            Set<String> visibleChains = new HashSet<>();
+            for (int i = 0; i < model.getChains().size(); i++) {
+                if (i >= controller.getChainListView().getItems().size()
+                        || controller.getChainListView().getItems().get(i).isOn())
+                    visibleChains.add(model.getChains().get(i));
+            }
+
+            Predicate<PDBPolymer> polymers = switch (scope.get()) {
+                case SAVE_MODEL, SAVE_SELECTION -> displayed;
+                case SAVE_CHAINS -> displayed.and(polymer -> visibleChains.contains(polymer.getLabel()));
+                default -> polymer -> true;
+            };
+            Predicate<PDBMonomer> monomers = scope.get().equals(SAVE_SELECTION) ? selectionModel::isSelected
+                    : monomer -> true;
+
+            PDBComplex complex = model;
+            Service<Integer> serviceWriter = new Service<>() {
+                @Override
+                protected Task<Integer> createTask() {
+                    return new PDBWriter.WritePDB(complex, file.getAbsolutePath(), polymers, monomers);
+                }
+            };
+            serviceWriter.setOnFailed((WorkerStateEvent event) -> {
+                Alert alert = new Alert(Alert.AlertType.ERROR, "The file could not be saved!");
+                alert.show();
+            });
+            serviceWriter.setOnSucceeded((WorkerStateEvent event) -> controller.getInfoLabel().setText(
+                    "Saved " + serviceWriter.getValue() + " atoms to " + file.getName() + "."));
+            serviceWriter.start();
+        }
+    }
+
+    /**
+     * Sets up the service computing the molecular surface of each chain with the grid resolution chosen in the
+     * toolbar. Like the ribbons, the surface of each chain can be hidden with the chains tab.
+     */
+    private void setupSurface() {
+        serviceSurface = new Service<>() {
+            @Override
+            protected Task<Void> createTask() {
+                String resolution = controller.getSurfaceResolutionChoiceBox().getValue();
+                return new ComplexFigure.ComputeSurface(model, surfaces,
+                        Double.parseDouble(resolution.substring(0, resolution.indexOf(' '))));
             }
+        };
+        serviceSurface.setOnFailed((WorkerStateEvent event) -> {
+            Alert alert = new Alert(Alert.AlertType.WARNING, "The surface could not be computed.");
+            alert.show();
+        });
+        serviceSurface.setOnSucceeded((WorkerStateEvent event) -> {
+            // Bind Chains CheckBox to visibility of respective chain
+            if (model.getChains().size() > 1) {
+                for (CheckBoxListViewItem item : controller.getChainListView().getItems()) {
+                    for (Node group : surfaces.getChildren()) {
+                        if (!((Group) group).getChildren().isEmpty())
+                            ((Group) group).getChildren().get(controller.getChainListView().getItems().indexOf(item))
+                                    .visibleProperty().bind(item.onProperty());
+                    }
+                }
+            }
+            // Set currently selected model visible
+            surfaces.getChildren().forEach(group -> group.setVisible(false));
+            int selectedModelIndex = controller.getModelListView().getSelectionModel().getSelectedIndex();
+            surfaces.getChildren().get(selectedModelIndex == -1 ? 0 : selectedModelIndex).setVisible(true);
+        });
+    }
+
+    /**
+     * Computes the surface, when the Checkbox or MenuItem are clicked for the first time for a molecule or the
+     * resolution has been changed.
+     */
+    private void computeSurface() {
+        if (surfaces.getChildren().isEmpty() && controller.getSurfaceCB().isSelected() && model.isProtein()) {
+            // show the progress of the service in the ProgressBar (shown in case of loading the surface)
+            jobProgress.track(serviceSurface);
+            loadCoordinator.add(serviceSurface);
+            serviceSurface.restart();
         }
     }
 
@@ -951,10 +1645,10 @@ public class WindowPresenter {
      */
     private void computeRibbons() {
         if (ribbons.getChildren().isEmpty() && controller.getRibbonsCB().isSelected()) {
-            // bind visibility and progress of ProgressBar to the service (only show in case of loading ribbons)
-            controller.getGeneralProgress().visibleProperty().bind(serviceRibbon.runningProperty());
-            controller.getGeneralProgress().progressProperty().bind(serviceRibbon.progressProperty());
+            // show the progress of the service in the ProgressBar (shown in case of loading ribbons)
+            jobProgress.track(serviceRibbon);
             // restart ribbons service to compute ribbons
+            loadCoordinator.add(serviceRibbon);
             serviceRibbon.restart();
         }
     }
@@ -1057,20 +1751,24 @@ public class WindowPresenter {
                             <li>Load a PDB file by clicking on it.</li>
                             <li>Explore the contained protein structure.</li>
                         </ol>
-                        <p>Alternatively, you can also load a PDB file from the file system. Beware that only proteins are displayed.</p>
+                        <p>Alternatively, you can also load a PDB, mmCIF or BinaryCIF file from the file system, also compressed with gzip or zip. Beware that only proteins are displayed.
+                        Entries that are only available in mmCIF format, like large complexes, are downloaded in this format.</p>
+                        <p>Downloaded files are kept on disk and can be opened again without a network connection. "Download Listed Entries" in the File menu
+                        downloads all entries currently shown in the list (e.g. the results of a search) for offline use.</p>
                                         
                         <h2>General Use</h2>
                         <p>In addition to the list of PDB files to choose from, there are two tabs on the left where you can choose from the different
                         models and/or chains if applicable. If a PDB file does not contain several models or chains, the tabs are disabled accordingly.</p>
                         
-                        <p>The main part of the program consists of three views:</p>
+                        <p>The main part of the program consists of four views:</p>
                         
                         <h3>1. Protein View</h3>
                         <p>The protein contained in the PDB file is displayed here. There are several features available:</p>
                         
                         <ul>
                             <li>Atoms, Bonds and Ribbons can be individually turned on or off. Atoms and Bonds can further be changed in size.</li>
-                            <li>Atom colors can be adjusted to be colored by atom, residue (following the Lesk scheme), secondary structure or chain.</li>
+                            <li>Surface shows the molecular surface of each chain. A coarser grid (e.g. 2.0 Å) computes faster for large structures, a finer grid (0.5 Å) gives more detail.</li>
+                            <li>Atom colors can be adjusted to be colored by atom, residue (following the Lesk scheme), secondary structure, chain or solvent exposure (accessible surface area of a residue relative to its maximum, from buried in blue to exposed in red).</li>
                             <li>Zoom is possible using the zoom buttons or menu items as well as the scrolling gesture.</li>
                             <li>The model can be rotated by dragging it. If rotated while pressing shift, the molecule will continue to rotate.</li>
                             <li>Residues can be selected by pressing on them. Multiple selection is possible by using shift while pressing. The Deselect all-button can be used to clear the whole selection</li>
@@ -1092,6 +1790,10 @@ public class WindowPresenter {
                         
                         <p>The Pie Charts will update based on the selected amino acids.</p>
                         
+                        <h3>4. Contact Map</h3>
+                        <p>Shows all pairs of residues of the displayed model that are closer than 8 Å (Cα distance) or 4.5 Å (minimum heavy atom distance).
+                        If residues are selected, only the selection is shown. Scroll to zoom, drag to move and hover over the map to see the residue pair.</p>
+                        
                         <h2>Animations</h2>
                         <p><strong>Jiggle</strong>:</p>
                         <ul>
@@ -1099,6 +1801,11 @@ public class WindowPresenter {
                             <li>Only applicable for atoms, bonds and ribbons are automatically turned off at start.</li>
                             <li>As only a heuristic is used for the computation of bonds, these cannot be jiggled through.</li>
                         </ul>
+                        <p><strong>Align Models</strong> (View menu):</p>
+                        <ul>
+                            <li>Superposes all models onto the first one (Cα atoms), such that jiggling only shows the differences in conformation.</li>
+                            <li>For several models, the stats tab additionally shows the pairwise RMSD between models and the RMSF per residue.</li>
+                        </ul>
                         <p><strong>Explode</strong>:</p>
                         <ul>
                             <li>Explodes the different chains of a protein if present.</li>
@@ -0,0 +1,155 @@
+package pdbexplorer.model;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests of the PDBFileCache against a local HTTP server standing in for the file server.
+ */
+public class PDBFileCacheTest {
+    private static final String CONTENT = "HEADER    TEST\nEND\n";
+    private static final String ETAG = "\"v1\"";
+
+    @TempDir
+    Path directory;
+
+    private ServerSocket server;
+    private Thread serverThread;
+    // status codes of the responses sent by the server, in order
+    private final List<Integer> statuses = new ArrayList<>();
+
+    @BeforeEach
+    public void startServer() throws IOException {
+        server = new ServerSocket(0, 16, InetAddress.getLoopbackAddress());
+        serverThread = new Thread(this::serve, "test-server");
+        serverThread.setDaemon(true);
+        serverThread.start();
+    }
+
+    @AfterEach
+    public void stopServer() throws IOException {
+        server.close();
+    }
+
+    @Test
+    public void revalidatesWithConditionalRequest() throws IOException {
+        PDBFileCache cache = new PDBFileCache(directory, 1 << 20, 0);
+        assertEquals(CONTENT, cache.get("1abc.pdb", uri()));
+        assertEquals(CONTENT, cache.get("1abc.pdb", uri()));
+        assertEquals(List.of(200, 304), statuses);
+        assertEquals(CONTENT, cache.getCached("1abc.pdb"));
+        assertEquals(64, cache.getDigest("1abc.pdb").length()); // SHA-256 in hexadecimal
+        assertNull(cache.getDigest("2abc.pdb"));
+    }
+
+    @Test
+    public void servesCachedEntryOffline() throws IOException {
+        PDBFileCache cache = new PDBFileCache(directory, 1 << 20, 0);
+        assertEquals(CONTENT, cache.get("1abc.pdb", uri()));
+        URI unreachable = uri();
+        server.close();
+        assertEquals(CONTENT, cache.get("1abc.pdb", unreachable));
+        assertThrows(IOException.class, () -> cache.get("2abc.pdb", unreachable));
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedEntries() throws IOException {
+        byte[] body = new byte[1000];
+        new Random(1).nextBytes(body); // does not compress
+        PDBFileCache cache = new PDBFileCache(directory, 2500, 0);
+        cache.store("1old.pdb", body, null, null);
+        cache.store("2new.pdb", body, null, null);
+        Files.setLastModifiedTime(directory.resolve("1old.pdb.gz"), FileTime.fromMillis(1000));
+        Files.setLastModifiedTime(directory.resolve("2new.pdb.gz"), FileTime.fromMillis(2000));
+        cache.store("3abc.pdb", body, null, null);
+
+        assertFalse(Files.exists(directory.resolve("1old.pdb.gz")));
+        assertFalse(Files.exists(directory.resolve("1old.pdb.properties")));
+        assertTrue(Files.exists(directory.resolve("2new.pdb.gz")));
+        assertTrue(Files.exists(directory.resolve("3abc.pdb.gz")));
+        long size = Files.size(directory.resolve("2new.pdb.gz")) + Files.size(directory.resolve("3abc.pdb.gz"));
+        assertEquals(size, cache.getTotalBytes());
+        try (Stream<Path> files = Files.list(directory)) {
+            assertTrue(files.noneMatch(file -> file.toString().endsWith(".tmp")));
+        }
+        // the size of the stored entries is read when the cache is created
+        assertEquals(size, new PDBFileCache(directory, 2500, 0).getTotalBytes());
+    }
+
+    @Test
+    public void storesStreamedEntryOnceReadToItsEnd() throws IOException {
+        PDBFileCache cache = new PDBFileCache(directory, 1 << 20, 0);
+        try (InputStream in = cache.open("2abc.pdb", uri())) {
+            assertEquals('H', in.read());
+        }
+        assertNull(cache.getCached("2abc.pdb")); // closed before its end
+
+        try (InputStream in = cache.open("1abc.pdb", uri())) {
+            assertEquals(CONTENT, new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+        assertEquals(CONTENT, cache.getCached("1abc.pdb"));
+        String digest = cache.getDigest("1abc.pdb");
+        cache.store("3abc.pdb", CONTENT.getBytes(StandardCharsets.UTF_8), null, null);
+        assertEquals(cache.getDigest("3abc.pdb"), digest);
+        assertEquals(Files.size(directory.resolve("1abc.pdb.gz")) + Files.size(directory.resolve("3abc.pdb.gz")),
+                cache.getTotalBytes());
+        try (Stream<Path> files = Files.list(directory)) {
+            assertTrue(files.noneMatch(file -> file.toString().endsWith(".tmp")));
+        }
+    }
+
+    private URI uri() {
+        return URI.create("http://localhost:" + server.getLocalPort() + "/1abc.pdb");
+    }
+
+    /**
+     * Answers each request with the test file, or with 304 if the request holds its ETag.
+     */
+    private void serve() {
+        while (!server.isClosed()) {
+            try (Socket socket = server.accept()) {
+                BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(),
+                        StandardCharsets.ISO_8859_1));
+                Map<String, String> headers = new HashMap<>();
+                String line = in.readLine();
+                while ((line = in.readLine()) != null && !line.isEmpty()) {
+                    int colon = line.indexOf(':');
+                    headers.put(line.substring(0, colon).strip().toLowerCase(), line.substring(colon + 1).strip());
+                }
+                boolean notModified = ETAG.equals(headers.get("if-none-match"));
+                byte[] body = notModified ? new byte[0] : CONTENT.getBytes(StandardCharsets.UTF_8);
+                synchronized (statuses) {
+                    statuses.add(notModified ? 304 : 200);
+                }
+                String response = (notModified ? "HTTP/1.1 304 Not Modified" : "HTTP/1.1 200 OK") + "\r\n"
+                        + "ETag: " + ETAG + "\r\nContent-Length: " + body.length + "\r\nConnection: close\r\n\r\n";
+                OutputStream out = socket.getOutputStream();
+                out.write(response.getBytes(StandardCharsets.ISO_8859_1));
+                out.write(body);
+                out.flush();
+            } catch (IOException e) {
+                // closed by the test
+            }
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package pdbexplorer.model.io;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import pdbexplorer.model.protein.PDBComplex;
+import pdbexplorer.model.protein.PDBMonomer;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests of the PDBSnapshot: a snapshot is only used for the file it has been created from and can be replaced.
+ */
+public class PDBSnapshotTest {
+    private static final String FILE = """
+            HELIX    1   1 ALA A    1  GLY A    2  1                                   2   \s
+            ATOM      1  N   ALA A   1       0.000   1.000   2.000  1.00  0.00           N \s
+            ATOM      2  CA  ALA A   1       1.000   1.000   2.000  1.00  0.00           C \s
+            ATOM      3  N   GLY A   2       2.000   1.000   2.000  1.00  0.00           N \s
+            ATOM      4  CA  GLY A   2       3.000   1.000   2.000  1.00  0.00           C \s
+            END
+            """;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void readsSnapshotOfTheSameFileOnly() throws IOException {
+        PDBComplex complex = PDBParser.parse(new StringReader(FILE));
+        Path snapshot = directory.resolve("1abc.snapshot");
+        PDBSnapshot.write(complex, "digest-1", snapshot, true);
+
+        assertNull(PDBSnapshot.read(snapshot, "digest-2"));
+        PDBComplex read = PDBSnapshot.read(snapshot, "digest-1");
+        assertNotNull(read);
+        List<PDBMonomer> expected = complex.getPolymers().get(0).getMonomers();
+        List<PDBMonomer> actual = read.getPolymers().get(0).getMonomers();
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getLabel(), actual.get(i).getLabel());
+            assertEquals(expected.get(i).getSecondaryStructureType(), actual.get(i).getSecondaryStructureType());
+        }
+        assertEquals(complex.getPolymers().get(0).getBonds().size(), read.getPolymers().get(0).getBonds().size());
+
+        // a snapshot that has been read can be replaced
+        PDBSnapshot.write(complex, "digest-2", snapshot, false);
+        assertNull(PDBSnapshot.read(snapshot, "digest-1"));
+        assertNotNull(PDBSnapshot.read(snapshot, "digest-2"));
+    }
+}
@@ -0,0 +1,104 @@
+package pdbexplorer.model.io;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import pdbexplorer.model.protein.PDBComplex;
+import pdbexplorer.model.protein.PDBMonomer;
+import pdbexplorer.model.protein.PDBPolymer;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests of the PDBWriter: the columns of the written records and reading the written file back.
+ */
+public class PDBWriterTest {
+    private static final String[] RESIDUES = {"ALA", "MSE", "GLY", "LEU"};
+    private static final String[] ATOMS = {"N", "CA", "C", "O"};
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void writesRecordsInTheirColumns() throws IOException {
+        Path file = directory.resolve("out.pdb");
+        PDBWriter.write(parse(createFile()), file, polymer -> true, monomer -> true);
+        List<String> lines = Files.readAllLines(file);
+
+        String helix = lines.stream().filter(line -> line.startsWith("HELIX")).findFirst().orElseThrow();
+        assertEquals("  1", helix.substring(7, 10)); // serial number
+        assertEquals("  1", helix.substring(11, 14)); // helix ID
+        assertEquals("ALA", helix.substring(15, 18));
+        assertEquals('A', helix.charAt(19));
+        assertEquals("   1", helix.substring(21, 25));
+        assertEquals("GLY", helix.substring(27, 30));
+        assertEquals('A', helix.charAt(31));
+        assertEquals("   3", helix.substring(33, 37));
+        assertEquals(" 1", helix.substring(38, 40));
+
+        String atom = lines.stream().filter(line -> line.startsWith("ATOM")).skip(5).findFirst().orElseThrow();
+        assertEquals("    6", atom.substring(6, 11));
+        assertEquals(" CA ", atom.substring(12, 16));
+        assertEquals("MET", atom.substring(17, 20)); // selenomethionine is written as its standard amino acid
+        assertEquals('A', atom.charAt(21));
+        assertEquals("   2", atom.substring(22, 26));
+        assertEquals("   5.000", atom.substring(30, 38));
+        assertEquals("  -1.500", atom.substring(38, 46));
+        assertEquals("   0.250", atom.substring(46, 54));
+        assertEquals(" C", atom.substring(76, 78));
+    }
+
+    @Test
+    public void readsWrittenFileBack() throws IOException {
+        PDBComplex complex = parse(createFile());
+        Path file = directory.resolve("out.pdb");
+        PDBWriter.write(complex, file, polymer -> true, monomer -> true);
+        PDBComplex read = parse(Files.readString(file));
+
+        List<PDBMonomer> expected = complex.getPolymers().get(0).getMonomers();
+        List<PDBMonomer> actual = read.getPolymers().get(0).getMonomers();
+        assertEquals(RESIDUES.length, expected.size());
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getLabel(), actual.get(i).getLabel());
+            assertEquals(expected.get(i).getId(), actual.get(i).getId());
+            assertEquals(expected.get(i).getSecondaryStructureType(), actual.get(i).getSecondaryStructureType());
+            assertEquals(expected.get(i).getAtoms().size(), actual.get(i).getAtoms().size());
+            for (int j = 0; j < expected.get(i).getAtoms().size(); j++) {
+                assertEquals(expected.get(i).getAtoms().get(j).getRole(), actual.get(i).getAtoms().get(j).getRole());
+                assertEquals(expected.get(i).getAtoms().get(j).getCoordinates(),
+                        actual.get(i).getAtoms().get(j).getCoordinates());
+            }
+        }
+        assertEquals("M", actual.get(1).getLabel());
+    }
+
+    private static PDBComplex parse(String content) throws IOException {
+        return PDBParser.parse(new StringReader(content));
+    }
+
+    /**
+     * Creates a chain of four residues with a helix over the first three; the selenomethionine is given as HETATM.
+     */
+    private static String createFile() {
+        StringBuilder file = new StringBuilder();
+        file.append("HELIX    1   1 ALA A    1  GLY A    3  1                                   3    \n");
+        int serial = 1;
+        for (int i = 0; i < RESIDUES.length; i++) {
+            for (String atom : ATOMS) {
+                file.append(String.format(Locale.ROOT, "%-6s%5d  %-3s %3s A%4d    %8.3f%8.3f%8.3f  1.00  0.00"
+                                + "           %s  \n", RESIDUES[i].equals("MSE") ? "HETATM" : "ATOM", serial,
+                        atom, RESIDUES[i], i + 1, serial - 1.0, -1.5, 0.25, atom.substring(0, 1)));
+                serial++;
+            }
+        }
+        file.append("END\n");
+        return file.toString();
+    }
+}